@@ -567,7 +567,8 @@ public class Driver {
         String reportOptions[] = {
                 "Low Inventory Report",
                 "Unsold Inventory Report",
-                "Inventory Volume Report"
+                "Inventory Volume Report",
+                "Latest Background Reports"
         };
         promptUser(reportOptions);
 
@@ -590,6 +591,9 @@ public class Driver {
             case 3:
                 generateInventoryVolumeReport(keyboard);
                 break;
+            case 4:
+                showLatestReports(keyboard);
+                break;
             default:
                 System.err.println("\nInvalid report choice.");
                 break;
@@ -616,8 +620,34 @@ public class Driver {
             } else {
                 System.out.println("Items imported successfully from file: " + filePath);
             }
+            String rejectedRowsFile = Controller.getRejectedRowsFile(filePath);
+            if (rejectedRowsFile != null) {
+                System.out.println("Some rows could not be imported, and were written to: " + rejectedRowsFile);
+            }
         } catch (Exception e) {
             System.err.println("ERROR: Could not import items from file");
+            System.err.println("If the import stopped part way, importing the file again continues from where it stopped");
+        }
+    }
+
+    /**
+     * Export all items to JSON.
+     * 
+     * @param keyboard User input scanner.
+     */
+    private static void exportToJSON(Scanner keyboard) {
+        System.out.print("Enter file path to export items to > ");
+        String filePath = "";
+        try {
+            filePath = keyboard.nextLine().trim();
+        } catch (Exception e) {
+            System.err.println("ERROR: Could not read user input");
+            return;
+        }
+        if (Controller.exportItems(filePath)) {
+            System.out.println("Items exported successfully to file: " + filePath);
+        } else {
+            System.err.println("ERROR: Could not export items to file");
         }
     }
 
@@ -797,6 +827,28 @@ public class Driver {
         }
     }
 
+    /**
+     * Shows the latest reports generated in the background, and optionally
+     * generates them again.
+     * 
+     * @param keyboard User input scanner.
+     */
+    private static void showLatestReports(Scanner keyboard) {
+        for (String description : Controller.latestReports()) {
+            System.out.println(description);
+        }
+
+        System.out.println("Would you like to generate them again in the background?");
+        String yesNoOptions[] = { "Yes", "No" };
+        promptUser(yesNoOptions);
+
+        String choiceString = keyboard.nextLine().trim();
+        if (choiceString.equalsIgnoreCase("Yes") || choiceString.equals("1")) {
+            Controller.refreshLatestReports();
+            System.out.println("Reports are being generated.");
+        }
+    }
+
     /**
      * Prints options as a numbered list.
      * 
@@ -852,6 +904,7 @@ public class Driver {
                 "Search Item by SKU",
                 "Generate Report",
                 "Import From CSV",
+                "Export To JSON",
                 "Exit", // THIS SHOULD ALWAYS BE LAST
         };
 
@@ -914,8 +967,11 @@ public class Driver {
                 case 15:
                     importFromCSV(keyboard);
                     break;
+                case 16:
+                    exportToJSON(keyboard);
+                    break;
 
-                case 16: // EXITING SHOULD ALWAYS BE THE LAST CHOICE
+                case 17: // EXITING SHOULD ALWAYS BE THE LAST CHOICE
                     // exit program
                     continueProgram = false;
                     break;
@@ -0,0 +1,50 @@
+package database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import database.items.Bundle;
+import database.items.Item;
+
+/**
+ * Maps the columns of a Bundle followed by the columns of one of its Items and
+ * that Item's Category, read in the order of {@link TableSchema#BUNDLE} and
+ * {@link ItemRowMapper#getColumns()}, to a Bundle holding that single Item.
+ */
+public class BundleRowMapper implements RowMapper<Bundle> {
+    // the positions of the columns within the Bundle columns
+    private static final int BUNDLE_ID = TableSchema.BUNDLE.indexOf(Bundle.BUNDLE_ID_KEY);
+    private static final int BUNDLE_DISCOUNT = TableSchema.BUNDLE.indexOf(Bundle.BUNDLE_DISCOUNT_KEY);
+
+    // the Item columns come right after the Bundle columns
+    private final ItemRowMapper itemRowMapper = new ItemRowMapper(1 + TableSchema.BUNDLE.size(), true);
+    private final List<String> columns;
+
+    /**
+     * Creates a new BundleRowMapper.
+     */
+    public BundleRowMapper() {
+        List<String> allColumns = new ArrayList<>(TableSchema.BUNDLE.getQualifiedColumns());
+        allColumns.addAll(itemRowMapper.getColumns());
+        this.columns = Collections.unmodifiableList(allColumns);
+    }
+
+    /**
+     * Gets the columns this mapper reads, in order.
+     * 
+     * @return The qualified columns.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public Bundle mapRow(ResultSet resultSet) throws SQLException {
+        List<Item> items = new ArrayList<>();
+        items.add(itemRowMapper.mapRow(resultSet));
+        return new Bundle(resultSet.getInt(1 + BUNDLE_ID), resultSet.getDouble(1 + BUNDLE_DISCOUNT), items);
+    }
+}
@@ -0,0 +1,50 @@
+package database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import database.items.Category;
+
+/**
+ * Maps the columns of a Category, read in the order of
+ * {@link TableSchema#CATEGORY}, to a Category.
+ */
+public class CategoryRowMapper implements RowMapper<Category> {
+    // the positions of the columns within the Category columns
+    private static final int CATEGORY_ID = TableSchema.CATEGORY.indexOf(Category.CATEGORY_ID_KEY);
+    private static final int NAME = TableSchema.CATEGORY.indexOf(Category.NAME_KEY);
+
+    private final int firstColumn;
+
+    /**
+     * Creates a new CategoryRowMapper for rows that only hold a Category.
+     */
+    public CategoryRowMapper() {
+        this(1);
+    }
+
+    /**
+     * Creates a new CategoryRowMapper for rows that hold a Category among other
+     * columns.
+     * 
+     * @param firstColumn The result set index of the first Category column.
+     */
+    public CategoryRowMapper(int firstColumn) {
+        this.firstColumn = firstColumn;
+    }
+
+    /**
+     * Gets the columns this mapper reads, in order.
+     * 
+     * @return The qualified columns.
+     */
+    public static List<String> getColumns() {
+        return TableSchema.CATEGORY.getQualifiedColumns();
+    }
+
+    @Override
+    public Category mapRow(ResultSet resultSet) throws SQLException {
+        return new Category(resultSet.getInt(firstColumn + CATEGORY_ID), resultSet.getString(firstColumn + NAME));
+    }
+}
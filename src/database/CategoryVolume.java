@@ -0,0 +1,58 @@
+package database;
+
+/**
+ * The totals of the Items in a Category, aggregated by the database.
+ */
+public class CategoryVolume {
+    private int categoryId;
+    private String categoryName;
+    private int uniqueItemCount;
+    private int totalUnits;
+    private double totalValue;
+    private double totalDiscountedValue;
+
+    /**
+     * Creates a new CategoryVolume.
+     *
+     * @param categoryId           The ID of the Category.
+     * @param categoryName         The name of the Category.
+     * @param uniqueItemCount      The number of Items in the Category.
+     * @param totalUnits           The total number of units of the Items.
+     * @param totalValue           The total value of the units.
+     * @param totalDiscountedValue The total value of the units after their
+     *                             promotions.
+     */
+    public CategoryVolume(int categoryId, String categoryName, int uniqueItemCount, int totalUnits,
+            double totalValue, double totalDiscountedValue) {
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.uniqueItemCount = uniqueItemCount;
+        this.totalUnits = totalUnits;
+        this.totalValue = totalValue;
+        this.totalDiscountedValue = totalDiscountedValue;
+    }
+
+    public int getCategoryId() {
+        return categoryId;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public int getUniqueItemCount() {
+        return uniqueItemCount;
+    }
+
+    public int getTotalUnits() {
+        return totalUnits;
+    }
+
+    public double getTotalValue() {
+        return totalValue;
+    }
+
+    public double getTotalDiscountedValue() {
+        return totalDiscountedValue;
+    }
+}
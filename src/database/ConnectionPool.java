@@ -0,0 +1,405 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of connections to a database that can be shared between
+ * threads.
+ * <br>
+ * <br>
+ * Connections are validated when borrowed, replaced when they are found to be
+ * broken, and closed after sitting idle for too long.
+ */
+public class ConnectionPool implements AutoCloseable {
+    public static final int DEFAULT_MAX_SIZE = 10;
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30_000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10 * 60_000;
+
+    // connections used this recently are trusted without asking the database
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final long EVICTION_INTERVAL_MILLIS = 60_000;
+
+    private final String url;
+    private final Properties connectionProperties;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutNanos;
+
+    private final Semaphore permits; // one permit for each connection that may be borrowed
+    private final Deque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    // metrics
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong reconnectCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates a new ConnectionPool with the default settings.
+     *
+     * @param url      The URL to the database.
+     * @param username The username for the user of the database.
+     * @param password The password for the user of the database.
+     */
+    public ConnectionPool(String url, String username, String password) {
+        this(url, username, password, DEFAULT_MAX_SIZE, DEFAULT_BORROW_TIMEOUT_MILLIS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a new ConnectionPool.
+     *
+     * @param url                 The URL to the database.
+     * @param username            The username for the user of the database.
+     * @param password            The password for the user of the database.
+     * @param maxSize             The most connections that can be open at once.
+     * @param borrowTimeoutMillis How long to wait for a free connection before
+     *                            giving up.
+     * @param idleTimeoutMillis   How long a connection can sit unused before it is
+     *                            closed.
+     */
+    public ConnectionPool(String url, String username, String password, int maxSize, long borrowTimeoutMillis,
+            long idleTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The pool must allow at least one connection.");
+        }
+        this.url = url;
+        this.connectionProperties = new Properties();
+        this.connectionProperties.setProperty("user", username);
+        this.connectionProperties.setProperty("password", password);
+        // prepare statements on the server, so each statement shape is only parsed once
+        this.connectionProperties.setProperty("useServerPrepStmts", "true");
+        // send a batch of inserts as one multi-row insert instead of one at a time
+        this.connectionProperties.setProperty("rewriteBatchedStatements", "true");
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ConnectionPool-evictor");
+            thread.setDaemon(true); // should never keep the program running
+            return thread;
+        });
+        // look more often than the idle timeout, so a connection is not kept much longer than it
+        long evictionIntervalMillis = Math.max(1, Math.min(EVICTION_INTERVAL_MILLIS, idleTimeoutMillis / 2));
+        this.evictor.scheduleWithFixedDelay(this::evictIdleConnections, evictionIntervalMillis,
+                evictionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting for one to be returned if they
+     * are all in use. The connection must be given back with
+     * {@link #release(PooledConnection, boolean)}.
+     *
+     * @return A valid connection to the database, in auto-commit mode.
+     * @throws SQLException If no connection could be borrowed in time, or a new
+     *                      connection could not be made.
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed.");
+        }
+
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection.");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", ie);
+        }
+        recordWait(System.nanoTime() - waitStart);
+
+        try {
+            PooledConnection pooledConnection = takeValidIdleConnection();
+            if (pooledConnection == null) {
+                pooledConnection = openConnection();
+            }
+            activeCount.incrementAndGet();
+            return pooledConnection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release(); // we never handed out a connection
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool.
+     *
+     * @param pooledConnection The borrowed connection.
+     * @param broken           True if the connection failed and should be thrown
+     *                         away instead of reused.
+     */
+    public void release(PooledConnection pooledConnection, boolean broken) {
+        activeCount.decrementAndGet();
+        try {
+            if (!broken && !closed && resetForReuse(pooledConnection)) {
+                pooledConnection.markReturned();
+                idleConnections.push(pooledConnection); // most recently used are reused first
+            } else {
+                discard(pooledConnection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Finds out if an exception means that the connection it came from can no
+     * longer be used.
+     *
+     * @param sqle The exception.
+     * @return True if the connection is broken, false otherwise.
+     */
+    public static boolean isConnectionBroken(SQLException sqle) {
+        String sqlState = sqle.getSQLState();
+        // SQL state class 08 is for connection exceptions
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    /**
+     * Closes the pool and all of its idle connections. Borrowed connections are
+     * closed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.poll()) != null) {
+            discard(pooledConnection);
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still valid, throwing
+     * away any broken ones found along the way.
+     *
+     * @return A valid idle connection, or null if there are none.
+     */
+    private PooledConnection takeValidIdleConnection() {
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.poll()) != null) {
+            if (isValid(pooledConnection)) {
+                return pooledConnection;
+            }
+            // reconnect by throwing this one away, the caller will open a new one
+            reconnectCount.incrementAndGet();
+            discard(pooledConnection);
+        }
+        return null;
+    }
+
+    /**
+     * Checks that an idle connection can still be used.
+     *
+     * @param pooledConnection The connection.
+     * @return True if the connection is valid, false otherwise.
+     */
+    private boolean isValid(PooledConnection pooledConnection) {
+        try {
+            Connection connection = pooledConnection.getConnection();
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (System.nanoTime() - pooledConnection.getLastReturnedNanos() < VALIDATION_BYPASS_NANOS) {
+                return true; // it was working a moment ago
+            }
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException sqle) {
+            return false;
+        }
+    }
+
+    /**
+     * Puts a returned connection back into its default state.
+     *
+     * @param pooledConnection The connection.
+     * @return True if the connection can be reused, false otherwise.
+     */
+    private boolean resetForReuse(PooledConnection pooledConnection) {
+        try {
+            Connection connection = pooledConnection.getConnection();
+            if (!connection.getAutoCommit()) {
+                connection.rollback(); // never leak an unfinished transaction to the next borrower
+                connection.setAutoCommit(true);
+            }
+            if (connection.isReadOnly()) {
+                connection.setReadOnly(false);
+            }
+            return true;
+        } catch (SQLException sqle) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a new connection to the database.
+     *
+     * @return The new connection.
+     * @throws SQLException If the connection could not be made.
+     */
+    private PooledConnection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, connectionProperties);
+        openCount.incrementAndGet();
+        return new PooledConnection(connection);
+    }
+
+    /**
+     * Closes a connection that will no longer be used.
+     *
+     * @param pooledConnection The connection.
+     */
+    private void discard(PooledConnection pooledConnection) {
+        openCount.decrementAndGet();
+        pooledConnection.closeQuietly();
+    }
+
+    /**
+     * Closes connections that have been idle for longer than the idle timeout.
+     */
+    private void evictIdleConnections() {
+        long now = System.nanoTime();
+        Iterator<PooledConnection> iterator = idleConnections.descendingIterator(); // oldest first
+        while (iterator.hasNext()) {
+            PooledConnection pooledConnection = iterator.next();
+            if (now - pooledConnection.getLastReturnedNanos() > idleTimeoutNanos
+                    && idleConnections.removeFirstOccurrence(pooledConnection)) {
+                evictionCount.incrementAndGet();
+                discard(pooledConnection);
+            }
+        }
+    }
+
+    /**
+     * Records how long a borrower waited for a connection.
+     *
+     * @param waitNanos The time waited.
+     */
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /* Metrics */
+
+    /**
+     * Gets the most connections this pool will have open at once.
+     *
+     * @return The maximum size of the pool.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of connections currently borrowed.
+     *
+     * @return The number of borrowed connections.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * Gets the number of connections currently waiting in the pool.
+     *
+     * @return The number of idle connections.
+     */
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Gets the number of connections currently open, borrowed or not.
+     *
+     * @return The number of open connections.
+     */
+    public int getOpenCount() {
+        return openCount.get();
+    }
+
+    /**
+     * Gets the number of threads currently waiting for a connection.
+     *
+     * @return The number of waiting threads.
+     */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Gets how much of the pool is in use.
+     *
+     * @return The fraction of the maximum size that is borrowed, from 0.0 to 1.0.
+     */
+    public double getUtilization() {
+        return (double) activeCount.get() / maxSize;
+    }
+
+    /**
+     * Gets the number of times a connection has been borrowed.
+     *
+     * @return The number of borrows.
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * Gets the average time borrowers waited for a connection.
+     *
+     * @return The average wait time in milliseconds.
+     */
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows > 0 ? totalWaitNanos.get() / (borrows * 1_000_000.0) : 0.0;
+    }
+
+    /**
+     * Gets the longest time a borrower waited for a connection.
+     *
+     * @return The maximum wait time in milliseconds.
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Gets the number of broken connections that were replaced.
+     *
+     * @return The number of reconnects.
+     */
+    public long getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    /**
+     * Gets the number of connections closed for sitting idle too long.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+}
@@ -0,0 +1,76 @@
+package database;
+
+/**
+ * How far an import of a file has got. Every row of the file before the offset
+ * has been imported or rejected, so an import that stopped can start again from
+ * the offset.
+ */
+public class ImportCheckpoint {
+    private String filePath;
+    private long fileSize;
+    private long fileModified;
+    private long offset;
+    private long rowNumber;
+    private long numImported;
+    private long numRejected;
+    private long rejectedLength;
+
+    /**
+     * Creates a new ImportCheckpoint.
+     *
+     * @param filePath       The absolute path of the file.
+     * @param fileSize       The size of the file when it was imported, to tell if
+     *                       it has changed since.
+     * @param fileModified   When the file was last modified when it was imported,
+     *                       in milliseconds since the epoch.
+     * @param offset         The offset in the file of the next row to import.
+     * @param rowNumber      The number of the last row before the offset,
+     *                       counting the header as row 1.
+     * @param numImported    The number of Items imported so far.
+     * @param numRejected    The number of rows rejected so far.
+     * @param rejectedLength The length of the file of rejected rows so far.
+     */
+    public ImportCheckpoint(String filePath, long fileSize, long fileModified, long offset, long rowNumber,
+            long numImported, long numRejected, long rejectedLength) {
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+        this.offset = offset;
+        this.rowNumber = rowNumber;
+        this.numImported = numImported;
+        this.numRejected = numRejected;
+        this.rejectedLength = rejectedLength;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getFileModified() {
+        return fileModified;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    public long getNumImported() {
+        return numImported;
+    }
+
+    public long getNumRejected() {
+        return numRejected;
+    }
+
+    public long getRejectedLength() {
+        return rejectedLength;
+    }
+}
@@ -0,0 +1,119 @@
+package database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import database.items.DateInfo;
+import database.items.EconomyInfo;
+import database.items.Item;
+import database.items.Preference;
+
+/**
+ * Maps the columns of an Item followed by the columns of its Category, read in
+ * the order of {@link TableSchema#ITEM} and {@link TableSchema#CATEGORY}, to an
+ * Item.
+ * <br>
+ * <br>
+ * A summary mapper skips the Item's description, which is the largest column
+ * and is not needed to list Items.
+ */
+public class ItemRowMapper implements RowMapper<Item> {
+    private static final int NOT_READ = -1;
+
+    private final List<String> columns;
+    private final CategoryRowMapper categoryRowMapper;
+
+    // the result set indexes of the Item columns
+    private final int itemId;
+    private final int sku;
+    private final int name;
+    private final int description;
+    private final int price;
+    private final int numItems;
+    private final int created;
+    private final int lastModified;
+    private final int sellWithinNumDays;
+    private final int lowInventoryThreshold;
+    private final int promotionPercentOff;
+
+    /**
+     * Creates a new ItemRowMapper for rows that start with the Item.
+     */
+    public ItemRowMapper() {
+        this(1, true);
+    }
+
+    /**
+     * Creates a new ItemRowMapper for rows that hold an Item among other columns.
+     * 
+     * @param firstColumn        The result set index of the first Item column.
+     * @param includeDescription True to read the Item's description, false to
+     *                           leave it out.
+     */
+    public ItemRowMapper(int firstColumn, boolean includeDescription) {
+        List<String> itemColumns = new ArrayList<>(TableSchema.ITEM.getColumns());
+        if (!includeDescription) {
+            itemColumns.remove(Item.DESCRIPTION_KEY);
+        }
+
+        this.itemId = firstColumn + itemColumns.indexOf(Item.ITEM_ID_KEY);
+        this.sku = firstColumn + itemColumns.indexOf(Item.SKU_KEY);
+        this.name = firstColumn + itemColumns.indexOf(Item.NAME_KEY);
+        this.description = includeDescription ? firstColumn + itemColumns.indexOf(Item.DESCRIPTION_KEY) : NOT_READ;
+        this.price = firstColumn + itemColumns.indexOf(EconomyInfo.PRICE_KEY);
+        this.numItems = firstColumn + itemColumns.indexOf(EconomyInfo.NUM_ITEMS_KEY);
+        this.created = firstColumn + itemColumns.indexOf(DateInfo.CREATED_KEY);
+        this.lastModified = firstColumn + itemColumns.indexOf(DateInfo.LAST_MODIFIED_KEY);
+        this.sellWithinNumDays = firstColumn + itemColumns.indexOf(Preference.SELL_WITHIN_NUM_DAYS_KEY);
+        this.lowInventoryThreshold = firstColumn + itemColumns.indexOf(Preference.LOW_INVENTORY_THRESHOLD_KEY);
+        this.promotionPercentOff = firstColumn + itemColumns.indexOf(Preference.PROMOTION_PERCENT_OFF_KEY);
+
+        // the Category columns come right after the Item columns
+        this.categoryRowMapper = new CategoryRowMapper(firstColumn + itemColumns.size());
+
+        List<String> allColumns = new ArrayList<>();
+        for (String column : itemColumns) {
+            allColumns.add(Item.TABLE_NAME + "." + column);
+        }
+        allColumns.addAll(CategoryRowMapper.getColumns());
+        this.columns = Collections.unmodifiableList(allColumns);
+    }
+
+    /**
+     * Creates an ItemRowMapper that leaves out each Item's description, for
+     * listing Items.
+     * 
+     * @return The summary mapper.
+     */
+    public static ItemRowMapper summary() {
+        return new ItemRowMapper(1, false);
+    }
+
+    /**
+     * Gets the columns this mapper reads, in order.
+     * 
+     * @return The qualified columns.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public Item mapRow(ResultSet resultSet) throws SQLException {
+        return new Item(resultSet.getInt(itemId),
+                resultSet.getString(sku),
+                resultSet.getString(name),
+                description != NOT_READ ? resultSet.getString(description) : null,
+                categoryRowMapper.mapRow(resultSet),
+                resultSet.getDouble(price),
+                resultSet.getInt(numItems),
+                resultSet.getDate(created),
+                resultSet.getDate(lastModified),
+                resultSet.getInt(sellWithinNumDays),
+                resultSet.getInt(lowInventoryThreshold),
+                resultSet.getDouble(promotionPercentOff));
+    }
+}
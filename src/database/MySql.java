@@ -1,93 +1,249 @@
 package database;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import database.items.DataType;
 
 /**
  * Class to perform abstract MySQL operations.
+ * <br>
+ * <br>
+ * Connections are borrowed from a {@link ConnectionPool}, so a single MySql
+ * object can be shared between threads. Each operation borrows a connection
+ * for as long as it runs, unless the calling thread has started a transaction,
+ * in which case the thread keeps the same connection until the transaction is
+ * committed or aborted.
  */
 public class MySql implements Storage {
-    private Connection connection = null;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // records which schema migrations have been applied to the database
+    private static final String SCHEMA_VERSION_TABLE_QUERY = "create table if not exists SchemaVersion(Version int not null, Description varchar(255), Applied datetime default current_timestamp, primary key (Version))";
+    // MySQL errors for changes that are already in place
+    private static final int ER_TABLE_EXISTS_ERROR = 1050;
+    private static final int ER_DUP_KEYNAME = 1061;
+    // MySQL error for a unique index that the rows already break
+    private static final int ER_DUP_ENTRY = 1062;
+
+    private final ConnectionPool connectionPool;
+    // the connection of the transaction that each thread has open, if any
+    private final ThreadLocal<PooledConnection> transactionConnection = new ThreadLocal<>();
+    private final AtomicLong roundTripCount = new AtomicLong(); // number of statements sent to the database
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Represents an operation to perform with a connection to the database.
+     */
+    @FunctionalInterface
+    private interface SqlOperation<T> {
+        T perform(PooledConnection pooledConnection) throws SQLException;
+    }
 
     /**
-     * Creates a Database object with a connection to a database.
+     * Creates a Database object with a pool of connections to a database.
      * 
      * @param url      The URL to the database.
      * @param username The username for the user of the database.
      * @param password The password for the user of the database.
      */
     public MySql(String url, String username, String password, List<String> tableQueries) throws SQLException {
-        // we don't want to handle this exception ourselves, so the user can decide what
-        // to do if this fails
-        connection = DriverManager.getConnection(url, username, password);
+        this(new ConnectionPool(url, username, password), tableQueries, new ArrayList<>());
+    }
 
-        // no autocomitting, we will have transactions
-        performPreparedStatement("set autocommit=0");
+    /**
+     * Creates a Database object with a pool of connections to a database,
+     * bringing the schema of the database up to date.
+     * 
+     * @param url              The URL to the database.
+     * @param username         The username for the user of the database.
+     * @param password         The password for the user of the database.
+     * @param tableQueries     The queries to set up the tables.
+     * @param schemaMigrations The migrations to apply to the tables once they are
+     *                         set up.
+     */
+    public MySql(String url, String username, String password, List<String> tableQueries,
+            List<SchemaMigration> schemaMigrations) throws SQLException {
+        this(new ConnectionPool(url, username, password), tableQueries, schemaMigrations);
+    }
 
-        try {
-            // so the database doesn't have problems with auto_increment not being set
-            performPreparedStatement("set global information_schema_stats_expiry=0");
-        } catch (SQLException sqle) {
-            // do nothing, the user's database may not have this, so we will assume that the
-            // auto_increment is automatically updated
-        }
+    /**
+     * Creates a Database object using an existing pool of connections to a
+     * database.
+     * 
+     * @param connectionPool The pool of connections to the database.
+     * @param tableQueries   The queries to set up the tables.
+     */
+    public MySql(ConnectionPool connectionPool, List<String> tableQueries) throws SQLException {
+        this(connectionPool, tableQueries, new ArrayList<>());
+    }
 
-        if (!startTransaction()) {
-            throw new SQLException("Could not begin database transaction");
-        }
+    /**
+     * Creates a Database object using an existing pool of connections to a
+     * database, bringing the schema of the database up to date.
+     * 
+     * @param connectionPool   The pool of connections to the database.
+     * @param tableQueries     The queries to set up the tables.
+     * @param schemaMigrations The migrations to apply to the tables once they are
+     *                         set up.
+     */
+    public MySql(ConnectionPool connectionPool, List<String> tableQueries, List<SchemaMigration> schemaMigrations)
+            throws SQLException {
+        this.connectionPool = connectionPool;
+
+        // we don't want to handle this exception ourselves, so the user can decide what
+        // to do if we cannot connect
+        PooledConnection pooledConnection = connectionPool.borrow();
         try {
-            // set up tables
-            for (String query : tableQueries) {
-                performPreparedStatement(query);
+            try {
+                // set up tables
+                for (String query : tableQueries) {
+                    performPreparedStatement(pooledConnection, query);
+                }
+            } catch (SQLException sqle) {
+                // the tables have already been set up
             }
-            commitTransaction();
-        } catch (SQLException sqle) {
-            // abort transaction
-            abortTransaction();
+
+            if (!schemaMigrations.isEmpty()) {
+                migrate(pooledConnection, schemaMigrations);
+            }
+        } finally {
+            connectionPool.release(pooledConnection, false);
         }
     }
 
     /**
-     * Closes the connection to the database.
-     * 
-     * @throws SQLException
+     * Closes the connections to the database.
      */
     @Override
-    public void close() throws SQLException {
-        connection.close(); // close database connection
+    public void close() {
+        connectionPool.close(); // close database connections
     }
 
     /**
-     * Retrieves the next auto-increment ID value for a given table.
+     * Gets the pool of connections used by this object, for its metrics.
      * 
-     * @param tableName The name of the table.
-     * @return The next auto-increment ID, or -1 if the query fails.
-     */
-    public int getNextIncrementedId(String tableName) {
-        String query = "SELECT AUTO_INCREMENT FROM information_schema.TABLES WHERE TABLE_SCHEMA = 'warehelper' AND TABLE_NAME = '"
-                + tableName + "'";
-
-        try (DatabaseQueryResult result = performQuery(query)) {
-            ResultSet rs = result.getResultSet();
-            if (rs.next()) {
-                return rs.getInt("AUTO_INCREMENT");
-            } else {
-                throw new SQLException("Could not retrieve next auto-increment ID."); // could not find the table
+     * @return The connection pool.
+     */
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Applies every migration newer than the schema version recorded in the
+     * database, in order of their versions, recording each one as it is applied.
+     * 
+     * @param pooledConnection The connection to apply the migrations with.
+     * @param schemaMigrations The migrations.
+     * @throws SQLException If a migration could not be applied.
+     */
+    private void migrate(PooledConnection pooledConnection, List<SchemaMigration> schemaMigrations)
+            throws SQLException {
+        performPreparedStatement(pooledConnection, SCHEMA_VERSION_TABLE_QUERY);
+        int currentVersion = readSchemaVersion(pooledConnection);
+
+        List<SchemaMigration> sortedMigrations = new ArrayList<>(schemaMigrations);
+        sortedMigrations.sort(Comparator.comparingInt(SchemaMigration::getVersion));
+        for (SchemaMigration migration : sortedMigrations) {
+            if (migration.getVersion() <= currentVersion) {
+                continue; // already applied
             }
-        } catch (SQLException e) {
+
+            for (String statement : migration.getStatements()) {
+                try {
+                    performPreparedStatement(pooledConnection, statement);
+                } catch (SQLException sqle) {
+                    if (sqle.getErrorCode() == ER_DUP_ENTRY) {
+                        // the data must be fixed by hand, so say what to fix
+                        throw new SQLException(String.format(
+                                "Could not apply schema migration %d (%s), since the database has duplicate values "
+                                        + "for a unique index: %s. Remove the duplicates and connect again.",
+                                migration.getVersion(), migration.getDescription(), sqle.getMessage()),
+                                sqle.getSQLState(), sqle.getErrorCode(), sqle);
+                    }
+                    if (sqle.getErrorCode() != ER_DUP_KEYNAME && sqle.getErrorCode() != ER_TABLE_EXISTS_ERROR) {
+                        throw sqle;
+                    }
+                    // this change was made by an earlier attempt at the migration
+                }
+            }
+
+            // ignore, in case another connection applied the same migration at the same
+            // time
+            PreparedStatement statement = prepareCached(pooledConnection,
+                    "insert ignore into SchemaVersion(Version, Description) values (?, ?)",
+                    List.of(Integer.toString(migration.getVersion()), migration.getDescription()),
+                    List.of(DataType.INTEGER, DataType.STRING));
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads the version of the newest migration applied to the database.
+     * 
+     * @param pooledConnection The connection to read with.
+     * @return The schema version, or 0 if no migrations have been applied.
+     * @throws SQLException If the version could not be read.
+     */
+    private int readSchemaVersion(PooledConnection pooledConnection) throws SQLException {
+        PreparedStatement statement = prepareCached(pooledConnection, "select max(Version) from SchemaVersion",
+                new ArrayList<>(), new ArrayList<>());
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0; // max of no rows is null, read as 0
+        }
+    }
+
+    /**
+     * Gets the version of the newest schema migration applied to the database.
+     * 
+     * @return The schema version, 0 if no migrations have been applied, or -1 if
+     *         the version could not be read.
+     */
+    public int getSchemaVersion() {
+        try {
+            return withConnection(pooledConnection -> readSchemaVersion(pooledConnection));
+        } catch (SQLException sqle) {
             return -1;
         }
     }
 
+    /**
+     * Performs an operation with the connection of this thread's transaction, or
+     * with a connection borrowed just for this operation if there is no
+     * transaction.
+     * 
+     * @param operation The operation to perform.
+     * @return The result of the operation.
+     * @throws SQLException If the operation failed.
+     */
+    private <T> T withConnection(SqlOperation<T> operation) throws SQLException {
+        PooledConnection pooledConnection = transactionConnection.get();
+        if (pooledConnection != null) {
+            return operation.perform(pooledConnection); // released when the transaction ends
+        }
+
+        pooledConnection = connectionPool.borrow();
+        boolean broken = false;
+        try {
+            return operation.perform(pooledConnection);
+        } catch (SQLException sqle) {
+            broken = ConnectionPool.isConnectionBroken(sqle);
+            throw sqle;
+        } finally {
+            connectionPool.release(pooledConnection, broken);
+        }
+    }
+
     /**
      * Sends a query to the database and validates the specified query.
      * 
@@ -99,12 +255,32 @@ public class MySql implements Storage {
      * @throws SQLException
      */
     public DatabaseQueryResult performQuery(String query) throws SQLException {
-        Statement statement;
-        statement = connection.createStatement();
+        // if there is no transaction, the result keeps its own connection until it is
+        // closed
+        PooledConnection pooledConnection = transactionConnection.get();
+        PooledConnection borrowedConnection = null;
+        if (pooledConnection == null) {
+            pooledConnection = connectionPool.borrow();
+            borrowedConnection = pooledConnection;
+        }
+
+        Statement statement = null;
+        try {
+            roundTripCount.incrementAndGet();
+            statement = pooledConnection.getConnection().createStatement();
 
-        ResultSet resultSet = statement.executeQuery(query);
+            ResultSet resultSet = statement.executeQuery(query);
 
-        return new DatabaseQueryResult(statement, resultSet);
+            return new DatabaseQueryResult(statement, resultSet, borrowedConnection);
+        } catch (SQLException sqle) {
+            if (statement != null) {
+                statement.close();
+            }
+            if (borrowedConnection != null) {
+                connectionPool.release(borrowedConnection, ConnectionPool.isConnectionBroken(sqle));
+            }
+            throw sqle;
+        }
     }
 
     /**
@@ -114,6 +290,7 @@ public class MySql implements Storage {
     public class DatabaseQueryResult implements AutoCloseable {
         private Statement statement = null;
         private ResultSet resultSet = null;
+        private PooledConnection borrowedConnection = null; // given back to the pool on close
 
         /**
          * Closes the resources for the DatabaseQueryResult.
@@ -122,8 +299,15 @@ public class MySql implements Storage {
          */
         @Override
         public void close() throws SQLException {
-            statement.close();
-            resultSet.close();
+            try {
+                resultSet.close();
+                statement.close();
+            } finally {
+                if (borrowedConnection != null) {
+                    connectionPool.release(borrowedConnection, false);
+                    borrowedConnection = null;
+                }
+            }
         }
 
         /**
@@ -131,10 +315,13 @@ public class MySql implements Storage {
          * 
          * @param statement
          * @param resultSet
+         * @param borrowedConnection The connection borrowed for this query, or null if
+         *                           it belongs to a transaction.
          */
-        public DatabaseQueryResult(Statement statement, ResultSet resultSet) {
+        public DatabaseQueryResult(Statement statement, ResultSet resultSet, PooledConnection borrowedConnection) {
             this.statement = statement;
             this.resultSet = resultSet;
+            this.borrowedConnection = borrowedConnection;
         }
 
         /**
@@ -164,137 +351,381 @@ public class MySql implements Storage {
         if (data.size() != keys.size() || data.size() != dataTypes.size()) {
             throw new IllegalArgumentException("Data, keys, and dataTypes must have the same size.");
         }
-        // Format the data using formatDataList
-        List<String> formattedData = formatDataList(data, dataTypes);
+
+        try {
+            performCachedUpdate(buildUpdateQuery(tableName, keys), identifierLast(data), identifierLast(dataTypes));
+        } catch (SQLException | IllegalArgumentException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Updates many rows of a table in the database at once, sending them to the
+     * database in batches of at most {@link #getBatchSize()} rows.
+     * 
+     * @param tableName The table name.
+     * @param rows      The rows of data to be updated. NOTE: each row should have
+     *                  the same size and order as keys.
+     * @param keys      The keys for the query. The first key must be the unique
+     *                  identifier of the rows.
+     * @param dataTypes The datatypes of the keys.
+     * @return True on success, false on failure.
+     */
+    @Override
+    public boolean updateBatch(String tableName, List<List<String>> rows, List<String> keys,
+            List<DataType> dataTypes) {
+        List<List<String>> values = new ArrayList<>(rows.size());
+        for (List<String> row : rows) {
+            if (row.size() != keys.size()) {
+                return false;
+            }
+            values.add(identifierLast(row));
+        }
+
+        try {
+            performCachedBatch(buildUpdateQuery(tableName, keys), values, identifierLast(dataTypes), null);
+        } catch (SQLException | IllegalArgumentException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Builds the parameterized query to update a row of a table by its unique
+     * identifier.
+     * 
+     * @param tableName The name of the table.
+     * @param keys      The columns to update, starting with the unique identifier.
+     * @return The query. The unique identifier is its last parameter.
+     */
+    private String buildUpdateQuery(String tableName, List<String> keys) {
         StringBuilder setClause = new StringBuilder();
         for (int i = 1; i < keys.size(); i++) { // Start from 1 to skip the unique identifier
-            setClause.append(keys.get(i)).append(" = ").append(formattedData.get(i));
+            setClause.append(keys.get(i)).append(" = ?");
             if (i < keys.size() - 1) {
                 setClause.append(", ");
             }
         }
 
         // The identifier must be the first key in the list
-        String uniqueId = keys.get(0);
-        String uniqueIdValue = formattedData.get(0);
+        return "UPDATE " + tableName + " SET " + setClause + " WHERE " + keys.get(0) + " = ?";
+    }
 
-        String query = "UPDATE " + tableName + " SET " + setClause + " WHERE " + uniqueId + " = " + uniqueIdValue;
+    /**
+     * Moves the unique identifier from the front of a row to the end, to match the
+     * parameters of an update query.
+     * 
+     * @param row The row, starting with the unique identifier.
+     * @return A new list with the unique identifier last.
+     */
+    private static <T> List<T> identifierLast(List<T> row) {
+        List<T> output = new ArrayList<>(row.subList(1, row.size()));
+        output.add(row.get(0));
+        return output;
+    }
+
+    /**
+     * Reads the rows described by a query, mapping each one to an object.
+     * 
+     * @param query     The query.
+     * @param rowMapper Maps each row to an object.
+     * @return The mapped objects, or an empty list if an error occurred when
+     *         reading.
+     */
+    @Override
+    public <T> List<T> readObjects(SelectQuery query, RowMapper<T> rowMapper) {
+        List<T> output = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<DataType> valueTypes = new ArrayList<>();
+        String sql = buildSelectQuery(query, values, valueTypes);
 
         try {
-            performPreparedStatement(query);
-        } catch (SQLException e) {
-            return false;
+            withConnection(pooledConnection -> {
+                PreparedStatement statement = prepareCached(pooledConnection, sql, values, valueTypes);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        output.add(rowMapper.mapRow(resultSet));
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            output.clear();
         }
 
-        return true;
+        return output;
     }
 
     /**
-     * Reads a single row from a table in the database.
+     * Reads the rows described by a query one at a time, streaming them from the
+     * database instead of loading them all at once. NOTE: the consumer must not
+     * use this MySql, since the connection is busy until every row has been read.
      * 
-     * @param query The query.
-     * @param keys  The keys for the query.
-     * @return The Map of data for the row or an empty Map upon failure.
+     * @param query     The query.
+     * @param rowMapper Maps each row to an object.
+     * @param consumer  Takes each mapped object.
+     * @return True if every row was read, false otherwise.
      */
-    private Map<String, String> readSingle(String query, List<String> keys) {
-        HashMap<String, String> output = new HashMap<>();
-        try {
-            DatabaseQueryResult queryResult = performQuery(query);
-            ResultSet resultSet = queryResult.getResultSet();
+    @Override
+    public <T> boolean readEach(SelectQuery query, RowMapper<T> rowMapper, Consumer<T> consumer) {
+        List<String> values = new ArrayList<>();
+        List<DataType> valueTypes = new ArrayList<>();
+        String sql = buildSelectQuery(query, values, valueTypes);
 
-            // add keys to the output hashmap
-            while (resultSet.next()) {
-                for (String key : keys) {
-                    output.put(key, resultSet.getString(key));
+        try {
+            withConnection(pooledConnection -> {
+                roundTripCount.incrementAndGet();
+                // not cached, since a streaming statement is only used once per large read
+                try (PreparedStatement statement = pooledConnection.getConnection().prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    // tells the driver to stream rows one by one instead of loading the whole result
+                    statement.setFetchSize(Integer.MIN_VALUE);
+                    bindValues(statement, values, valueTypes);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            consumer.accept(rowMapper.mapRow(resultSet));
+                        }
+                    }
                 }
-            }
-
-            queryResult.close();
+                return null;
+            });
         } catch (Exception e) {
-            output.clear(); // got bad data
+            return false;
         }
 
-        return output;
-
+        return true;
     }
 
-    @Override
-    public Map<String, String> read(String tableName, int id, List<String> keys) {
-        return readSingle(
-                "select * from " + tableName + " where " + tableName + "Id = " + id, keys);
+    /**
+     * Asks the database how it would read the rows described by a query, without
+     * reading them, to check which indexes the query uses.
+     * 
+     * @param query The query.
+     * @return The index used to read each table of the query, in the order the
+     *         tables are read, with null for a table that is scanned.
+     * @throws SQLException If the query could not be explained.
+     */
+    public Map<String, String> explain(SelectQuery query) throws SQLException {
+        List<String> values = new ArrayList<>();
+        List<DataType> valueTypes = new ArrayList<>();
+        String sql = "explain " + buildSelectQuery(query, values, valueTypes);
+
+        Map<String, String> tableKeys = new LinkedHashMap<>();
+        withConnection(pooledConnection -> {
+            roundTripCount.incrementAndGet();
+            try (PreparedStatement statement = pooledConnection.getConnection().prepareStatement(sql)) {
+                bindValues(statement, values, valueTypes);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        tableKeys.put(resultSet.getString("table"), resultSet.getString("key"));
+                    }
+                }
+            }
+            return null;
+        });
+        return tableKeys;
     }
 
     /**
-     * Reads all values that are equal to the needle value.
+     * Builds the parameterized SQL for a query, selecting exactly the query's keys
+     * in order so they can be read by index.
      * 
-     * @param tableName   The table name.
-     * @param keys        The keys to read from the object.
-     * @param haystackKey The name of the "haystack" to search through. The column
-     *                    name of what we are looking for.
-     * @param needleValue The "needle" value that we are searching through the
-     *                    haystack for.
-     * @return A List of Maps containing the keys, along with the values pulled from
-     *         the Storage.
+     * @param query      The query.
+     * @param values     The list to add the values to bind to.
+     * @param valueTypes The list to add the datatypes of the values to.
+     * @return The SQL.
      */
-    public List<Map<String, String>> readSearchRow(String tableName, List<String> keys, String haystackKey,
-            String needleValue, DataType needleType) {
-        return readList(
-                "select * from " + tableName + " where " + haystackKey + " = "
-                        + formatData(needleValue, needleType),
-                keys);
+    private String buildSelectQuery(SelectQuery query, List<String> values, List<DataType> valueTypes) {
+        String tableName = query.getTableName();
+        List<InnerObject> innerObjects = query.getInnerObjects();
+
+        StringBuilder sql = new StringBuilder("select ");
+        sql.append(buildColumnList(tableName, query.getKeys(), innerObjects));
+        sql.append(" from ").append(tableName).append(buildJoinClause(innerObjects, query.isOuterJoin()));
+
+        List<String> conditions = new ArrayList<>();
+        if (query.getSearchKey() != null) {
+            conditions.add(qualifyKey(tableName, query.getSearchKey(), innerObjects) + " = ?");
+            values.add(query.getSearchValue());
+            valueTypes.add(query.getSearchType());
+        }
+        conditions.addAll(query.getFilters());
+        values.addAll(query.getFilterValues());
+        valueTypes.addAll(query.getFilterTypes());
+        if (query.hasAfter()) {
+            conditions.add(buildAfterCondition(query, values, valueTypes));
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" where ").append(String.join(" and ", conditions));
+        }
+
+        if (query.getGroupByKeys() != null) {
+            sql.append(" group by ").append(buildColumnList(tableName, query.getGroupByKeys(), innerObjects));
+        }
+
+        String direction = query.isAscending() ? " ASC" : " DESC";
+        List<String> orderBy = new ArrayList<>();
+        if (query.getSortByKey() != null) {
+            orderBy.add(qualifyKey(tableName, query.getSortByKey(), innerObjects) + direction);
+        }
+        if (query.getUniqueKey() != null) {
+            orderBy.add(qualifyKey(tableName, query.getUniqueKey(), innerObjects) + direction);
+        }
+        if (!orderBy.isEmpty()) {
+            sql.append(" order by ").append(String.join(", ", orderBy));
+        }
+
+        if (query.getLimit() != SelectQuery.NO_LIMIT) {
+            sql.append(" limit ?");
+            values.add(Integer.toString(query.getLimit()));
+            valueTypes.add(DataType.INTEGER);
+        }
+
+        return sql.toString();
     }
 
     /**
-     * Reads all rows from a table in the database from the given query.
+     * Builds the condition for only reading the rows after a row, in the order of
+     * the sort key and then the unique key.
+     * <br>
+     * <br>
+     * The comparison is written out instead of using a row constructor like
+     * {@code (sortKey, uniqueKey) > (?, ?)}, so MySQL can use an index on the sort
+     * key to find where the page starts. MySQL sorts nulls before every value, so
+     * they are handled separately.
      * 
-     * @param query The query.
-     * @param keys  The keys for the query.
-     * @return The List of Map of data from the query or an empty list if an error
-     *         occurred when reading.
+     * @param query      The query, which must have a unique key.
+     * @param values     The list to add the values to bind to.
+     * @param valueTypes The list to add the datatypes of the values to.
+     * @return The condition.
      */
-    private List<Map<String, String>> readList(String query, List<String> keys) {
-        List<Map<String, String>> output = new ArrayList<>();
+    private String buildAfterCondition(SelectQuery query, List<String> values, List<DataType> valueTypes) {
+        String tableName = query.getTableName();
+        List<InnerObject> innerObjects = query.getInnerObjects();
+        String uniqueKey = qualifyKey(tableName, query.getUniqueKey(), innerObjects);
+        String uniqueValue = Integer.toString(query.getAfterUniqueValue());
+        String comparison = query.isAscending() ? " > ?" : " < ?";
 
-        try {
-            DatabaseQueryResult queryResult = performQuery(query);
-            ResultSet resultSet = queryResult.getResultSet();
+        if (query.getSortByKey() == null) {
+            values.add(uniqueValue);
+            valueTypes.add(DataType.INTEGER);
+            return uniqueKey + comparison;
+        }
 
-            while (resultSet.next()) {
-                // get all of the elements for each hash map
-                HashMap<String, String> curItem = new HashMap<>();
+        String sortKey = qualifyKey(tableName, query.getSortByKey(), innerObjects);
+        String sortValue = query.getAfterSortValue();
+        if (sortValue == null) {
+            // the row was among the nulls, which come first when ascending and last when
+            // descending
+            values.add(uniqueValue);
+            valueTypes.add(DataType.INTEGER);
+            String afterNulls = query.isAscending() ? " or " + sortKey + " is not null" : "";
+            return "((" + sortKey + " is null and " + uniqueKey + comparison + ")" + afterNulls + ")";
+        }
 
-                for (String key : keys) {
-                    curItem.put(key, resultSet.getString(key));
-                }
+        values.add(sortValue);
+        valueTypes.add(query.getAfterSortType());
+        values.add(sortValue);
+        valueTypes.add(query.getAfterSortType());
+        values.add(uniqueValue);
+        valueTypes.add(DataType.INTEGER);
+        String beforeNulls = query.isAscending() ? "" : " or " + sortKey + " is null";
+        return "(" + sortKey + comparison + " or (" + sortKey + " = ? and " + uniqueKey + comparison + ")"
+                + beforeNulls + ")";
+    }
 
-                output.add(curItem);
+    /**
+     * Builds the list of columns to select, so only the requested keys are sent
+     * back by the database.
+     * 
+     * @param tableName    The table being read.
+     * @param keys         The keys to select.
+     * @param innerObjects The inner objects being joined, or null if there are
+     *                     none.
+     * @return The comma separated columns.
+     */
+    private String buildColumnList(String tableName, List<String> keys, List<InnerObject> innerObjects) {
+        StringBuilder columns = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                columns.append(", ");
             }
-
-        } catch (Exception e) {
-            output.clear(); // got bad data
+            columns.append(qualifyKey(tableName, keys.get(i), innerObjects));
         }
-
-        return output;
+        return columns.toString();
     }
 
-    @Override
-    public List<Map<String, String>> readAll(String tableName, List<String> keys, List<InnerObject> innerObjects) {
-        String query = "select * from " + tableName;
+    /**
+     * Builds the join clause for a table's inner objects.
+     * 
+     * @param innerObjects The inner objects to join on, or null if there are none.
+     * @param outerJoin    True to keep the rows that have nothing to join with.
+     * @return The join clause, or an empty string if there is nothing to join.
+     */
+    private String buildJoinClause(List<InnerObject> innerObjects, boolean outerJoin) {
+        String join = outerJoin ? " left join " : " join ";
+        StringBuilder joinClause = new StringBuilder();
         if (innerObjects != null) {
             for (InnerObject innerObject : innerObjects) {
-                query += " join " + innerObject.getObjectName() + " on " + innerObject.getParentObject() + "."
-                        + innerObject.getThisId() + "=" + innerObject.getObjectName() + "." + innerObject.getThisId();
+                joinClause.append(join).append(innerObject.getObjectName()).append(" on ")
+                        .append(innerObject.getParentObject()).append(".").append(innerObject.getThisId())
+                        .append("=").append(innerObject.getObjectName()).append(".")
+                        .append(innerObject.getThisId());
             }
         }
-        return readList(query, keys);
+        return joinClause.toString();
     }
 
-    @Override
-    public List<Map<String, String>> readAllSortBy(String tableName, List<String> keys, String sortByKey,
-            boolean isAscending) {
-        // If true sort by ascending order, if false sort by descending order
-        String orderType = isAscending ? "ASC" : "DESC";
-        return readList("select * from " + tableName + " order by " + sortByKey + " " + orderType, keys);
+    /**
+     * Qualifies a key with the name of the table it belongs to when the query
+     * joins other tables, since the joined tables can share column names (such as
+     * their IDs). The key belongs to the first table, starting with the table being
+     * read, whose schema has it.
+     * 
+     * @param tableName    The table being read.
+     * @param key          The key. Keys that are already qualified are left
+     *                     alone.
+     * @param innerObjects The inner objects being joined, or null if there are
+     *                     none.
+     * @return The key to use in the query.
+     */
+    private String qualifyKey(String tableName, String key, List<InnerObject> innerObjects) {
+        if (innerObjects == null || innerObjects.isEmpty() || key.contains(".")) {
+            return key;
+        }
+        if (!hasColumn(tableName, key)) {
+            for (InnerObject innerObject : innerObjects) {
+                if (hasColumn(innerObject.getObjectName(), key)) {
+                    return innerObject.getObjectName() + "." + key;
+                }
+            }
+        }
+        return tableName + "." + key;
+    }
+
+    /**
+     * Checks if a table is known to have a column.
+     * 
+     * @param tableName The table.
+     * @param column    The column.
+     * @return True if the table's schema has the column, false otherwise.
+     */
+    private boolean hasColumn(String tableName, String column) {
+        TableSchema schema = TableSchema.forTable(tableName);
+        return schema != null && schema.hasColumn(column);
+    }
+
+    /**
+     * Gets the number of statements this object has sent to the database, which is
+     * the number of round trips made to the database.
+     * 
+     * @return The number of round trips to the database.
+     */
+    public long getRoundTripCount() {
+        return roundTripCount.get();
     }
 
     /**
@@ -313,31 +744,227 @@ public class MySql implements Storage {
      */
     @Override
     public boolean create(String tableName, List<String> tableData, List<String> keys, List<DataType> dataTypes) {
-        StringBuilder columns = new StringBuilder();
-        StringBuilder values = new StringBuilder();
-        List<String> formattedData = formatDataList(tableData, dataTypes);
-        if (formattedData.size() != keys.size()) {
+        if (tableData.size() != keys.size()) {
             return false;
         }
-        for (int i = 0; i < formattedData.size() - 1; i++) {
-            values.append(formattedData.get(i)).append(",");
+
+        try {
+            performCachedUpdate(buildInsertQuery(tableName, keys), tableData, dataTypes);
+        } catch (Exception e) {
+            return false; // bad create
         }
-        values.append(formattedData.get(formattedData.size() - 1));
 
-        for (int i = 0; i < keys.size() - 1; i++) {
-            columns.append(keys.get(i)).append(",");
+        return true;
+
+    }
+
+    /**
+     * Creates a row in a table in the database and gets the ID the database
+     * generated for it.
+     * 
+     * @param tableName The name of the table where the data will be inserted.
+     * @param tableData A list of values to be inserted into the table.
+     * @param keys      A list of column names corresponding to the data.
+     * @param dataTypes The datatypes of the data.
+     * 
+     * @return The generated ID, or -1 on failure.
+     */
+    @Override
+    public int createAndGetId(String tableName, List<String> tableData, List<String> keys,
+            List<DataType> dataTypes) {
+        if (tableData.size() != keys.size()) {
+            return -1;
         }
-        columns.append(keys.get(formattedData.size() - 1));
 
-        String query = "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + values + ")";
+        String query = buildInsertQuery(tableName, keys);
         try {
-            performPreparedStatement(query);
+            return withConnection(pooledConnection -> {
+                roundTripCount.incrementAndGet();
+                PreparedStatement statement = pooledConnection.getStatementCache().prepare(query,
+                        Statement.RETURN_GENERATED_KEYS);
+                bindValues(statement, tableData, dataTypes);
+                statement.executeUpdate();
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    if (!generatedKeys.next()) {
+                        throw new SQLException("No ID was generated for the new row.");
+                    }
+                    return generatedKeys.getInt(1);
+                }
+            });
+        } catch (Exception e) {
+            return -1; // bad create
+        }
+    }
+
+    /**
+     * Creates many entries in a table, sending them to the database in batches of
+     * at most {@link #getBatchSize()} rows.
+     * 
+     * @param tableName The name of the table where the data will be inserted.
+     * @param rows      The rows of data to insert. NOTE: each row should have the
+     *                  same size and order as keys.
+     * @param keys      A list of column names corresponding to the data.
+     * @param dataTypes The datatypes of the columns.
+     * 
+     * @return True on success, false on failure.
+     */
+    @Override
+    public boolean createBatch(String tableName, List<List<String>> rows, List<String> keys,
+            List<DataType> dataTypes) {
+        for (List<String> row : rows) {
+            if (row.size() != keys.size()) {
+                return false;
+            }
+        }
+
+        try {
+            performCachedBatch(buildInsertQuery(tableName, keys), rows, dataTypes, null);
         } catch (Exception e) {
             return false; // bad create
         }
 
         return true;
+    }
+
+    /**
+     * Creates many entries in a table, sending them to the database in batches of
+     * at most {@link #getBatchSize()} rows, and gets the IDs the database generated
+     * for them.
+     * 
+     * @param tableName The name of the table where the data will be inserted.
+     * @param rows      The rows of data to insert. NOTE: each row should have the
+     *                  same size and order as keys.
+     * @param keys      A list of column names corresponding to the data.
+     * @param dataTypes The datatypes of the columns.
+     * 
+     * @return The generated IDs, in the same order as the rows, or null on failure.
+     */
+    @Override
+    public List<Integer> createBatchAndGetIds(String tableName, List<List<String>> rows, List<String> keys,
+            List<DataType> dataTypes) {
+        for (List<String> row : rows) {
+            if (row.size() != keys.size()) {
+                return null;
+            }
+        }
+
+        List<Integer> generatedIds = new ArrayList<>(rows.size());
+        try {
+            performCachedBatch(buildInsertQuery(tableName, keys), rows, dataTypes, generatedIds);
+        } catch (Exception e) {
+            return null; // bad create
+        }
+
+        if (generatedIds.size() != rows.size()) {
+            return null; // the database did not tell us every ID
+        }
+        return generatedIds;
+    }
+
+    /**
+     * Executes a parameterized statement once for each row of values, using the
+     * prepared statement cached for its shape and sending the rows in batches of
+     * at most {@link #getBatchSize()}.
+     * 
+     * @param query        The parameterized SQL statement.
+     * @param rows         The values to bind for each execution.
+     * @param valueTypes   The datatypes of the values.
+     * @param generatedIds The list to add the IDs generated by the statement to,
+     *                     or null if they are not needed.
+     * @throws SQLException If an error occurs while executing the statement.
+     */
+    private void performCachedBatch(String query, List<List<String>> rows, List<DataType> valueTypes,
+            List<Integer> generatedIds) throws SQLException {
+        if (rows.isEmpty()) {
+            return; // nothing to do
+        }
+
+        int autoGeneratedKeys = generatedIds != null ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS;
+        withConnection(pooledConnection -> {
+            PreparedStatement statement = pooledConnection.getStatementCache().prepare(query, autoGeneratedKeys);
+            try {
+                int rowsInBatch = 0;
+                for (List<String> row : rows) {
+                    bindValues(statement, row, valueTypes);
+                    statement.addBatch();
+                    rowsInBatch++;
+
+                    if (rowsInBatch == batchSize) {
+                        executeCachedBatch(statement, generatedIds);
+                        rowsInBatch = 0;
+                    }
+                }
+                if (rowsInBatch > 0) {
+                    executeCachedBatch(statement, generatedIds);
+                }
+            } finally {
+                statement.clearBatch(); // don't leave rows behind for the next user of the statement
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Sends a batch of rows to the database.
+     * 
+     * @param statement    The statement holding the batch.
+     * @param generatedIds The list to add the IDs generated by the batch to, or
+     *                     null if they are not needed.
+     * @throws SQLException If an error occurs while executing the batch.
+     */
+    private void executeCachedBatch(PreparedStatement statement, List<Integer> generatedIds) throws SQLException {
+        roundTripCount.incrementAndGet();
+        statement.executeBatch();
+        if (generatedIds != null) {
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                while (generatedKeys.next()) {
+                    generatedIds.add(generatedKeys.getInt(1));
+                }
+            }
+        }
+    }
 
+    /**
+     * Gets the most rows that a batch operation sends to the database at once.
+     * 
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the most rows that a batch operation sends to the database at once.
+     * 
+     * @param batchSize The batch size. Must be at least 1.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be at least 1.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Builds the parameterized query to insert a row into a table.
+     * 
+     * @param tableName The name of the table.
+     * @param keys      The columns to insert.
+     * @return The query.
+     */
+    private String buildInsertQuery(String tableName, List<String> keys) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                columns.append(",");
+                placeholders.append(",");
+            }
+            columns.append(keys.get(i));
+            placeholders.append("?");
+        }
+
+        return "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + placeholders + ")";
     }
 
     /**
@@ -351,9 +978,9 @@ public class MySql implements Storage {
      */
     @Override
     public boolean delete(String tableName, String key, int value) {
-        String query = "DELETE FROM " + tableName + " WHERE " + key + "=" + value;
+        String query = "DELETE FROM " + tableName + " WHERE " + key + " = ?";
         try {
-            performPreparedStatement(query);
+            performCachedUpdate(query, List.of(Integer.toString(value)), List.of(DataType.INTEGER));
         } catch (Exception e) {
             return false; // bad delete
         }
@@ -362,65 +989,193 @@ public class MySql implements Storage {
 
     }
 
+    @Override
+    public int executeUpdate(String statement, List<String> values, List<DataType> valueTypes) {
+        try {
+            return performCachedUpdate(statement, values, valueTypes);
+        } catch (SQLException | IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
     /**
-     * Executes a prepared SQL statement on the database.
-     * 
-     * @param query The SQL query to be executed. This query should be properly
-     *              formatted to prevent SQL injection.
+     * Executes a parameterized statement that changes data, using the prepared
+     * statement cached for its shape.
      * 
-     * @throws SQLException If an error occurs while preparing or executing the
-     *                      statement.
+     * @param query      The parameterized SQL statement.
+     * @param values     The values to bind to the statement.
+     * @param valueTypes The datatypes of the values.
+     * @return The number of rows changed.
+     * @throws SQLException If an error occurs while executing the statement.
      */
-    private void performPreparedStatement(String query) throws SQLException {
-        PreparedStatement statement;
-        statement = connection.prepareStatement(query);
+    private int performCachedUpdate(String query, List<String> values, List<DataType> valueTypes)
+            throws SQLException {
+        return withConnection(pooledConnection -> prepareCached(pooledConnection, query, values, valueTypes)
+                .executeUpdate());
+    }
 
-        statement.execute();
+    /**
+     * Gets the cached prepared statement for a query on a connection and binds its
+     * values. NOTE: The statement belongs to the connection's cache and must not be
+     * closed by the user of this function.
+     * 
+     * @param pooledConnection The connection to prepare the statement on.
+     * @param query            The parameterized query.
+     * @param values           The values to bind to the query.
+     * @param valueTypes       The datatypes of the values.
+     * @return The prepared statement, ready to execute.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    private PreparedStatement prepareCached(PooledConnection pooledConnection, String query, List<String> values,
+            List<DataType> valueTypes) throws SQLException {
+        roundTripCount.incrementAndGet(); // since the caller is about to execute it
+        PreparedStatement statement = pooledConnection.getStatementCache().prepare(query);
+        bindValues(statement, values, valueTypes);
+        return statement;
     }
 
     /**
-     * Formats a list of data.
+     * Binds values to all of the parameters of a prepared statement.
      * 
-     * @param data  The data list.
-     * @param types The types for each piece of data.
-     * @return The formatted data list for use with the database.
+     * @param statement  The prepared statement.
+     * @param values     The values to bind, in parameter order.
+     * @param valueTypes The datatypes of the values.
+     * @throws SQLException             If a value could not be bound.
+     * @throws IllegalArgumentException If the values do not match their datatypes.
      */
-    private List<String> formatDataList(List<String> data, List<DataType> types) {
-        List<String> formattedData = new ArrayList<>();
-        for (int i = 0; i < data.size(); i++) {
-            // add all formatted data
-            formattedData.add(formatData(data.get(i), types.get(i)));
+    private void bindValues(PreparedStatement statement, List<String> values, List<DataType> valueTypes)
+            throws SQLException {
+        if (values.size() != valueTypes.size()) {
+            throw new IllegalArgumentException("Values and valueTypes must have the same size.");
+        }
+        for (int i = 0; i < values.size(); i++) {
+            bindValue(statement, i + 1, values.get(i), valueTypes.get(i));
         }
-        return formattedData;
     }
 
     /**
-     * Formats a piece of data.
+     * Binds a value to a parameter of a prepared statement according to its
+     * datatype.
      * 
-     * @param data  The data.
-     * @param types The type for the piece of data.
-     * @return The formatted data for use with the database.
+     * @param statement The prepared statement.
+     * @param index     The index of the parameter, starting from 1.
+     * @param value     The value, or null for SQL null.
+     * @param type      The datatype of the value.
+     * @throws SQLException             If the value could not be bound.
+     * @throws IllegalArgumentException If the value is not valid for its datatype.
      */
-    private String formatData(String data, DataType type) {
+    private void bindValue(PreparedStatement statement, int index, String value, DataType type)
+            throws SQLException {
+        if (value == null) {
+            statement.setNull(index, toSqlType(type));
+            return;
+        }
 
-        String formattedData = "";
+        switch (type) {
+            case INTEGER:
+                statement.setInt(index, Integer.parseInt(value.trim()));
+                break;
+            case LONG:
+                statement.setLong(index, Long.parseLong(value.trim()));
+                break;
+            case DOUBLE:
+                statement.setDouble(index, Double.parseDouble(value.trim()));
+                break;
+            case BOOLEAN:
+                statement.setBoolean(index, Boolean.parseBoolean(value.trim()));
+                break;
+            case DATE:
+                statement.setDate(index, Date.valueOf(value.trim()));
+                break;
+            default:
+                statement.setString(index, value);
+        }
+    }
 
-        if (type == DataType.STRING) {
-            formattedData = "\"" + data + "\"";
-        } else if (type == DataType.DATE) {
-            // keeping this here incase we need to adjust it later
-            formattedData = "\"" + data + "\""; // Assuming value is already in a valid MySQL date format
-        } else {
-            formattedData = data; // For other types, keep as is
+    /**
+     * Gets the SQL type for a datatype.
+     * 
+     * @param type The datatype.
+     * @return The SQL type, from {@link Types}.
+     */
+    private int toSqlType(DataType type) {
+        switch (type) {
+            case INTEGER:
+                return Types.INTEGER;
+            case LONG:
+                return Types.BIGINT;
+            case DOUBLE:
+                return Types.DOUBLE;
+            case BOOLEAN:
+                return Types.BOOLEAN;
+            case DATE:
+                return Types.DATE;
+            default:
+                return Types.VARCHAR;
         }
-        return formattedData;
     }
 
+    /**
+     * Executes a prepared SQL statement on the given connection.
+     * 
+     * @param pooledConnection The connection to execute the statement on.
+     * @param query            The SQL query to be executed.
+     * 
+     * @throws SQLException If an error occurs while preparing or executing the
+     *                      statement.
+     */
+    private void performPreparedStatement(PooledConnection pooledConnection, String query) throws SQLException {
+        roundTripCount.incrementAndGet();
+        try (PreparedStatement statement = pooledConnection.getConnection().prepareStatement(query)) {
+            statement.execute();
+        }
+    }
+
+    /**
+     * Starts a transaction, keeping a connection for this thread until the
+     * transaction ends. Like MySQL's own {@code start transaction}, starting a
+     * transaction while one is open commits the open one first.
+     */
     @Override
     public boolean startTransaction() {
+        return beginTransaction("start transaction");
+    }
+
+    /**
+     * Starts a read-only transaction that takes its snapshot of the data right
+     * away, so every read in it sees the data as it was when it started. Reads
+     * outside of a transaction run on their own with autocommit, so they need no
+     * extra statements to start and finish.
+     */
+    @Override
+    public boolean startReadOnlyTransaction() {
+        // the same as setting the connection read only for this transaction, without
+        // another round trip to do so
+        return beginTransaction("start transaction read only, with consistent snapshot");
+    }
+
+    /**
+     * Starts a transaction, keeping a connection for this thread until the
+     * transaction ends.
+     * 
+     * @param query The statement that starts the transaction.
+     * @return True if successful, false otherwise.
+     */
+    private boolean beginTransaction(String query) {
+        PooledConnection pooledConnection = transactionConnection.get();
+        if (pooledConnection == null) {
+            try {
+                pooledConnection = connectionPool.borrow();
+            } catch (SQLException sqle) {
+                return false;
+            }
+            transactionConnection.set(pooledConnection);
+        }
+
         try {
-            performPreparedStatement("start transaction");
+            performPreparedStatement(pooledConnection, query);
         } catch (SQLException sqle) {
+            endTransaction(ConnectionPool.isConnectionBroken(sqle));
             return false;
         }
 
@@ -429,24 +1184,49 @@ public class MySql implements Storage {
 
     @Override
     public boolean commitTransaction() {
-        try {
-            performPreparedStatement("commit");
-        } catch (SQLException sqle) {
-            return false;
-        }
-
-        return true;
+        return finishTransaction("commit");
     }
 
     @Override
     public boolean abortTransaction() {
+        return finishTransaction("rollback");
+    }
+
+    /**
+     * Finishes this thread's transaction and gives its connection back to the
+     * pool.
+     * 
+     * @param query The statement that finishes the transaction.
+     * @return True if successful, false otherwise.
+     */
+    private boolean finishTransaction(String query) {
+        PooledConnection pooledConnection = transactionConnection.get();
+        if (pooledConnection == null) {
+            return true; // there is no transaction, so there is nothing to finish
+        }
+
+        boolean broken = false;
         try {
-            performPreparedStatement("rollback");
+            performPreparedStatement(pooledConnection, query);
         } catch (SQLException sqle) {
+            broken = true; // we can't know what state the transaction was left in
             return false;
+        } finally {
+            endTransaction(broken);
         }
 
         return true;
     }
 
+    /**
+     * Gives the connection of this thread's transaction back to the pool.
+     * 
+     * @param broken True if the connection should be thrown away.
+     */
+    private void endTransaction(boolean broken) {
+        PooledConnection pooledConnection = transactionConnection.get();
+        transactionConnection.remove();
+        connectionPool.release(pooledConnection, broken);
+    }
+
 }
@@ -3,13 +3,20 @@ package database;
 import database.items.Bundle;
 import database.items.Category;
 import database.items.DataType;
+import database.items.EconomyInfo;
 import database.items.Item;
 import database.items.ObjectService;
+import database.items.Preference;
+import java.sql.Date;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Class to handle performing operations with objects on a MySQL database.
@@ -21,25 +28,152 @@ public class MySqlCrud extends StorageCrud {
     public static final String username = "testuser";
     public static final String password = "password";
     public static final List<String> tableQueries = new ArrayList<>();
+    public static final List<SchemaMigration> schemaMigrations = new ArrayList<>();
+
+    // separates the Category name from the ID in a generated SKU. An ID has no
+    // separator, so the ID is everything after the last one, and no two Items get
+    // the same SKU
+    private static final String SKU_SEPARATOR = "-";
+    // to set the SKU of an Item once its ID is known
+    private static final List<String> SKU_UPDATE_KEYS = List.of(Item.ITEM_ID_KEY, Item.SKU_KEY);
+    private static final List<DataType> SKU_UPDATE_TYPES = List.of(DataType.INTEGER, DataType.STRING);
+
+    // to map read rows to objects, reading the columns by index
+    private static final ItemRowMapper ITEM_MAPPER = new ItemRowMapper();
+    private static final CategoryRowMapper CATEGORY_MAPPER = new CategoryRowMapper();
+    private static final BundleRowMapper BUNDLE_MAPPER = new BundleRowMapper();
+    private static final ItemRowMapper ITEM_SUMMARY_MAPPER = ItemRowMapper.summary();
+
+    // the values of an Item's units, as decimals so that totals kept by adding and
+    // subtracting them are exactly the same as totals added up all at once. A
+    // missing promotion is no discount.
+    private static final String ITEM_PRICE = "cast(Item.Price as decimal(20, 2))";
+    private static final String ITEM_VALUE = "Item.NumItems * " + ITEM_PRICE;
+    private static final String ITEM_DISCOUNTED_VALUE = "Item.NumItems * (" + ITEM_PRICE + " - " + ITEM_PRICE
+            + " * cast(coalesce(Item.PromotionPercentOff, 0) as decimal(20, 2)))";
+
+    // to total each Category's Items in the database, with a row for every Category
+    private static final List<String> CATEGORY_VOLUME_KEYS = List.of(
+            Category.TABLE_NAME + "." + Category.CATEGORY_ID_KEY,
+            Category.TABLE_NAME + "." + Category.NAME_KEY,
+            "count(Item.ItemId)",
+            "sum(Item.NumItems)",
+            "sum(" + ITEM_VALUE + ")",
+            "sum(" + ITEM_DISCOUNTED_VALUE + ")");
+    private static final List<String> CATEGORY_VOLUME_GROUP_BY_KEYS = CATEGORY_VOLUME_KEYS.subList(0, 2);
+
+    // the totals of each Category's Items, kept up to date as Items are written, in
+    // the same order as the totals above
+    private static final String CATEGORY_TOTALS_TABLE_NAME = "CategoryTotals";
+    private static final List<String> CATEGORY_TOTALS_KEYS = List.of(
+            Category.TABLE_NAME + "." + Category.CATEGORY_ID_KEY,
+            Category.TABLE_NAME + "." + Category.NAME_KEY,
+            "CategoryTotals.UniqueItems",
+            "CategoryTotals.TotalUnits",
+            "CategoryTotals.TotalValue",
+            "CategoryTotals.TotalDiscountedValue");
+    private static final String ITEM_TOTALS_COLUMNS = "count(Item.ItemId) as UniqueItems, "
+            + "coalesce(sum(Item.NumItems), 0) as TotalUnits, "
+            + "coalesce(sum(" + ITEM_VALUE + "), 0) as TotalValue, "
+            + "coalesce(sum(" + ITEM_DISCOUNTED_VALUE + "), 0) as TotalDiscountedValue";
+    // totals the Items of Categories again, to replace their kept totals
+    private static final String CATEGORY_TOTALS_RECOMPUTE = "replace into CategoryTotals select Category.CategoryId, "
+            + ITEM_TOTALS_COLUMNS + " from Category left join Item on Category.CategoryId = Item.CategoryId";
+    // the most Items whose totals are added or subtracted by a single statement
+    private static final int CATEGORY_TOTALS_CHUNK_SIZE = 500;
+    // the most Category names looked up by a single statement
+    private static final int CATEGORY_NAMES_CHUNK_SIZE = 500;
+    // the Item attributes that change the totals of the Item's Category
+    private static final List<String> CATEGORY_TOTALS_ITEM_KEYS = List.of(Item.CATEGORY_ID_KEY,
+            EconomyInfo.PRICE_KEY, EconomyInfo.NUM_ITEMS_KEY, Preference.PROMOTION_PERCENT_OFF_KEY);
+    private static final RowMapper<CategoryVolume> CATEGORY_VOLUME_MAPPER = resultSet -> new CategoryVolume(
+            resultSet.getInt(1),
+            resultSet.getString(2),
+            resultSet.getInt(3),
+            resultSet.getInt(4), // the sums of Categories without Items are null, read as 0
+            resultSet.getDouble(5),
+            resultSet.getDouble(6));
+
+    // the checkpoint of each import that has not finished, in the order of the
+    // ImportCheckpoint constructor
+    private static final String IMPORT_CHECKPOINT_TABLE_NAME = "ImportCheckpoint";
+    private static final String IMPORT_CHECKPOINT_FILE_PATH_KEY = "FilePath";
+    private static final List<String> IMPORT_CHECKPOINT_KEYS = List.of(IMPORT_CHECKPOINT_FILE_PATH_KEY, "FileSize",
+            "FileModified", "RowOffset", "RowNumber", "NumImported", "NumRejected", "RejectedLength");
+    private static final List<DataType> IMPORT_CHECKPOINT_TYPES = List.of(DataType.STRING, DataType.LONG,
+            DataType.LONG, DataType.LONG, DataType.LONG, DataType.LONG, DataType.LONG, DataType.LONG);
+    private static final String IMPORT_CHECKPOINT_SAVE = "replace into " + IMPORT_CHECKPOINT_TABLE_NAME + "("
+            + String.join(", ", IMPORT_CHECKPOINT_KEYS) + ") values ("
+            + String.join(", ", Collections.nCopies(IMPORT_CHECKPOINT_KEYS.size(), "?")) + ")";
+    private static final RowMapper<ImportCheckpoint> IMPORT_CHECKPOINT_MAPPER = resultSet -> new ImportCheckpoint(
+            resultSet.getString(1),
+            resultSet.getLong(2),
+            resultSet.getLong(3),
+            resultSet.getLong(4),
+            resultSet.getLong(5),
+            resultSet.getLong(6),
+            resultSet.getLong(7),
+            resultSet.getLong(8));
+
+    // expressions indexed for the report filters, so the filters must use them
+    // exactly as they are written here
+    private static final String LOW_INVENTORY_MARGIN = "(Item.NumItems - Item.LowInventoryThreshold)";
+    private static final String SELL_BY_DATE = "(Item.LastModified + interval Item.SellWithinNumDays day)";
+    // the date an unsold Item was expected to be sold by, which its days overdue are
+    // counted from
+    private static final String EXPECTED_SELL_BY_DATE = "(Item.Created + interval Item.SellWithinNumDays day)";
 
     // create table queries
     static {
         tableQueries.add(
-                "create table Category(CategoryId int not null auto_increment, CategoryName varchar(255), primary key (CategoryId), unique (CategoryName))");
+                "create table Category(CategoryId int not null auto_increment, CategoryName varchar(" + MAX_NAME_LENGTH
+                        + "), primary key (CategoryId), unique (CategoryName))");
         tableQueries.add(
-                "create table Item(ItemId int not null auto_increment, Sku varchar(255), ItemName varchar(255), Description varchar(1024), CategoryId int, Price double(20, 2), NumItems int, Created Date, LastModified Date, SellWithinNumDays int, LowInventoryThreshold int, PromotionPercentOff double(20,2), primary key (ItemId), foreign key (CategoryId) references Category(CategoryId))");
+                "create table Item(ItemId int not null auto_increment, Sku varchar(" + MAX_NAME_LENGTH
+                        + "), ItemName varchar(" + MAX_NAME_LENGTH + "), Description varchar(" + MAX_DESCRIPTION_LENGTH
+                        + "), CategoryId int, Price double(20, 2), NumItems int, Created Date, LastModified Date, SellWithinNumDays int, LowInventoryThreshold int, PromotionPercentOff double(20,2), primary key (ItemId), foreign key (CategoryId) references Category(CategoryId))");
         tableQueries.add(
                 "create table Bundle(BundleId int not null auto_increment, BundleDiscount double(20,2), primary key (BundleId))");
         tableQueries.add(
                 "create table ItemBundle(BundleID int not null, ItemId int not null, primary key (BundleId, ItemId), foreign key (BundleId) references Bundle(BundleId) on delete cascade, foreign key (ItemId) references Item(ItemId) on delete cascade)");
     }
 
+    // schema migrations, also applied to databases made before them
+    static {
+        // for reading Items by SKU and name, reading a Category's Items by name, and
+        // sorting by price and dates. CategoryName is already unique. SKUs generated
+        // before they had a separator can be the same for two Items, so those are
+        // generated again first; any other duplicate SKUs stop the migration.
+        schemaMigrations.add(new SchemaMigration(1, "Add secondary indexes to Item", List.of(
+                "update Item join Category on Item.CategoryId = Category.CategoryId join (select Sku from Item group by Sku having count(*) > 1) as DuplicateSku on Item.Sku = DuplicateSku.Sku set Item.Sku = concat(Category.CategoryName, '"
+                        + SKU_SEPARATOR + "', Item.ItemId) where Item.Sku = concat(Category.CategoryName, Item.ItemId)",
+                "create unique index ItemSku on Item(Sku)",
+                "create index ItemName on Item(ItemName)",
+                "create index ItemCategoryName on Item(CategoryId, ItemName)",
+                "create index ItemPrice on Item(Price)",
+                "create index ItemCreated on Item(Created)",
+                "create index ItemLastModified on Item(LastModified)")));
+        // for the low inventory and unsold inventory reports, which compare columns of
+        // the same Item
+        schemaMigrations.add(new SchemaMigration(2, "Add report indexes to Item", List.of(
+                "create index ItemLowInventoryMargin on Item(" + LOW_INVENTORY_MARGIN + ")",
+                "create index ItemSellByDate on Item(" + SELL_BY_DATE + ")")));
+        // so the inventory volume report reads a row for each Category instead of
+        // totaling every Item
+        schemaMigrations.add(new SchemaMigration(3, "Add kept totals for each Category", List.of(
+                "create table CategoryTotals(CategoryId int not null, UniqueItems int not null default 0, TotalUnits bigint not null default 0, TotalValue decimal(40, 4) not null default 0, TotalDiscountedValue decimal(40, 4) not null default 0, primary key (CategoryId), foreign key (CategoryId) references Category(CategoryId) on delete cascade)",
+                CATEGORY_TOTALS_RECOMPUTE + " group by Category.CategoryId")));
+        // so an import that stopped can start again where it got to
+        schemaMigrations.add(new SchemaMigration(4, "Add import checkpoints", List.of(
+                "create table ImportCheckpoint(FilePath varchar(512) not null, FileSize bigint not null, FileModified bigint not null, RowOffset bigint not null, RowNumber bigint not null, NumImported bigint not null, NumRejected bigint not null, RejectedLength bigint not null, primary key (FilePath))")));
+    }
+
     /**
      * Creates a new MySqlCrud connected to the default database.
      */
     public MySqlCrud() throws SQLException {
         // since we have to handle the error
-        this.storageService = new MySql(url, username, password, tableQueries);
+        this.storageService = new MySql(url, username, password, tableQueries, schemaMigrations);
     }
 
     /**
@@ -53,22 +187,23 @@ public class MySqlCrud extends StorageCrud {
      * @throws SQLException
      */
     public MySqlCrud(String url, String username, String password) throws SQLException {
-        this.storageService = new MySql(url, username, password, tableQueries);
+        this.storageService = new MySql(url, username, password, tableQueries, schemaMigrations);
     }
 
     /**
-     * Find the next incremented ID from the provided table (Item, Category).
+     * Creates a new MySqlCrud that performs its operations through an existing
+     * Storage object.
      * 
-     * @param tableName The table name to search for in Storage.
-     * @return The table's next incremented ID.
+     * @param storageService The Storage to use.
      */
-    @Override
-    public int getNextId(String tableName) {
-        return storageService.getNextIncrementedId(tableName);
+    public MySqlCrud(Storage storageService) {
+        this.storageService = storageService;
     }
 
     /**
-     * Creates an Item in Storage from the provided item.
+     * Creates an Item in Storage from the provided item. The Item is given the ID
+     * that was generated for it, and if it has no SKU, it is given its Category's
+     * name and its ID, separated by a dash, as its SKU.
      * 
      * @param item The object to store in the Storage.
      * @return True upon success, false upon failure.
@@ -82,63 +217,264 @@ public class MySqlCrud extends StorageCrud {
         if (!storageService.startTransaction()) {
             return false; // fail to start transaction
         }
-        // Create the item in the database
-        boolean result = storageService.create(Item.TABLE_NAME, data, keys, types);
-        if (result) {
+        try {
+            // Create the item in the database
+            int itemId = storageService.createAndGetId(Item.TABLE_NAME, data, keys, types);
+            if (itemId < 0) {
+                storageService.abortTransaction();
+                return false;
+            }
+
+            if (item.getSku() == null) {
+                // the SKU is built from the ID, so it can only be set now that we know the ID
+                String sku = generateSku(item, itemId);
+                if (!storageService.update(Item.TABLE_NAME, List.of(Integer.toString(itemId), sku), SKU_UPDATE_KEYS,
+                        SKU_UPDATE_TYPES)) {
+                    storageService.abortTransaction();
+                    return false;
+                }
+                item.setSku(sku);
+            }
+
+            if (!changeCategoryTotals(List.of(itemId), true)) {
+                storageService.abortTransaction();
+                return false;
+            }
+
             storageService.commitTransaction();
-        } else {
-            storageService.abortTransaction();
+            recordChanges(1);
+            item.setItemId(itemId);
+            return true;
+        } finally {
+            abortUnfinishedTransaction();
         }
-        return result;
     }
 
+    /**
+     * Creates many Items in Storage at once, in a single transaction. Each Item is
+     * given the ID that was generated for it, and Items without a SKU are given
+     * their Category's name and their ID, separated by a dash, as their SKU.
+     * 
+     * @param items The objects to store in the Storage.
+     * @return True upon success, false upon failure.
+     */
     @Override
-    public boolean createBundle(Bundle bundle) {
+    public boolean createItems(List<Item> items) {
+        return createItems(items, null);
+    }
+
+    @Override
+    public boolean createItems(List<Item> items, ImportCheckpoint checkpoint) {
+        if (items.isEmpty() && checkpoint == null) {
+            return true; // nothing to create
+        }
+
         if (!storageService.startTransaction()) {
             return false; // fail to start transaction
         }
+        try {
+            List<Integer> itemIds = new ArrayList<>(items.size());
+            List<String> skus = new ArrayList<>(items.size());
+            if ((!items.isEmpty() && !insertItems(items, itemIds, skus))
+                    || (checkpoint != null && !saveImportCheckpoint(checkpoint))) {
+                storageService.abortTransaction();
+                return false;
+            }
 
-        List<String> bundleKeys = bundle.getAttributeKeysNoId();
-        List<String> bundleData = bundle.getAllAttributesNoId();
-        List<DataType> bundleTypes = bundle.getAttributeDataTypesNoId();
+            storageService.commitTransaction();
+            recordChanges(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                items.get(i).setItemId(itemIds.get(i));
+                items.get(i).setSku(skus.get(i));
+            }
+            return true;
+        } finally {
+            abortUnfinishedTransaction();
+        }
+    }
+
+    /**
+     * Inserts Items in the current transaction, with their SKUs, and adds them to
+     * the totals of their Categories.
+     * 
+     * @param items   The Items, of which there is at least one.
+     * @param itemIds Where to put the new ID of each Item.
+     * @param skus    Where to put the SKU of each Item.
+     * @return True upon success, false otherwise.
+     */
+    private boolean insertItems(List<Item> items, List<Integer> itemIds, List<String> skus) {
+        Item firstItem = items.get(0);
+        List<String> keys = firstItem.getAttributeKeysNoId();
+        List<DataType> types = firstItem.getAttributeDataTypesNoId();
+        List<List<String>> rows = new ArrayList<>(items.size());
+        for (Item item : items) {
+            rows.add(item.getAllAttributesNoId());
+        }
 
-        // since nobody else should be writing at the same time, we can do this (single
-        // threaded)
-        int newBundleId = storageService.getNextIncrementedId(Bundle.TABLE_NAME);
-        if (!storageService.create(Bundle.TABLE_NAME, bundleData, bundleKeys, bundleTypes)) {
-            storageService.abortTransaction();
-            return false; // failure
+        // Create the items in the database
+        List<Integer> createdIds = storageService.createBatchAndGetIds(Item.TABLE_NAME, rows, keys, types);
+        if (createdIds == null) {
+            return false;
         }
+        itemIds.addAll(createdIds);
+
+        // the SKUs are built from the IDs, so they can only be set now that we know the
+        // IDs
+        List<List<String>> skuRows = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            String sku = item.getSku();
+            if (sku == null) {
+                sku = generateSku(item, itemIds.get(i));
+                skuRows.add(List.of(Integer.toString(itemIds.get(i)), sku));
+            }
+            skus.add(sku);
+        }
+        return storageService.updateBatch(Item.TABLE_NAME, skuRows, SKU_UPDATE_KEYS, SKU_UPDATE_TYPES)
+                && changeCategoryTotals(itemIds, true);
+    }
 
-        // create the entries for the association class
-        Item item = new Item();
+    /**
+     * Saves the checkpoint of an import in the current transaction, replacing any
+     * saved for the same file.
+     * 
+     * @param checkpoint The checkpoint.
+     * @return True upon success, false otherwise.
+     */
+    private boolean saveImportCheckpoint(ImportCheckpoint checkpoint) {
+        List<String> values = List.of(checkpoint.getFilePath(),
+                Long.toString(checkpoint.getFileSize()),
+                Long.toString(checkpoint.getFileModified()),
+                Long.toString(checkpoint.getOffset()),
+                Long.toString(checkpoint.getRowNumber()),
+                Long.toString(checkpoint.getNumImported()),
+                Long.toString(checkpoint.getNumRejected()),
+                Long.toString(checkpoint.getRejectedLength()));
+        return storageService.executeUpdate(IMPORT_CHECKPOINT_SAVE, values, IMPORT_CHECKPOINT_TYPES) >= 0;
+    }
 
-        List<String> itemBundleKeys = new ArrayList<>();
-        // get the IDs of both the Item and Bundle
-        itemBundleKeys.add(item.getAttributeKeys().get(0));
-        itemBundleKeys.add(bundle.getAttributeKeys().get(0));
+    /**
+     * Generates the SKU for an Item, which is its Category's name and its ID,
+     * separated by a dash. Without the dash, "Tool" and 12 would give the same SKU
+     * as "Tool1" and 2.
+     * 
+     * @param item   The Item.
+     * @param itemId The ID of the Item.
+     * @return The SKU.
+     */
+    private static String generateSku(Item item, int itemId) {
+        return item.getCategory().getName() + SKU_SEPARATOR + Integer.toString(itemId);
+    }
 
-        List<DataType> itemBundleTypes = new ArrayList<>();
-        // get types for IDs
-        itemBundleTypes.add(item.getAttributeDataTypes().get(0));
-        itemBundleTypes.add(bundle.getAttributeDataTypes().get(0));
+    /**
+     * Aborts the transaction of this thread if it was not committed or aborted,
+     * which only happens if an exception was thrown in it. Otherwise its
+     * connection would never be given back to the pool.
+     */
+    private void abortUnfinishedTransaction() {
+        storageService.abortTransaction(); // does nothing once the transaction is finished
+    }
 
-        // add each item
-        for (String itemId : bundle.getInnerObjectIds()) {
-            List<String> itemBundleData = new ArrayList<>();
-            itemBundleData.add(itemId);
-            itemBundleData.add(Integer.toString(newBundleId));
+    /**
+     * Adds Items to, or subtracts them from, the kept totals of their Categories,
+     * from the Items as they are in the database. Must be done in the same
+     * transaction as the change to the Items, after Items are created and before
+     * they are deleted.
+     * 
+     * @param itemIds The IDs of the Items.
+     * @param add     True to add the Items, false to subtract them.
+     * @return True upon success, false upon failure.
+     */
+    private boolean changeCategoryTotals(List<Integer> itemIds, boolean add) {
+        for (int start = 0; start < itemIds.size(); start += CATEGORY_TOTALS_CHUNK_SIZE) {
+            List<Integer> chunk = itemIds.subList(start, Math.min(itemIds.size(), start + CATEGORY_TOTALS_CHUNK_SIZE));
+            List<String> values = new ArrayList<>(chunk.size());
+            for (int itemId : chunk) {
+                values.add(Integer.toString(itemId));
+            }
+            if (storageService.executeUpdate(buildCategoryTotalsChange(chunk.size(), add), values,
+                    Collections.nCopies(chunk.size(), DataType.INTEGER)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the statement that adds Items to, or subtracts them from, the kept
+     * totals of their Categories.
+     * 
+     * @param numItems The number of Items, each one a parameter of the statement.
+     * @param add      True to add the Items, false to subtract them.
+     * @return The statement.
+     */
+    private static String buildCategoryTotalsChange(int numItems, boolean add) {
+        String sign = add ? " + " : " - ";
+        StringBuilder statement = new StringBuilder("update CategoryTotals join (select Item.CategoryId, ")
+                .append(ITEM_TOTALS_COLUMNS)
+                .append(" from Item where Item.ItemId in (")
+                .append(String.join(", ", Collections.nCopies(numItems, "?")))
+                .append(") group by Item.CategoryId) as Changed on CategoryTotals.CategoryId = Changed.CategoryId set ");
+        List<String> columns = List.of("UniqueItems", "TotalUnits", "TotalValue", "TotalDiscountedValue");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                statement.append(", ");
+            }
+            statement.append("CategoryTotals.").append(columns.get(i)).append(" = CategoryTotals.")
+                    .append(columns.get(i)).append(sign).append("Changed.").append(columns.get(i));
+        }
+        return statement.toString();
+    }
+
+    @Override
+    public boolean createBundle(Bundle bundle) {
+        if (!storageService.startTransaction()) {
+            return false; // fail to start transaction
+        }
+        try {
+            List<String> bundleKeys = bundle.getAttributeKeysNoId();
+            List<String> bundleData = bundle.getAllAttributesNoId();
+            List<DataType> bundleTypes = bundle.getAttributeDataTypesNoId();
 
-            // create the entry for this item, bundle pair
-            if (!storageService.create(Bundle.ASSOCIATION_TABLE_NAME, itemBundleData, itemBundleKeys,
-                    itemBundleTypes)) {
+            int newBundleId = storageService.createAndGetId(Bundle.TABLE_NAME, bundleData, bundleKeys, bundleTypes);
+            if (newBundleId < 0) {
                 storageService.abortTransaction();
                 return false; // failure
             }
-        }
 
-        storageService.commitTransaction();
-        return true; // success
+            // create the entries for the association class
+            Item item = new Item();
+
+            List<String> itemBundleKeys = new ArrayList<>();
+            // get the IDs of both the Item and Bundle
+            itemBundleKeys.add(item.getAttributeKeys().get(0));
+            itemBundleKeys.add(bundle.getAttributeKeys().get(0));
+
+            List<DataType> itemBundleTypes = new ArrayList<>();
+            // get types for IDs
+            itemBundleTypes.add(item.getAttributeDataTypes().get(0));
+            itemBundleTypes.add(bundle.getAttributeDataTypes().get(0));
+
+            // add each item
+            for (String itemId : bundle.getInnerObjectIds()) {
+                List<String> itemBundleData = new ArrayList<>();
+                itemBundleData.add(itemId);
+                itemBundleData.add(Integer.toString(newBundleId));
+
+                // create the entry for this item, bundle pair
+                if (!storageService.create(Bundle.ASSOCIATION_TABLE_NAME, itemBundleData, itemBundleKeys,
+                        itemBundleTypes)) {
+                    storageService.abortTransaction();
+                    return false; // failure
+                }
+            }
+
+            storageService.commitTransaction();
+            bundle.setBundleId(newBundleId);
+            return true; // success
+        } finally {
+            abortUnfinishedTransaction();
+        }
     }
 
     /**
@@ -155,270 +491,524 @@ public class MySqlCrud extends StorageCrud {
         if (!storageService.startTransaction()) {
             return false; // fail to start transaction
         }
-        // This could be done using a hash map instead of two lists, it works for now
-        // though
-        List<String> keys = category.getAttributeKeysNoId();
-        List<String> data = category.getAllAttributesNoId();
-        List<DataType> types = category.getAttributeDataTypesNoId();
-        boolean result = storageService.create(Category.TABLE_NAME, data, keys, types);
-        if (result) {
+        try {
+            // This could be done using a hash map instead of two lists, it works for now
+            // though
+            List<String> keys = category.getAttributeKeysNoId();
+            List<String> data = category.getAllAttributesNoId();
+            List<DataType> types = category.getAttributeDataTypesNoId();
+            int categoryId = storageService.createAndGetId(Category.TABLE_NAME, data, keys, types);
+            // a new Category starts with no Items in its totals
+            if (categoryId < 0 || !storageService.create(CATEGORY_TOTALS_TABLE_NAME,
+                    List.of(Integer.toString(categoryId)), List.of(Category.CATEGORY_ID_KEY),
+                    List.of(DataType.INTEGER))) {
+                storageService.abortTransaction();
+                return false;
+            }
             storageService.commitTransaction();
-        } else {
-            storageService.abortTransaction();
+            recordChanges(1);
+            category.setCategoryId(categoryId);
+            return true;
+        } finally {
+            abortUnfinishedTransaction();
         }
-        return result;
     }
 
     @Override
-    public Item readItem(int itemId) {
+    public boolean createCategories(List<Category> categories) {
+        if (categories.isEmpty()) {
+            return true; // nothing to create
+        }
+        List<List<String>> rows = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            rows.add(category.getAllAttributesNoId());
+        }
+        Category firstCategory = categories.get(0);
+
         if (!storageService.startTransaction()) {
+            return false; // fail to start transaction
+        }
+        try {
+            List<Integer> categoryIds = storageService.createBatchAndGetIds(Category.TABLE_NAME, rows,
+                    firstCategory.getAttributeKeysNoId(), firstCategory.getAttributeDataTypesNoId());
+            if (categoryIds == null) {
+                storageService.abortTransaction();
+                return false;
+            }
+
+            // new Categories start with no Items in their totals
+            List<List<String>> totalsRows = new ArrayList<>(categoryIds.size());
+            for (int categoryId : categoryIds) {
+                totalsRows.add(List.of(Integer.toString(categoryId)));
+            }
+            if (!storageService.createBatch(CATEGORY_TOTALS_TABLE_NAME, totalsRows, List.of(Category.CATEGORY_ID_KEY),
+                    List.of(DataType.INTEGER))) {
+                storageService.abortTransaction();
+                return false;
+            }
+
+            storageService.commitTransaction();
+            recordChanges(categories.size());
+            for (int i = 0; i < categories.size(); i++) {
+                categories.get(i).setCategoryId(categoryIds.get(i));
+            }
+            return true;
+        } finally {
+            abortUnfinishedTransaction();
+        }
+    }
+
+    @Override
+    public <T> T readTogether(Supplier<T> reads) {
+        if (!storageService.startReadOnlyTransaction()) {
             return null; // fail to start transaction
         }
-        // keys should be PascalCase
-        List<String> keys = ObjectService.getItemKeys();
 
-        Map<String, String> itemData = this.storageService.read(Item.TABLE_NAME, itemId, keys);
-        List<String> categoryKeys = ObjectService.getCategoryKeys();
-        Map<String, String> innerCategoryData = readInnerCategory(itemData, categoryKeys);
-        Item output = ObjectService.createItem(itemData, innerCategoryData);
-        storageService.commitTransaction();
-        return output;
+        try {
+            return reads.get();
+        } finally {
+            storageService.commitTransaction();
+        }
+    }
+
+    @Override
+    public Item readItem(int itemId) {
+        // read the Item joined with its Category, so both come back in one query
+        SelectQuery query = itemQuery();
+        query.setSearch(Item.ITEM_ID_KEY, Integer.toString(itemId), DataType.INTEGER);
+        List<Item> items = storageService.readObjects(query, ITEM_MAPPER);
+
+        return items.isEmpty() ? null : items.get(0);
     }
 
     /**
-     * Reads an Item object's inner Category object.
+     * Creates a query that reads Items joined with their Categories, with the
+     * columns in the order the Item row mapper reads them.
      * 
-     * @param itemMap      The Item data.
-     * @param categoryKeys The Category keys.
-     * @return The inner Category object data.
+     * @return The query.
      */
-    private Map<String, String> readInnerCategory(Map<String, String> itemMap, List<String> categoryKeys) {
-        int categoryId = 0;
-        try {
-            categoryId = Integer.parseInt(itemMap.get(Category.CATEGORY_ID_KEY));
-        } catch (Exception e) {
-            throw new RuntimeException("Could not convert categoryId to int");
-        }
+    private static SelectQuery itemQuery() {
+        return itemQuery(ITEM_MAPPER);
+    }
+
+    /**
+     * Creates a query that reads Items joined with their Categories, with the
+     * columns in the order an Item row mapper reads them.
+     * 
+     * @param itemMapper The mapper that will read the rows.
+     * @return The query.
+     */
+    private static SelectQuery itemQuery(ItemRowMapper itemMapper) {
+        return new SelectQuery(Item.TABLE_NAME, itemMapper.getColumns(), ObjectService.getItemInnerObjects());
+    }
 
-        // read this category
-        return this.storageService.read(Category.TABLE_NAME, categoryId, categoryKeys);
+    /**
+     * Creates a query that reads Categories, with the columns in the order the
+     * Category row mapper reads them.
+     * 
+     * @return The query.
+     */
+    private static SelectQuery categoryQuery() {
+        return new SelectQuery(Category.TABLE_NAME, CategoryRowMapper.getColumns(), null);
     }
 
     @Override
     public List<Item> readAllItems() throws RuntimeException {
-        if (!storageService.startTransaction()) {
-            return new ArrayList<>(); // fail to start transaction
-        }
+        List<Item> items = storageService.readObjects(itemQuery(), ITEM_MAPPER);
 
-        List<Item> items = new ArrayList<>();
+        return items;
+    }
 
-        List<String> keys = ObjectService.getItemKeys();
+    @Override
+    public List<Item> readAllItemsSortBy(String sortBy, boolean isAscending) throws RuntimeException {
+        // Read all items, joined with their categories, sorted by the specified column
+        SelectQuery query = itemQuery();
+        query.setSortBy(sortBy, isAscending);
+        List<Item> items = storageService.readObjects(query, ITEM_MAPPER);
 
-        List<Map<String, String>> itemMaps = this.storageService.readAll(Item.TABLE_NAME, keys, null);
-        List<Map<String, String>> categoryMaps = new ArrayList<>();
+        return items;
+    }
 
-        List<String> categoryKeys = ObjectService.getCategoryKeys();
-        // read each Category
-        for (int i = 0; i < itemMaps.size(); i++) {
+    @Override
+    public Page<Item> readItemsPage(String sortBy, boolean isAscending, int pageSize, String cursor)
+            throws RuntimeException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be at least 1.");
+        }
+        if (sortBy != null && !TableSchema.ITEM.hasColumn(sortBy)) {
+            throw new IllegalArgumentException("Items cannot be sorted by " + sortBy);
+        }
 
-            // read this category
-            categoryMaps.add(readInnerCategory(itemMaps.get(i), categoryKeys));
+        // also read the raw sort value of each row, to make the cursor from
+        List<String> columns = new ArrayList<>(ITEM_MAPPER.getColumns());
+        if (sortBy != null) {
+            columns.add(Item.TABLE_NAME + "." + sortBy);
+        }
+        int sortValueColumn = columns.size();
+        List<String> sortValues = new ArrayList<>();
+        RowMapper<Item> pageMapper = resultSet -> {
+            sortValues.add(sortBy != null ? resultSet.getString(sortValueColumn) : null);
+            return ITEM_MAPPER.mapRow(resultSet);
+        };
+
+        SelectQuery query = new SelectQuery(Item.TABLE_NAME, columns, ObjectService.getItemInnerObjects());
+        query.setSortBy(sortBy, isAscending);
+        query.setUniqueKey(Item.ITEM_ID_KEY);
+        if (cursor != null) {
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            if (!pageCursor.isFor(sortBy, isAscending)) {
+                throw new IllegalArgumentException("The page cursor belongs to a different sort.");
+            }
+            DataType sortType = sortBy != null
+                    ? TableSchema.ITEM.getDataTypes().get(TableSchema.ITEM.indexOf(sortBy))
+                    : null;
+            query.setAfter(pageCursor.getLastSortValue(), sortType, pageCursor.getLastId());
         }
+        query.setLimit(pageSize + 1); // one more than fits on the page, to find out if there is a next page
 
-        for (int i = 0; i < itemMaps.size(); i++) {
-            items.add(ObjectService.createItem(itemMaps.get(i), categoryMaps.get(i)));
+        List<Item> items = new ArrayList<>(pageSize + 1);
+        // readObjects gives an empty list on failure, which would look like the last
+        // page
+        if (!storageService.readEach(query, pageMapper, items::add)) {
+            throw new RuntimeException("ERROR: Could not read a page of Items");
         }
-        storageService.commitTransaction();
+
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+            Item lastItem = items.get(pageSize - 1);
+            nextCursor = new PageCursor(sortBy, isAscending, sortValues.get(pageSize - 1), lastItem.getItemId())
+                    .encode();
+        }
+
+        return new Page<>(items, nextCursor);
+    }
+
+    @Override
+    public List<Item> readAllItemSummaries(String sortBy, boolean isAscending) {
+        // only read the columns needed to list the Items
+        SelectQuery query = itemQuery(ITEM_SUMMARY_MAPPER);
+        query.setSortBy(sortBy, isAscending);
+        List<Item> items = storageService.readObjects(query, ITEM_SUMMARY_MAPPER);
 
         return items;
     }
 
     @Override
-    public List<Item> readAllItemsSortBy(String sortBy, boolean isAscending) throws RuntimeException {
+    public List<CategoryVolume> readCategoryVolumes() {
+        // keep any Category without totals yet, as if it had no Items
+        return readCategoryVolumes(categoryTotalsQuery(true));
+    }
+
+    @Override
+    public int reconcileCategoryVolumes() {
         if (!storageService.startTransaction()) {
-            return new ArrayList<>(); // fail to start transaction
+            return -1; // fail to start transaction
         }
-        List<Item> items = new ArrayList<>();
-
-        List<String> keys = ObjectService.getItemKeys();
+        try {
+            // both are read from the same snapshot, so they only differ if the totals drifted
+            List<CategoryVolume> keptVolumes = readCategoryVolumes(categoryTotalsQuery(false));
+            List<CategoryVolume> volumes = keptVolumes == null ? null : readCategoryVolumes(categoryVolumeQuery());
+            if (volumes == null) {
+                storageService.abortTransaction();
+                return -1;
+            }
 
-        // Read all items sorted by the specified column
-        List<Map<String, String>> itemMaps = this.storageService.readAllSortBy(Item.TABLE_NAME, keys, sortBy,
-                isAscending);
-        List<Map<String, String>> categoryMaps = new ArrayList<>();
+            Map<Integer, CategoryVolume> keptVolumeMap = new HashMap<>();
+            for (CategoryVolume keptVolume : keptVolumes) {
+                keptVolumeMap.put(keptVolume.getCategoryId(), keptVolume);
+            }
+            int corrected = 0;
+            for (CategoryVolume volume : volumes) {
+                if (hasSameTotals(volume, keptVolumeMap.get(volume.getCategoryId()))) {
+                    continue;
+                }
+                // totaled again while locking the Items, in case they changed since the snapshot
+                if (storageService.executeUpdate(
+                        CATEGORY_TOTALS_RECOMPUTE + " where Category.CategoryId = ? group by Category.CategoryId",
+                        List.of(Integer.toString(volume.getCategoryId())), List.of(DataType.INTEGER)) < 0) {
+                    storageService.abortTransaction();
+                    return -1;
+                }
+                corrected++;
+            }
 
-        List<String> categoryKeys = ObjectService.getCategoryKeys();
-        // read each Category
-        for (int i = 0; i < itemMaps.size(); i++) {
-            // read this category
-            categoryMaps.add(readInnerCategory(itemMaps.get(i), categoryKeys));
+            storageService.commitTransaction();
+            return corrected;
+        } finally {
+            abortUnfinishedTransaction();
         }
+    }
 
-        for (int i = 0; i < itemMaps.size(); i++) {
-            items.add(ObjectService.createItem(itemMaps.get(i), categoryMaps.get(i)));
+    /**
+     * Builds the query that totals the Items of every Category.
+     * 
+     * @return The query.
+     */
+    private static SelectQuery categoryVolumeQuery() {
+        List<InnerObject> itemJoin = List.of(
+                new InnerObject(Category.TABLE_NAME, Item.TABLE_NAME, Category.CATEGORY_ID_KEY));
+        SelectQuery query = new SelectQuery(Category.TABLE_NAME, CATEGORY_VOLUME_KEYS, itemJoin);
+        query.setOuterJoin(true); // keep the Categories without Items
+        query.setGroupBy(CATEGORY_VOLUME_GROUP_BY_KEYS);
+        return query;
+    }
+
+    /**
+     * Builds the query that reads the kept totals of every Category.
+     * 
+     * @param outerJoin True to also read the Categories that have no kept totals.
+     * @return The query.
+     */
+    private static SelectQuery categoryTotalsQuery(boolean outerJoin) {
+        List<InnerObject> totalsJoin = List.of(
+                new InnerObject(Category.TABLE_NAME, CATEGORY_TOTALS_TABLE_NAME, Category.CATEGORY_ID_KEY));
+        SelectQuery query = new SelectQuery(Category.TABLE_NAME, CATEGORY_TOTALS_KEYS, totalsJoin);
+        query.setOuterJoin(outerJoin);
+        return query;
+    }
+
+    /**
+     * Reads the totals of Categories.
+     * 
+     * @param query The query that reads the totals.
+     * @return The totals, or null upon failure.
+     */
+    private List<CategoryVolume> readCategoryVolumes(SelectQuery query) {
+        List<CategoryVolume> volumes = new ArrayList<>();
+        if (!storageService.readEach(query, CATEGORY_VOLUME_MAPPER, volumes::add)) {
+            return null;
         }
-        storageService.commitTransaction();
+        return volumes;
+    }
 
-        return items;
+    /**
+     * Checks if the totals of a Category are the same as its kept totals. The
+     * totals are decimals in the database, so equal totals are read as equal
+     * doubles.
+     * 
+     * @param volume     The totals.
+     * @param keptVolume The kept totals, or null if there are none.
+     * @return True if the totals are the same, false otherwise.
+     */
+    private static boolean hasSameTotals(CategoryVolume volume, CategoryVolume keptVolume) {
+        return keptVolume != null
+                && volume.getUniqueItemCount() == keptVolume.getUniqueItemCount()
+                && volume.getTotalUnits() == keptVolume.getTotalUnits()
+                && volume.getTotalValue() == keptVolume.getTotalValue()
+                && volume.getTotalDiscountedValue() == keptVolume.getTotalDiscountedValue();
     }
 
     @Override
-    public List<Category> readCategoryByName(String name) throws RuntimeException {
-        if (!storageService.startTransaction()) {
-            return new ArrayList<>(); // fail to start transaction
-        }
+    public List<Item> readLowInventoryItems() {
+        SelectQuery query = lowInventoryItemsQuery();
+        query.setSortBy(Item.ITEM_ID_KEY, true);
+        return readFilteredItems(query);
+    }
 
-        List<Category> categories = new ArrayList<>();
+    @Override
+    public List<Item> readUnsoldItems(Date today) {
+        SelectQuery query = unsoldItemsQuery(today);
+        query.setSortBy(Item.ITEM_ID_KEY, true);
+        return readFilteredItems(query);
+    }
 
-        List<String> keys = ObjectService.getCategoryKeys();
+    @Override
+    public List<Item> readLowInventoryItemsByDeficit(int limit) {
+        // the smallest margin is the largest deficit, read in the order of the margin's
+        // index, so only the Items that are returned are read
+        SelectQuery query = lowInventoryItemsQuery();
+        query.setSortBy(LOW_INVENTORY_MARGIN, true);
+        query.setUniqueKey(Item.ITEM_ID_KEY);
+        query.setLimit(limit);
+        return readFilteredItems(query);
+    }
+
+    @Override
+    public List<Item> readUnsoldItemsByDaysOverdue(Date today, int limit) {
+        // the earliest expected sell-by date is the most days overdue. MySQL only keeps
+        // the limit's worth of rows while it sorts them.
+        SelectQuery query = unsoldItemsQuery(today);
+        query.setSortBy(EXPECTED_SELL_BY_DATE, true);
+        query.setUniqueKey(Item.ITEM_ID_KEY);
+        query.setLimit(limit);
+        return readFilteredItems(query);
+    }
+
+    /**
+     * Builds the query for the Items that are at or below their low inventory
+     * threshold.
+     * 
+     * @return The query.
+     */
+    private static SelectQuery lowInventoryItemsQuery() {
+        SelectQuery query = itemQuery();
+        query.addFilter(LOW_INVENTORY_MARGIN + " <= 0 and Item.NumItems >= 0", List.of(), List.of());
+        return query;
+    }
 
-        List<Map<String, String>> categoryMaps = this.storageService.readSearchRow(Category.TABLE_NAME, keys,
-                Category.NAME_KEY,
-                name,
-                DataType.STRING);
+    /**
+     * Builds the query for the Items that have gone unsold for longer than they
+     * should be sold within since they were last modified.
+     * 
+     * @param today The date to count the days up to.
+     * @return The query.
+     */
+    private static SelectQuery unsoldItemsQuery(Date today) {
+        SelectQuery query = itemQuery();
+        query.addFilter(SELL_BY_DATE + " < ? and Item.SellWithinNumDays >= 0", List.of(today.toString()),
+                List.of(DataType.DATE));
+        return query;
+    }
 
-        for (Map<String, String> categoryMap : categoryMaps) {
-            categories.add(ObjectService.createCategory(categoryMap));
+    /**
+     * Reads the Items that meet a query's filters.
+     * 
+     * @param query The query.
+     * @return The Items, or null upon failure.
+     */
+    private List<Item> readFilteredItems(SelectQuery query) {
+        List<Item> items = new ArrayList<>();
+        if (!storageService.readEach(query, ITEM_MAPPER, items::add)) {
+            return null;
         }
-        storageService.commitTransaction();
+        return items;
+    }
 
-        return categories;
+    @Override
+    public boolean forEachItem(Consumer<Item> consumer) {
+        return forEachItemSortBy(null, true, consumer);
     }
 
     @Override
-    public List<Item> readItemByName(String name) throws RuntimeException {
-        if (!storageService.startTransaction()) {
-            return new ArrayList<>(); // fail to start transaction
-        }
+    public boolean forEachItemSortBy(String sortBy, boolean isAscending, Consumer<Item> consumer) {
+        SelectQuery query = itemQuery();
+        query.setSortBy(sortBy, isAscending);
+        return storageService.readEach(query, ITEM_MAPPER, consumer);
+    }
 
-        List<Item> items = new ArrayList<>();
+    @Override
+    public boolean forEachCategory(Consumer<Category> consumer) {
+        return storageService.readEach(categoryQuery(), CATEGORY_MAPPER, consumer);
+    }
 
-        List<String> keys = ObjectService.getItemKeys();
+    @Override
+    public List<Category> readCategoryByName(String name) throws RuntimeException {
+        SelectQuery query = categoryQuery();
+        query.setSearch(Category.NAME_KEY, name, DataType.STRING);
+        List<Category> categories = storageService.readObjects(query, CATEGORY_MAPPER);
 
-        List<Map<String, String>> itemMaps = this.storageService.readSearchRow(Item.TABLE_NAME, keys,
-                Item.NAME_KEY,
-                name,
-                DataType.STRING);
-        List<Map<String, String>> categoryMaps = new ArrayList<>();
+        return categories;
+    }
 
-        List<String> categoryKeys = ObjectService.getCategoryKeys();
-        // read each Category
-        for (int i = 0; i < itemMaps.size(); i++) {
-            // read this category
-            categoryMaps.add(readInnerCategory(itemMaps.get(i), categoryKeys));
+    @Override
+    public List<Category> readCategoriesByName(List<String> names) {
+        List<Category> categories = new ArrayList<>();
+        for (int start = 0; start < names.size(); start += CATEGORY_NAMES_CHUNK_SIZE) {
+            List<String> chunk = names.subList(start, Math.min(names.size(), start + CATEGORY_NAMES_CHUNK_SIZE));
+            SelectQuery query = categoryQuery();
+            query.addFilter(Category.TABLE_NAME + "." + Category.NAME_KEY + " in ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")", chunk,
+                    Collections.nCopies(chunk.size(), DataType.STRING));
+            // readObjects gives an empty list on failure, which would look like none of
+            // the Categories exist
+            if (!storageService.readEach(query, CATEGORY_MAPPER, categories::add)) {
+                return null;
+            }
         }
 
-        for (int i = 0; i < itemMaps.size(); i++) {
-            items.add(ObjectService.createItem(itemMaps.get(i), categoryMaps.get(i)));
-        }
-        storageService.commitTransaction();
+        return categories;
+    }
+
+    @Override
+    public List<Item> readItemByName(String name) throws RuntimeException {
+        SelectQuery query = itemQuery();
+        query.setSearch(Item.NAME_KEY, name, DataType.STRING);
+        List<Item> items = storageService.readObjects(query, ITEM_MAPPER);
 
         return items;
     }
 
     @Override
     public Item readItemBySKU(String sku) {
-        if (!storageService.startTransaction()) {
-            return null; // fail to start transaction
-        }
-
-        List<String> keys = ObjectService.getItemKeys();
+        SelectQuery query = itemQuery();
+        query.setSearch(Item.SKU_KEY, sku, DataType.STRING);
+        List<Item> items = storageService.readObjects(query, ITEM_MAPPER);
 
-        List<Map<String, String>> itemDataMaps = this.storageService.readSearchRow(Item.TABLE_NAME, keys,
-                Item.SKU_KEY,
-                sku,
-                DataType.STRING);
-
-        if (itemDataMaps.isEmpty()) {
+        if (items.isEmpty()) {
             throw new RuntimeException("ERROR: Item with SKU " + sku + " not found.");
         }
-        Map<String, String> itemData = itemDataMaps.get(0);
-
-        List<String> categoryKeys = ObjectService.getCategoryKeys();
-        Map<String, String> innerCategoryData = readInnerCategory(itemData, categoryKeys);
-
-        // Create and return the Item object using the retrieved
-        Item output = ObjectService.createItem(itemData, innerCategoryData);
-        storageService.commitTransaction();
-        return output;
+        return items.get(0);
     }
 
     @Override
     public Category readCategory(int categoryId) {
-        if (!storageService.startTransaction()) {
-            return null; // fail to start transaction
-        }
-        Map<String, String> categoryData = this.storageService.read("Category", categoryId,
-                ObjectService.getItemKeys());
-        Category output = ObjectService.createCategory(categoryData);
-        storageService.commitTransaction();
-        return output;
+        SelectQuery query = categoryQuery();
+        query.setSearch(Category.CATEGORY_ID_KEY, Integer.toString(categoryId), DataType.INTEGER);
+        List<Category> categories = storageService.readObjects(query, CATEGORY_MAPPER);
+
+        return categories.isEmpty() ? null : categories.get(0);
     }
 
     @Override
-    public List<Category> readAllCategories() throws RuntimeException {
-        if (!storageService.startTransaction()) {
-            return new ArrayList<>(); // fail to start transaction
+    public ImportCheckpoint readImportCheckpoint(String filePath) throws RuntimeException {
+        SelectQuery query = new SelectQuery(IMPORT_CHECKPOINT_TABLE_NAME, IMPORT_CHECKPOINT_KEYS, null);
+        query.setSearch(IMPORT_CHECKPOINT_FILE_PATH_KEY, filePath, DataType.STRING);
+        List<ImportCheckpoint> checkpoints = new ArrayList<>(1);
+        // readObjects gives an empty list on failure, which would look like no
+        // checkpoint
+        if (!storageService.readEach(query, IMPORT_CHECKPOINT_MAPPER, checkpoints::add)) {
+            throw new RuntimeException("ERROR: Could not read the import checkpoint for " + filePath);
         }
 
-        List<Category> categories = new ArrayList<>();
-
-        List<String> keys = ObjectService.getCategoryKeys();
+        return checkpoints.isEmpty() ? null : checkpoints.get(0);
+    }
 
-        List<Map<String, String>> categoryMaps = this.storageService.readAll(Category.TABLE_NAME, keys, null);
+    @Override
+    public boolean deleteImportCheckpoint(String filePath) {
+        return storageService.executeUpdate("delete from " + IMPORT_CHECKPOINT_TABLE_NAME + " where "
+                + IMPORT_CHECKPOINT_FILE_PATH_KEY + " = ?", List.of(filePath), List.of(DataType.STRING)) >= 0;
+    }
 
-        for (Map<String, String> categoryMap : categoryMaps) {
-            categories.add(ObjectService.createCategory(categoryMap));
-        }
-        storageService.commitTransaction();
+    @Override
+    public List<Category> readAllCategories() throws RuntimeException {
+        List<Category> categories = storageService.readObjects(categoryQuery(), CATEGORY_MAPPER);
 
         return categories;
     }
 
     @Override
     public List<Bundle> readAllBundles() throws RuntimeException {
-        if (!storageService.startTransaction()) {
-            return new ArrayList<>(); // fail to start transaction
-        }
-
         List<Bundle> bundles = new ArrayList<>();
+        forEachBundle(bundles::add);
 
-        List<String> keys = ObjectService.getBundleKeys();
-        keys.addAll(ObjectService.getItemKeys());
-        keys.addAll(ObjectService.getCategoryKeys());
-
-        List<InnerObject> innerObjects = ObjectService.getBundleInnerObjects();
-
-        // we are reading the bundles, items, and categories
-        List<Map<String, String>> bundleItemCategoryMaps = this.storageService.readAll(Bundle.TABLE_NAME, keys,
-                innerObjects);
-
-        // we want to save bundle IDs and the index into the bundles list so we can
-        // modify them if they already exist
-        Map<Integer, Integer> bundleIdToIdx = new HashMap<>();
-
-        for (Map<String, String> bundleItemCategoryMap : bundleItemCategoryMaps) {
-            int currentBundleId = Integer.parseInt(bundleItemCategoryMap.get(Bundle.BUNDLE_ID_KEY));
-
-            if (bundleIdToIdx.containsKey(currentBundleId)) {
-                // this bundle has already been created, modify it
-                int bundleIdx = bundleIdToIdx.get(currentBundleId);
+        return bundles;
+    }
 
-                // we only need to create an Item and put the data into the Bundle
-                Item curItem = ObjectService.createItem(bundleItemCategoryMap, bundleItemCategoryMap);
-                bundles.get(bundleIdx).addItem(curItem);
-            } else {
-                List<Map<String, String>> itemList = new ArrayList<>(); // since we need to create bundle
-                itemList.add(bundleItemCategoryMap);
-                Bundle curBundle = ObjectService.createBundle(bundleItemCategoryMap, itemList, itemList);
-                bundles.add(curBundle);
-                // we added a bundle to the list, keep track of its ID and index
-                bundleIdToIdx.put(curBundle.getBundleId(), bundles.size() - 1);
+    @Override
+    public boolean forEachBundle(Consumer<Bundle> consumer) {
+        // we are reading the bundles, items, and categories, one row for each item in
+        // a bundle
+        SelectQuery query = new SelectQuery(Bundle.TABLE_NAME, BUNDLE_MAPPER.getColumns(),
+                ObjectService.getBundleInnerObjects());
+
+        // we want to find bundles by their IDs so we can add to them if they already
+        // exist, in the order they were first read
+        Map<Integer, Bundle> bundles = new LinkedHashMap<>();
+        boolean read = storageService.readEach(query, BUNDLE_MAPPER, bundleRow -> {
+            Bundle bundle = bundles.putIfAbsent(bundleRow.getBundleId(), bundleRow);
+            if (bundle != null) {
+                // this bundle has already been created, we only need to put this row's Item
+                // into it
+                bundle.addItem(bundleRow.getItems().get(0));
             }
+        });
+        if (!read) {
+            return false;
         }
-        storageService.commitTransaction();
 
-        return bundles;
+        bundles.values().forEach(consumer);
+        return true;
     }
 
     @Override
@@ -426,13 +1016,30 @@ public class MySqlCrud extends StorageCrud {
         if (!storageService.startTransaction()) {
             return false; // fail to start transaction
         }
-        boolean result = storageService.update(Item.TABLE_NAME, data, keys, types);
-        if (result) {
-            storageService.commitTransaction();
-        } else {
-            storageService.abortTransaction();
+        try {
+            // the ID is the first key. Only move the Item between totals if they could change.
+            List<Integer> itemId = null;
+            if (!Collections.disjoint(keys.subList(1, keys.size()), CATEGORY_TOTALS_ITEM_KEYS)) {
+                try {
+                    itemId = List.of(Integer.parseInt(data.get(0)));
+                } catch (NumberFormatException nfe) {
+                    storageService.abortTransaction();
+                    return false;
+                }
+            }
+            boolean result = (itemId == null || changeCategoryTotals(itemId, false))
+                    && storageService.update(Item.TABLE_NAME, data, keys, types)
+                    && (itemId == null || changeCategoryTotals(itemId, true));
+            if (result) {
+                storageService.commitTransaction();
+                recordChanges(1);
+            } else {
+                storageService.abortTransaction();
+            }
+            return result;
+        } finally {
+            abortUnfinishedTransaction();
         }
-        return result;
     }
 
     @Override
@@ -440,13 +1047,18 @@ public class MySqlCrud extends StorageCrud {
         if (!storageService.startTransaction()) {
             return false; // fail to start transaction
         }
-        boolean result = storageService.update(Category.TABLE_NAME, categoryData, categoryKeys, categoryTypes);
-        if (result) {
-            storageService.commitTransaction();
-        } else {
-            storageService.abortTransaction();
+        try {
+            boolean result = storageService.update(Category.TABLE_NAME, categoryData, categoryKeys, categoryTypes);
+            if (result) {
+                storageService.commitTransaction();
+                recordChanges(1);
+            } else {
+                storageService.abortTransaction();
+            }
+            return result;
+        } finally {
+            abortUnfinishedTransaction();
         }
-        return result;
     }
 
     /**
@@ -460,15 +1072,21 @@ public class MySqlCrud extends StorageCrud {
         if (!storageService.startTransaction()) {
             return false; // fail to start transaction
         }
-        // Delete the item from the "Item" table where the ItemId matches the provided
-        // itemId.
-        boolean result = storageService.delete("Item", "ItemId", itemId);
-        if (result) {
-            storageService.commitTransaction();
-        } else {
-            storageService.abortTransaction();
+        try {
+            // Delete the item from the "Item" table where the ItemId matches the provided
+            // itemId.
+            boolean result = changeCategoryTotals(List.of(itemId), false)
+                    && storageService.delete("Item", "ItemId", itemId);
+            if (result) {
+                storageService.commitTransaction();
+                recordChanges(1);
+            } else {
+                storageService.abortTransaction();
+            }
+            return result;
+        } finally {
+            abortUnfinishedTransaction();
         }
-        return result;
     }
 
     @Override
@@ -476,14 +1094,17 @@ public class MySqlCrud extends StorageCrud {
         if (!storageService.startTransaction()) {
             return false; // fail to start transaction
         }
-
-        boolean result = storageService.delete(Bundle.TABLE_NAME, Bundle.BUNDLE_ID_KEY, bundleId);
-        if (result) {
-            storageService.commitTransaction();
-        } else {
-            storageService.abortTransaction();
+        try {
+            boolean result = storageService.delete(Bundle.TABLE_NAME, Bundle.BUNDLE_ID_KEY, bundleId);
+            if (result) {
+                storageService.commitTransaction();
+            } else {
+                storageService.abortTransaction();
+            }
+            return result;
+        } finally {
+            abortUnfinishedTransaction();
         }
-        return result;
     }
 
     @Override
@@ -491,14 +1112,18 @@ public class MySqlCrud extends StorageCrud {
         if (!storageService.startTransaction()) {
             return false; // fail to start transaction
         }
-
-        boolean result = storageService.delete(Category.TABLE_NAME, Category.CATEGORY_ID_KEY, categoryId);
-        if (result) {
-            storageService.commitTransaction();
-        } else {
-            storageService.abortTransaction();
+        try {
+            boolean result = storageService.delete(Category.TABLE_NAME, Category.CATEGORY_ID_KEY, categoryId);
+            if (result) {
+                storageService.commitTransaction();
+                recordChanges(1);
+            } else {
+                storageService.abortTransaction();
+            }
+            return result;
+        } finally {
+            abortUnfinishedTransaction();
         }
-        return result;
     }
 
 }
@@ -0,0 +1,51 @@
+package database;
+
+import java.util.List;
+
+/**
+ * A page of objects read from storage, along with the cursor to read the page
+ * after it.
+ */
+public class Page<T> {
+    private List<T> items;
+    private String nextCursor;
+
+    /**
+     * Creates a new Page.
+     * 
+     * @param items      The objects on this page.
+     * @param nextCursor The cursor to read the next page, or null if this is the
+     *                   last page.
+     */
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Gets the objects on this page.
+     * 
+     * @return The objects.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the cursor to read the next page.
+     * 
+     * @return The cursor, or null if this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Checks if there is a page after this one.
+     * 
+     * @return True if there is a next page, false otherwise.
+     */
+    public boolean hasNextPage() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,114 @@
+package database;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The position after the last row of a page, for reading the next page. It is
+ * handed to clients as an opaque string.
+ * <br>
+ * <br>
+ * A cursor remembers the sort it was made for, so it cannot be used to read a
+ * page of a different sort.
+ */
+public class PageCursor {
+    private static final String SEPARATOR = "\u0000";
+    private static final String NULL_VALUE = "N";
+    private static final String VALUE_PREFIX = "V";
+
+    private final String sortByKey;
+    private final boolean ascending;
+    private final String lastSortValue;
+    private final int lastId;
+
+    /**
+     * Creates a new PageCursor.
+     * 
+     * @param sortByKey     The key the rows are sorted by, or null if they are only
+     *                      ordered by ID.
+     * @param ascending     True if the rows are in ascending order, false
+     *                      otherwise.
+     * @param lastSortValue The sort value of the last row, or null if it has none.
+     * @param lastId        The ID of the last row.
+     */
+    public PageCursor(String sortByKey, boolean ascending, String lastSortValue, int lastId) {
+        this.sortByKey = sortByKey;
+        this.ascending = ascending;
+        this.lastSortValue = lastSortValue;
+        this.lastId = lastId;
+    }
+
+    /**
+     * Encodes this cursor as an opaque string.
+     * 
+     * @return The encoded cursor.
+     */
+    public String encode() {
+        String value = lastSortValue == null ? NULL_VALUE : VALUE_PREFIX + lastSortValue;
+        String cursor = (sortByKey == null ? "" : sortByKey) + SEPARATOR + ascending + SEPARATOR + lastId
+                + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor from the string made by {@link #encode()}.
+     * 
+     * @param encoded The encoded cursor.
+     * @return The cursor.
+     * @throws IllegalArgumentException If the string is not a valid cursor.
+     */
+    public static PageCursor decode(String encoded) {
+        String cursor;
+        try {
+            cursor = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException iae) {
+            throw new IllegalArgumentException("Invalid page cursor.", iae);
+        }
+
+        // the sort value is last, since it may hold anything
+        String[] parts = cursor.split(SEPARATOR, 4);
+        if (parts.length != 4 || !(parts[1].equals("true") || parts[1].equals("false"))) {
+            throw new IllegalArgumentException("Invalid page cursor.");
+        }
+
+        String sortByKey = parts[0].isEmpty() ? null : parts[0];
+        boolean ascending = Boolean.parseBoolean(parts[1]);
+        int lastId;
+        try {
+            lastId = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Invalid page cursor.", nfe);
+        }
+
+        String lastSortValue;
+        if (parts[3].equals(NULL_VALUE)) {
+            lastSortValue = null;
+        } else if (parts[3].startsWith(VALUE_PREFIX)) {
+            lastSortValue = parts[3].substring(VALUE_PREFIX.length());
+        } else {
+            throw new IllegalArgumentException("Invalid page cursor.");
+        }
+
+        return new PageCursor(sortByKey, ascending, lastSortValue, lastId);
+    }
+
+    /**
+     * Checks if this cursor was made for a sort.
+     * 
+     * @param sortByKey The key the rows are sorted by, or null.
+     * @param ascending True if the rows are in ascending order, false otherwise.
+     * @return True if the cursor belongs to the sort, false otherwise.
+     */
+    public boolean isFor(String sortByKey, boolean ascending) {
+        return Objects.equals(this.sortByKey, sortByKey) && this.ascending == ascending;
+    }
+
+    public String getLastSortValue() {
+        return lastSortValue;
+    }
+
+    public int getLastId() {
+        return lastId;
+    }
+}
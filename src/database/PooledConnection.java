@@ -0,0 +1,72 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A database connection owned by a {@link ConnectionPool}, along with the
+ * information the pool needs to manage it.
+ */
+public class PooledConnection {
+    private Connection connection;
+    private StatementCache statementCache;
+    private long lastReturnedNanos; // when this connection was last given back to the pool
+
+    /**
+     * Creates a new PooledConnection.
+     *
+     * @param connection The connection to the database.
+     */
+    public PooledConnection(Connection connection) {
+        this.connection = connection;
+        this.statementCache = new StatementCache(connection, StatementCache.DEFAULT_CAPACITY);
+        this.lastReturnedNanos = System.nanoTime();
+    }
+
+    /**
+     * Gets the connection to the database.
+     *
+     * @return The connection.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Gets the cache of prepared statements for this connection.
+     *
+     * @return The statement cache.
+     */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * Gets when this connection was last returned to the pool.
+     *
+     * @return The time, from {@link System#nanoTime()}.
+     */
+    public long getLastReturnedNanos() {
+        return lastReturnedNanos;
+    }
+
+    /**
+     * Marks this connection as having just been returned to the pool.
+     */
+    public void markReturned() {
+        this.lastReturnedNanos = System.nanoTime();
+    }
+
+    /**
+     * Closes the connection to the database, ignoring any errors since the
+     * connection is being thrown away.
+     */
+    public void closeQuietly() {
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException sqle) {
+            // nothing to do, the connection is gone either way
+        }
+    }
+}
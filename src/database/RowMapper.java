@@ -0,0 +1,20 @@
+package database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a result set to an object.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    /**
+     * Creates an object from the current row of a result set. NOTE: should not
+     * move the result set to another row.
+     * 
+     * @param resultSet The result set, positioned on the row to map.
+     * @return The object for the row.
+     * @throws SQLException If the row could not be read.
+     */
+    public T mapRow(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,60 @@
+package database;
+
+import java.util.List;
+
+/**
+ * A numbered change to the schema of the database, such as adding indexes to
+ * tables that already exist.
+ * <br>
+ * <br>
+ * Each database records the version of the newest migration applied to it, so
+ * a migration is only applied once. Statements that fail because their change
+ * is already in place (like creating an index that exists) are skipped, so a
+ * migration that was cut short can safely be applied again.
+ */
+public class SchemaMigration {
+    private int version;
+    private String description;
+    private List<String> statements;
+
+    /**
+     * Creates a new SchemaMigration.
+     *
+     * @param version     The version of the schema after this migration. Must be
+     *                    greater than 0 and unique among the migrations.
+     * @param description What this migration changes.
+     * @param statements  The statements to apply, in order.
+     */
+    public SchemaMigration(int version, String description, List<String> statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = statements;
+    }
+
+    /**
+     * Gets the version of the schema after this migration.
+     *
+     * @return The version.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets what this migration changes.
+     *
+     * @return The description.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets the statements to apply.
+     *
+     * @return The statements, in order.
+     */
+    public List<String> getStatements() {
+        return statements;
+    }
+}
@@ -0,0 +1,228 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import database.items.DataType;
+
+/**
+ * Describes a read of rows from a table: the columns to read, the tables to
+ * join, and optionally a value to search for, conditions to filter by, columns
+ * to group by, a column to sort by and a page of rows to read.
+ * <br>
+ * <br>
+ * Pages are read with a keyset: the rows are ordered by the sort column and
+ * then by a unique column, and each page starts after the last row of the page
+ * before it, so reading a page costs the same no matter how deep it is.
+ */
+public class SelectQuery {
+    private String tableName;
+    private List<String> keys;
+    private List<InnerObject> innerObjects;
+    private String searchKey;
+    private String searchValue;
+    private DataType searchType;
+    private String sortByKey;
+    private boolean ascending = true;
+    private String uniqueKey;
+    private boolean hasAfter = false;
+    private String afterSortValue;
+    private DataType afterSortType;
+    private int afterUniqueValue;
+    private int limit = NO_LIMIT;
+    private boolean outerJoin = false;
+    private List<String> groupByKeys;
+    private List<String> filters = new ArrayList<>();
+    private List<String> filterValues = new ArrayList<>();
+    private List<DataType> filterTypes = new ArrayList<>();
+
+    public static final int NO_LIMIT = -1;
+
+    /**
+     * Creates a new SelectQuery that reads every row of a table.
+     * 
+     * @param tableName    The table name.
+     * @param keys         The columns to read, in the order they are read. Columns
+     *                     of joined tables should be prefixed with their table
+     *                     name.
+     * @param innerObjects The inner objects to join with the table, or null if
+     *                     there are none.
+     */
+    public SelectQuery(String tableName, List<String> keys, List<InnerObject> innerObjects) {
+        this.tableName = tableName;
+        this.keys = keys;
+        this.innerObjects = innerObjects;
+    }
+
+    /**
+     * Only reads the rows where a column has a value.
+     * 
+     * @param searchKey   The column to search.
+     * @param searchValue The value to search for.
+     * @param searchType  The datatype of the value.
+     */
+    public void setSearch(String searchKey, String searchValue, DataType searchType) {
+        this.searchKey = searchKey;
+        this.searchValue = searchValue;
+        this.searchType = searchType;
+    }
+
+    /**
+     * Only reads the rows that meet a condition, such as comparing two of their
+     * columns. Every filter must be met.
+     * 
+     * @param condition  The SQL condition, with a {@code ?} for each value.
+     *                   Columns should be prefixed with their table name.
+     * @param values     The values to bind to the condition, in order.
+     * @param valueTypes The datatypes of the values.
+     */
+    public void addFilter(String condition, List<String> values, List<DataType> valueTypes) {
+        filters.add(condition);
+        filterValues.addAll(values);
+        filterTypes.addAll(valueTypes);
+    }
+
+    /**
+     * Sorts the rows by a column.
+     * 
+     * @param sortByKey The column to sort by, or null to leave the rows unsorted.
+     * @param ascending True to sort in ascending order, false to sort in
+     *                  descending order.
+     */
+    public void setSortBy(String sortByKey, boolean ascending) {
+        this.sortByKey = sortByKey;
+        this.ascending = ascending;
+    }
+
+    /**
+     * Orders rows with the same sort value by a unique column, so that every row
+     * has a fixed place in the order and pages can be read after a row.
+     * 
+     * @param uniqueKey The unique column, such as the table's ID.
+     */
+    public void setUniqueKey(String uniqueKey) {
+        this.uniqueKey = uniqueKey;
+    }
+
+    /**
+     * Only reads the rows that come after a row, in the order of the sort column
+     * and the unique column. NOTE: the unique key must be set.
+     * 
+     * @param afterSortValue   The sort value of the row, or null if it has none or
+     *                         there is no sort column.
+     * @param afterSortType    The datatype of the sort value.
+     * @param afterUniqueValue The unique value of the row.
+     */
+    public void setAfter(String afterSortValue, DataType afterSortType, int afterUniqueValue) {
+        this.hasAfter = true;
+        this.afterSortValue = afterSortValue;
+        this.afterSortType = afterSortType;
+        this.afterUniqueValue = afterUniqueValue;
+    }
+
+    /**
+     * Reads at most a number of rows.
+     * 
+     * @param limit The most rows to read, or {@link #NO_LIMIT}.
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Keeps the rows of the table that have no matching rows in the joined
+     * tables, reading the joined columns as null.
+     * 
+     * @param outerJoin True to keep the rows without matches, false to leave them
+     *                  out.
+     */
+    public void setOuterJoin(boolean outerJoin) {
+        this.outerJoin = outerJoin;
+    }
+
+    /**
+     * Groups the rows by columns, so that the query's keys can aggregate each
+     * group (such as {@code sum(Item.NumItems)}) into a single row.
+     * 
+     * @param groupByKeys The columns to group by, or null to not group the rows.
+     */
+    public void setGroupBy(List<String> groupByKeys) {
+        this.groupByKeys = groupByKeys;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public List<InnerObject> getInnerObjects() {
+        return innerObjects;
+    }
+
+    public String getSearchKey() {
+        return searchKey;
+    }
+
+    public String getSearchValue() {
+        return searchValue;
+    }
+
+    public DataType getSearchType() {
+        return searchType;
+    }
+
+    public String getSortByKey() {
+        return sortByKey;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public String getUniqueKey() {
+        return uniqueKey;
+    }
+
+    public boolean hasAfter() {
+        return hasAfter;
+    }
+
+    public String getAfterSortValue() {
+        return afterSortValue;
+    }
+
+    public DataType getAfterSortType() {
+        return afterSortType;
+    }
+
+    public int getAfterUniqueValue() {
+        return afterUniqueValue;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isOuterJoin() {
+        return outerJoin;
+    }
+
+    public List<String> getGroupByKeys() {
+        return groupByKeys;
+    }
+
+    public List<String> getFilters() {
+        return filters;
+    }
+
+    public List<String> getFilterValues() {
+        return filterValues;
+    }
+
+    public List<DataType> getFilterTypes() {
+        return filterTypes;
+    }
+}
@@ -0,0 +1,115 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of the prepared statements for one connection,
+ * so that statements of the same shape are only prepared once.
+ * <br>
+ * <br>
+ * Statements are keyed by their parameterized SQL, which only depends on the
+ * shape of the statement (its operation, table and columns) and never on the
+ * values bound to it. Like the connection it belongs to, a StatementCache must
+ * only be used by one thread at a time.
+ */
+public class StatementCache {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    /**
+     * Creates a new StatementCache.
+     *
+     * @param connection The connection the statements are prepared on.
+     * @param capacity   The most statements to keep prepared at once.
+     */
+    public StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        // access order, so the eldest entry is the least recently used
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the prepared statement for some SQL, preparing it if it is not cached.
+     * NOTE: The statement belongs to the cache and must not be closed by the user
+     * of this function.
+     *
+     * @param sql The parameterized SQL.
+     * @return The prepared statement.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Gets the prepared statement for some SQL, preparing it if it is not cached.
+     * NOTE: The statement belongs to the cache and must not be closed by the user
+     * of this function.
+     *
+     * @param sql               The parameterized SQL.
+     * @param autoGeneratedKeys Whether the statement returns the keys it
+     *                          generates, either
+     *                          {@link Statement#RETURN_GENERATED_KEYS} or
+     *                          {@link Statement#NO_GENERATED_KEYS}.
+     * @return The prepared statement.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        // the same SQL prepared differently is a different statement
+        String cacheKey = autoGeneratedKeys + ":" + sql;
+        PreparedStatement statement = statements.get(cacheKey);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql, autoGeneratedKeys);
+            statements.put(cacheKey, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Gets the number of statements currently cached.
+     *
+     * @return The number of cached statements.
+     */
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes every cached statement.
+     */
+    public void clear() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    /**
+     * Closes a statement that is no longer cached.
+     *
+     * @param statement The statement.
+     */
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException sqle) {
+            // nothing to do, the statement is being thrown away
+        }
+    }
+}
@@ -1,21 +1,13 @@
 package database;
 
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 import database.items.DataType;
 
 public interface Storage extends AutoCloseable {
     // TODO: Might be best to just have functions for read, create, update, and
     // delete
 
-    /**
-     * Retrieves the next auto-increment ID value for a given table.
-     * 
-     * @param tableName The name of the table.
-     * @return The next auto-increment ID, or -1 if the query fails.
-     */
-    public int getNextIncrementedId(String tableName);
-
     /**
      * Updates a row of the storage.
      * 
@@ -27,6 +19,31 @@ public interface Storage extends AutoCloseable {
      */
     public boolean update(String tableName, List<String> data, List<String> keys, List<DataType> dataTypes);
 
+    /**
+     * Updates many rows of a table at once.
+     * 
+     * @param tableName The table name.
+     * @param rows      The rows of data to update. NOTE: each row should have the
+     *                  same size and have the same data in the same order as keys.
+     * @param keys      The keys for the data. The first key should be the unique
+     *                  identifier of the rows.
+     * @param dataTypes The datatypes of the keys.
+     * @return True if successful, false otherwise.
+     */
+    public boolean updateBatch(String tableName, List<List<String>> rows, List<String> keys,
+            List<DataType> dataTypes);
+
+    /**
+     * Executes a parameterized statement that changes the storage, for changes
+     * that are not made to one row at a time.
+     * 
+     * @param statement  The parameterized statement.
+     * @param values     The values to bind to the statement.
+     * @param valueTypes The datatypes of the values.
+     * @return The number of rows changed, or -1 upon failure.
+     */
+    public int executeUpdate(String statement, List<String> values, List<DataType> valueTypes);
+
     /**
      * Deletes a row of the storage.
      * 
@@ -38,61 +55,62 @@ public interface Storage extends AutoCloseable {
     public boolean delete(String tableName, String key, int value);
 
     /**
-     * Reads a single value from the storage device, including
-     * any sub-objects.
+     * Reads the rows described by a query, mapping each one to an object.
      * 
-     * @param tableName The table name.
-     * @param id        The ID of the object.
-     * @param keys      The keys to read from the object.
-     * @return A Map containing the keys, along with the values pulled from the
-     *         Storage.
+     * @param query     The query. The row mapper reads its keys in order.
+     * @param rowMapper Maps each row to an object.
+     * @return The mapped objects, or an empty list if an error occurred when
+     *         reading.
      */
-    public Map<String, String> read(String tableName, int id, List<String> keys);
+    public <T> List<T> readObjects(SelectQuery query, RowMapper<T> rowMapper);
 
     /**
-     * Reads all objects from a table.
-     * 
-     * @param tableName    The table name.
-     * @param keys         The keys to read.
-     * @param innerObjects The inner objects to read, or null if there are no inner
-     *                     objects in this table (for joins with MySQL, for
-     *                     example).
-     * @return A list of map data for each object read.
+     * Reads the rows described by a query one at a time, without holding all of
+     * them in memory. Each row is mapped to an object and handed to the consumer
+     * before the next row is read. NOTE: the consumer must not use this Storage,
+     * since the rows are still being read.
+     * 
+     * @param query     The query. The row mapper reads its keys in order.
+     * @param rowMapper Maps each row to an object.
+     * @param consumer  Takes each mapped object.
+     * @return True if every row was read, false otherwise.
      */
-    public List<Map<String, String>> readAll(String tableName, List<String> keys, List<InnerObject> innerObjects);
+    public <T> boolean readEach(SelectQuery query, RowMapper<T> rowMapper, Consumer<T> consumer);
 
     /**
-     * Reads all values from the storage device and sorts them by a specified key.
+     * Creates an entry to a table.
      * 
      * @param tableName The table name.
-     * @param keys      The keys to read from the object.
-     * @param sortByKey The key to sort the results by.
-     * @param ascending Whether to sort in ascending (true) or descending (false)
-     *                  order.
-     * @return A List of Maps containing the keys, along with the values pulled from
-     *         the Storage, sorted by the specified key.
+     * @param data      The data to put into the database.
+     * @param keys      The keys of the data to put into the database. NOTE: should
+     *                  have the same size and have the same data in the same order
+     *                  as data.
+     * @param dataTypes The datatypes of the data to put into the database. NOTE:
+     *                  should have the same size and have the same data in the same
+     *                  order as data.
+     * 
+     * @return True if successful, false otherwise.
      */
-    public List<Map<String, String>> readAllSortBy(String tableName, List<String> keys, String sortByKey,
-            boolean ascending);
+    public boolean create(String tableName, List<String> data, List<String> keys, List<DataType> dataTypes);
 
     /**
-     * Reads all values that are equal to the
-     * 
-     * @param tableName   The table name.
-     * @param keys        The keys to read from the object.
-     * @param haystackKey The name of the "haystack" to search through. The column
-     *                    name of what we are looking for.
-     * @param needleValue The "needle" value that we are searching through the
-     *                    haystack for.
-     * @param needleType  The datatype of the needle.
-     * @return A List of Maps containing the keys, along with the values pulled from
-     *         the Storage.
+     * Creates many entries in a table at once.
+     * 
+     * @param tableName The table name.
+     * @param rows      The rows of data to put into the database. NOTE: each row
+     *                  should have the same size and have the same data in the same
+     *                  order as keys.
+     * @param keys      The keys of the data to put into the database.
+     * @param dataTypes The datatypes of the data to put into the database. NOTE:
+     *                  should have the same size and order as keys.
+     * 
+     * @return True if successful, false otherwise.
      */
-    public List<Map<String, String>> readSearchRow(String tableName, List<String> keys, String haystackKey,
-            String needleValue, DataType needleType);
+    public boolean createBatch(String tableName, List<List<String>> rows, List<String> keys,
+            List<DataType> dataTypes);
 
     /**
-     * Creates an entry to a table.
+     * Creates an entry to a table and gets the ID that was generated for it.
      * 
      * @param tableName The table name.
      * @param data      The data to put into the database.
@@ -103,9 +121,27 @@ public interface Storage extends AutoCloseable {
      *                  should have the same size and have the same data in the same
      *                  order as data.
      * 
-     * @return True if successful, false otherwise.
+     * @return The generated ID, or -1 upon failure.
      */
-    public boolean create(String tableName, List<String> data, List<String> keys, List<DataType> dataTypes);
+    public int createAndGetId(String tableName, List<String> data, List<String> keys, List<DataType> dataTypes);
+
+    /**
+     * Creates many entries in a table at once and gets the IDs that were generated
+     * for them.
+     * 
+     * @param tableName The table name.
+     * @param rows      The rows of data to put into the database. NOTE: each row
+     *                  should have the same size and have the same data in the same
+     *                  order as keys.
+     * @param keys      The keys of the data to put into the database.
+     * @param dataTypes The datatypes of the data to put into the database. NOTE:
+     *                  should have the same size and order as keys.
+     * 
+     * @return The generated IDs in the same order as the rows, or null upon
+     *         failure.
+     */
+    public List<Integer> createBatchAndGetIds(String tableName, List<List<String>> rows, List<String> keys,
+            List<DataType> dataTypes);
 
     /**
      * Start database transaction.
@@ -114,6 +150,15 @@ public interface Storage extends AutoCloseable {
      */
     public boolean startTransaction();
 
+    /**
+     * Start a read-only database transaction, so that several reads all see the
+     * same snapshot of the data. Finish it with {@link #commitTransaction()} like
+     * any other transaction. Single reads do not need one.
+     * 
+     * @return True if successful, false otherwise.
+     */
+    public boolean startReadOnlyTransaction();
+
     /**
      * Commit database transaction.
      * 
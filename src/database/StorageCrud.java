@@ -1,21 +1,59 @@
 package database;
 
 import database.items.*;
+import java.sql.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public abstract class StorageCrud {
+    // the most characters storage keeps in a name, SKU or description
+    public static final int MAX_NAME_LENGTH = 255;
+    public static final int MAX_DESCRIPTION_LENGTH = 1024;
+    // prices and percentages are kept with two decimals and up to 18 digits before them
+    public static final double MAX_AMOUNT = 1e18;
+
     protected Storage storageService;
+    // the number of Items and Categories changed through this object
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * Gets the number of Items and Categories that have been created, updated or
+     * deleted through this object, so that results computed from them can tell
+     * how much has changed since. Changes made by others are not counted.
+     * 
+     * @return The number of changes so far.
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
 
     /**
-     * Find the next incremented ID from the provided table (Item, Category).
+     * Counts changes that have been committed to Items or Categories.
      * 
-     * @param tableName The table name to search for in Storage.
-     * @return The table's next incremented ID.
+     * @param changes The number of Items or Categories changed.
      */
-    public abstract int getNextId(String tableName);
+    protected void recordChanges(long changes) {
+        changeCount.addAndGet(changes);
+    }
 
     /**
-     * Creates an Item in Storage from the provided item.
+     * Performs several reads that all see the same snapshot of Storage, so data
+     * changed by others in between the reads cannot make them disagree. Single
+     * reads already see a consistent snapshot and do not need this.
+     * NOTE: Only reads may be performed, since creating, updating or deleting
+     * ends the snapshot.
+     * 
+     * @param reads The reads to perform.
+     * @return The result of the reads, or null if the snapshot could not be
+     *         started.
+     */
+    public abstract <T> T readTogether(Supplier<T> reads);
+
+    /**
+     * Creates an Item in Storage from the provided item. The Item is given its
+     * new ID, and a SKU if it did not have one.
      * 
      * @param item The object to store in the Storage.
      * @return True upon success, false upon failure.
@@ -23,7 +61,31 @@ public abstract class StorageCrud {
     public abstract boolean createItem(Item item);
 
     /**
-     * Creates a Bundle in Storage from the provided item.
+     * Creates many Items in Storage at once. Either all of the Items are created
+     * or none of them are. Each Item is given its new ID, and a SKU if it did not
+     * have one.
+     * 
+     * @param items The objects to store in the Storage.
+     * @return True upon success, false upon failure.
+     */
+    public abstract boolean createItems(List<Item> items);
+
+    /**
+     * Creates many Items in Storage at once, and saves how far the import they
+     * were read from has got. Either all of the Items are created and the
+     * checkpoint saved, or neither is, so an import started again from its
+     * checkpoint never creates the same Items twice.
+     * 
+     * @param items      The objects to store in the Storage, which may be empty.
+     * @param checkpoint The checkpoint of the import, replacing any saved for the
+     *                   same file.
+     * @return True upon success, false upon failure.
+     */
+    public abstract boolean createItems(List<Item> items, ImportCheckpoint checkpoint);
+
+    /**
+     * Creates a Bundle in Storage from the provided item. The Bundle is given its
+     * new ID.
      * 
      * @param bundle The object to store in the Storage.
      * @return True upon success, false upon failure.
@@ -31,13 +93,23 @@ public abstract class StorageCrud {
     public abstract boolean createBundle(Bundle bundle);
 
     /**
-     * Creates a Category in Storage from the provided item.
+     * Creates a Category in Storage from the provided item. The Category is given
+     * its new ID.
      * 
      * @param category The object to store in the Storage.
      * @return True upon success, false upon failure.
      */
     public abstract boolean createCategory(Category category);
 
+    /**
+     * Creates many Categories in Storage at once, in a single transaction. Each
+     * Category is given its new ID.
+     * 
+     * @param categories The objects to store in the Storage.
+     * @return True upon success, false upon failure.
+     */
+    public abstract boolean createCategories(List<Category> categories);
+
     /**
      * Reads an Item in Storage from the provided ID.
      * 
@@ -64,6 +136,125 @@ public abstract class StorageCrud {
      */
     public abstract List<Item> readAllItemsSortBy(String key, boolean isAscending);
 
+    /**
+     * Reads a page of Items, sorted by the specified data and then by their IDs.
+     * Every page takes the same time to read, no matter how many pages come
+     * before it.
+     * 
+     * @param key         The data to sort by, or null to only sort by ID.
+     * @param isAscending Sort by ascending (true) or decending (false).
+     * @param pageSize    The most Items on the page.
+     * @param cursor      The cursor of the page before this one, or null to read
+     *                    the first page.
+     * @return The page of Items.
+     * @throws IllegalArgumentException If the key, page size or cursor is not
+     *                                  valid, or the cursor belongs to a
+     *                                  different sort.
+     * @throws RuntimeException         If the page could not be read, so that a
+     *                                  failed read is not taken for the last
+     *                                  page.
+     */
+    public abstract Page<Item> readItemsPage(String key, boolean isAscending, int pageSize, String cursor)
+            throws RuntimeException;
+
+    /**
+     * Reads the Items that are at or below their low inventory threshold, without
+     * reading any other Items.
+     * 
+     * @return The Items, sorted by ID, or null upon failure.
+     */
+    public abstract List<Item> readLowInventoryItems();
+
+    /**
+     * Reads the Items that have gone unsold for longer than they should be sold
+     * within since they were last modified, without reading any other Items.
+     * 
+     * @param today The date to count the days up to.
+     * @return The Items, sorted by ID, or null upon failure.
+     */
+    public abstract List<Item> readUnsoldItems(Date today);
+
+    /**
+     * Reads the low inventory Items with the largest deficits below their
+     * thresholds, without reading any other Items.
+     * 
+     * @param limit The most Items to read.
+     * @return The Items, from the largest deficit down and then by ID, or null
+     *         upon failure.
+     */
+    public abstract List<Item> readLowInventoryItemsByDeficit(int limit);
+
+    /**
+     * Reads the unsold Items that are the most days past the date they were
+     * expected to be sold by, counted from when they were created, without
+     * reading any other Items.
+     * 
+     * @param today The date to count the days up to.
+     * @param limit The most Items to read.
+     * @return The Items, from the most days overdue down and then by ID, or null
+     *         upon failure.
+     */
+    public abstract List<Item> readUnsoldItemsByDaysOverdue(Date today, int limit);
+
+    /**
+     * Reads the totals of the Items of every Category in storage, which are kept
+     * up to date as Items are created, updated and deleted, so neither the Items
+     * nor their totals are read.
+     * 
+     * @return The totals, one for each Category, or null upon failure.
+     */
+    public abstract List<CategoryVolume> readCategoryVolumes();
+
+    /**
+     * Totals the Items of every Category again and corrects any of the kept
+     * totals that do not match. The kept totals should never drift, so this only
+     * needs to be done occasionally, as a safeguard.
+     * 
+     * @return The number of Categories whose totals were corrected, or -1 upon
+     *         failure.
+     */
+    public abstract int reconcileCategoryVolumes();
+
+    /**
+     * Reads a summary of all Items in storage for listing them, leaving out each
+     * Item's description.
+     * 
+     * @param key         The data to sort by, or null to leave the Items unsorted.
+     * @param isAscending Sort by ascending (true) or decending (false).
+     * @return The read Items from storage without their descriptions, or an empty
+     *         list, if none were found.
+     */
+    public abstract List<Item> readAllItemSummaries(String key, boolean isAscending);
+
+    /**
+     * Reads every Item in storage one at a time, without holding all of them in
+     * memory.
+     * 
+     * @param consumer Takes each read Item. Must not use this StorageCrud.
+     * @return True if every Item was read, false otherwise.
+     */
+    public abstract boolean forEachItem(Consumer<Item> consumer);
+
+    /**
+     * Reads every Item in storage one at a time, sorted by the specified data,
+     * without holding all of them in memory.
+     * 
+     * @param key         The data to sort by.
+     * @param isAscending Sort by ascending (true) or descending (false).
+     * @param consumer    Takes each read Item. Must not use this StorageCrud.
+     * @return True if every Item was read, false otherwise.
+     */
+    public abstract boolean forEachItemSortBy(String key, boolean isAscending, Consumer<Item> consumer);
+
+    /**
+     * Reads every Category in storage one at a time, without holding all of them
+     * in memory.
+     * 
+     * @param consumer Takes each read Category. Must not use this StorageCrud.
+     * @return True if every Category was read, false otherwise.
+     */
+    public abstract boolean forEachCategory(Consumer<Category> consumer);
+
     /**
      * Reads all Bundle objects in storage.
      * 
@@ -72,6 +263,15 @@ public abstract class StorageCrud {
      */
     public abstract List<Bundle> readAllBundles();
 
+    /**
+     * Reads every Bundle in storage, with their Items, and gives each one to the
+     * consumer once they have all been read.
+     * 
+     * @param consumer Takes each read Bundle.
+     * @return True if every Bundle was read, false otherwise.
+     */
+    public abstract boolean forEachBundle(Consumer<Bundle> consumer);
+
     /**
      * Reads an Item by name.
      * 
@@ -100,6 +300,17 @@ public abstract class StorageCrud {
      */
     public abstract List<Category> readCategoryByName(String name);
 
+    /**
+     * Reads the Categories with any of the given names, looking them up together
+     * rather than one at a time.
+     * 
+     * @param names The names of the Categories.
+     * 
+     * @return The read Categories from storage, an empty list if none were found,
+     *         or null if they could not be read.
+     */
+    public abstract List<Category> readCategoriesByName(List<String> names);
+
     /**
      * Reads all Category objects in storage.
      * 
@@ -108,6 +319,26 @@ public abstract class StorageCrud {
      */
     public abstract List<Category> readAllCategories();
 
+    /**
+     * Reads the checkpoint saved for an import of a file.
+     * 
+     * @param filePath The absolute path of the file.
+     * 
+     * @return The checkpoint, or null if none was found.
+     * @throws RuntimeException If the checkpoint could not be read, so that a
+     *                          failed read is not taken for there being none.
+     */
+    public abstract ImportCheckpoint readImportCheckpoint(String filePath) throws RuntimeException;
+
+    /**
+     * Deletes the checkpoint saved for an import of a file, once the import has
+     * finished.
+     * 
+     * @param filePath The absolute path of the file.
+     * @return True upon success, false upon failure.
+     */
+    public abstract boolean deleteImportCheckpoint(String filePath);
+
     /**
      * Reads a Category in Storage from the provided ID.
      * 
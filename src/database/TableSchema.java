@@ -0,0 +1,143 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import database.items.Bundle;
+import database.items.Category;
+import database.items.DataType;
+import database.items.Item;
+import database.items.ObjectService;
+
+/**
+ * Describes the columns of a table in the order they are read, so that rows
+ * can be read by column index instead of by name.
+ * <br>
+ * <br>
+ * The schemas of the tables are built once and shared.
+ */
+public class TableSchema {
+    public static final TableSchema ITEM = new TableSchema(Item.TABLE_NAME, ObjectService.getItemKeys(),
+            ObjectService.getItemDataTypes());
+    public static final TableSchema CATEGORY = new TableSchema(Category.TABLE_NAME, ObjectService.getCategoryKeys(),
+            ObjectService.getCategoryDataTypes());
+    public static final TableSchema BUNDLE = new TableSchema(Bundle.TABLE_NAME, ObjectService.getBundleKeys(),
+            ObjectService.getBundleDataTypes());
+
+    private static final Map<String, TableSchema> SCHEMAS = Map.of(ITEM.getTableName(), ITEM,
+            CATEGORY.getTableName(), CATEGORY, BUNDLE.getTableName(), BUNDLE);
+
+    private final String tableName;
+    private final List<String> columns;
+    private final List<String> qualifiedColumns;
+    private final List<DataType> dataTypes;
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+
+    /**
+     * Creates a new TableSchema.
+     * 
+     * @param tableName The name of the table.
+     * @param columns   The columns of the table, in order.
+     * @param dataTypes The datatypes of the columns. NOTE: should have the same
+     *                  size and order as columns.
+     */
+    public TableSchema(String tableName, List<String> columns, List<DataType> dataTypes) {
+        if (columns.size() != dataTypes.size()) {
+            throw new IllegalArgumentException("Columns and dataTypes must have the same size.");
+        }
+        this.tableName = tableName;
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.dataTypes = Collections.unmodifiableList(new ArrayList<>(dataTypes));
+
+        List<String> qualified = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            columnIndexes.put(columns.get(i), i);
+            qualified.add(tableName + "." + columns.get(i));
+        }
+        this.qualifiedColumns = Collections.unmodifiableList(qualified);
+    }
+
+    /**
+     * Gets the schema of a table.
+     * 
+     * @param tableName The name of the table.
+     * @return The schema, or null if the table has no known schema.
+     */
+    public static TableSchema forTable(String tableName) {
+        return SCHEMAS.get(tableName);
+    }
+
+    /**
+     * Gets the name of the table.
+     * 
+     * @return The table name.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Gets the columns of the table.
+     * 
+     * @return The columns, in order.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the columns of the table, each prefixed with the table name so they
+     * can be selected from a join.
+     * 
+     * @return The qualified columns, in order.
+     */
+    public List<String> getQualifiedColumns() {
+        return qualifiedColumns;
+    }
+
+    /**
+     * Gets the datatypes of the columns.
+     * 
+     * @return The datatypes, in the same order as the columns.
+     */
+    public List<DataType> getDataTypes() {
+        return dataTypes;
+    }
+
+    /**
+     * Gets the number of columns in the table.
+     * 
+     * @return The number of columns.
+     */
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * Checks if the table has a column.
+     * 
+     * @param column The column.
+     * @return True if the table has the column, false otherwise.
+     */
+    public boolean hasColumn(String column) {
+        return columnIndexes.containsKey(column);
+    }
+
+    /**
+     * Gets the position of a column in the table.
+     * 
+     * @param column The column.
+     * @return The position of the column, starting from 0.
+     * @throws IllegalArgumentException If the table does not have the column.
+     */
+    public int indexOf(String column) {
+        Integer index = columnIndexes.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("The " + tableName + " table has no column " + column);
+        }
+        return index;
+    }
+}
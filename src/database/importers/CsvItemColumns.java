@@ -0,0 +1,184 @@
+package database.importers;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import database.items.Category;
+import database.items.ObjectService;
+
+/**
+ * Where each key of an imported Item is read from in the rows of a CSV file,
+ * worked out once from the file's header.
+ */
+class CsvItemColumns {
+    private final List<String> keys;
+    private final int[] columns;
+    private final boolean[] isItemKey;
+    private final boolean[] isCategoryKey;
+    private final int itemCapacity;
+    private final int categoryCapacity;
+    private final int numFieldsRequired;
+
+    /**
+     * Creates a new CsvItemColumns from the header of a CSV file.
+     *
+     * @param parser The parser, on the header row.
+     * @throws IllegalArgumentException If required columns are missing in the CSV
+     *                                  header
+     */
+    CsvItemColumns(CsvParser parser) {
+        // Required column names (case-sensitive)
+        keys = ObjectService.getItemKeysRequired();
+        // we want to have all the category values as well, without the ID, since Item
+        // should have its ID
+        keys.addAll(ObjectService.getCategoryKeysRequired());
+
+        // remove the category ID
+        keys.remove(Category.CATEGORY_ID_KEY);
+
+        // This is used to handle the case where the client has the right headers but in
+        // teh wrong order
+        Map<String, Integer> columnIndexMap = new HashMap<>();
+
+        // Create mapping of column names to their indices
+        for (int i = 0; i < parser.getFieldCount(); i++) {
+            String normalizedHeader = parser.getString(i).trim();
+            columnIndexMap.put(normalizedHeader, i);
+        }
+
+        // Validate that all required columns exist
+        for (String key : keys) {
+            if (!columnIndexMap.containsKey(key)) {
+                throw new IllegalArgumentException(
+                        String.format("Missing required column: '%s' in CSV header", key));
+            }
+        }
+
+        final List<String> itemKeys = ObjectService.getItemKeys();
+        final List<String> categoryKeys = ObjectService.getCategoryKeys();
+        int numKeys = keys.size();
+        columns = new int[numKeys];
+        isItemKey = new boolean[numKeys];
+        isCategoryKey = new boolean[numKeys];
+        int numItemKeys = 0;
+        int numCategoryKeys = 0;
+        int maxColumn = 0;
+        for (int i = 0; i < numKeys; i++) {
+            String key = keys.get(i);
+            columns[i] = columnIndexMap.get(key);
+            maxColumn = Math.max(maxColumn, columns[i]);
+
+            // NOTE: a key can be in both sets
+            isItemKey[i] = itemKeys.contains(key);
+            isCategoryKey[i] = categoryKeys.contains(key);
+            numItemKeys += isItemKey[i] ? 1 : 0;
+            numCategoryKeys += isCategoryKey[i] ? 1 : 0;
+        }
+        numFieldsRequired = maxColumn + 1;
+        // sized so they are never resized, leaving room for the IDs added later
+        itemCapacity = (numItemKeys + 1) * 4 / 3 + 1;
+        categoryCapacity = (numCategoryKeys + 1) * 4 / 3 + 1;
+    }
+
+    /**
+     * Checks if the current row has a field for every key, so that it is not
+     * malformed or blank.
+     *
+     * @param parser The parser, on the row.
+     * @return True if the row has every field, false otherwise.
+     */
+    boolean isComplete(CsvParser parser) {
+        return parser.getFieldCount() >= numFieldsRequired;
+    }
+
+    /**
+     * Checks if a row has a field for every key, so that it is not malformed.
+     *
+     * @param row The row.
+     * @return True if the row has every field, false otherwise.
+     */
+    boolean isComplete(CsvRow row) {
+        return row.getFieldCount() >= numFieldsRequired;
+    }
+
+    /**
+     * Gets the number of fields a row needs to have a field for every key.
+     *
+     * @return The number of fields.
+     */
+    int getNumFieldsRequired() {
+        return numFieldsRequired;
+    }
+
+    /**
+     * Gets the keys, in the order of the values of a row.
+     *
+     * @return The keys.
+     */
+    List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Reads the value of each key from the current row. The keys a malformed row
+     * has no field for are given empty values.
+     *
+     * @param parser The parser, on the row.
+     * @return The values, in the order of the keys.
+     */
+    String[] readValues(CsvParser parser) {
+        String[] values = new String[columns.length];
+        int fieldCount = parser.getFieldCount();
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = columns[i] < fieldCount ? parser.getString(columns[i]).trim() : "";
+        }
+        return values;
+    }
+
+    /**
+     * Reads the current row with where it is in the file, unless it is blank.
+     *
+     * @param parser The parser, on the row.
+     * @return The row, or null if the row is blank.
+     */
+    CsvRow readRow(CsvParser parser) {
+        if (parser.getFieldCount() == 1 && parser.isEmpty(0)) {
+            return null; // blank rows are skipped, not rejected
+        }
+        return new CsvRow(readValues(parser), parser.getFieldCount(), parser.getRowNumber(),
+                parser.getRowEndOffset());
+    }
+
+    /**
+     * Gets the Item data from the values of a row.
+     *
+     * @param values The values, from {@link #readValues(CsvParser)}.
+     * @return The Item data.
+     */
+    Map<String, String> toItemData(String[] values) {
+        Map<String, String> itemData = new HashMap<>(itemCapacity);
+        for (int i = 0; i < values.length; i++) {
+            if (isItemKey[i]) {
+                itemData.put(keys.get(i), values[i]);
+            }
+        }
+        return itemData;
+    }
+
+    /**
+     * Gets the Category data from the values of a row.
+     *
+     * @param values The values, from {@link #readValues(CsvParser)}.
+     * @return The Category data.
+     */
+    Map<String, String> toCategoryData(String[] values) {
+        Map<String, String> categoryData = new HashMap<>(categoryCapacity);
+        for (int i = 0; i < values.length; i++) {
+            if (isCategoryKey[i]) {
+                categoryData.put(keys.get(i), values[i]);
+            }
+        }
+        return categoryData;
+    }
+}
@@ -0,0 +1,396 @@
+package database.importers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Reads the rows of a CSV file as described by RFC 4180, one row at a time.
+ * <br>
+ * <br>
+ * Fields are separated by commas and rows by LF or CRLF. A field in double
+ * quotes may hold commas, line breaks and double quotes, which are written
+ * twice. The input is read as UTF-8 in large blocks, and only the fields of the
+ * current row are kept, so a file of any size is read with the same memory.
+ * <br>
+ * <br>
+ * Input that does not follow RFC 4180 is read rather than rejected: a quote in
+ * the middle of an unquoted field is kept as it is, text after a closing quote
+ * is added to the field, and a quoted field left open at the end of the input
+ * ends there.
+ */
+public class CsvParser implements AutoCloseable {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte DELIMITER = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte[] UTF_8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    // the offset in the input of the start of the buffer
+    private long bufferOffset;
+
+    // the fields of the current row, with their quotes removed, one after another
+    private byte[] row = new byte[1024];
+    private int rowLength;
+    // where each field of the current row ends in row, each starting where the one
+    // before it ends
+    private int[] fieldEnds = new int[16];
+    private int fieldCount;
+    private long rowNumber;
+    private long rowOffset;
+    private long rowEndOffset;
+
+    /**
+     * Creates a new CsvParser.
+     *
+     * @param in the input to read, which is closed with the parser
+     */
+    public CsvParser(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new CsvParser.
+     *
+     * @param in         the input to read, which is closed with the parser
+     * @param bufferSize the number of bytes to read from the input at a time
+     */
+    public CsvParser(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Creates a new CsvParser for input that starts part way through a CSV file,
+     * at the start of a row, so that offsets and row numbers are those of the
+     * file.
+     *
+     * @param in        the input to read, which is closed with the parser
+     * @param offset    the offset in the file of the start of the input
+     * @param rowNumber the number of rows in the file before the input
+     */
+    public CsvParser(InputStream in, long offset, long rowNumber) {
+        this(in);
+        this.bufferOffset = offset;
+        this.rowNumber = rowNumber;
+        this.rowEndOffset = offset;
+    }
+
+    /**
+     * Reads the next row.
+     *
+     * @return true if a row was read, false if there are no more rows
+     * @throws IOException if the input could not be read
+     */
+    public boolean nextRow() throws IOException {
+        if (position >= limit && !fill()) {
+            return false;
+        }
+        if (rowNumber == 0 && bufferOffset == 0 && position == 0) {
+            skipByteOrderMark();
+        }
+
+        rowOffset = bufferOffset + position;
+        rowLength = 0;
+        fieldCount = 0;
+        while (true) {
+            if ((position < limit || fill()) && buffer[position] == QUOTE) {
+                position++;
+                readQuotedField();
+            } else {
+                readUnquotedField();
+            }
+            endField();
+
+            if (position >= limit && !fill()) {
+                break; // the last row has no line break
+            }
+            byte terminator = buffer[position++];
+            if (terminator == DELIMITER) {
+                continue;
+            }
+            if (terminator == CR && (position < limit || fill()) && buffer[position] == LF) {
+                position++;
+            }
+            break;
+        }
+        rowEndOffset = bufferOffset + position;
+        rowNumber++;
+        return true;
+    }
+
+    /**
+     * Gets the number of fields in the current row.
+     *
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Gets the number of the current row, counting from 1. Rows are counted as
+     * they are read, not by line, since a quoted field may hold line breaks.
+     *
+     * @return the row number, or 0 if no row has been read
+     */
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * Gets the offset in the input of the first byte of the current row.
+     *
+     * @return the offset of the row
+     */
+    public long getRowOffset() {
+        return rowOffset;
+    }
+
+    /**
+     * Gets the offset in the input just after the current row and its line break,
+     * where the next row starts.
+     *
+     * @return the offset after the row
+     */
+    public long getRowEndOffset() {
+        return rowEndOffset;
+    }
+
+    /**
+     * Checks if a field of the current row is empty.
+     *
+     * @param index the index of the field
+     * @return true if the field is empty, false otherwise
+     * @throws IndexOutOfBoundsException if the row has no field at the index
+     */
+    public boolean isEmpty(int index) {
+        return fieldStart(index) == fieldEnds[index];
+    }
+
+    /**
+     * Gets a field of the current row as a String.
+     *
+     * @param index the index of the field
+     * @return the field, without its quotes
+     * @throws IndexOutOfBoundsException if the row has no field at the index
+     */
+    public String getString(int index) {
+        int start = fieldStart(index);
+        return new String(row, start, fieldEnds[index] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets a field of the current row as an int, without creating a String for it.
+     * Spaces around the number are ignored.
+     *
+     * @param index the index of the field
+     * @return the field's value
+     * @throws IndexOutOfBoundsException if the row has no field at the index
+     * @throws NumberFormatException     if the field is not an int
+     */
+    public int getInt(int index) {
+        int start = fieldStart(index);
+        int end = fieldEnds[index];
+        while (start < end && row[start] == ' ') {
+            start++;
+        }
+        while (end > start && row[end - 1] == ' ') {
+            end--;
+        }
+
+        boolean negative = start < end && row[start] == '-';
+        if (start < end && (row[start] == '-' || row[start] == '+')) {
+            start++;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Field " + index + " is not an int: \"" + getString(index) + "\"");
+        }
+
+        // accumulated as a negative number, which can hold Integer.MIN_VALUE
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = row[i] - '0';
+            value = value * 10 - digit;
+            if (digit < 0 || digit > 9 || value < Integer.MIN_VALUE) {
+                throw new NumberFormatException("Field " + index + " is not an int: \"" + getString(index) + "\"");
+            }
+        }
+        if (!negative) {
+            value = -value;
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Field " + index + " is not an int: \"" + getString(index) + "\"");
+            }
+        }
+        return (int) value;
+    }
+
+    /**
+     * Gets a field of the current row as a double.
+     *
+     * @param index the index of the field
+     * @return the field's value
+     * @throws IndexOutOfBoundsException if the row has no field at the index
+     * @throws NumberFormatException     if the field is not a double
+     */
+    public double getDouble(int index) {
+        return Double.parseDouble(getString(index));
+    }
+
+    /**
+     * Closes the input.
+     *
+     * @throws IOException if the input could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the input into the buffer, after everything in it has been read.
+     *
+     * @return true if more input was read, false at the end of the input
+     * @throws IOException if the input could not be read
+     */
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        position = 0;
+        limit = 0;
+        int read;
+        do {
+            read = in.read(buffer);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    /**
+     * Skips the byte order mark some programs write at the start of UTF-8 files.
+     */
+    private void skipByteOrderMark() {
+        if (limit - position >= UTF_8_BOM.length
+                && Arrays.equals(buffer, position, position + UTF_8_BOM.length, UTF_8_BOM, 0, UTF_8_BOM.length)) {
+            position += UTF_8_BOM.length;
+        }
+    }
+
+    /**
+     * Reads a field that is not in quotes, up to the comma or line break after it.
+     *
+     * @throws IOException if the input could not be read
+     */
+    private void readUnquotedField() throws IOException {
+        while (true) {
+            byte[] buf = buffer; // kept in locals for the scan
+            int start = position;
+            int end = start;
+            int lim = limit;
+            while (end < lim) {
+                byte b = buf[end];
+                if (b == DELIMITER || b == LF || b == CR) {
+                    break;
+                }
+                end++;
+            }
+            append(buf, start, end - start);
+            position = end;
+            if (end < lim || !fill()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads a field in quotes, after its opening quote, up to the comma or line
+     * break after its closing quote.
+     *
+     * @throws IOException if the input could not be read
+     */
+    private void readQuotedField() throws IOException {
+        while (true) {
+            byte[] buf = buffer;
+            int start = position;
+            int end = start;
+            int lim = limit;
+            while (end < lim && buf[end] != QUOTE) {
+                end++;
+            }
+            append(buf, start, end - start);
+            position = end;
+            if (end == lim) {
+                if (!fill()) {
+                    return; // left open at the end of the input
+                }
+                continue;
+            }
+
+            position++; // past the quote
+            if ((position < limit || fill()) && buffer[position] == QUOTE) {
+                appendQuote(); // a quote written twice is a quote in the field
+                position++;
+            } else {
+                readUnquotedField(); // anything else up to the comma is kept
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds bytes to the current field.
+     *
+     * @param bytes  the bytes
+     * @param offset the offset of the first byte to add
+     * @param length the number of bytes to add
+     */
+    private void append(byte[] bytes, int offset, int length) {
+        if (rowLength + length > row.length) {
+            row = Arrays.copyOf(row, Math.max(row.length * 2, rowLength + length));
+        }
+        System.arraycopy(bytes, offset, row, rowLength, length);
+        rowLength += length;
+    }
+
+    /**
+     * Adds a quote to the current field.
+     */
+    private void appendQuote() {
+        if (rowLength == row.length) {
+            row = Arrays.copyOf(row, row.length * 2);
+        }
+        row[rowLength++] = QUOTE;
+    }
+
+    /**
+     * Ends the current field.
+     */
+    private void endField() {
+        if (fieldCount == fieldEnds.length) {
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldEnds.length * 2);
+        }
+        fieldEnds[fieldCount++] = rowLength;
+    }
+
+    /**
+     * Gets where a field of the current row starts in row.
+     *
+     * @param index the index of the field
+     * @return the start of the field
+     * @throws IndexOutOfBoundsException if the row has no field at the index
+     */
+    private int fieldStart(int index) {
+        Objects.checkIndex(index, fieldCount);
+        return index == 0 ? 0 : fieldEnds[index - 1];
+    }
+}
@@ -0,0 +1,53 @@
+package database.importers;
+
+/**
+ * A row read from a CSV file of Items, with where it is in the file.
+ */
+class CsvRow {
+    private final String[] values;
+    private final int fieldCount;
+    private final long endOffset;
+    private long rowNumber;
+
+    /**
+     * Creates a new CsvRow.
+     *
+     * @param values     The values of the row, from
+     *                   {@link CsvItemColumns#readValues(CsvParser)}.
+     * @param fieldCount The number of fields in the row.
+     * @param rowNumber  The number of the row, counting the header as row 1.
+     * @param endOffset  The offset in the file just after the row.
+     */
+    CsvRow(String[] values, int fieldCount, long rowNumber, long endOffset) {
+        this.values = values;
+        this.fieldCount = fieldCount;
+        this.rowNumber = rowNumber;
+        this.endOffset = endOffset;
+    }
+
+    String[] getValues() {
+        return values;
+    }
+
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    long getRowNumber() {
+        return rowNumber;
+    }
+
+    long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Adds the rows before the part of the file the row was read from to its
+     * number, for rows numbered from the start of that part.
+     *
+     * @param numRowsBefore The number of rows before the part.
+     */
+    void addRowsBefore(long numRowsBefore) {
+        rowNumber += numRowsBefore;
+    }
+}
@@ -0,0 +1,655 @@
+package database.importers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import database.ImportCheckpoint;
+import database.StorageCrud;
+import database.items.Category;
+import database.items.EconomyInfo;
+import database.items.Item;
+import database.items.ObjectService;
+import database.items.Preference;
+
+/**
+ * Imports Items from a CSV file into storage in stages that run at the same
+ * time, each on its own threads:
+ * <ol>
+ * <li>a reader, which splits the file into batches of rows, parsing chunks of
+ * the file in parallel if it is read like a {@link MappedCsvImporter},</li>
+ * <li>workers, which turn the rows of a batch into Items,</li>
+ * <li>a resolver, which finds or creates the Categories of each batch together,
+ * putting the batches back in the order of the file,</li>
+ * <li>and a writer, which creates the Items of each batch in storage.</li>
+ * </ol>
+ * Only a few batches are read ahead of the writer, so the memory used is the
+ * same however large the file is, and the file is read while earlier batches
+ * are written.
+ * <br>
+ * <br>
+ * The CSV file has the same columns as for the {@link CsvImporter}. Rows that
+ * are malformed, have bad Item data or have values too large for storage are
+ * rejected rather than stopping the import, and written with the reason to a file next to the imported one (see
+ * {@link #getRejectedFilePath(String)}).
+ * <br>
+ * <br>
+ * Each batch is created in its own transaction, along with a checkpoint of how
+ * far through the file the import has got. If the import fails, the batches
+ * before the failure stay in storage, and importing the same file again starts
+ * from the checkpoint instead of the first row. A file that has changed since
+ * its checkpoint is imported from the start.
+ */
+public class ImportPipeline {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final String REJECTED_FILE_SUFFIX = ".rejected.csv";
+
+    // the Category ID of an Item until its Category is resolved
+    private static final String UNRESOLVED_CATEGORY_ID = "0";
+    // marks the end of the batches, and is never written
+    private static final Batch END = new Batch(-1, null);
+    // the first row after the header
+    private static final long FIRST_ROW_NUMBER = 1;
+
+    private final StorageCrud storageCrud;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int numWorkers = Runtime.getRuntime().availableProcessors();
+    private int maxBatchesInFlight = 2 * numWorkers + 2;
+    private ImporterTypes importerType = ImporterTypes.CSV;
+    private final AtomicLong numImported = new AtomicLong();
+    private final AtomicLong numRejected = new AtomicLong();
+
+    /**
+     * A batch of rows from the file, as they pass through the stages.
+     */
+    private static class Batch {
+        private final long sequence;
+        private final long endOffset;
+        private final long endRowNumber;
+        private List<CsvRow> rows;
+        private List<Item> items;
+        private List<Rejection> rejections;
+
+        /**
+         * Creates a new Batch.
+         *
+         * @param sequence The position of the batch in the file.
+         * @param rows     The rows, of which there is at least one.
+         */
+        private Batch(long sequence, List<CsvRow> rows) {
+            this.sequence = sequence;
+            this.rows = rows;
+            // where the import can start again from once the batch is written
+            CsvRow lastRow = rows == null ? null : rows.get(rows.size() - 1);
+            this.endOffset = lastRow == null ? 0 : lastRow.getEndOffset();
+            this.endRowNumber = lastRow == null ? 0 : lastRow.getRowNumber();
+        }
+    }
+
+    /**
+     * A row that could not be imported.
+     */
+    private static class Rejection {
+        private final CsvRow row;
+        private final String reason;
+
+        /**
+         * Creates a new Rejection.
+         *
+         * @param row    The row.
+         * @param reason Why the row could not be imported.
+         */
+        private Rejection(CsvRow row, String reason) {
+            this.row = row;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * The file being imported, as it was when the import started.
+     */
+    private static class ImportFile {
+        private final String absolutePath;
+        private final long size;
+        private final long modified;
+
+        /**
+         * Creates a new ImportFile.
+         *
+         * @param filePath Path to the CSV file.
+         */
+        private ImportFile(String filePath) {
+            File file = new File(filePath);
+            this.absolutePath = file.getAbsolutePath();
+            this.size = file.length();
+            this.modified = file.lastModified();
+        }
+
+        /**
+         * Checks if a checkpoint was saved for the file as it is now.
+         *
+         * @param checkpoint The checkpoint, or null.
+         * @return True if the import can start again from the checkpoint, false
+         *         otherwise.
+         */
+        private boolean matches(ImportCheckpoint checkpoint) {
+            return checkpoint != null && checkpoint.getFileSize() == size
+                    && checkpoint.getFileModified() == modified;
+        }
+    }
+
+    /**
+     * Splits rows into batches, passing each batch on once it is full.
+     */
+    private class BatchSplitter {
+        private final BlockingQueue<Batch> rowBatches;
+        private final Semaphore batchesInFlight;
+        private List<CsvRow> rows = new ArrayList<>(batchSize);
+        private long sequence;
+
+        /**
+         * Creates a new BatchSplitter.
+         *
+         * @param rowBatches      Where to put the batches.
+         * @param batchesInFlight Taken for each batch, and given back once it is
+         *                        written.
+         */
+        private BatchSplitter(BlockingQueue<Batch> rowBatches, Semaphore batchesInFlight) {
+            this.rowBatches = rowBatches;
+            this.batchesInFlight = batchesInFlight;
+        }
+
+        /**
+         * Adds a row to the current batch.
+         *
+         * @param row The row.
+         * @throws InterruptedException If interrupted while waiting for the writer.
+         */
+        private void add(CsvRow row) throws InterruptedException {
+            rows.add(row);
+            if (rows.size() == batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Passes on the current batch, if it has any rows.
+         *
+         * @throws InterruptedException If interrupted while waiting for the writer.
+         */
+        private void flush() throws InterruptedException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            batchesInFlight.acquire(); // waits for the writer to catch up
+            rowBatches.put(new Batch(sequence++, rows));
+            rows = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * Creates a new ImportPipeline.
+     *
+     * @param storageCrud The storage to create the Items and Categories in.
+     */
+    public ImportPipeline(StorageCrud storageCrud) {
+        this.storageCrud = storageCrud;
+    }
+
+    /**
+     * Sets the number of rows created in storage in each transaction.
+     *
+     * @param batchSize The number of rows in each batch.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the number of threads turning rows into Items.
+     *
+     * @param numWorkers The number of workers.
+     */
+    public void setNumWorkers(int numWorkers) {
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Sets the number of batches that can be read before the earliest of them is
+     * written, which limits the memory the import uses.
+     *
+     * @param maxBatchesInFlight The number of batches.
+     */
+    public void setMaxBatchesInFlight(int maxBatchesInFlight) {
+        this.maxBatchesInFlight = maxBatchesInFlight;
+    }
+
+    /**
+     * Sets how the file is read. {@link ImporterTypes#MAPPED_CSV} parses chunks of
+     * the file in parallel, for large files.
+     *
+     * @param importerType The type of importer to read the file like.
+     */
+    public void setImporterType(ImporterTypes importerType) {
+        this.importerType = importerType;
+    }
+
+    /**
+     * Gets the number of Items created in storage by the last import, including
+     * those created before it failed and by the runs of the import it started
+     * again from.
+     *
+     * @return The number of Items.
+     */
+    public long getNumImported() {
+        return numImported.get();
+    }
+
+    /**
+     * Gets the number of rows rejected by the last import, including those
+     * rejected by the runs of the import it started again from.
+     *
+     * @return The number of rows.
+     */
+    public long getNumRejected() {
+        return numRejected.get();
+    }
+
+    /**
+     * Gets the path of the file the rejected rows of an import are written to.
+     *
+     * @param filePath Path to the imported CSV file.
+     * @return The path of the file of rejected rows.
+     */
+    public static String getRejectedFilePath(String filePath) {
+        return filePath + REJECTED_FILE_SUFFIX;
+    }
+
+    /**
+     * Imports the Items in a CSV file, skipping blank rows and rejecting rows that
+     * do not have every column or have bad Item data. If an earlier import of the
+     * file stopped, this one starts from where it got to.
+     *
+     * @param filePath Path to the CSV file to import.
+     * @return True if every row was imported or rejected, false otherwise.
+     */
+    public boolean importItems(String filePath) {
+        ImportFile importFile = new ImportFile(filePath);
+        CsvItemColumns columns;
+        long headerEndOffset;
+        try (CsvParser parser = new CsvParser(new FileInputStream(filePath))) {
+            if (!parser.nextRow()) {
+                return false; // empty file
+            }
+            columns = new CsvItemColumns(parser);
+            headerEndOffset = parser.getRowEndOffset();
+        } catch (IOException | IllegalArgumentException e) {
+            return false; // could not read the file, or missing columns
+        }
+
+        ImportCheckpoint checkpoint;
+        try {
+            checkpoint = storageCrud.readImportCheckpoint(importFile.absolutePath);
+        } catch (RuntimeException e) {
+            // starting over could create the Items before the checkpoint again
+            return false;
+        }
+        boolean resuming = importFile.matches(checkpoint);
+        final long startOffset = resuming ? checkpoint.getOffset() : headerEndOffset;
+        final long startRowNumber = resuming ? checkpoint.getRowNumber() : FIRST_ROW_NUMBER;
+        numImported.set(resuming ? checkpoint.getNumImported() : 0);
+        numRejected.set(resuming ? checkpoint.getNumRejected() : 0);
+        RejectedRowsFile rejectedRows;
+        try {
+            rejectedRows = new RejectedRowsFile(getRejectedFilePath(filePath), columns.getKeys(),
+                    resuming ? checkpoint.getRejectedLength() : 0);
+        } catch (IOException e) {
+            return false; // could not open the file of rejected rows
+        }
+
+        BlockingQueue<Batch> rowBatches = new LinkedBlockingQueue<>();
+        BlockingQueue<Batch> itemBatches = new LinkedBlockingQueue<>();
+        BlockingQueue<Batch> resolvedBatches = new LinkedBlockingQueue<>();
+        // the queues only hold the batches in flight, so they are bounded by this
+        Semaphore batchesInFlight = new Semaphore(maxBatchesInFlight);
+
+        ExecutorService executor = Executors.newFixedThreadPool(numWorkers + 3, task -> {
+            Thread thread = new Thread(task, "import-pipeline");
+            thread.setDaemon(true); // so it does not keep the program running
+            return thread;
+        });
+        CompletionService<Boolean> stages = new ExecutorCompletionService<>(executor);
+        stages.submit(() -> read(filePath, startOffset, startRowNumber, columns, rowBatches, batchesInFlight));
+        for (int i = 0; i < numWorkers; i++) {
+            stages.submit(() -> convert(columns, rowBatches, itemBatches));
+        }
+        stages.submit(() -> resolveCategories(itemBatches, resolvedBatches));
+        stages.submit(() -> write(importFile, rejectedRows, resolvedBatches, batchesInFlight));
+
+        boolean success = true;
+        try {
+            for (int i = 0; i < numWorkers + 3 && success; i++) {
+                success = stages.take().get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            success = false;
+        } catch (ExecutionException ee) {
+            success = false; // a stage failed to read the file or storage
+        } finally {
+            // stops the other stages if one failed, waiting for a write in progress
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                rejectedRows.close();
+            } catch (IOException e) {
+                // the rows were already written by the writer
+            }
+        }
+
+        if (success) {
+            // NOTE: if this fails, importing the file again starts from its end, so it
+            // does not create the Items again
+            storageCrud.deleteImportCheckpoint(importFile.absolutePath);
+        }
+        return success;
+    }
+
+    /**
+     * Reads the rows of the file in batches, skipping blank rows.
+     *
+     * @param filePath        Path to the CSV file.
+     * @param offset          The offset in the file of the first row to read.
+     * @param rowNumber       The number of rows in the file before the offset.
+     * @param columns         The columns of the file.
+     * @param rowBatches      Where to put the batches.
+     * @param batchesInFlight Taken for each batch, and given back once it is
+     *                        written.
+     * @return True once every row is read.
+     */
+    private boolean read(String filePath, long offset, long rowNumber, CsvItemColumns columns,
+            BlockingQueue<Batch> rowBatches, Semaphore batchesInFlight) throws IOException, InterruptedException {
+        BatchSplitter batches = new BatchSplitter(rowBatches, batchesInFlight);
+        if (importerType == ImporterTypes.MAPPED_CSV) {
+            new MappedCsvImporter().readRows(filePath, columns, offset, rowNumber, rows -> {
+                for (CsvRow row : rows) {
+                    batches.add(row);
+                }
+            });
+        } else {
+            try (FileInputStream in = new FileInputStream(filePath);
+                    CsvParser parser = new CsvParser(in, offset, rowNumber)) {
+                in.getChannel().position(offset);
+                while (parser.nextRow()) {
+                    CsvRow row = columns.readRow(parser);
+                    if (row != null) {
+                        batches.add(row);
+                    }
+                }
+            }
+        }
+        batches.flush();
+
+        for (int i = 0; i < numWorkers; i++) {
+            rowBatches.put(END);
+        }
+        return true;
+    }
+
+    /**
+     * Turns the rows of each batch into Items, without their Category IDs,
+     * rejecting the rows that are malformed or have bad Item data.
+     *
+     * @param columns     The columns of the file.
+     * @param rowBatches  Where to take the batches from.
+     * @param itemBatches Where to put the batches.
+     * @return True once every batch is converted.
+     */
+    private boolean convert(CsvItemColumns columns, BlockingQueue<Batch> rowBatches,
+            BlockingQueue<Batch> itemBatches) throws InterruptedException {
+        while (true) {
+            Batch batch = rowBatches.take();
+            if (batch == END) {
+                itemBatches.put(END);
+                return true;
+            }
+
+            List<Item> items = new ArrayList<>(batch.rows.size());
+            List<Rejection> rejections = new ArrayList<>();
+            for (CsvRow row : batch.rows) {
+                if (!columns.isComplete(row)) {
+                    rejections.add(new Rejection(row, String.format("Expected at least %d fields but found %d",
+                            columns.getNumFieldsRequired(), row.getFieldCount())));
+                    continue;
+                }
+
+                Map<String, String> categoryData = columns.toCategoryData(row.getValues());
+                categoryData.put(Category.CATEGORY_ID_KEY, UNRESOLVED_CATEGORY_ID);
+                Item item;
+                try {
+                    item = ObjectService.createItemStub(columns.toItemData(row.getValues()), categoryData);
+                } catch (RuntimeException e) {
+                    rejections.add(new Rejection(row, badItemDataReason(e)));
+                    continue;
+                }
+                // otherwise storage would fail the whole batch, and every run after on it
+                String unstorableReason = unstorableReason(item);
+                if (unstorableReason != null) {
+                    rejections.add(new Rejection(row, unstorableReason));
+                } else {
+                    items.add(item);
+                }
+            }
+            batch.items = items;
+            batch.rejections = rejections;
+            batch.rows = null; // no longer needed
+            itemBatches.put(batch);
+        }
+    }
+
+    /**
+     * Sets the Category ID of the Items of each batch, creating the Categories
+     * that do not exist yet, and passes the batches on in the order of the file.
+     * Each Category is only looked up the first time it is seen.
+     *
+     * @param itemBatches     Where to take the batches from.
+     * @param resolvedBatches Where to put the batches.
+     * @return True once every batch is resolved, false if a Category could not be
+     *         created.
+     */
+    private boolean resolveCategories(BlockingQueue<Batch> itemBatches, BlockingQueue<Batch> resolvedBatches)
+            throws InterruptedException {
+        // many rows share a Category, so only look each one up once. Names are
+        // compared without case, as the database compares them.
+        Map<String, Integer> categoryIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        // batches converted before the ones ahead of them in the file
+        Map<Long, Batch> waiting = new HashMap<>();
+        long nextSequence = 0;
+        int numEnded = 0;
+        while (numEnded < numWorkers) {
+            Batch batch = itemBatches.take();
+            if (batch == END) {
+                numEnded++;
+                continue;
+            }
+
+            waiting.put(batch.sequence, batch);
+            while ((batch = waiting.remove(nextSequence)) != null) {
+                Set<String> newNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                for (Item item : batch.items) {
+                    if (!categoryIds.containsKey(item.getCategory().getName())) {
+                        newNames.add(item.getCategory().getName());
+                    }
+                }
+                if (!newNames.isEmpty() && !resolveNewCategories(newNames, categoryIds)) {
+                    return false; // could not read or create categories
+                }
+
+                for (Item item : batch.items) {
+                    item.getCategory().setCategoryId(categoryIds.get(item.getCategory().getName()));
+                }
+                resolvedBatches.put(batch);
+                nextSequence++;
+            }
+        }
+        resolvedBatches.put(END);
+        return true;
+    }
+
+    /**
+     * Creates the Items of each batch in storage, along with the checkpoint after
+     * the batch, and writes its rejected rows.
+     *
+     * @param importFile      The file being imported.
+     * @param rejectedRows    Where to write the rejected rows.
+     * @param resolvedBatches Where to take the batches from.
+     * @param batchesInFlight Given back for each batch that is written.
+     * @return True once every batch is written, false if a batch could not be.
+     * @throws IOException If the rejected rows could not be written.
+     */
+    private boolean write(ImportFile importFile, RejectedRowsFile rejectedRows,
+            BlockingQueue<Batch> resolvedBatches, Semaphore batchesInFlight)
+            throws IOException, InterruptedException {
+        while (true) {
+            Batch batch = resolvedBatches.take();
+            if (batch == END) {
+                return true;
+            }
+
+            // the rejected rows are kept before the checkpoint after them is saved,
+            // and a run started from an earlier checkpoint cuts them off again
+            for (Rejection rejection : batch.rejections) {
+                rejectedRows.write(rejection.row, rejection.reason);
+            }
+            long rejectedLength = rejectedRows.sync();
+
+            ImportCheckpoint checkpoint = new ImportCheckpoint(importFile.absolutePath, importFile.size,
+                    importFile.modified, batch.endOffset, batch.endRowNumber,
+                    numImported.get() + batch.items.size(), numRejected.get() + batch.rejections.size(),
+                    rejectedLength);
+            if (!storageCrud.createItems(batch.items, checkpoint)) {
+                return false;
+            }
+            numImported.addAndGet(batch.items.size());
+            numRejected.addAndGet(batch.rejections.size());
+            batchesInFlight.release();
+        }
+    }
+
+    /**
+     * Finds the IDs of Categories by their names, with one query for all of them,
+     * and creates the Categories that do not exist yet together.
+     *
+     * @param names       The names of the Categories.
+     * @param categoryIds Where to put the ID for each name.
+     * @return True upon success, false if the Categories could not be read or
+     *         created.
+     */
+    private boolean resolveNewCategories(Set<String> names, Map<String, Integer> categoryIds) {
+        List<Category> existing = storageCrud.readCategoriesByName(new ArrayList<>(names));
+        if (existing == null) {
+            return false; // rather than creating Categories that may already exist
+        }
+        for (Category category : existing) {
+            categoryIds.put(category.getName(), category.getCategoryId());
+        }
+
+        List<Category> missing = new ArrayList<>();
+        for (String name : names) {
+            if (!categoryIds.containsKey(name)) {
+                missing.add(new Category(name));
+            }
+        }
+        if (!storageCrud.createCategories(missing)) {
+            return false;
+        }
+        for (Category category : missing) {
+            categoryIds.put(category.getName(), category.getCategoryId());
+        }
+        return true;
+    }
+
+    /**
+     * Finds out if an Item has a value that storage cannot keep.
+     *
+     * @param item The Item.
+     * @return Why the Item cannot be stored, or null if it can be.
+     */
+    private static String unstorableReason(Item item) {
+        if (isTooLong(item.getName(), StorageCrud.MAX_NAME_LENGTH)) {
+            return String.format("%s is longer than %d characters", Item.NAME_KEY, StorageCrud.MAX_NAME_LENGTH);
+        }
+        if (isTooLong(item.getDescription(), StorageCrud.MAX_DESCRIPTION_LENGTH)) {
+            return String.format("%s is longer than %d characters", Item.DESCRIPTION_KEY,
+                    StorageCrud.MAX_DESCRIPTION_LENGTH);
+        }
+        if (isTooLong(item.getCategory().getName(), StorageCrud.MAX_NAME_LENGTH)) {
+            return String.format("%s is longer than %d characters", Category.NAME_KEY, StorageCrud.MAX_NAME_LENGTH);
+        }
+        if (!isStorableAmount(item.getPrice())) {
+            return String.format("%s must be a number with at most 18 digits before the decimal point",
+                    EconomyInfo.PRICE_KEY);
+        }
+        if (!isStorableAmount(item.getPromotionPercentOff())) {
+            return String.format("%s must be a number with at most 18 digits before the decimal point",
+                    Preference.PROMOTION_PERCENT_OFF_KEY);
+        }
+        return null;
+    }
+
+    /**
+     * Finds out if a value has more characters than storage keeps.
+     *
+     * @param value     The value, which may be null.
+     * @param maxLength The most characters kept.
+     * @return True if the value is too long, false otherwise.
+     */
+    private static boolean isTooLong(String value, int maxLength) {
+        // storage counts characters, not the UTF-16 units of String.length
+        return value != null && value.codePointCount(0, value.length()) > maxLength;
+    }
+
+    /**
+     * Finds out if storage can keep an amount.
+     *
+     * @param amount The amount.
+     * @return True if the amount can be stored, false otherwise.
+     */
+    private static boolean isStorableAmount(double amount) {
+        return Math.abs(amount) < StorageCrud.MAX_AMOUNT; // also false for NaN
+    }
+
+    /**
+     * Gets why a row with bad Item data was rejected.
+     *
+     * @param e The error from creating the Item.
+     * @return The reason.
+     */
+    private static String badItemDataReason(RuntimeException e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        // some errors, such as from parsing dates, have no message
+        String detail = cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+        return "Bad Item data: " + detail;
+    }
+}
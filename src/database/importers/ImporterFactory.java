@@ -8,7 +8,7 @@ import user.Pair;
 /**
  * Factory to create different types of importers
  * 
- * Only returns CSVImporter for now
+ * Returns a CSVImporter, or a MappedCsvImporter for large CSV files
  */
 public class ImporterFactory {
 
@@ -22,6 +22,9 @@ public class ImporterFactory {
         if (importerType == ImporterTypes.CSV) {
             return new CsvImporter();
         }
+        if (importerType == ImporterTypes.MAPPED_CSV) {
+            return new MappedCsvImporter();
+        }
         throw new IllegalArgumentException("Invalid importer type: " + importerType);
     }
 }
\ No newline at end of file
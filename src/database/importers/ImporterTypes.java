@@ -5,5 +5,7 @@ package database.importers;
  * 
  */
 public enum ImporterTypes {
-    CSV
+    CSV,
+    // large CSV files, memory-mapped and parsed in parallel chunks
+    MAPPED_CSV
 }
\ No newline at end of file
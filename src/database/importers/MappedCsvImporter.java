@@ -0,0 +1,441 @@
+package database.importers;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import database.items.Item;
+import user.Pair;
+
+/**
+ * Imports item data from large CSV files, with the same columns as the
+ * {@link CsvImporter}, by parsing chunks of the file at the same time.
+ * <br>
+ * <br>
+ * The file is memory-mapped and split into chunks that end at a line break
+ * outside quotes, so no row is split between chunks. The chunks are parsed in
+ * parallel and their rows are put back together in the order of the file. Only
+ * a few chunks are parsed ahead of the one being used, so the chunks in memory
+ * do not grow with the file.
+ * <br>
+ * <br>
+ * The chunks are found by counting quotes, so the file's quotes must follow RFC
+ * 4180. A quote in the middle of an unquoted field can make rows be read
+ * differently than by the {@link CsvImporter}. The quotes are counted in the
+ * pool too, ahead of the chunks.
+ */
+public class MappedCsvImporter extends Importer<Pair<List<Map<String, String>>, List<Map<String, String>>>> {
+    public static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final byte QUOTE = '"';
+    private static final byte LF = '\n';
+    // blocks smaller than this have their quotes counted together, so tiny chunks do not make tiny tasks
+    private static final long MIN_BLOCK_SIZE = 64 * 1024;
+    private static final int ROW_END_WINDOW_SIZE = 4096;
+
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Takes the rows of each chunk, in the order of the file.
+     */
+    interface RowsConsumer {
+        /**
+         * Takes the rows of a chunk.
+         *
+         * @param rows The rows that are not blank, from
+         *             {@link CsvItemColumns#readRow(CsvParser)}, including
+         *             malformed rows.
+         * @throws InterruptedException If interrupted while waiting to take the
+         *                              rows.
+         */
+        void accept(List<CsvRow> rows) throws InterruptedException;
+    }
+
+    /**
+     * The rows parsed from a chunk.
+     */
+    private static class ParsedChunk {
+        private final List<CsvRow> rows;
+        private final long numRows;
+
+        /**
+         * Creates a new ParsedChunk.
+         *
+         * @param rows    The rows that are not blank, numbered from the start of
+         *                the chunk.
+         * @param numRows The number of rows in the chunk, including blank rows.
+         */
+        private ParsedChunk(List<CsvRow> rows, long numRows) {
+            this.rows = rows;
+            this.numRows = numRows;
+        }
+    }
+
+    /**
+     * Sets the number of bytes in each chunk. The file is split every this many
+     * bytes, and each chunk ends at the first row break after a split.
+     *
+     * @param chunkSize The size of the chunks.
+     */
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets the pool to parse the chunks in.
+     *
+     * @param pool The pool.
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Imports item data from a CSV file.
+     *
+     * @param filePath Path to the CSV file to import
+     * @return List of imported {@link Item} objects
+     * @throws RuntimeException         If the file is not found or cannot be read
+     * @throws IllegalArgumentException If required columns are missing in the CSV
+     *                                  header
+     */
+    @Override
+    public Pair<List<Map<String, String>>, List<Map<String, String>>> importData(String filePath) {
+        List<Map<String, String>> items = new ArrayList<>();
+        List<Map<String, String>> categories = new ArrayList<>();
+
+        try {
+            CsvItemColumns columns;
+            long headerEndOffset;
+            try (CsvParser parser = new CsvParser(new FileInputStream(filePath))) {
+                // Check for empty file
+                if (!parser.nextRow()) {
+                    throw new FileNotFoundException("CSV file is empty");
+                }
+                columns = new CsvItemColumns(parser);
+                headerEndOffset = parser.getRowEndOffset();
+            }
+
+            readRows(filePath, columns, headerEndOffset, 1, rows -> {
+                for (CsvRow row : rows) {
+                    if (!columns.isComplete(row)) {
+                        continue; // Skip malformed rows, as the CsvImporter does
+                    }
+                    items.add(columns.toItemData(row.getValues()));
+                    categories.add(columns.toCategoryData(row.getValues()));
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    String.format("Failed to read CSV file at path: %s", filePath),
+                    e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while importing CSV file", e);
+        }
+
+        return new Pair<List<Map<String, String>>, List<Map<String, String>>>(items, categories);
+    }
+
+    /**
+     * Reads the rows of a CSV file from the start of a row after its header,
+     * parsing its chunks in parallel and skipping blank rows.
+     *
+     * @param filePath  Path to the CSV file.
+     * @param columns   The columns of the file, from its header.
+     * @param offset    The offset in the file of the first row to read.
+     * @param rowNumber The number of rows in the file before the offset.
+     * @param consumer  Takes the rows of each chunk, in the order of the file.
+     * @throws IOException          If the file cannot be read.
+     * @throws InterruptedException If the consumer was interrupted.
+     */
+    void readRows(String filePath, CsvItemColumns columns, long offset, long rowNumber, RowsConsumer consumer)
+            throws IOException, InterruptedException {
+        // enough chunks are parsed ahead to keep the pool busy while the consumer
+        // takes each one
+        int maxChunksInFlight = 2 * pool.getParallelism();
+        Deque<ForkJoinTask<ParsedChunk>> chunks = new ArrayDeque<>();
+        ChunkSplitter splitter = null;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            splitter = new ChunkSplitter(channel, offset, size, chunkSize, pool, maxChunksInFlight);
+            long start = offset;
+            long numRowsBefore = rowNumber;
+            while (start < size || !chunks.isEmpty()) {
+                while (start < size && chunks.size() < maxChunksInFlight) {
+                    long end = splitter.findChunkEnd(start);
+                    MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    long chunkStart = start;
+                    chunks.add(pool.submit(() -> parseChunk(chunk, chunkStart, columns)));
+                    start = end;
+                }
+
+                // the rows of a chunk are only numbered once the chunks before it are
+                ParsedChunk parsed = chunks.remove().join();
+                for (CsvRow row : parsed.rows) {
+                    row.addRowsBefore(numRowsBefore);
+                }
+                numRowsBefore += parsed.numRows;
+                consumer.accept(parsed.rows);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ForkJoinTask<ParsedChunk> chunk : chunks) {
+                chunk.cancel(false); // no longer needed
+            }
+            if (splitter != null) {
+                splitter.cancel();
+            }
+        }
+    }
+
+    /**
+     * Parses the rows of a chunk.
+     *
+     * @param chunk   The bytes of the chunk.
+     * @param start   The offset in the file of the chunk.
+     * @param columns The columns of the file.
+     * @return The rows of the chunk.
+     */
+    private static ParsedChunk parseChunk(ByteBuffer chunk, long start, CsvItemColumns columns) {
+        List<CsvRow> rows = new ArrayList<>();
+        try (CsvParser parser = new CsvParser(new ByteBufferInputStream(chunk), start, 0)) {
+            while (parser.nextRow()) {
+                CsvRow row = columns.readRow(parser);
+                if (row != null) {
+                    rows.add(row);
+                }
+            }
+            return new ParsedChunk(rows, parser.getRowNumber());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finds where the chunks of a file end. A chunk ends just after the first line
+     * break outside quotes at or after its split point, and the split points are
+     * every chunk size from the first row.
+     * <br>
+     * <br>
+     * Whether a split point is inside quotes depends on every quote before it, so
+     * the quotes of each block of the file are counted in the pool, a few blocks
+     * ahead of the split point being looked for. Only the bytes from a split point
+     * to the line break after it are read on the calling thread, along with any
+     * part of a block that holds several split points.
+     */
+    private static class ChunkSplitter {
+        private final FileChannel channel;
+        private final long origin;
+        private final long size;
+        private final long chunkSize;
+        private final long blockSize;
+        private final ForkJoinPool pool;
+        private final int maxBlocksAhead;
+
+        // the quote counts of the blocks from the one holding the known position on,
+        // as true for an odd count
+        private final Deque<ForkJoinTask<Boolean>> blockParities = new ArrayDeque<>();
+        private long blockStart; // where the first of the blocks starts
+        private long nextBlockStart; // where the block after the last of them starts
+        private long knownPosition; // how far it is known if the file is in quotes
+        private boolean inQuotes; // whether the known position is in quotes
+
+        /**
+         * Creates a new ChunkSplitter.
+         *
+         * @param channel        The file.
+         * @param origin         The offset of the first row, outside quotes.
+         * @param size           The size of the file.
+         * @param chunkSize      The number of bytes between split points.
+         * @param pool           The pool to count quotes in.
+         * @param maxBlocksAhead The most blocks to count ahead of the split point
+         *                       being looked for.
+         */
+        private ChunkSplitter(FileChannel channel, long origin, long size, long chunkSize, ForkJoinPool pool,
+                int maxBlocksAhead) {
+            this.channel = channel;
+            this.origin = origin;
+            this.size = size;
+            this.chunkSize = Math.max(1, chunkSize);
+            this.blockSize = Math.max(this.chunkSize, MIN_BLOCK_SIZE);
+            this.pool = pool;
+            this.maxBlocksAhead = maxBlocksAhead;
+            this.blockStart = origin;
+            this.nextBlockStart = origin;
+            this.knownPosition = origin;
+        }
+
+        /**
+         * Finds where a chunk ends.
+         *
+         * @param start Where the chunk starts, which is where the chunk before it
+         *              ended.
+         * @return Where the chunk ends.
+         * @throws IOException If the file cannot be read.
+         */
+        private long findChunkEnd(long start) throws IOException {
+            // the first split point after the start, so the chunk is never empty
+            long splitPoint = origin + ((start - origin) / chunkSize + 1) * chunkSize;
+            if (splitPoint >= size) {
+                return size;
+            }
+            advanceTo(splitPoint);
+
+            boolean quoted = inQuotes;
+            for (long windowStart = splitPoint; windowStart < size; windowStart += ROW_END_WINDOW_SIZE) {
+                MappedByteBuffer window = map(windowStart, Math.min(size, windowStart + ROW_END_WINDOW_SIZE));
+                int limit = window.limit();
+                for (int i = 0; i < limit; i++) {
+                    byte b = window.get(i);
+                    if (b == QUOTE) {
+                        quoted = !quoted; // a quote written twice leaves this as it was
+                    } else if (b == LF && !quoted) {
+                        return windowStart + i + 1;
+                    }
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Finds out if the file is in quotes at a position after the known
+         * position, using the quote counts of whole blocks where it can.
+         *
+         * @param position The position.
+         * @throws IOException If the file cannot be read.
+         */
+        private void advanceTo(long position) throws IOException {
+            while (knownPosition < position) {
+                countBlocksAhead();
+                long blockEnd = Math.min(size, blockStart + blockSize);
+                if (knownPosition == blockStart && blockEnd <= position) {
+                    inQuotes ^= blockParities.remove().join();
+                    knownPosition = blockEnd;
+                } else {
+                    // the position is inside this block, so only part of it is counted
+                    long end = Math.min(position, blockEnd);
+                    inQuotes ^= hasOddQuotes(knownPosition, end);
+                    knownPosition = end;
+                    if (knownPosition == blockEnd) {
+                        blockParities.remove().cancel(false);
+                    }
+                }
+                if (knownPosition == blockEnd) {
+                    blockStart = blockEnd;
+                }
+            }
+        }
+
+        /**
+         * Starts counting the quotes of the blocks ahead of the known position,
+         * until enough are being counted.
+         */
+        private void countBlocksAhead() {
+            while (blockParities.size() < maxBlocksAhead && nextBlockStart < size) {
+                long start = nextBlockStart;
+                long end = Math.min(size, start + blockSize);
+                blockParities.add(pool.submit(() -> {
+                    try {
+                        return hasOddQuotes(start, end);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                nextBlockStart = end;
+            }
+        }
+
+        /**
+         * Stops counting the quotes of the blocks that are no longer needed.
+         */
+        private void cancel() {
+            for (ForkJoinTask<Boolean> blockParity : blockParities) {
+                blockParity.cancel(false);
+            }
+        }
+
+        /**
+         * Maps part of the file.
+         *
+         * @param start The offset of the part.
+         * @param end   The offset just after the part.
+         * @return The bytes of the part.
+         * @throws IOException If the file cannot be read.
+         */
+        private MappedByteBuffer map(long start, long end) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
+
+        /**
+         * Finds out if part of the file has an odd number of quotes, which means
+         * whether it is in quotes at the end of the part flips from the start.
+         *
+         * @param start The offset of the part.
+         * @param end   The offset just after the part.
+         * @return True if the number of quotes is odd, false otherwise.
+         * @throws IOException If the file cannot be read.
+         */
+        private boolean hasOddQuotes(long start, long end) throws IOException {
+            MappedByteBuffer part = map(start, end);
+            int limit = part.limit();
+            int numQuotes = 0;
+            for (int i = 0; i < limit; i++) {
+                if (part.get(i) == QUOTE) {
+                    numQuotes++;
+                }
+            }
+            return (numQuotes & 1) == 1;
+        }
+    }
+
+    /**
+     * Reads the bytes of a buffer as a stream.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        /**
+         * Creates a new ByteBufferInputStream.
+         *
+         * @param buffer The buffer, read from its position to its limit.
+         */
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package database.importers;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import database.reports.ReportCsvWriter;
+
+/**
+ * The rows of an imported CSV file that could not be imported, written to a CSV
+ * file with the same columns as the import, followed by the number of each row
+ * and why it was rejected. The rows can be fixed and the file imported again.
+ * <br>
+ * <br>
+ * The file is only created once a row is rejected.
+ */
+class RejectedRowsFile implements AutoCloseable {
+    public static final String ROW_NUMBER_COLUMN = "RejectedRow";
+    public static final String REASON_COLUMN = "RejectReason";
+
+    private final Path path;
+    private final List<String> keys;
+    private FileChannel channel;
+    private ReportCsvWriter writer;
+    private boolean empty = true;
+
+    /**
+     * Creates a new RejectedRowsFile.
+     *
+     * @param filePath Path to the file of rejected rows.
+     * @param keys     The keys of the values of each row.
+     * @param length   The length of the file to keep, written by an earlier run
+     *                 of the same import, or 0 to replace the file.
+     * @throws IOException If the file could not be opened.
+     */
+    RejectedRowsFile(String filePath, List<String> keys, long length) throws IOException {
+        this.path = Paths.get(filePath);
+        this.keys = keys;
+        if (length == 0) {
+            Files.deleteIfExists(path);
+            return;
+        }
+
+        // anything after the length was written for rows that are read again
+        open();
+        channel.truncate(length);
+        channel.position(channel.size());
+        empty = channel.size() == 0;
+    }
+
+    /**
+     * Writes a rejected row.
+     *
+     * @param row    The row.
+     * @param reason Why the row was rejected.
+     * @throws IOException If the row could not be written.
+     */
+    void write(CsvRow row, String reason) throws IOException {
+        if (channel == null) {
+            open();
+        }
+        if (empty) {
+            for (String key : keys) {
+                writer.writeField(key);
+            }
+            writer.writeField(ROW_NUMBER_COLUMN);
+            writer.writeField(REASON_COLUMN);
+            writer.endRow();
+            empty = false;
+        }
+
+        for (String value : row.getValues()) {
+            writer.writeField(value);
+        }
+        writer.writeField(row.getRowNumber());
+        writer.writeField(reason);
+        writer.endRow();
+    }
+
+    /**
+     * Writes the rows written so far to the disk, so they are kept if the
+     * program stops.
+     *
+     * @return The length of the file.
+     * @throws IOException If the rows could not be written.
+     */
+    long sync() throws IOException {
+        if (channel == null) {
+            return 0; // nothing rejected
+        }
+        writer.flush();
+        channel.force(false);
+        return channel.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close(); // closes the channel
+        }
+    }
+
+    /**
+     * Opens the file to add to, creating it if needed.
+     *
+     * @throws IOException If the file could not be opened.
+     */
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        writer = new ReportCsvWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                StandardCharsets.UTF_8), ReportCsvWriter.DEFAULT_BUFFER_SIZE);
+    }
+}
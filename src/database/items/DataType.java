@@ -6,6 +6,7 @@ package database.items;
 public enum DataType {
     STRING,
     INTEGER,
+    LONG,
     DOUBLE,
     BOOLEAN,
     DATE
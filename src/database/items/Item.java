@@ -5,10 +5,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import database.InnerObject;
+
 /**
  * Class that represents an Item in the inventory.
  */
-public class Item implements ConvertableObject {
+public class Item implements ConvertableObject, OuterObject {
     private int itemId;
     private String sku;
     private String name;
@@ -157,6 +159,20 @@ public class Item implements ConvertableObject {
         return dataTypes;
     }
 
+    @Override
+    public List<String> getInnerObjectIds() {
+        ArrayList<String> innerIds = new ArrayList<>();
+        innerIds.add(String.valueOf(category.getCategoryId()));
+        return innerIds;
+    }
+
+    @Override
+    public List<InnerObject> getInnerObjects() {
+        List<InnerObject> innerObjects = new ArrayList<>();
+        innerObjects.add(new InnerObject(Item.TABLE_NAME, Category.TABLE_NAME, Category.CATEGORY_ID_KEY));
+        return innerObjects;
+    }
+
     /**
      * Get the attribute keys related to preference information.
      * 
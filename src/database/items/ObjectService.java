@@ -204,6 +204,15 @@ public class ObjectService {
         return new Item().getAttributeKeys();
     }
 
+    /**
+     * Gets the inner objects for an Item for reading.
+     * 
+     * @return The Item's inner objects.
+     */
+    public static List<InnerObject> getItemInnerObjects() {
+        return new Item().getInnerObjects();
+    }
+
     /**
      * Gets the keys for an Item with no ID.
      * 
@@ -1,36 +1,54 @@
 package database.reports;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import database.CategoryVolume;
+import database.StorageCrud;
 import database.items.*;
 
 /**
  * Generates a report summarizing inventory volumes and values by category.
+ * By default, the totals kept by storage as items change are read, so only one
+ * row for each category is read instead of every item. The report can be
+ * limited to the categories with the most value.
  */
 public class InventoryVolumeReport extends ReportGenerator {
+    public static final int NO_LIMIT = -1;
+
+    // most value first, then by name
+    private static final Comparator<CategorySummary> BY_VALUE = Comparator
+            .comparingDouble(CategorySummary::getTotalValue).reversed()
+            .thenComparing(CategorySummary::getCategoryName, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private static final List<String> HEADERS = List.of("CategoryName", "UniqueItems", "TotalUnits", "TotalValue",
+            "TotalDiscountedValue", "AverageUnitPrice", "AverageDiscountedUnitPrice");
 
     private Map<Category, CategorySummary> categorySummaries;
     private String reportFilePath;
+    private boolean pushDown = true;
+    private int limit = NO_LIMIT;
+    // the summary of each category, by ID, while the items are being visited
+    private Map<Integer, CategorySummary> categoryIdMap;
+    private Map<Integer, Category> idToCategoryMap;
 
     /**
      * Constructor that initializes the report with a timestamped filename.
      */
     public InventoryVolumeReport() {
         this.categorySummaries = new HashMap<>();
+        this.categoryIdMap = new HashMap<>();
+        this.idToCategoryMap = new HashMap<>();
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss");
         this.reportFilePath = "inventory_volume_report_" + dateFormat.format(new Date()) + ".csv";
     }
 
     @Override
-    public boolean generateReport(List<Item> itemList, List<Category> categoryList, List<Bundle> bundleList) {
+    public void begin(List<Category> categoryList, List<Bundle> bundleList) {
         // Clear previous results
         this.categorySummaries.clear();
-
-        // Create a map from category ID to CategorySummary
-        Map<Integer, CategorySummary> categoryIdMap = new HashMap<>();
-        Map<Integer, Category> idToCategoryMap = new HashMap<>();
+        this.categoryIdMap.clear();
+        this.idToCategoryMap.clear();
 
         // Initialize summary for each category
         for (Category category : categoryList) {
@@ -39,53 +57,133 @@ public class InventoryVolumeReport extends ReportGenerator {
             categoryIdMap.put(category.getCategoryId(), summary);
             idToCategoryMap.put(category.getCategoryId(), category);
         }
+    }
 
+    @Override
+    public void visit(Item item) {
         // Count items and calculate values by category
-        for (Item item : itemList) {
-            Category category = item.getCategory();
-            if (category != null) {
-                int categoryId = category.getCategoryId();
-                if (categoryIdMap.containsKey(categoryId)) {
-                    CategorySummary summary = categoryIdMap.get(categoryId);
-                    summary.addItem(item.getNumItems(), item.getPrice(),
-                            item.getPrice() - (item.getPrice() * item.getPromotionPercentOff()));
-
-                    // Also update our main map if we haven't already
-                    if (!categorySummaries.containsKey(category)) {
-                        categorySummaries.put(idToCategoryMap.get(categoryId), summary);
-                    }
+        Category category = item.getCategory();
+        if (category != null) {
+            int categoryId = category.getCategoryId();
+            if (categoryIdMap.containsKey(categoryId)) {
+                CategorySummary summary = categoryIdMap.get(categoryId);
+                summary.addItem(item.getNumItems(), item.getPrice(),
+                        item.getPrice() - (item.getPrice() * item.getPromotionPercentOff()));
+
+                // Also update our main map if we haven't already
+                if (!categorySummaries.containsKey(category)) {
+                    categorySummaries.put(idToCategoryMap.get(categoryId), summary);
                 }
             }
         }
+    }
 
-        // Rest of the method remains the same
+    @Override
+    protected ReportPartition newPartition() {
+        return new CategoryTotals();
+    }
+
+    @Override
+    protected void addPartition(ReportPartition partition) {
+        for (Map.Entry<Integer, CategorySummary> entry : ((CategoryTotals) partition).summaries.entrySet()) {
+            int categoryId = entry.getKey();
+            categoryIdMap.get(categoryId).merge(entry.getValue());
+            categorySummaries.putIfAbsent(idToCategoryMap.get(categoryId), categoryIdMap.get(categoryId));
+        }
+    }
+
+    @Override
+    public boolean finish() {
+        return writeReport();
+    }
+
+    @Override
+    public boolean generateReport(StorageCrud storageCrud) {
+        if (pushDown) {
+            List<CategoryVolume> volumes = storageCrud.readCategoryVolumes();
+            if (volumes != null) {
+                return generateReport(volumes);
+            }
+            // fall back to totaling the items ourselves
+        }
+        return super.generateReport(storageCrud);
+    }
+
+    /**
+     * Generates the report from the totals of each category, already computed by
+     * storage.
+     *
+     * @param volumes the totals of every category
+     * @return true if the report generation is successful, false otherwise
+     */
+    public boolean generateReport(List<CategoryVolume> volumes) {
+        // Clear previous results
+        this.categorySummaries.clear();
+
+        for (CategoryVolume volume : volumes) {
+            categorySummaries.put(new Category(volume.getCategoryId(), volume.getCategoryName()),
+                    new CategorySummary(volume.getCategoryName(), volume.getUniqueItemCount(),
+                            volume.getTotalUnits(), volume.getTotalValue(), volume.getTotalDiscountedValue()));
+        }
+
+        return writeReport();
+    }
+
+    /**
+     * Writes the category summaries to the report file.
+     *
+     * @return true if the report was written, false otherwise
+     */
+    private boolean writeReport() {
         if (categorySummaries.isEmpty()) {
             return true;
         }
 
-        try (FileWriter writer = new FileWriter(reportFilePath)) {
+        // Sort by name, so the rows come out in the same order however they were totaled
+        List<CategorySummary> summaries = new ArrayList<>(categorySummaries.values());
+        summaries.sort(Comparator.comparing(CategorySummary::getCategoryName,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        // Only the categories with the most value, if the report is limited
+        List<CategorySummary> rows = summaries;
+        if (limit != NO_LIMIT) {
+            TopK<CategorySummary> mostValuable = new TopK<>(limit, BY_VALUE);
+            for (CategorySummary summary : summaries) {
+                if (summary.getItemCount() > 0) {
+                    mostValuable.offer(summary);
+                }
+            }
+            rows = mostValuable.toList();
+        }
+
+        try (ReportCsvWriter writer = new ReportCsvWriter(reportFilePath)) {
             // Write headers
-            writer.append(
-                    "CategoryName,UniqueItems,TotalUnits,TotalValue,TotalDiscountedValue,AverageUnitPrice,AverageDiscountedUnitPrice\n");
+            for (String header : HEADERS) {
+                writer.writeField(header);
+            }
+            writer.endRow();
+
+            // Write data rows for each category
+            for (CategorySummary summary : rows) {
+                if (summary.getItemCount() > 0) {
+                    writer.writeField(summary.getCategoryName());
+                    writer.writeField(summary.getUniqueItemCount());
+                    writer.writeField(summary.getItemCount());
+                    writer.writeMoney(summary.getTotalValue());
+                    writer.writeMoney(summary.getTotalDiscountedValue());
+                    writer.writeMoney(summary.getAverageItemPrice());
+                    writer.writeMoney(summary.getAverageDiscountedPrice());
+                    writer.endRow();
+                }
+            }
 
-            // Track totals across all categories
+            // Track totals across all categories, including any left out of the rows
             int totalItems = 0;
             int totalUnqiueItems = 0;
             double totalValue = 0.0;
             double totalDiscountedValue = 0.0;
-
-            // Write data rows for each category
-            for (CategorySummary summary : categorySummaries.values()) {
+            for (CategorySummary summary : summaries) {
                 if (summary.getItemCount() > 0) {
-                    writer.append(summary.getCategoryName()).append(",");
-                    writer.append(String.valueOf(summary.getUniqueItemCount())).append(",");
-                    writer.append(String.valueOf(summary.getItemCount())).append(",");
-                    writer.append(String.format("%.2f", summary.getTotalValue())).append(",");
-                    writer.append(String.format("%.2f", summary.getTotalDiscountedValue())).append(",");
-                    writer.append(String.format("%.2f", summary.getAverageItemPrice())).append(",");
-                    writer.append(String.format("%.2f", summary.getAverageDiscountedPrice())).append("\n");
-
-                    // Add to overall totals
                     totalUnqiueItems += summary.getUniqueItemCount();
                     totalItems += summary.getItemCount();
                     totalValue += summary.getTotalValue();
@@ -94,21 +192,20 @@ public class InventoryVolumeReport extends ReportGenerator {
             }
 
             // Write overall totals row
-            writer.append("ALL CATEGORIES,");
-            writer.append(String.valueOf(totalUnqiueItems)).append(",");
-            writer.append(String.valueOf(totalItems)).append(",");
-            writer.append(String.format("%.2f", totalValue)).append(",");
-            writer.append(String.format("%.2f", totalDiscountedValue)).append(",");
+            writer.writeField("ALL CATEGORIES");
+            writer.writeField(totalUnqiueItems);
+            writer.writeField(totalItems);
+            writer.writeMoney(totalValue);
+            writer.writeMoney(totalDiscountedValue);
 
             // Calculate overall average price
             double overallAverage = totalItems > 0 ? totalValue / totalItems : 0.0;
-            writer.append(String.format("%.2f", overallAverage)).append(",");
+            writer.writeMoney(overallAverage);
 
             // Calculate overall discounted average price
             double overallDiscountedAverage = totalItems > 0 ? totalDiscountedValue / totalItems : 0.0;
-            writer.append(String.format("%.2f", overallDiscountedAverage)).append("\n");
-
-            writer.flush();
+            writer.writeMoney(overallDiscountedAverage);
+            writer.endRow();
         } catch (IOException e) {
             return false;
         }
@@ -116,6 +213,12 @@ public class InventoryVolumeReport extends ReportGenerator {
         return true;
     }
 
+    @Override
+    public Set<ReportDataset> getRequiredDatasets() {
+        // the categories too, so each one is summarized even if it has no items
+        return EnumSet.of(ReportDataset.ITEMS, ReportDataset.CATEGORIES);
+    }
+
     /**
      * Helper class to track summary data for each category
      */
@@ -137,6 +240,24 @@ public class InventoryVolumeReport extends ReportGenerator {
             this.totalValue = 0.0;
         }
 
+        /**
+         * Sets the values to totals that have already been counted
+         * 
+         * @param categoryName         the name of the category
+         * @param uniqueItemCount      the number of items in the category
+         * @param itemCount            the total quantity of the items
+         * @param totalValue           the total value of the items
+         * @param totalDiscountedValue the total discounted value of the items
+         */
+        public CategorySummary(String categoryName, int uniqueItemCount, int itemCount, double totalValue,
+                double totalDiscountedValue) {
+            this.categoryName = categoryName;
+            this.uniqueItemCount = uniqueItemCount;
+            this.itemCount = itemCount;
+            this.totalValue = totalValue;
+            this.totalDiscountedValue = totalDiscountedValue;
+        }
+
         /**
          * increment the count values
          * 
@@ -150,6 +271,18 @@ public class InventoryVolumeReport extends ReportGenerator {
             this.totalDiscountedValue += quantity * discountedPrice;
         }
 
+        /**
+         * add the counts of another summary of the same category
+         * 
+         * @param other the other summary
+         */
+        public void merge(CategorySummary other) {
+            this.uniqueItemCount += other.uniqueItemCount;
+            this.itemCount += other.itemCount;
+            this.totalValue += other.totalValue;
+            this.totalDiscountedValue += other.totalDiscountedValue;
+        }
+
         public int getUniqueItemCount() {
             return uniqueItemCount;
         }
@@ -179,6 +312,35 @@ public class InventoryVolumeReport extends ReportGenerator {
         }
     }
 
+    /**
+     * The category summaries of a partition, for the categories the report was
+     * begun with
+     */
+    private class CategoryTotals implements ReportPartition {
+        private Map<Integer, CategorySummary> summaries = new HashMap<>();
+
+        @Override
+        public void visit(Item item) {
+            Category category = item.getCategory();
+            if (category != null && categoryIdMap.containsKey(category.getCategoryId())) {
+                summaries.computeIfAbsent(category.getCategoryId(),
+                        categoryId -> new CategorySummary(idToCategoryMap.get(categoryId).getName()))
+                        .addItem(item.getNumItems(), item.getPrice(),
+                                item.getPrice() - (item.getPrice() * item.getPromotionPercentOff()));
+            }
+        }
+
+        @Override
+        public void merge(ReportPartition next) {
+            for (Map.Entry<Integer, CategorySummary> entry : ((CategoryTotals) next).summaries.entrySet()) {
+                CategorySummary summary = summaries.putIfAbsent(entry.getKey(), entry.getValue());
+                if (summary != null) {
+                    summary.merge(entry.getValue());
+                }
+            }
+        }
+    }
+
     /**
      * Gets the file path of the generated report
      *
@@ -199,6 +361,48 @@ public class InventoryVolumeReport extends ReportGenerator {
         this.reportFilePath = filePath;
     }
 
+    /**
+     * Sets whether the totals are computed by storage, or from every item read
+     * out of storage
+     *
+     * @param pushDown true to compute the totals in storage, false otherwise
+     */
+    public void setPushDown(boolean pushDown) {
+        this.pushDown = pushDown;
+    }
+
+    /**
+     * Gets whether the totals are computed by storage
+     *
+     * @return true if the totals are computed in storage, false otherwise
+     */
+    public boolean isPushDown() {
+        return pushDown;
+    }
+
+    /**
+     * Limits the report to the categories with the most value, ranked from the
+     * most value down. The overall totals still include every category.
+     *
+     * @param limit the number of categories to report, or NO_LIMIT to report
+     *              every category in order of name
+     */
+    public void setLimit(int limit) {
+        if (limit <= 0 && limit != NO_LIMIT) {
+            throw new IllegalArgumentException("The limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the number of categories the report is limited to
+     *
+     * @return the limit, or NO_LIMIT if every category is reported
+     */
+    public int getLimit() {
+        return limit;
+    }
+
     /**
      * Gets the category summaries generated during report creation
      * 
@@ -2,20 +2,34 @@ package database.reports;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.Set;
+import database.StorageCrud;
 import database.items.*;
 
 /**
  * Generates a report containing inventory items that are below their low item
- * threshold
+ * threshold. By default, the items are filtered by storage, so only the low
+ * items are read. The report can be limited to the items with the largest
+ * deficits, keeping only that many items in memory.
  */
 public class LowInventoryReport extends ReportGenerator {
+	public static final int NO_LIMIT = -1;
+
+	// largest deficit first, then by ID, the same as storage ranks them
+	private static final Comparator<Item> BY_DEFICIT = Comparator
+			.comparingInt((Item item) -> item.getLowInventoryThreshold() - item.getNumItems()).reversed()
+			.thenComparingInt(Item::getItemId);
 
 	private List<Item> lowInventoryItems;
+	private TopK<Item> mostLowItems; // in place of the list when the report is limited
 	private String reportFilePath;
+	private boolean pushDown = true;
+	private int limit = NO_LIMIT;
 
 	/**
 	 * Contructor that initializes the date format and file name with the file path.
@@ -27,101 +41,74 @@ public class LowInventoryReport extends ReportGenerator {
 	}
 
 	@Override
-	public boolean generateReport(List<Item> itemList, List<Category> categoryList, List<Bundle> bundleList) {
+	public void begin(List<Category> categoryList, List<Bundle> bundleList) {
 		// Clear previous results
 		this.lowInventoryItems.clear();
+		this.mostLowItems = limit == NO_LIMIT ? null : new TopK<>(limit, BY_DEFICIT);
+	}
 
-		// Identify items with low inventory
-		for (Item item : itemList) {
-			if (item.getNumItems() >= 0 && item.getNumItems() <= item.getLowInventoryThreshold()) {
-				lowInventoryItems.add(item);
-			}
+	@Override
+	public void visit(Item item) {
+		if (!isLow(item)) {
+			return;
+		}
+		if (mostLowItems != null) {
+			mostLowItems.offer(item);
+		} else {
+			lowInventoryItems.add(item);
+		}
+	}
+
+	@Override
+	protected ReportPartition newPartition() {
+		return new LowItems(limit);
+	}
+
+	@Override
+	protected void addPartition(ReportPartition partition) {
+		LowItems lowItems = (LowItems) partition;
+		if (mostLowItems != null) {
+			mostLowItems.addAll(lowItems.mostLowItems);
+		} else {
+			lowInventoryItems.addAll(lowItems.items);
 		}
+	}
+
+	/**
+	 * Identifies an item with low inventory
+	 *
+	 * @param item the item
+	 * @return true if the item is at or below its low inventory threshold
+	 */
+	private static boolean isLow(Item item) {
+		return item.getNumItems() >= 0 && item.getNumItems() <= item.getLowInventoryThreshold();
+	}
 
+	@Override
+	public boolean finish() {
+		if (mostLowItems != null) {
+			lowInventoryItems = mostLowItems.toList(); // ranked by deficit
+		}
 		if (lowInventoryItems.isEmpty()) {
 			return true; // No items to report but not an error condition
 		}
 
-		try (FileWriter writer = new FileWriter(reportFilePath)) {
-			// Get a sample item to access attribute keys and data types
-			Item sampleItem = lowInventoryItems.get(0);
-			List<String> keys = sampleItem.getAttributeKeys();
-			List<DataType> dataTypes = sampleItem.getAttributeDataTypes();
-
-			// Find the index of the category ID column
-			int categoryIdIndex = keys.indexOf(Item.CATEGORY_ID_KEY);
-
-			// Write headers - replace CategoryId with CategoryName
-			for (int i = 0; i < keys.size(); i++) {
-				if (i == categoryIdIndex) {
-					writer.append(Category.NAME_KEY);
-				} else {
-					writer.append(keys.get(i));
-				}
-
-				if (i < keys.size() - 1) {
-					writer.append(",");
-				}
-			}
-			// Append the deficit header
-			writer.append(",Deficit");
-			writer.append("\n");
+		try (ReportCsvWriter writer = new ReportCsvWriter(reportFilePath)) {
+			List<String> keys = lowInventoryItems.get(0).getAttributeKeys();
+
+			// Write headers - CategoryName in place of CategoryId
+			writeItemHeader(writer, keys);
+			writer.writeField("Deficit");
+			writer.endRow();
 
-			// Date formatter for CSV output
-			SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd");
-			int deficit = 0;
 			// Write data rows
 			for (Item item : lowInventoryItems) {
-				List<String> attributes = item.getAllAttributes();
-
-				// Write each attribute according to its data type
-				for (int i = 0; i < attributes.size(); i++) {
-					String value = attributes.get(i);
-					DataType type = dataTypes.get(i);
-
-					// If this is the category ID column, write the category name instead
-					if (i == categoryIdIndex) {
-						writer.append(item.getCategory().getName());
-					} else {
-						// Process other columns as before
-						switch (type) {
-							case DOUBLE:
-								// Format doubles with two decimal places
-								try {
-									double doubleVal = Double.parseDouble(value);
-									writer.append(String.format("%.2f", doubleVal));
-								} catch (NumberFormatException e) {
-									writer.append(value);
-								}
-								break;
-							case DATE:
-								// Format dates nicely
-								try {
-									Date date = java.sql.Date.valueOf(value);
-									writer.append(dateFormatter.format(date));
-								} catch (IllegalArgumentException e) {
-									writer.append(value);
-								}
-								break;
-							default:
-								// For all other types, use the value as is
-								writer.append(value);
-						}
-					}
-
-					if (i < attributes.size() - 1) {
-						writer.append(",");
-					}
-				}
+				writeItemFields(writer, item, keys);
 				// Calculate and append the deficit (low inventory threshold - current
 				// inventory)
-				deficit = item.getLowInventoryThreshold() - item.getNumItems();
-				writer.append(",");
-				writer.append(String.valueOf(deficit));
-				writer.append("\n");
+				writer.writeField(item.getLowInventoryThreshold() - item.getNumItems());
+				writer.endRow();
 			}
-
-			writer.flush();
 		} catch (IOException e) {
 			return false;
 		}
@@ -129,6 +116,66 @@ public class LowInventoryReport extends ReportGenerator {
 		return true;
 	}
 
+	@Override
+	public boolean generateReport(StorageCrud storageCrud) {
+		if (pushDown) {
+			List<Item> items = limit == NO_LIMIT ? storageCrud.readLowInventoryItems()
+					: storageCrud.readLowInventoryItemsByDeficit(limit);
+			if (items != null) {
+				return generateReport(items, new ArrayList<>(), new ArrayList<>());
+			}
+			// fall back to filtering every item ourselves
+		}
+		return super.generateReport(storageCrud);
+	}
+
+	@Override
+	public Set<ReportDataset> getRequiredDatasets() {
+		return EnumSet.of(ReportDataset.ITEMS); // each item has its category
+	}
+
+	/**
+	 * Sets whether the low items are filtered by storage, or from every item read
+	 * out of storage
+	 *
+	 * @param pushDown true to filter the items in storage, false otherwise
+	 */
+	public void setPushDown(boolean pushDown) {
+		this.pushDown = pushDown;
+	}
+
+	/**
+	 * Gets whether the low items are filtered by storage
+	 *
+	 * @return true if the items are filtered in storage, false otherwise
+	 */
+	public boolean isPushDown() {
+		return pushDown;
+	}
+
+	/**
+	 * Limits the report to the items with the largest deficits, ranked from the
+	 * largest deficit down
+	 *
+	 * @param limit the number of items to report, or NO_LIMIT to report every low
+	 *              item in order of ID
+	 */
+	public void setLimit(int limit) {
+		if (limit <= 0 && limit != NO_LIMIT) {
+			throw new IllegalArgumentException("The limit must be positive");
+		}
+		this.limit = limit;
+	}
+
+	/**
+	 * Gets the number of items the report is limited to
+	 *
+	 * @return the limit, or NO_LIMIT if every low item is reported
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
 	/**
 	 * Gets the file path of the generated report
 	 *
@@ -148,4 +195,44 @@ public class LowInventoryReport extends ReportGenerator {
 	public void setReportFilePath(String filePath) {
 		this.reportFilePath = filePath;
 	}
+
+	/**
+	 * The low items of a partition, in the order they were visited, or only those
+	 * with the largest deficits if the report is limited
+	 */
+	private static class LowItems implements ReportPartition {
+		private List<Item> items = new ArrayList<>();
+		private TopK<Item> mostLowItems;
+
+		/**
+		 * Creates an empty partition
+		 *
+		 * @param limit the limit of the report
+		 */
+		public LowItems(int limit) {
+			this.mostLowItems = limit == NO_LIMIT ? null : new TopK<>(limit, BY_DEFICIT);
+		}
+
+		@Override
+		public void visit(Item item) {
+			if (!isLow(item)) {
+				return;
+			}
+			if (mostLowItems != null) {
+				mostLowItems.offer(item);
+			} else {
+				items.add(item);
+			}
+		}
+
+		@Override
+		public void merge(ReportPartition next) {
+			LowItems nextItems = (LowItems) next;
+			if (mostLowItems != null) {
+				mostLowItems.addAll(nextItems.mostLowItems);
+			} else {
+				items.addAll(nextItems.items);
+			}
+		}
+	}
 }
\ No newline at end of file
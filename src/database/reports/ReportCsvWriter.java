@@ -0,0 +1,321 @@
+package database.reports;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Writes the rows of a CSV report through a large buffer, formatting numbers
+ * and dates straight into the buffer instead of building strings for them.
+ * <br>
+ * <br>
+ * Fields are separated automatically; call {@link #endRow()} after the last
+ * field of each row. Text fields are quoted when they hold a comma, quote or
+ * line break (RFC 4180), and null fields are written as {@code null}, as the
+ * reports always have.
+ */
+public class ReportCsvWriter implements AutoCloseable {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // money below this is rounded with doubles, which cannot be wrong by enough
+    // to change the rounding unless the value is close to a half cent
+    private static final double FAST_MONEY_LIMIT = 1e9;
+    private static final double HALF_CENT_TOLERANCE = 1e-3;
+
+    private final Writer writer;
+    private final char[] buffer;
+    private int position = 0;
+    private boolean atRowStart = true;
+
+    /**
+     * Creates a new ReportCsvWriter that writes to a file, replacing it.
+     *
+     * @param filePath the path of the file
+     * @throws IOException if the file could not be opened
+     */
+    public ReportCsvWriter(String filePath) throws IOException {
+        this(new FileWriter(filePath), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new ReportCsvWriter.
+     *
+     * @param writer     the writer to write the report to, which is closed along
+     *                   with this one
+     * @param bufferSize the number of characters to buffer before writing them
+     */
+    public ReportCsvWriter(Writer writer, int bufferSize) {
+        this.writer = writer;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Writes a text field, quoting it if needed.
+     *
+     * @param value the value
+     * @throws IOException if the report could not be written
+     */
+    public void writeField(String value) throws IOException {
+        startField();
+        if (value == null) {
+            writeRaw("null");
+            return;
+        }
+
+        if (!needsQuotes(value)) {
+            writeRaw(value);
+            return;
+        }
+
+        writeChar('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writeChar('"'); // quotes are escaped by doubling them
+            }
+            writeChar(c);
+        }
+        writeChar('"');
+    }
+
+    /**
+     * Writes a whole number field.
+     *
+     * @param value the value
+     * @throws IOException if the report could not be written
+     */
+    public void writeField(long value) throws IOException {
+        startField();
+        writeLong(value);
+    }
+
+    /**
+     * Writes a number field with two decimal places, rounding half up like
+     * {@code String.format(Locale.ROOT, "%.2f", value)}.
+     *
+     * @param value the value
+     * @throws IOException if the report could not be written
+     */
+    public void writeMoney(double value) throws IOException {
+        startField();
+        double magnitude = Math.abs(value);
+        if (Double.isNaN(value) || magnitude >= FAST_MONEY_LIMIT) {
+            writeRaw(String.format(Locale.ROOT, "%.2f", value)); // rare, so not worth doing by hand
+            return;
+        }
+
+        double scaled = magnitude * 100;
+        double fraction = scaled - Math.floor(scaled);
+        long cents;
+        if (Math.abs(fraction - 0.5) > HALF_CENT_TOLERANCE) {
+            cents = (long) Math.floor(scaled + 0.5);
+        } else {
+            // round the decimal value itself, since the double may be just under half
+            cents = BigDecimal.valueOf(magnitude).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            writeChar('-'); // including -0.00, as the formatter writes it
+        }
+        writeLong(cents / 100);
+        writeChar('.');
+        int remainder = (int) (cents % 100);
+        writeChar((char) ('0' + remainder / 10));
+        writeChar((char) ('0' + remainder % 10));
+    }
+
+    /**
+     * Writes a date field as yyyy-MM-dd.
+     *
+     * @param value the value
+     * @throws IOException if the report could not be written
+     */
+    public void writeDate(Date value) throws IOException {
+        if (value == null) {
+            writeField((String) null);
+            return;
+        }
+        writeDate(value.toLocalDate());
+    }
+
+    /**
+     * Writes a date field as yyyy-MM-dd.
+     *
+     * @param value the value
+     * @throws IOException if the report could not be written
+     */
+    public void writeDate(LocalDate value) throws IOException {
+        startField();
+        int year = value.getYear();
+        if (year >= 0 && year <= 9999) {
+            writePadded(year, 4);
+        } else {
+            writeLong(year);
+        }
+        writeChar('-');
+        writePadded(value.getMonthValue(), 2);
+        writeChar('-');
+        writePadded(value.getDayOfMonth(), 2);
+    }
+
+    /**
+     * Ends the current row.
+     *
+     * @throws IOException if the report could not be written
+     */
+    public void endRow() throws IOException {
+        writeChar('\n');
+        atRowStart = true;
+    }
+
+    /**
+     * Writes everything buffered so far.
+     *
+     * @throws IOException if the report could not be written
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        writer.flush();
+    }
+
+    /**
+     * Writes everything buffered and closes the report.
+     *
+     * @throws IOException if the report could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Checks if a text field must be quoted.
+     *
+     * @param value the value
+     * @return true if the value holds a separator, quote or line break
+     */
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Separates a new field from the field before it in the row.
+     */
+    private void startField() throws IOException {
+        if (!atRowStart) {
+            writeChar(',');
+        }
+        atRowStart = false;
+    }
+
+    /**
+     * Writes a number, without building a string for it.
+     *
+     * @param value the number
+     */
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(Long.toString(value)); // has no positive counterpart
+            return;
+        }
+        if (value < 0) {
+            writeChar('-');
+            value = -value;
+        }
+
+        // the digits come out backwards, so count them first
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * Writes a non-negative number, padded with zeros on the left.
+     *
+     * @param value  the number
+     * @param digits the fewest digits to write
+     */
+    private void writePadded(int value, int digits) throws IOException {
+        int length = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            length++;
+        }
+        for (int i = length; i < digits; i++) {
+            writeChar('0');
+        }
+        writeLong(value);
+    }
+
+    /**
+     * Writes text as it is.
+     *
+     * @param value the text
+     */
+    private void writeRaw(String value) throws IOException {
+        int offset = 0;
+        while (offset < value.length()) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            int count = Math.min(value.length() - offset, buffer.length - position);
+            value.getChars(offset, offset + count, buffer, position);
+            position += count;
+            offset += count;
+        }
+    }
+
+    /**
+     * Writes a single character.
+     *
+     * @param c the character
+     */
+    private void writeChar(char c) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = c;
+    }
+
+    /**
+     * Makes room in the buffer for some characters.
+     *
+     * @param count the number of characters, which must fit in the buffer
+     */
+    private void ensureCapacity(int count) throws IOException {
+        if (buffer.length - position < count) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Writes the buffered characters to the underlying writer.
+     */
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            writer.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
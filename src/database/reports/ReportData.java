@@ -0,0 +1,95 @@
+package database.reports;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import database.StorageCrud;
+import database.items.*;
+
+/**
+ * The data read from storage to generate a report from. Datasets that the
+ * report does not need are left empty.
+ */
+public class ReportData {
+    private List<Item> items;
+    private List<Category> categories;
+    private List<Bundle> bundles;
+
+    /**
+     * Creates a new ReportData.
+     *
+     * @param items      The items.
+     * @param categories The categories.
+     * @param bundles    The bundles.
+     */
+    public ReportData(List<Item> items, List<Category> categories, List<Bundle> bundles) {
+        this.items = items;
+        this.categories = categories;
+        this.bundles = bundles;
+    }
+
+    /**
+     * Reads only the specified datasets from storage. When more than one is
+     * needed, they are all read from the same snapshot, so that they agree with
+     * each other.
+     *
+     * @param storageCrud The storage to read from.
+     * @param datasets    The datasets to read.
+     * @return The data, or null if it could not be read.
+     */
+    public static ReportData load(StorageCrud storageCrud, Set<ReportDataset> datasets) {
+        if (datasets.size() <= 1) {
+            return read(storageCrud, datasets); // a single read is already consistent
+        }
+        return storageCrud.readTogether(() -> read(storageCrud, datasets));
+    }
+
+    /**
+     * Reads the specified datasets from storage, in whatever snapshot the caller
+     * has started.
+     *
+     * @param storageCrud The storage to read from.
+     * @param datasets    The datasets to read.
+     * @return The data, or null if it could not be read.
+     */
+    static ReportData read(StorageCrud storageCrud, Set<ReportDataset> datasets) {
+        List<Item> items = new ArrayList<>();
+        List<Category> categories = new ArrayList<>();
+        List<Bundle> bundles = new ArrayList<>();
+        // an empty dataset is only an empty report if storage said it was empty
+        if ((datasets.contains(ReportDataset.ITEMS) && !storageCrud.forEachItem(items::add))
+                || (datasets.contains(ReportDataset.CATEGORIES) && !storageCrud.forEachCategory(categories::add))
+                || (datasets.contains(ReportDataset.BUNDLES) && !storageCrud.forEachBundle(bundles::add))) {
+            return null;
+        }
+        return new ReportData(items, categories, bundles);
+    }
+
+    /**
+     * Gets the items.
+     *
+     * @return The items.
+     */
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the categories.
+     *
+     * @return The categories.
+     */
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    /**
+     * Gets the bundles.
+     *
+     * @return The bundles.
+     */
+    public List<Bundle> getBundles() {
+        return bundles;
+    }
+}
@@ -0,0 +1,10 @@
+package database.reports;
+
+/**
+ * The data from storage that a report can be generated from.
+ */
+public enum ReportDataset {
+    ITEMS,
+    CATEGORIES,
+    BUNDLES
+}
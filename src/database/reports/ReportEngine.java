@@ -0,0 +1,93 @@
+package database.reports;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import database.StorageCrud;
+import database.items.*;
+
+/**
+ * Generates several reports from a single pass over the inventory, streaming
+ * each item from storage to every registered report instead of loading the
+ * inventory once for each report.
+ * <br>
+ * <br>
+ * Every report is built from the items it visits, so reports that can push
+ * their work down to storage do not do so here.
+ */
+public class ReportEngine {
+    private List<ReportVisitor> reports;
+
+    /**
+     * Creates a new ReportEngine with no reports.
+     */
+    public ReportEngine() {
+        this.reports = new ArrayList<>();
+    }
+
+    /**
+     * Adds a report to generate on each run.
+     *
+     * @param report the report, which writes to its own output
+     */
+    public void register(ReportVisitor report) {
+        reports.add(report);
+    }
+
+    /**
+     * Generates every registered report from the data in storage. The categories
+     * and bundles are only read if a report requires them, and are read from the
+     * same snapshot as the items.
+     *
+     * @param storageCrud the storage to read the report data from
+     * @return true if every report was generated, false otherwise
+     */
+    public boolean run(StorageCrud storageCrud) {
+        Set<ReportDataset> datasets = EnumSet.noneOf(ReportDataset.class);
+        for (ReportVisitor report : reports) {
+            datasets.addAll(report.getRequiredDatasets());
+        }
+        datasets.remove(ReportDataset.ITEMS); // streamed instead
+
+        Boolean read;
+        if (datasets.isEmpty()) {
+            read = visitAll(storageCrud, ReportData.read(storageCrud, datasets));
+        } else {
+            read = storageCrud.readTogether(() -> visitAll(storageCrud, ReportData.read(storageCrud, datasets)));
+        }
+        if (read == null || !read) {
+            return false; // could not read the inventory
+        }
+
+        boolean success = true;
+        for (ReportVisitor report : reports) {
+            // finish every report, even if an earlier one fails
+            success = report.finish() && success;
+        }
+        return success;
+    }
+
+    /**
+     * Starts every report and streams each item to them.
+     *
+     * @param storageCrud the storage to read the items from
+     * @param data        the categories and bundles, or null if they could not be
+     *                    read
+     * @return true if the items were read, false otherwise
+     */
+    private boolean visitAll(StorageCrud storageCrud, ReportData data) {
+        if (data == null) {
+            return false;
+        }
+        for (ReportVisitor report : reports) {
+            report.begin(data.getCategories(), data.getBundles());
+        }
+        return storageCrud.forEachItem(item -> {
+            for (ReportVisitor report : reports) {
+                report.visit(item);
+            }
+        });
+    }
+}
@@ -1,23 +1,108 @@
 package database.reports;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import database.StorageCrud;
 import database.items.*;
 
 /**
  * Generate a report based on inventory data
  */
-public abstract class ReportGenerator {
+public abstract class ReportGenerator implements ReportVisitor {
+    // the number of items each partition visits when the items are split up
+    public static final int PARTITION_SIZE = 16 * 1024;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
 
     /**
      * Generates a report using the provided lists of items, categories, and
-     * bundles.
+     * bundles. Lists of more than one partition of items are split into
+     * partitions of a fixed size and visited in parallel, then merged in the
+     * order of the list, so the report is the same however the work is
+     * scheduled.
      *
      * @param itemList     the list of items to include in the report
      * @param categoryList the list of categories to include in the report
      * @param bundleList   the list of bundles to include in the report
      * @return true if the report generation is successful, false otherwise
      */
-    public abstract boolean generateReport(List<Item> itemList, List<Category> categoryList, List<Bundle> bundleList);
+    public boolean generateReport(List<Item> itemList, List<Category> categoryList, List<Bundle> bundleList) {
+        begin(categoryList, bundleList);
+        if (pool == null || itemList.size() <= PARTITION_SIZE) {
+            for (Item item : itemList) {
+                visit(item);
+            }
+        } else {
+            List<Item> items = itemList instanceof RandomAccess ? itemList : new ArrayList<>(itemList);
+            addPartition(pool.invoke(new PartitionTask(items, 0, items.size())));
+        }
+        return finish();
+    }
+
+    /**
+     * Creates an empty partition of this report, to visit some of the items in
+     * parallel with the others. Partitions may read anything the report was
+     * begun with, but must not change it.
+     *
+     * @return the partition
+     */
+    protected abstract ReportPartition newPartition();
+
+    /**
+     * Adds the results of a partition that visited every item to the report, as
+     * if each item had been visited by the report itself.
+     *
+     * @param partition the partition, created by {@link #newPartition()}
+     */
+    protected abstract void addPartition(ReportPartition partition);
+
+    /**
+     * Sets the pool that large lists of items are visited in parallel on. The
+     * common pool is used by default.
+     *
+     * @param pool the pool, or null to visit every item on the calling thread
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the pool that large lists of items are visited in parallel on.
+     *
+     * @return the pool, or null if the items are visited on the calling thread
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return pool;
+    }
+
+    /**
+     * Gets the datasets this report is generated from, so that only those are read
+     * from storage. The lists for any other datasets are left empty.
+     *
+     * @return the datasets the report needs
+     */
+    @Override
+    public abstract Set<ReportDataset> getRequiredDatasets();
+
+    /**
+     * Generates a report from the data in storage, reading only the datasets the
+     * report requires.
+     *
+     * @param storageCrud the storage to read the report data from
+     * @return true if the report generation is successful, false otherwise
+     */
+    public boolean generateReport(StorageCrud storageCrud) {
+        ReportData data = ReportData.load(storageCrud, getRequiredDatasets());
+        if (data == null) {
+            return false; // could not read the data
+        }
+        return generateReport(data.getItems(), data.getCategories(), data.getBundles());
+    }
 
     /**
      * Retrieves the file path where the generated report is stored.
@@ -32,4 +117,138 @@ public abstract class ReportGenerator {
      * @param filePath the file path to set for the generated report
      */
     public abstract void setReportFilePath(String filePath);
+
+    /**
+     * Writes the header of an item row, with the category name in place of the
+     * category ID.
+     *
+     * @param writer the report writer
+     * @param keys   the item's attribute keys
+     * @throws IOException if the report could not be written
+     */
+    protected static void writeItemHeader(ReportCsvWriter writer, List<String> keys) throws IOException {
+        for (String key : keys) {
+            writer.writeField(key.equals(Item.CATEGORY_ID_KEY) ? Category.NAME_KEY : key);
+        }
+    }
+
+    /**
+     * Writes the attributes of an item as typed fields, in the order of its keys,
+     * with the category name in place of the category ID. Prices and
+     * percentages have two decimal places.
+     *
+     * @param writer the report writer
+     * @param item   the item
+     * @param keys   the item's attribute keys
+     * @throws IOException if the report could not be written
+     */
+    protected static void writeItemFields(ReportCsvWriter writer, Item item, List<String> keys) throws IOException {
+        for (String key : keys) {
+            switch (key) {
+                case Item.ITEM_ID_KEY:
+                    writer.writeField(item.getItemId());
+                    break;
+                case Item.SKU_KEY:
+                    writer.writeField(item.getSku());
+                    break;
+                case Item.NAME_KEY:
+                    writer.writeField(item.getName());
+                    break;
+                case Item.DESCRIPTION_KEY:
+                    writer.writeField(item.getDescription());
+                    break;
+                case Item.CATEGORY_ID_KEY:
+                    writer.writeField(item.getCategory().getName());
+                    break;
+                case EconomyInfo.PRICE_KEY:
+                    writer.writeMoney(item.getPrice());
+                    break;
+                case EconomyInfo.NUM_ITEMS_KEY:
+                    writer.writeField(item.getNumItems());
+                    break;
+                case DateInfo.CREATED_KEY:
+                    writer.writeDate(item.getCreated());
+                    break;
+                case DateInfo.LAST_MODIFIED_KEY:
+                    writer.writeDate(item.getLastModified());
+                    break;
+                case Preference.SELL_WITHIN_NUM_DAYS_KEY:
+                    writer.writeField(item.getSellWithinNumDays());
+                    break;
+                case Preference.LOW_INVENTORY_THRESHOLD_KEY:
+                    writer.writeField(item.getLowInventoryThreshold());
+                    break;
+                case Preference.PROMOTION_PERCENT_OFF_KEY:
+                    writer.writeMoney(item.getPromotionPercentOff());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Items have no attribute " + key);
+            }
+        }
+    }
+
+    /**
+     * The results of visiting some of the items, which can be merged with the
+     * results of the items after them.
+     */
+    protected interface ReportPartition {
+
+        /**
+         * Adds an item to the partition.
+         *
+         * @param item the item
+         */
+        public void visit(Item item);
+
+        /**
+         * Adds the results of the partition of the items right after this one.
+         *
+         * @param next the next partition, of the same type as this one
+         */
+        public void merge(ReportPartition next);
+    }
+
+    /**
+     * Visits a range of items, splitting it in half until each half fits in a
+     * single partition. The ranges only depend on the number of items, so the
+     * partitions are always merged the same way.
+     */
+    private class PartitionTask extends RecursiveTask<ReportPartition> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Item> items;
+        private final int start;
+        private final int end;
+
+        /**
+         * Creates a new PartitionTask.
+         *
+         * @param items the list of every item
+         * @param start the index of the first item to visit
+         * @param end   the index after the last item to visit
+         */
+        PartitionTask(List<Item> items, int start, int end) {
+            this.items = items;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected ReportPartition compute() {
+            if (end - start <= PARTITION_SIZE) {
+                ReportPartition partition = newPartition();
+                for (int i = start; i < end; i++) {
+                    partition.visit(items.get(i));
+                }
+                return partition;
+            }
+
+            int middle = (start + end) >>> 1;
+            PartitionTask second = new PartitionTask(items, middle, end);
+            second.fork();
+            ReportPartition first = new PartitionTask(items, start, middle).compute();
+            first.merge(second.join());
+            return first;
+        }
+    }
 }
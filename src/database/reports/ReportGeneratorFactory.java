@@ -1,5 +1,6 @@
 package database.reports;
 
+import database.StorageCrud;
 import database.items.*;
 
 import java.util.List;
@@ -53,4 +54,108 @@ public class ReportGeneratorFactory {
 
         return inventoryVolumeReport.generateReport(items, categories, bundles);
     }
+
+    /**
+     * Generates a low inventory report, reading only the data it needs from
+     * storage.
+     *
+     * @param storageCrud the storage to read the report data from
+     * @return true if the report generation was successful, false otherwise
+     */
+    public boolean generateLowInventoryReport(StorageCrud storageCrud) {
+        return generateReport(lowInventoryReport, storageCrud);
+    }
+
+    /**
+     * Generates an unsold inventory report, reading only the data it needs from
+     * storage.
+     *
+     * @param storageCrud the storage to read the report data from
+     * @return true if the report generation was successful, false otherwise
+     */
+    public boolean generateUnsoldInventoryReport(StorageCrud storageCrud) {
+        return generateReport(unsoldInventoryReport, storageCrud);
+    }
+
+    /**
+     * Generates an inventory volume report, reading only the data it needs from
+     * storage.
+     *
+     * @param storageCrud the storage to read the report data from
+     * @return true if the report generation was successful, false otherwise
+     */
+    public boolean generateInventoryVolumeReport(StorageCrud storageCrud) {
+        return generateReport(inventoryVolumeReport, storageCrud);
+    }
+
+    /**
+     * Generates a low inventory report of only the items with the largest
+     * deficits, reading only those items from storage.
+     *
+     * @param storageCrud the storage to read the report data from
+     * @param limit       the number of items to report
+     * @return true if the report generation was successful, false otherwise
+     */
+    public boolean generateLowInventoryReport(StorageCrud storageCrud, int limit) {
+        LowInventoryReport report = new LowInventoryReport();
+        report.setLimit(limit);
+        report.setReportFilePath("top_" + report.getReportFilePath());
+        return generateReport(report, storageCrud);
+    }
+
+    /**
+     * Generates an unsold inventory report of only the most overdue items, reading
+     * only those items from storage.
+     *
+     * @param storageCrud the storage to read the report data from
+     * @param limit       the number of items to report
+     * @return true if the report generation was successful, false otherwise
+     */
+    public boolean generateUnsoldInventoryReport(StorageCrud storageCrud, int limit) {
+        UnsoldInventoryReport report = new UnsoldInventoryReport();
+        report.setLimit(limit);
+        report.setReportFilePath("top_" + report.getReportFilePath());
+        return generateReport(report, storageCrud);
+    }
+
+    /**
+     * Generates an inventory volume report of only the categories with the most
+     * value.
+     *
+     * @param storageCrud the storage to read the report data from
+     * @param limit       the number of categories to report
+     * @return true if the report generation was successful, false otherwise
+     */
+    public boolean generateInventoryVolumeReport(StorageCrud storageCrud, int limit) {
+        InventoryVolumeReport report = new InventoryVolumeReport();
+        report.setLimit(limit);
+        report.setReportFilePath("top_" + report.getReportFilePath());
+        return generateReport(report, storageCrud);
+    }
+
+    /**
+     * Generates the low inventory, unsold inventory and inventory volume reports
+     * together, from a single pass over the inventory in storage.
+     *
+     * @param storageCrud the storage to read the report data from
+     * @return true if every report was generated, false otherwise
+     */
+    public boolean generateAllReports(StorageCrud storageCrud) {
+        ReportEngine reportEngine = new ReportEngine();
+        reportEngine.register(lowInventoryReport);
+        reportEngine.register(unsoldInventoryReport);
+        reportEngine.register(inventoryVolumeReport);
+        return reportEngine.run(storageCrud);
+    }
+
+    /**
+     * Generates a report from the data in storage.
+     *
+     * @param reportGenerator the report to generate
+     * @param storageCrud     the storage to read the report data from
+     * @return true if the report generation was successful, false otherwise
+     */
+    private boolean generateReport(ReportGenerator reportGenerator, StorageCrud storageCrud) {
+        return reportGenerator.generateReport(storageCrud);
+    }
 }
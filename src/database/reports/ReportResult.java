@@ -0,0 +1,97 @@
+package database.reports;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * The latest generated report of a type, kept by a {@link ReportScheduler} so
+ * that it can be served without generating it again.
+ */
+public class ReportResult {
+    public static final long UNKNOWN_CHANGE_COUNT = -1;
+
+    private ReportType type;
+    private Path filePath;
+    private Instant generatedAt;
+    private long changeCount;
+    private byte[] contents;
+
+    /**
+     * Creates a new ReportResult.
+     *
+     * @param type        the type of the report
+     * @param filePath    the file the report is kept in
+     * @param generatedAt when the report's data was read
+     * @param changeCount the storage's change count when the report's data was
+     *                    read, or UNKNOWN_CHANGE_COUNT if it is not known
+     * @param contents    the report's contents, or null if they are only kept on
+     *                    disk
+     */
+    public ReportResult(ReportType type, Path filePath, Instant generatedAt, long changeCount, byte[] contents) {
+        this.type = type;
+        this.filePath = filePath;
+        this.generatedAt = generatedAt;
+        this.changeCount = changeCount;
+        this.contents = contents;
+    }
+
+    /**
+     * Gets the type of the report.
+     *
+     * @return the type
+     */
+    public ReportType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the file the report is kept in.
+     *
+     * @return the file path
+     */
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Gets when the report's data was read.
+     *
+     * @return the time the report was generated
+     */
+    public Instant getGeneratedAt() {
+        return generatedAt;
+    }
+
+    /**
+     * Gets how long ago the report's data was read.
+     *
+     * @return the age of the report
+     */
+    public Duration getAge() {
+        return Duration.between(generatedAt, Instant.now());
+    }
+
+    /**
+     * Gets the storage's change count when the report's data was read.
+     *
+     * @return the change count, or UNKNOWN_CHANGE_COUNT if it is not known, such
+     *         as for reports kept from an earlier run of the program
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Gets the contents of the report, from memory if they are kept there.
+     * NOTE: The contents kept in memory are shared, so they must not be changed.
+     *
+     * @return the contents
+     * @throws IOException if the report's file could not be read
+     */
+    public byte[] getContents() throws IOException {
+        return contents != null ? contents : Files.readAllBytes(filePath);
+    }
+}
@@ -0,0 +1,307 @@
+package database.reports;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import database.StorageCrud;
+
+/**
+ * Generates reports in the background, on a schedule or once enough data has
+ * changed, and keeps the latest report of each type in memory and on disk so it
+ * can be served right away.
+ * <br>
+ * <br>
+ * Reports are generated one at a time on a single background thread. Each
+ * report reads its data from storage before writing its file, so no connection
+ * to storage is held while the file is written. The file is written next to
+ * the kept report and then moved over it, so the kept report is never partly
+ * written.
+ */
+public class ReportScheduler implements AutoCloseable {
+    // reports larger than this are only kept on disk
+    public static final int MAX_CONTENTS_IN_MEMORY = 16 * 1024 * 1024;
+    public static final Duration DEFAULT_CHANGE_POLL_INTERVAL = Duration.ofSeconds(30);
+
+    private static final String FILE_EXTENSION = ".csv";
+
+    private final StorageCrud storageCrud;
+    private final Path cacheDirectory;
+    private final ScheduledExecutorService executor;
+    private final Map<ReportType, ReportResult> results = new ConcurrentHashMap<>();
+    // why each report could not be generated the last time it was tried
+    private final Map<ReportType, String> failures = new ConcurrentHashMap<>();
+    // the number of changes after which each report is generated again
+    private final Map<ReportType, Long> changeThresholds = new EnumMap<>(ReportType.class);
+
+    /**
+     * Creates a new ReportScheduler that checks for changed data every
+     * {@link #DEFAULT_CHANGE_POLL_INTERVAL}.
+     *
+     * @param storageCrud    the storage to read the reports' data from
+     * @param cacheDirectory the directory to keep the reports in. Reports kept
+     *                       there by an earlier run are served until they are
+     *                       generated again.
+     * @throws IOException if the directory could not be created
+     */
+    public ReportScheduler(StorageCrud storageCrud, Path cacheDirectory) throws IOException {
+        this(storageCrud, cacheDirectory, DEFAULT_CHANGE_POLL_INTERVAL);
+    }
+
+    /**
+     * Creates a new ReportScheduler.
+     *
+     * @param storageCrud        the storage to read the reports' data from
+     * @param cacheDirectory     the directory to keep the reports in. Reports kept
+     *                           there by an earlier run are served until they are
+     *                           generated again.
+     * @param changePollInterval how often to check whether enough data has changed
+     *                           to generate a report again
+     * @throws IOException if the directory could not be created
+     */
+    public ReportScheduler(StorageCrud storageCrud, Path cacheDirectory, Duration changePollInterval)
+            throws IOException {
+        this.storageCrud = storageCrud;
+        this.cacheDirectory = Files.createDirectories(cacheDirectory);
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "report-scheduler");
+            thread.setDaemon(true); // so it does not keep the program running
+            return thread;
+        });
+
+        for (ReportType type : ReportType.values()) {
+            Path filePath = getFilePath(type);
+            if (Files.isRegularFile(filePath)) {
+                // what changed since is unknown, so it is stale
+                results.put(type, new ReportResult(type, filePath, Files.getLastModifiedTime(filePath).toInstant(),
+                        ReportResult.UNKNOWN_CHANGE_COUNT, null));
+            }
+        }
+
+        long pollMillis = changePollInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::refreshChanged, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Generates a report now, and then again every interval.
+     *
+     * @param type     the type of the report
+     * @param interval the time between the starts of each generation
+     */
+    public void scheduleEvery(ReportType type, Duration interval) {
+        executor.scheduleAtFixedRate(() -> generate(type), 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Generates a report at the same time every day.
+     *
+     * @param type the type of the report
+     * @param time the time of day, in the system's time zone
+     */
+    public void scheduleDaily(ReportType type, LocalTime time) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.with(time);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        executor.scheduleAtFixedRate(() -> generate(type), Duration.between(now, next).toMillis(),
+                Duration.ofDays(1).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Generates a report again once enough Items and Categories have changed
+     * since it was last generated. Reports whose changes are unknown are
+     * generated at the next check.
+     *
+     * @param type    the type of the report
+     * @param changes the number of changes, which must be positive
+     */
+    public void refreshAfterChanges(ReportType type, long changes) {
+        if (changes <= 0) {
+            throw new IllegalArgumentException("The number of changes must be positive");
+        }
+        synchronized (changeThresholds) {
+            changeThresholds.put(type, changes);
+        }
+    }
+
+    /**
+     * Gets the latest report of a type right away, however old it is.
+     *
+     * @param type the type of the report
+     * @return the report, or null if none has been generated
+     */
+    public ReportResult getLatest(ReportType type) {
+        return results.get(type);
+    }
+
+    /**
+     * Gets why a report of a type could not be generated the last time it was
+     * tried, since the report from before is kept and served in its place.
+     *
+     * @param type the type of the report
+     * @return the reason, or null if the last try generated the report or none
+     *         has been tried
+     */
+    public String getLastFailure(ReportType type) {
+        return failures.get(type);
+    }
+
+    /**
+     * Gets the latest report of a type, generating it first if none has been
+     * generated or a refresh is forced.
+     *
+     * @param type         the type of the report
+     * @param forceRefresh true to generate the report again, waiting for it
+     * @return the report, or null if it had to be generated and could not be
+     */
+    public ReportResult getReport(ReportType type, boolean forceRefresh) {
+        ReportResult result = results.get(type);
+        if (result != null && !forceRefresh) {
+            return result;
+        }
+        try {
+            return refresh(type).get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ee) {
+            return null;
+        }
+    }
+
+    /**
+     * Generates a report in the background, after any reports already being
+     * generated.
+     *
+     * @param type the type of the report
+     * @return the generated report, or null if it could not be generated
+     */
+    public Future<ReportResult> refresh(ReportType type) {
+        return executor.submit(() -> generate(type));
+    }
+
+    /**
+     * Gets the number of Items and Categories that have changed since a report's
+     * data was read.
+     *
+     * @param result the report
+     * @return the number of changes, or UNKNOWN_CHANGE_COUNT if it is not known
+     */
+    public long getChangesSince(ReportResult result) {
+        if (result.getChangeCount() == ReportResult.UNKNOWN_CHANGE_COUNT) {
+            return ReportResult.UNKNOWN_CHANGE_COUNT;
+        }
+        return storageCrud.getChangeCount() - result.getChangeCount();
+    }
+
+    /**
+     * Checks if data has changed since a report's data was read, so that it may
+     * be out of date.
+     *
+     * @param result the report
+     * @return true if the report may be out of date, false otherwise
+     */
+    public boolean isStale(ReportResult result) {
+        return getChangesSince(result) != 0;
+    }
+
+    /**
+     * Stops generating reports. Reports already kept on disk are left there.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Generates the reports that enough data has changed for.
+     */
+    private void refreshChanged() {
+        Map<ReportType, Long> thresholds;
+        synchronized (changeThresholds) {
+            thresholds = new EnumMap<>(changeThresholds);
+        }
+        for (Map.Entry<ReportType, Long> threshold : thresholds.entrySet()) {
+            ReportResult result = results.get(threshold.getKey());
+            long changes = result == null ? ReportResult.UNKNOWN_CHANGE_COUNT : getChangesSince(result);
+            if (changes == ReportResult.UNKNOWN_CHANGE_COUNT || changes >= threshold.getValue()) {
+                generate(threshold.getKey());
+            }
+        }
+    }
+
+    /**
+     * Generates a report and keeps it, replacing the report kept before it.
+     *
+     * @param type the type of the report
+     * @return the report, or null if it could not be generated, keeping the
+     *         report from before and the reason from {@link #getLastFailure}
+     */
+    private ReportResult generate(ReportType type) {
+        // counted before reading, so changes made while reading count as changes since
+        long changeCount = storageCrud.getChangeCount();
+        Instant generatedAt = Instant.now();
+        Path filePath = getFilePath(type);
+        Path temporaryPath = null;
+        try {
+            temporaryPath = Files.createTempFile(cacheDirectory, type.getFileName(), ".tmp");
+            ReportGenerator report = type.newReport();
+            report.setReportFilePath(temporaryPath.toString());
+            if (!report.generateReport(storageCrud)) {
+                failures.put(type, "Could not read the report's data from storage");
+                return null;
+            }
+
+            // a report with no rows writes nothing, and is kept as an empty file
+            Files.move(temporaryPath, filePath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            temporaryPath = null;
+            byte[] contents = Files.size(filePath) <= MAX_CONTENTS_IN_MEMORY ? Files.readAllBytes(filePath) : null;
+
+            ReportResult result = new ReportResult(type, filePath, generatedAt, changeCount, contents);
+            results.put(type, result);
+            failures.remove(type);
+            return result;
+        } catch (IOException ioe) {
+            failures.put(type, "Could not write the report's file: " + ioe);
+            return null;
+        } catch (RuntimeException re) {
+            // caught so that the scheduled task runs again, since an exception would
+            // cancel it
+            failures.put(type, re.toString());
+            return null;
+        } finally {
+            if (temporaryPath != null) {
+                try {
+                    Files.deleteIfExists(temporaryPath);
+                } catch (IOException ioe) {
+                    // left behind, and replaced by the next temporary file
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the file a report of a type is kept in.
+     *
+     * @param type the type of the report
+     * @return the file path
+     */
+    private Path getFilePath(ReportType type) {
+        return cacheDirectory.resolve(type.getFileName() + FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,44 @@
+package database.reports;
+
+import java.util.function.Supplier;
+
+/**
+ * The kinds of reports that can be generated in the background.
+ */
+public enum ReportType {
+    LOW_INVENTORY("low_inventory_report", LowInventoryReport::new),
+    UNSOLD_INVENTORY("unsold_inventory_report", UnsoldInventoryReport::new),
+    INVENTORY_VOLUME("inventory_volume_report", InventoryVolumeReport::new);
+
+    private final String fileName;
+    private final Supplier<ReportGenerator> reportSupplier;
+
+    /**
+     * Creates a new ReportType.
+     *
+     * @param fileName       the name of the report's file, without an extension
+     * @param reportSupplier creates a new report of this type
+     */
+    ReportType(String fileName, Supplier<ReportGenerator> reportSupplier) {
+        this.fileName = fileName;
+        this.reportSupplier = reportSupplier;
+    }
+
+    /**
+     * Gets the name of the report's file, without an extension.
+     *
+     * @return the file name
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Creates a new report of this type.
+     *
+     * @return the report
+     */
+    public ReportGenerator newReport() {
+        return reportSupplier.get();
+    }
+}
@@ -0,0 +1,42 @@
+package database.reports;
+
+import java.util.List;
+import java.util.Set;
+import database.items.*;
+
+/**
+ * A report that is built up one item at a time, so that several reports can be
+ * generated from a single pass over the inventory.
+ */
+public interface ReportVisitor {
+
+    /**
+     * Starts a new report, clearing the results of any earlier one.
+     *
+     * @param categoryList the categories, if the report requires them
+     * @param bundleList   the bundles, if the report requires them
+     */
+    public void begin(List<Category> categoryList, List<Bundle> bundleList);
+
+    /**
+     * Adds an item to the report.
+     *
+     * @param item the item
+     */
+    public void visit(Item item);
+
+    /**
+     * Finishes the report once every item has been visited, writing it to its
+     * output.
+     *
+     * @return true if the report was written, false otherwise
+     */
+    public boolean finish();
+
+    /**
+     * Gets the datasets this report needs besides the items it visits.
+     *
+     * @return the datasets the report needs
+     */
+    public Set<ReportDataset> getRequiredDatasets();
+}
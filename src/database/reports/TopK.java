@@ -0,0 +1,80 @@
+package database.reports;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best ranked values offered to it, up to a fixed number of them, so
+ * ranking any number of values only takes memory for the ones that are kept.
+ *
+ * @param <T> the type of the values
+ */
+public class TopK<T> {
+    private final int k;
+    private final Comparator<T> ranking;
+    // the worst of the kept values is at the head, to be replaced by better ones
+    private final PriorityQueue<T> heap;
+
+    /**
+     * Creates a new TopK.
+     *
+     * @param k       the number of values to keep
+     * @param ranking the order of the values, best first. Values that rank the
+     *                same should be told apart, so the kept values do not depend
+     *                on the order they were offered in.
+     * @throws IllegalArgumentException if k is not positive
+     */
+    public TopK(int k, Comparator<T> ranking) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.k = k;
+        this.ranking = ranking;
+        this.heap = new PriorityQueue<>(Math.min(k, 1024) + 1, ranking.reversed());
+    }
+
+    /**
+     * Offers a value, keeping it if it is among the best k so far.
+     *
+     * @param value the value
+     */
+    public void offer(T value) {
+        if (heap.size() < k) {
+            heap.add(value);
+        } else if (ranking.compare(value, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(value);
+        }
+    }
+
+    /**
+     * Offers every value kept by another TopK.
+     *
+     * @param other the other TopK
+     */
+    public void addAll(TopK<T> other) {
+        for (T value : other.heap) {
+            offer(value);
+        }
+    }
+
+    /**
+     * Removes every kept value.
+     */
+    public void clear() {
+        heap.clear();
+    }
+
+    /**
+     * Gets the kept values.
+     *
+     * @return the values, best first
+     */
+    public List<T> toList() {
+        List<T> values = new ArrayList<>(heap);
+        values.sort(ranking);
+        return values;
+    }
+}
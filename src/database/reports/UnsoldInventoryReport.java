@@ -1,27 +1,42 @@
 package database.reports;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.Date;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
+import database.StorageCrud;
 import database.items.Bundle;
 import database.items.Category;
-import database.items.DataType;
 import database.items.Item;
 
 /**
  * Generates a report of inventory items that have been in stock longer than
- * their designated sell-within period.
+ * their designated sell-within period. By default, the items are filtered by
+ * storage, so only the unsold items are read. The report can be limited to
+ * the most overdue items, keeping only that many items in memory.
  */
 public class UnsoldInventoryReport extends ReportGenerator {
+    public static final int NO_LIMIT = -1;
+
+    // most days overdue first, which is the earliest expected sell-by date, then
+    // by ID, the same as storage ranks them
+    private static final Comparator<Item> BY_DAYS_OVERDUE = Comparator
+            .comparingLong((Item item) -> item.getCreated().toLocalDate().toEpochDay() + item.getSellWithinNumDays())
+            .thenComparingInt(Item::getItemId);
 
     private List<Item> unsoldItems;
+    private TopK<Item> mostOverdueItems; // in place of the list when the report is limited
     private String reportFilePath;
+    private boolean pushDown = true;
+    private int limit = NO_LIMIT;
+    private LocalDate currentDate; // the date the report is generated for
 
     /**
      * Constructor that initializes the report with a timestamped filename.
@@ -33,118 +48,96 @@ public class UnsoldInventoryReport extends ReportGenerator {
     }
 
     @Override
-    public boolean generateReport(List<Item> itemList, List<Category> categoryList, List<Bundle> bundleList) {
+    public void begin(List<Category> categoryList, List<Bundle> bundleList) {
         // Clear previous results
         this.unsoldItems.clear();
+        this.mostOverdueItems = limit == NO_LIMIT ? null : new TopK<>(limit, BY_DAYS_OVERDUE);
 
         // Current date for comparison
-        LocalDate currentDate = LocalDate.now();
+        this.currentDate = LocalDate.now();
+    }
 
-        // Identify items that have been in inventory longer than their sell-within
-        // period
-        for (Item item : itemList) {
-            Date createdDate = item.getLastModified();
-            int sellWithinDays = item.getSellWithinNumDays();
-            if (sellWithinDays >= 0) {
+    @Override
+    public void visit(Item item) {
+        if (!isUnsold(item)) {
+            return;
+        }
+        if (mostOverdueItems != null) {
+            mostOverdueItems.offer(item);
+        } else {
+            unsoldItems.add(item);
+        }
+    }
 
-                // Convert SQL Date to LocalDate
-                LocalDate created = createdDate.toLocalDate();
+    @Override
+    protected ReportPartition newPartition() {
+        return new UnsoldItems();
+    }
 
-                // Calculate days since creation
-                long daysSinceCreation = ChronoUnit.DAYS.between(created, currentDate);
+    @Override
+    protected void addPartition(ReportPartition partition) {
+        UnsoldItems partitionItems = (UnsoldItems) partition;
+        if (mostOverdueItems != null) {
+            mostOverdueItems.addAll(partitionItems.mostOverdueItems);
+        } else {
+            unsoldItems.addAll(partitionItems.items);
+        }
+    }
 
-                // If item has exceeded its sell-by timeframe
-                if (daysSinceCreation > sellWithinDays) {
-                    unsoldItems.add(item);
-                }
-            }
+    /**
+     * Identifies an item that has been in inventory longer than its sell-within
+     * period
+     *
+     * @param item the item
+     * @return true if the item has exceeded its sell-by timeframe
+     */
+    private boolean isUnsold(Item item) {
+        Date createdDate = item.getLastModified();
+        int sellWithinDays = item.getSellWithinNumDays();
+        if (sellWithinDays < 0) {
+            return false;
         }
 
+        // Convert SQL Date to LocalDate
+        LocalDate created = createdDate.toLocalDate();
+
+        // Calculate days since creation
+        long daysSinceCreation = ChronoUnit.DAYS.between(created, currentDate);
+        return daysSinceCreation > sellWithinDays;
+    }
+
+    @Override
+    public boolean finish() {
+        if (mostOverdueItems != null) {
+            unsoldItems = mostOverdueItems.toList(); // ranked by days overdue
+        }
         if (unsoldItems.isEmpty()) {
             return true; // No items to report but not an error condition
         }
 
-        try (FileWriter writer = new FileWriter(reportFilePath)) {
-            // Get a sample item to access attribute keys and data types
-            Item sampleItem = unsoldItems.get(0);
-            List<String> keys = sampleItem.getAttributeKeys();
-            List<DataType> dataTypes = sampleItem.getAttributeDataTypes();
-
-            // Add custom calculated fields for the report
-            List<String> reportHeaders = new ArrayList<>(keys);
-            reportHeaders.add("ExpectedSellByDate");
-            reportHeaders.add("DaysOverdue");
-
-            // Find the index of the category ID column
-            int categoryIdIndex = reportHeaders.indexOf(Item.CATEGORY_ID_KEY);
-
-            // Write headers - replace CategoryId with CategoryName
-            for (int i = 0; i < reportHeaders.size(); i++) {
-                if (i == categoryIdIndex) {
-                    writer.append(Category.NAME_KEY);
-                } else {
-                    writer.append(reportHeaders.get(i));
-                }
-
-                if (i < reportHeaders.size() - 1) {
-                    writer.append(",");
-                }
-            }
-            writer.append("\n");
+        try (ReportCsvWriter writer = new ReportCsvWriter(reportFilePath)) {
+            List<String> keys = unsoldItems.get(0).getAttributeKeys();
 
-            // Date formatter for CSV output
-            SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd");
+            // Write headers - CategoryName in place of CategoryId, then the custom
+            // calculated fields
+            writeItemHeader(writer, keys);
+            writer.writeField("ExpectedSellByDate");
+            writer.writeField("DaysOverdue");
+            writer.endRow();
 
             // Write data rows
             for (Item item : unsoldItems) {
-                List<String> attributes = item.getAllAttributes();
-
-                // Write standard attributes based on data types
-                for (int i = 0; i < attributes.size(); i++) {
-                    String value = attributes.get(i);
-                    DataType type = dataTypes.get(i);
-                    // If this is the category ID column, write the category name instead
-                    if (i == categoryIdIndex) {
-                        writer.append(item.getCategory().getName());
-                    } else {
-                        switch (type) {
-                            case DOUBLE:
-                                // Format doubles with two decimal places
-                                try {
-                                    double doubleVal = Double.parseDouble(value);
-                                    writer.append(String.format("%.2f", doubleVal));
-                                } catch (NumberFormatException e) {
-                                    writer.append(value);
-                                }
-                                break;
-                            case DATE:
-                                // Format dates nicely
-                                try {
-                                    Date date = Date.valueOf(value);
-                                    writer.append(dateFormatter.format(date));
-                                } catch (IllegalArgumentException e) {
-                                    writer.append(value);
-                                }
-                                break;
-                            default:
-                                // For all other types, use the value as is
-                                writer.append(value);
-                        }
-                    }
-                    writer.append(",");
-                }
+                writeItemFields(writer, item, keys);
 
                 // Calculate and write the custom fields
                 LocalDate createdLocalDate = item.getCreated().toLocalDate();
                 LocalDate expectedSellByDate = createdLocalDate.plusDays(item.getSellWithinNumDays());
                 long daysOverdue = ChronoUnit.DAYS.between(expectedSellByDate, currentDate);
 
-                writer.append(expectedSellByDate.toString()).append(",");
-                writer.append(String.valueOf(daysOverdue));
-                writer.append("\n");
+                writer.writeDate(expectedSellByDate);
+                writer.writeField(daysOverdue);
+                writer.endRow();
             }
-
-            writer.flush();
         } catch (IOException e) {
             return false;
         }
@@ -152,6 +145,67 @@ public class UnsoldInventoryReport extends ReportGenerator {
         return true;
     }
 
+    @Override
+    public boolean generateReport(StorageCrud storageCrud) {
+        if (pushDown) {
+            Date today = Date.valueOf(LocalDate.now());
+            List<Item> items = limit == NO_LIMIT ? storageCrud.readUnsoldItems(today)
+                    : storageCrud.readUnsoldItemsByDaysOverdue(today, limit);
+            if (items != null) {
+                return generateReport(items, new ArrayList<>(), new ArrayList<>());
+            }
+            // fall back to filtering every item ourselves
+        }
+        return super.generateReport(storageCrud);
+    }
+
+    @Override
+    public Set<ReportDataset> getRequiredDatasets() {
+        return EnumSet.of(ReportDataset.ITEMS); // each item has its category
+    }
+
+    /**
+     * Sets whether the unsold items are filtered by storage, or from every item
+     * read out of storage
+     *
+     * @param pushDown true to filter the items in storage, false otherwise
+     */
+    public void setPushDown(boolean pushDown) {
+        this.pushDown = pushDown;
+    }
+
+    /**
+     * Gets whether the unsold items are filtered by storage
+     *
+     * @return true if the items are filtered in storage, false otherwise
+     */
+    public boolean isPushDown() {
+        return pushDown;
+    }
+
+    /**
+     * Limits the report to the most overdue items, ranked from the most days
+     * overdue down
+     *
+     * @param limit the number of items to report, or NO_LIMIT to report every
+     *              unsold item in order of ID
+     */
+    public void setLimit(int limit) {
+        if (limit <= 0 && limit != NO_LIMIT) {
+            throw new IllegalArgumentException("The limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the number of items the report is limited to
+     *
+     * @return the limit, or NO_LIMIT if every unsold item is reported
+     */
+    public int getLimit() {
+        return limit;
+    }
+
     /**
      * Gets the file path of the generated report
      *
@@ -180,4 +234,35 @@ public class UnsoldInventoryReport extends ReportGenerator {
     public List<Item> getUnsoldItems() {
         return new ArrayList<>(unsoldItems);
     }
-}
\ No newline at end of file
+
+    /**
+     * The unsold items of a partition, in the order they were visited, or only the
+     * most overdue if the report is limited
+     */
+    private class UnsoldItems implements ReportPartition {
+        private List<Item> items = new ArrayList<>();
+        private TopK<Item> mostOverdueItems = limit == NO_LIMIT ? null : new TopK<>(limit, BY_DAYS_OVERDUE);
+
+        @Override
+        public void visit(Item item) {
+            if (!isUnsold(item)) {
+                return;
+            }
+            if (mostOverdueItems != null) {
+                mostOverdueItems.offer(item);
+            } else {
+                items.add(item);
+            }
+        }
+
+        @Override
+        public void merge(ReportPartition next) {
+            UnsoldItems nextItems = (UnsoldItems) next;
+            if (mostOverdueItems != null) {
+                mostOverdueItems.addAll(nextItems.mostOverdueItems);
+            } else {
+                items.addAll(nextItems.items);
+            }
+        }
+    }
+}
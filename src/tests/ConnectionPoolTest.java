@@ -0,0 +1,224 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.ConnectionPool;
+import database.MySql;
+import database.MySqlCrud;
+import database.PooledConnection;
+import database.StorageCrud;
+import database.items.Category;
+import database.items.Item;
+
+/**
+ * Tests that the ConnectionPool validates, replaces and evicts its connections,
+ * that its metrics follow what it hands out, and that a transaction that throws
+ * gives its connection back.
+ */
+@OrderWith(Alphanumeric.class)
+public class ConnectionPoolTest {
+    private static final long BORROW_TIMEOUT_MILLIS = 500;
+    private static final long SHORT_IDLE_TIMEOUT_MILLIS = 200;
+
+    // we want to prevent multiple tests from accessing the database at the same
+    // time
+    private static ReentrantLock databaseMutex = new ReentrantLock();
+
+    /**
+     * Creates a pool of the test database.
+     *
+     * @param maxSize           The most connections the pool can have open.
+     * @param idleTimeoutMillis How long a connection can sit unused.
+     * @return The pool.
+     */
+    private static ConnectionPool createPool(int maxSize, long idleTimeoutMillis) {
+        return new ConnectionPool(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password, maxSize,
+                BORROW_TIMEOUT_MILLIS, idleTimeoutMillis);
+    }
+
+    /**
+     * Tests that the metrics count borrowed and idle connections, and that a
+     * returned connection is reused instead of opening another.
+     */
+    @Test
+    public void test1Metrics() throws SQLException {
+        databaseMutex.lock();
+        try (ConnectionPool pool = createPool(2, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS)) {
+            assertEquals(2, pool.getMaxSize());
+            assertEquals(0, pool.getOpenCount());
+
+            PooledConnection first = pool.borrow();
+            PooledConnection second = pool.borrow();
+            assertEquals(2, pool.getActiveCount());
+            assertEquals(0, pool.getIdleCount());
+            assertEquals(2, pool.getOpenCount());
+            assertEquals(1.0, pool.getUtilization(), 0.0);
+
+            pool.release(first, false);
+            assertEquals(1, pool.getActiveCount());
+            assertEquals(1, pool.getIdleCount());
+            assertEquals(0.5, pool.getUtilization(), 0.0);
+
+            assertSame(first, pool.borrow());
+            assertEquals(2, pool.getOpenCount());
+            assertEquals(3, pool.getBorrowCount());
+            assertTrue(pool.getMaxWaitMillis() >= pool.getAverageWaitMillis());
+
+            pool.release(first, false);
+            pool.release(second, false);
+            assertEquals(0, pool.getActiveCount());
+            assertEquals(2, pool.getIdleCount());
+            assertEquals(0, pool.getWaitingCount());
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that borrowing waits for a free connection and gives up after the
+     * borrow timeout.
+     */
+    @Test
+    public void test2BorrowTimesOut() throws SQLException {
+        databaseMutex.lock();
+        try (ConnectionPool pool = createPool(1, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS)) {
+            PooledConnection borrowed = pool.borrow();
+            try {
+                pool.borrow();
+                fail("Borrowed more connections than the pool allows");
+            } catch (SQLException sqle) {
+                // expected, the only connection is borrowed
+            }
+            assertTrue(pool.getMaxWaitMillis() >= BORROW_TIMEOUT_MILLIS);
+            assertEquals(1, pool.getOpenCount());
+
+            pool.release(borrowed, false);
+            pool.release(pool.borrow(), false); // the permit was given back
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that an idle connection that stopped working is found when it is
+     * borrowed, and replaced with a new one.
+     */
+    @Test
+    public void test3BrokenIdleConnectionReplaced() throws SQLException {
+        databaseMutex.lock();
+        try (ConnectionPool pool = createPool(1, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS)) {
+            PooledConnection broken = pool.borrow();
+            pool.release(broken, false);
+            broken.getConnection().close(); // as if the database dropped it while idle
+
+            PooledConnection replacement = pool.borrow();
+            assertNotSame(broken, replacement);
+            assertTrue(replacement.getConnection().isValid(1));
+            assertEquals(1, pool.getReconnectCount());
+            assertEquals(1, pool.getOpenCount());
+            pool.release(replacement, false);
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that a connection released as broken is closed instead of reused.
+     */
+    @Test
+    public void test4ReleasedBrokenConnectionDiscarded() throws SQLException {
+        databaseMutex.lock();
+        try (ConnectionPool pool = createPool(1, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS)) {
+            PooledConnection broken = pool.borrow();
+            pool.release(broken, true);
+            assertTrue(broken.getConnection().isClosed());
+            assertEquals(0, pool.getIdleCount());
+            assertEquals(0, pool.getOpenCount());
+
+            PooledConnection replacement = pool.borrow();
+            assertNotSame(broken, replacement);
+            pool.release(replacement, false);
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that connections left idle for longer than the idle timeout are
+     * closed.
+     */
+    @Test
+    public void test5IdleConnectionsEvicted() throws SQLException, InterruptedException {
+        databaseMutex.lock();
+        try (ConnectionPool pool = createPool(2, SHORT_IDLE_TIMEOUT_MILLIS)) {
+            PooledConnection first = pool.borrow();
+            PooledConnection second = pool.borrow();
+            pool.release(first, false);
+            pool.release(second, false);
+            assertEquals(2, pool.getIdleCount());
+
+            long deadline = System.currentTimeMillis() + 20 * SHORT_IDLE_TIMEOUT_MILLIS;
+            while (pool.getIdleCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(SHORT_IDLE_TIMEOUT_MILLIS / 4);
+            }
+            assertEquals(0, pool.getIdleCount());
+            assertEquals(0, pool.getOpenCount());
+            assertEquals(2, pool.getEvictionCount());
+            assertTrue(first.getConnection().isClosed());
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that a transaction that throws gives its connection back to the pool
+     * and is rolled back.
+     */
+    @Test
+    public void test6TransactionThatThrowsReleasesConnection() throws SQLException {
+        databaseMutex.lock();
+        ConnectionPool pool = createPool(1, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS);
+        try (MySql storage = new MySql(pool, MySqlCrud.tableQueries)) {
+            StorageCrud storageCrud = new MySqlCrud(storage);
+            Category category = new Category("POOLCATEGORY");
+            assertTrue(storageCrud.createCategory(category));
+            int numItems = storageCrud.readAllItems().size();
+
+            // the SKU is generated from the Category's name inside the transaction
+            Category throwingCategory = new Category(category.getCategoryId(), category.getName()) {
+                @Override
+                public String getName() {
+                    throw new IllegalStateException("Category name is unavailable");
+                }
+            };
+            Date today = Date.valueOf(LocalDate.now());
+            Item item = new Item(null, "poolItem", "pool item", throwingCategory, 1.0, 1, today, today, 10, 5, 0.0);
+            try {
+                storageCrud.createItem(item);
+                fail("The Category should have thrown");
+            } catch (IllegalStateException ise) {
+                // expected
+            }
+            assertEquals(0, pool.getActiveCount());
+
+            // the only connection can be borrowed again, and the Item was not kept
+            assertEquals(numItems, storageCrud.readAllItems().size());
+            assertTrue(storageCrud.deleteCategory(category.getCategoryId()));
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+}
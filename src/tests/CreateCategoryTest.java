@@ -194,12 +194,11 @@ public class CreateCategoryTest {
             String categoryName = "ObjectServiceCategory";
             Map<String, String> categoryData = new HashMap<>();
             categoryData.put(Category.NAME_KEY, categoryName);
-            categoryData.put(Category.CATEGORY_ID_KEY, Integer.toString(storageCrud.getNextId(Category.TABLE_NAME)));
 
             // Create the category using ObjectService
-            Category category = ObjectService.createCategory(categoryData);
+            Category category = ObjectService.createCategoryStub(categoryData);
 
-            // Save the created category
+            // Save the created category, which gives it its ID
             boolean result = storageCrud.createCategory(category);
             assertTrue("Category creation using object service should return success", result);
 
@@ -384,6 +383,86 @@ public class CreateCategoryTest {
         }
     }
 
+    /**
+     * Tests creating and reading back a category whose name has quotes in it
+     * using StorageCrud.
+     */
+    @Test
+    public void test10_StorageCrudCreateCategoryWithQuotes() {
+        databaseMutex.lock();
+        try {
+            deleteAllCategoriesAndItems();
+
+            String categoryName = "O\"Brien's";
+            Category newCategory = new Category(categoryName);
+            assertTrue("Category creation should return success", storageCrud.createCategory(newCategory));
+
+            List<Category> retrievedCategories = storageCrud.readCategoryByName(categoryName);
+            assertEquals(1, retrievedCategories.size());
+            assertEquals(categoryName, retrievedCategories.get(0).getName());
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests reading a category by its ID using StorageCrud.
+     */
+    @Test
+    public void test11_StorageCrudReadCategory() {
+        databaseMutex.lock();
+        try {
+            deleteAllCategoriesAndItems();
+
+            Category newCategory = new Category("StorageCrudReadCategory");
+            assertTrue("Category creation should return success", storageCrud.createCategory(newCategory));
+
+            assertEquals(newCategory, storageCrud.readCategory(newCategory.getCategoryId()));
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests creating many categories together and reading them back by name
+     * together using StorageCrud.
+     */
+    @Test
+    public void test12_StorageCrudCreateAndReadCategoriesInBulk() {
+        databaseMutex.lock();
+        try {
+            deleteAllCategoriesAndItems();
+
+            Category existing = new Category("BulkExisting");
+            assertTrue(storageCrud.createCategory(existing));
+
+            List<Category> newCategories = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            names.add(existing.getName());
+            for (int i = 0; i < 1200; i++) { // more than are looked up in one statement
+                newCategories.add(new Category("BulkCategory" + i));
+                names.add("BulkCategory" + i);
+            }
+            assertTrue("Categories creation should return success", storageCrud.createCategories(newCategories));
+            for (Category category : newCategories) {
+                assertTrue("Category ID should be assigned", category.getCategoryId() > 0);
+            }
+            names.add("BulkMissing");
+
+            List<Category> retrievedCategories = storageCrud.readCategoriesByName(names);
+            assertEquals(newCategories.size() + 1, retrievedCategories.size());
+            assertTrue(retrievedCategories.contains(existing));
+            assertTrue(retrievedCategories.containsAll(newCategories));
+
+            // a duplicate name fails the whole batch
+            List<Category> duplicates = List.of(new Category("BulkAnother"), new Category(existing.getName()));
+            assertFalse(storageCrud.createCategories(duplicates));
+            assertTrue(storageCrud.readCategoryByName("BulkAnother").isEmpty());
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
     @After
     public void cleanup() {
         databaseMutex.lock();
@@ -0,0 +1,242 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.importers.CsvImporter;
+import database.importers.CsvParser;
+import database.items.Category;
+import database.items.EconomyInfo;
+import database.items.Item;
+import user.Pair;
+
+/**
+ * Tests that the CsvParser reads quoted fields as described by RFC 4180, however
+ * the input is split into blocks, and that it reads faster than the Scanner it
+ * replaced.
+ */
+@OrderWith(Alphanumeric.class)
+public class CsvParserTest {
+    private static final String HEADER = "ItemName,Description,CategoryName,Price,NumItems,Created,LastModified,"
+            + "SellWithinNumDays,LowInventoryThreshold,PromotionPercentOff\n";
+
+    /**
+     * Reads every row of some CSV text.
+     *
+     * @param csv        The CSV text.
+     * @param bufferSize The number of bytes to read at a time.
+     * @return The fields of each row.
+     */
+    private static List<List<String>> parse(String csv, int bufferSize) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (CsvParser parser = new CsvParser(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                bufferSize)) {
+            while (parser.nextRow()) {
+                List<String> row = new ArrayList<>();
+                for (int i = 0; i < parser.getFieldCount(); i++) {
+                    row.add(parser.getString(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Tests that quoted fields can hold commas, line breaks and quotes, with any
+     * buffer size.
+     */
+    @Test
+    public void test1QuotedFields() throws IOException {
+        String csv = "\uFEFFa,\"b, with a comma\",\"c \"\"quoted\"\"\"\r\n"
+                + "\"multi\nline\",,\"\"\n"
+                + "caf\u00e9,\"\u00e9\",last";
+        List<List<String>> expected = Arrays.asList(
+                Arrays.asList("a", "b, with a comma", "c \"quoted\""),
+                Arrays.asList("multi\nline", "", ""),
+                Arrays.asList("caf\u00e9", "\u00e9", "last"));
+
+        for (int bufferSize : new int[] { 3, 4, 5, 7, 64, CsvParser.DEFAULT_BUFFER_SIZE }) {
+            assertEquals("buffer size " + bufferSize, expected, parse(csv, bufferSize));
+        }
+    }
+
+    /**
+     * Tests that blank lines, a trailing line break and input that does not
+     * follow RFC 4180 are read rather than rejected.
+     */
+    @Test
+    public void test2LenientInput() throws IOException {
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList(""), Arrays.asList("c", "d")),
+                parse("a,b\n\nc,d\n", 16));
+        assertEquals(Arrays.asList(Arrays.asList("5\" nail", "\"open"), Arrays.asList("x")),
+                parse("5\" nail,\"\"\"open\"\n\"x", 16));
+        assertEquals(Arrays.asList(Arrays.asList("quoted then text", "end")),
+                parse("\"quoted\" then text,end\r\n", 16));
+        assertTrue(parse("", 16).isEmpty());
+    }
+
+    /**
+     * Tests reading fields as ints, and the row numbers and offsets.
+     */
+    @Test
+    public void test3TypedFieldsAndPositions() throws IOException {
+        String csv = "12, -7 ,+0,2147483647,-2147483648\n2147483648,1x,,\"4\"\n";
+        try (CsvParser parser = new CsvParser(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), 8)) {
+            assertTrue(parser.nextRow());
+            assertEquals(1, parser.getRowNumber());
+            assertEquals(0, parser.getRowOffset());
+            assertEquals(12, parser.getInt(0));
+            assertEquals(-7, parser.getInt(1));
+            assertEquals(0, parser.getInt(2));
+            assertEquals(Integer.MAX_VALUE, parser.getInt(3));
+            assertEquals(Integer.MIN_VALUE, parser.getInt(4));
+
+            assertTrue(parser.nextRow());
+            assertEquals(2, parser.getRowNumber());
+            assertEquals(csv.indexOf('\n') + 1, parser.getRowOffset());
+            for (int i = 0; i < 3; i++) {
+                try {
+                    parser.getInt(i);
+                    fail("Field " + i + " is not an int");
+                } catch (NumberFormatException nfe) {
+                    // expected
+                }
+            }
+            assertTrue(parser.isEmpty(2));
+            assertEquals(4, parser.getInt(3));
+            assertFalse(parser.nextRow());
+        }
+    }
+
+    /**
+     * Tests that the importer reads descriptions with commas, and skips malformed
+     * rows.
+     */
+    @Test
+    public void test4ImporterReadsQuotedDescriptions() throws IOException {
+        File file = File.createTempFile("csv_parser_import", ".csv");
+        try {
+            Files.writeString(file.toPath(), HEADER
+                    + "Widget A,\"A widget, with a comma\",Hardware,19.99,50,2008-11-13,2023-12-1,30,10,0.0\n"
+                    + "Widget B,Hardware,29.99,30\n"
+                    + "\n"
+                    + "Widget C,\"Says \"\"hi\"\"\",\"Garden, Outdoor\",5,1,2008-11-13,2023-12-1,30,10,0.5\n");
+
+            Pair<List<Map<String, String>>, List<Map<String, String>>> data = new CsvImporter()
+                    .importData(file.getPath());
+            List<Map<String, String>> items = data.getFirst();
+            List<Map<String, String>> categories = data.getSecond();
+            assertEquals(2, items.size());
+            assertEquals(2, categories.size());
+            assertEquals("A widget, with a comma", items.get(0).get(Item.DESCRIPTION_KEY));
+            assertEquals("Hardware", categories.get(0).get(Category.NAME_KEY));
+            assertEquals("Says \"hi\"", items.get(1).get(Item.DESCRIPTION_KEY));
+            assertEquals("Garden, Outdoor", categories.get(1).get(Category.NAME_KEY));
+            assertEquals("5", items.get(1).get(EconomyInfo.PRICE_KEY));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that reading every field with the CsvParser is faster than splitting
+     * the lines of a Scanner, as the importer used to.
+     */
+    @Test
+    public void test5FasterThanScanner() throws IOException {
+        StringBuilder builder = new StringBuilder(HEADER);
+        for (int i = 0; builder.length() < 32 * 1024 * 1024; i++) {
+            builder.append("Widget ").append(i).append(",\"A widget, number ").append(i)
+                    .append("\",Hardware,19.99,").append(i % 500).append(",2008-11-13,2023-12-01,30,10,0.25\n");
+        }
+        byte[] csv = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        long parserNanos = Long.MAX_VALUE;
+        long scannerNanos = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) { // the first runs warm up
+            long start = System.nanoTime();
+            long parserChars = 0;
+            try (CsvParser parser = new CsvParser(new ByteArrayInputStream(csv))) {
+                while (parser.nextRow()) {
+                    for (int i = 0; i < parser.getFieldCount(); i++) {
+                        parserChars += parser.getString(i).length();
+                    }
+                }
+            }
+            parserNanos = Math.min(parserNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            long scannerChars = 0;
+            try (Scanner scanner = new Scanner(new ByteArrayInputStream(csv), StandardCharsets.UTF_8)) {
+                while (scanner.hasNextLine()) {
+                    for (String field : scanner.nextLine().split(",")) {
+                        scannerChars += field.length();
+                    }
+                }
+            }
+            scannerNanos = Math.min(scannerNanos, System.nanoTime() - start);
+            assertTrue(parserChars > 0 && scannerChars > 0);
+        }
+
+        double parserRate = csv.length / (parserNanos / 1e9) / (1024 * 1024);
+        double scannerRate = csv.length / (scannerNanos / 1e9) / (1024 * 1024);
+        assertTrue(String.format("CsvParser read %.0f MB/s, Scanner %.0f MB/s", parserRate, scannerRate),
+                parserRate >= 2 * scannerRate);
+    }
+
+    /**
+     * Tests that a parser started at the end of a row reads the rest of the rows
+     * with the same offsets and row numbers as one that read the whole input.
+     */
+    @Test
+    public void test6StartsPartWayThrough() throws IOException {
+        byte[] csv = "\uFEFFa,\"b\r\nc\"\r\n\nd,e\n\"f\"\"\",g\r\nh".getBytes(StandardCharsets.UTF_8);
+        List<Long> endOffsets = new ArrayList<>();
+        List<List<String>> rows = new ArrayList<>();
+        try (CsvParser parser = new CsvParser(new ByteArrayInputStream(csv), 4)) {
+            long offset = 0;
+            while (parser.nextRow()) {
+                assertTrue(parser.getRowOffset() >= offset);
+                offset = parser.getRowEndOffset();
+                endOffsets.add(offset);
+                rows.add(Arrays.asList(parser.getString(0), parser.getString(parser.getFieldCount() - 1)));
+            }
+        }
+        assertEquals(5, rows.size());
+        assertEquals(csv.length, (long) endOffsets.get(endOffsets.size() - 1));
+
+        for (int start = 0; start < endOffsets.size(); start++) {
+            int offset = endOffsets.get(start).intValue();
+            try (CsvParser parser = new CsvParser(
+                    new ByteArrayInputStream(csv, offset, csv.length - offset), offset, start + 1)) {
+                for (int i = start + 1; i < rows.size(); i++) {
+                    assertTrue(parser.nextRow());
+                    assertEquals(i + 1, parser.getRowNumber());
+                    assertEquals((long) endOffsets.get(i - 1), parser.getRowOffset());
+                    assertEquals((long) endOffsets.get(i), parser.getRowEndOffset());
+                    assertEquals(rows.get(i),
+                            Arrays.asList(parser.getString(0), parser.getString(parser.getFieldCount() - 1)));
+                }
+                assertFalse(parser.nextRow());
+            }
+        }
+    }
+}
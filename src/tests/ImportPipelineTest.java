@@ -0,0 +1,349 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.ImportCheckpoint;
+import database.MySql;
+import database.MySqlCrud;
+import database.StorageCrud;
+import database.importers.ImportPipeline;
+import database.items.Category;
+import database.items.Item;
+
+/**
+ * Tests that the ImportPipeline imports every row of a file in order, rejects
+ * bad rows, and starts a stopped import again from its checkpoint.
+ */
+@OrderWith(Alphanumeric.class)
+public class ImportPipelineTest {
+    private static final String HEADER = "ItemName,Description,CategoryName,Price,NumItems,Created,LastModified,"
+            + "SellWithinNumDays,LowInventoryThreshold,PromotionPercentOff\n";
+    private static final int BATCH_SIZE = 100;
+    private static final String[] CATEGORY_NAMES = { "PIPELINETOOLS", "PIPELINEGARDEN", "PIPELINEKITCHEN" };
+
+    private static StorageCrud storageCrud;
+    // fails to create Items after a number of batches, as if the program stopped
+    private static int numBatchesBeforeFailure;
+    private static StorageCrud failingStorageCrud;
+
+    // we want to prevent multiple tests from accessing the database at the same
+    // time
+    private static ReentrantLock databaseMutex = new ReentrantLock();
+
+    private File file;
+
+    static {
+        try {
+            storageCrud = new MySqlCrud(new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password,
+                    MySqlCrud.tableQueries, MySqlCrud.schemaMigrations));
+            failingStorageCrud = new MySqlCrud(new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password,
+                    MySqlCrud.tableQueries, MySqlCrud.schemaMigrations)) {
+                @Override
+                public boolean createItems(List<Item> items, ImportCheckpoint checkpoint) {
+                    return numBatchesBeforeFailure-- > 0 && super.createItems(items, checkpoint);
+                }
+            };
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Could not initialize MySql");
+        }
+    }
+
+    /**
+     * Deletes all Items and Categories in the database.
+     */
+    private static void deleteAllItemsAndCategories() {
+        for (Item item : storageCrud.readAllItems()) {
+            assertTrue(storageCrud.deleteItem(item.getItemId()));
+        }
+        for (Category category : storageCrud.readAllCategories()) {
+            assertTrue(storageCrud.deleteCategory(category.getCategoryId()));
+        }
+    }
+
+    /**
+     * Writes a CSV file of Items, with a malformed row after every 50 Items.
+     *
+     * @param numRows The number of Items.
+     * @param badRow  The index of the row to give a price that is not a number,
+     *                or -1 for none.
+     */
+    private void writeFile(int numRows, int badRow) throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < numRows; i++) {
+            csv.append("pipelineItem").append(i).append(",\"item ").append(i).append(", imported\",")
+                    .append(CATEGORY_NAMES[i % CATEGORY_NAMES.length]).append(',')
+                    .append(i == badRow ? "free" : "2.50").append(',').append(i % 40)
+                    .append(",2024-01-02,2024-01-03,30,10,0.0\n");
+            if (i % 50 == 0) {
+                csv.append("malformed,row\n"); // rejected
+            }
+        }
+        Files.writeString(file.toPath(), csv);
+    }
+
+    /**
+     * Creates a pipeline with small batches, so that many are in flight at once.
+     *
+     * @return The pipeline.
+     */
+    private static ImportPipeline newPipeline() {
+        return newPipeline(storageCrud);
+    }
+
+    /**
+     * Creates a pipeline with small batches, so that many are in flight at once.
+     *
+     * @param storage The storage to import into.
+     * @return The pipeline.
+     */
+    private static ImportPipeline newPipeline(StorageCrud storage) {
+        ImportPipeline pipeline = new ImportPipeline(storage);
+        pipeline.setBatchSize(BATCH_SIZE);
+        pipeline.setNumWorkers(3);
+        pipeline.setMaxBatchesInFlight(4);
+        return pipeline;
+    }
+
+    /**
+     * Clears the database and creates the file to import.
+     */
+    @Before
+    public void setup() throws IOException {
+        databaseMutex.lock();
+        deleteAllItemsAndCategories();
+        file = File.createTempFile("import_pipeline", ".csv");
+    }
+
+    /**
+     * Tests that every row is imported in the order of the file, creating only
+     * the Categories that do not exist yet.
+     */
+    @Test
+    public void test1ImportsEveryRowInOrder() throws IOException {
+        Category existing = new Category(CATEGORY_NAMES[0]);
+        assertTrue(storageCrud.createCategory(existing));
+
+        int numRows = 25 * BATCH_SIZE + 45;
+        writeFile(numRows, -1);
+        ImportPipeline pipeline = newPipeline();
+        assertTrue(pipeline.importItems(file.getPath()));
+        assertEquals(numRows, pipeline.getNumImported());
+
+        List<Item> items = storageCrud.readAllItems();
+        items.sort(Comparator.comparingInt(Item::getItemId));
+        assertEquals(numRows, items.size());
+        for (int i = 0; i < numRows; i++) {
+            Item item = items.get(i);
+            assertEquals("pipelineItem" + i, item.getName());
+            assertEquals("item " + i + ", imported", item.getDescription());
+            assertEquals(CATEGORY_NAMES[i % CATEGORY_NAMES.length], item.getCategory().getName());
+        }
+
+        assertEquals(CATEGORY_NAMES.length, storageCrud.readAllCategories().size());
+        assertEquals(existing.getCategoryId(), items.get(0).getCategory().getCategoryId());
+        assertNull(storageCrud.readImportCheckpoint(file.getAbsolutePath()));
+    }
+
+    /**
+     * Tests that rows with bad data and malformed rows are written to the file of
+     * rejected rows with their row numbers, and the rest are imported.
+     */
+    @Test
+    public void test2RejectsBadRows() throws IOException {
+        int numRows = 10 * BATCH_SIZE;
+        int badRow = 2 * BATCH_SIZE + 50;
+        writeFile(numRows, badRow);
+        ImportPipeline pipeline = newPipeline();
+        assertTrue(pipeline.importItems(file.getPath()));
+
+        int numMalformed = (numRows + 49) / 50;
+        assertEquals(numRows - 1, pipeline.getNumImported());
+        assertEquals(numMalformed + 1, pipeline.getNumRejected());
+        assertEquals(numRows - 1, storageCrud.readAllItems().size());
+
+        List<String> rejected = Files.readAllLines(Paths.get(ImportPipeline.getRejectedFilePath(file.getPath())));
+        assertTrue(rejected.get(0).endsWith(",RejectedRow,RejectReason"));
+        assertEquals(numMalformed + 1, rejected.size() - 1);
+        // the header, the Items and the malformed rows are before the bad row
+        int badRowNumber = 1 + badRow + ((badRow - 1) / 50 + 1) + 1;
+        List<String> badRows = new ArrayList<>();
+        for (String line : rejected) {
+            if (line.startsWith("pipelineItem")) {
+                badRows.add(line);
+            }
+        }
+        assertEquals(1, badRows.size());
+        assertTrue(badRows.get(0), badRows.get(0).startsWith("pipelineItem" + badRow + ","));
+        assertTrue(badRows.get(0), badRows.get(0).contains("," + badRowNumber + ","));
+        assertTrue(badRows.get(0), badRows.get(0).contains("Bad Item data: "));
+        assertTrue(rejected.get(1).endsWith(",3,Expected at least 10 fields but found 2"));
+    }
+
+    /**
+     * Tests that a file missing a column imports nothing.
+     */
+    @Test
+    public void test3MissingColumn() throws IOException {
+        Files.writeString(file.toPath(), "ItemName,Description\npipelineItem,an item\n");
+        ImportPipeline pipeline = newPipeline();
+        assertFalse(pipeline.importItems(file.getPath()));
+        assertEquals(0, pipeline.getNumImported());
+        assertTrue(storageCrud.readAllItems().isEmpty());
+    }
+
+    /**
+     * Tests that an import that stopped part way through starts again from its
+     * last checkpoint, importing each row once and rejecting each bad row once.
+     */
+    @Test
+    public void test4ResumesFromCheckpoint() throws IOException {
+        int numRows = 20 * BATCH_SIZE;
+        writeFile(numRows, 15 * BATCH_SIZE);
+        numBatchesBeforeFailure = 7;
+        ImportPipeline stopped = newPipeline(failingStorageCrud);
+        assertFalse(stopped.importItems(file.getPath()));
+
+        ImportCheckpoint checkpoint = storageCrud.readImportCheckpoint(file.getAbsolutePath());
+        assertNotNull(checkpoint);
+        assertEquals(stopped.getNumImported(), checkpoint.getNumImported());
+        assertEquals(stopped.getNumImported(), storageCrud.readAllItems().size());
+        assertTrue(checkpoint.getOffset() > 0 && checkpoint.getOffset() < file.length());
+
+        ImportPipeline resumed = newPipeline();
+        assertTrue(resumed.importItems(file.getPath()));
+        assertEquals(numRows - 1, resumed.getNumImported());
+        assertEquals((numRows + 49) / 50 + 1, resumed.getNumRejected());
+        assertNull(storageCrud.readImportCheckpoint(file.getAbsolutePath()));
+
+        List<Item> items = storageCrud.readAllItems();
+        items.sort(Comparator.comparingInt(Item::getItemId));
+        assertEquals(numRows - 1, items.size());
+        for (int i = 0, row = 0; i < items.size(); i++, row++) {
+            if (row == 15 * BATCH_SIZE) {
+                row++; // rejected
+            }
+            assertEquals("pipelineItem" + row, items.get(i).getName());
+        }
+        assertEquals((numRows + 49) / 50 + 1 + 1,
+                Files.readAllLines(Paths.get(ImportPipeline.getRejectedFilePath(file.getPath()))).size());
+    }
+
+    /**
+     * Tests that a checkpoint for a file that has changed since is ignored.
+     */
+    @Test
+    public void test5ChangedFileStartsOver() throws IOException {
+        writeFile(3 * BATCH_SIZE, -1);
+        assertTrue(storageCrud.createItems(new ArrayList<>(), new ImportCheckpoint(file.getAbsolutePath(),
+                file.length() + 1, file.lastModified(), file.length(), 3 * BATCH_SIZE, 3 * BATCH_SIZE, 0, 0)));
+        assertNotNull(storageCrud.readImportCheckpoint(file.getAbsolutePath()));
+
+        ImportPipeline pipeline = newPipeline();
+        assertTrue(pipeline.importItems(file.getPath()));
+        assertEquals(3 * BATCH_SIZE, pipeline.getNumImported());
+        assertEquals(3 * BATCH_SIZE, storageCrud.readAllItems().size());
+        assertNull(storageCrud.readImportCheckpoint(file.getAbsolutePath()));
+    }
+
+    /**
+     * Tests that an import stops if its checkpoint cannot be read, rather than
+     * starting over and creating the Items before the checkpoint again.
+     */
+    @Test
+    public void test6StopsIfCheckpointCannotBeRead() throws IOException, SQLException {
+        writeFile(3 * BATCH_SIZE, -1);
+        StorageCrud unreadableCheckpoints = new MySqlCrud(new MySql(MySqlCrud.url, MySqlCrud.username,
+                MySqlCrud.password, MySqlCrud.tableQueries, MySqlCrud.schemaMigrations)) {
+            @Override
+            public ImportCheckpoint readImportCheckpoint(String filePath) {
+                throw new RuntimeException("ERROR: Could not read the import checkpoint for " + filePath);
+            }
+        };
+
+        ImportPipeline pipeline = newPipeline(unreadableCheckpoints);
+        assertFalse(pipeline.importItems(file.getPath()));
+        assertEquals(0, pipeline.getNumImported());
+        assertTrue(storageCrud.readAllItems().isEmpty());
+    }
+
+    /**
+     * Tests that a row with a value too large for storage is rejected, rather than
+     * failing its whole batch, and the rest are imported.
+     */
+    @Test
+    public void test7RejectsValuesTooLargeForStorage() throws IOException {
+        String description = "d".repeat(StorageCrud.MAX_DESCRIPTION_LENGTH + 1);
+        Files.writeString(file.toPath(), HEADER
+                + "pipelineItem0,an item," + CATEGORY_NAMES[0] + ",2.50,1,2024-01-02,2024-01-03,30,10,0.0\n"
+                + "pipelineItem1," + description + "," + CATEGORY_NAMES[0]
+                + ",2.50,1,2024-01-02,2024-01-03,30,10,0.0\n"
+                + "pipelineItem2,an item," + CATEGORY_NAMES[0] + ",2.50,1,2024-01-02,2024-01-03,30,10,0.0\n");
+        ImportPipeline pipeline = newPipeline();
+        assertTrue(pipeline.importItems(file.getPath()));
+        assertEquals(2, pipeline.getNumImported());
+        assertEquals(1, pipeline.getNumRejected());
+        assertEquals(2, storageCrud.readAllItems().size());
+        assertNull(storageCrud.readImportCheckpoint(file.getAbsolutePath()));
+
+        List<String> rejected = Files.readAllLines(Paths.get(ImportPipeline.getRejectedFilePath(file.getPath())));
+        assertEquals(2, rejected.size());
+        assertTrue(rejected.get(1), rejected.get(1).startsWith("pipelineItem1,"));
+        assertTrue(rejected.get(1), rejected.get(1).endsWith(
+                ",3,Description is longer than " + StorageCrud.MAX_DESCRIPTION_LENGTH + " characters"));
+    }
+
+    /**
+     * Tests that an import stops if the Categories cannot be looked up, rather
+     * than creating Categories that may already exist.
+     */
+    @Test
+    public void test8StopsIfCategoriesCannotBeRead() throws IOException, SQLException {
+        writeFile(3 * BATCH_SIZE, -1);
+        StorageCrud unreadableCategories = new MySqlCrud(new MySql(MySqlCrud.url, MySqlCrud.username,
+                MySqlCrud.password, MySqlCrud.tableQueries, MySqlCrud.schemaMigrations)) {
+            @Override
+            public List<Category> readCategoriesByName(List<String> names) {
+                return null;
+            }
+        };
+
+        ImportPipeline pipeline = newPipeline(unreadableCategories);
+        assertFalse(pipeline.importItems(file.getPath()));
+        assertEquals(0, pipeline.getNumImported());
+        assertTrue(storageCrud.readAllItems().isEmpty());
+        assertTrue(storageCrud.readAllCategories().isEmpty());
+    }
+
+    /**
+     * Performs a final cleanup.
+     */
+    @After
+    public void cleanup() {
+        try {
+            deleteAllItemsAndCategories();
+            storageCrud.deleteImportCheckpoint(file.getAbsolutePath());
+            new File(ImportPipeline.getRejectedFilePath(file.getPath())).delete();
+            file.delete();
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+}
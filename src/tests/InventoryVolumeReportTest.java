@@ -0,0 +1,259 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.MySql;
+import database.MySqlCrud;
+import database.StorageCrud;
+import database.items.Category;
+import database.items.DataType;
+import database.items.Item;
+import database.reports.InventoryVolumeReport;
+
+/**
+ * Tests that the inventory volume report from the totals kept by the database is
+ * the same as the report totaled from every item.
+ */
+@OrderWith(Alphanumeric.class)
+public class InventoryVolumeReportTest {
+    private static MySql storage;
+    private static StorageCrud storageCrud;
+
+    // we want to prevent multiple tests from accessing the database at the same
+    // time
+    private static ReentrantLock databaseMutex = new ReentrantLock();
+
+    static {
+        try {
+            storage = new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password, MySqlCrud.tableQueries,
+                    MySqlCrud.schemaMigrations);
+            storageCrud = new MySqlCrud(storage);
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Could not initialize MySql");
+        }
+    }
+
+    /**
+     * Deletes all Items and Categories in the database.
+     */
+    private static void deleteAllItemsAndCategories() {
+        for (Item item : storageCrud.readAllItems()) {
+            assertTrue(storageCrud.deleteItem(item.getItemId()));
+        }
+        for (Category category : storageCrud.readAllCategories()) {
+            assertTrue(storageCrud.deleteCategory(category.getCategoryId()));
+        }
+    }
+
+    /**
+     * Creates a Category.
+     *
+     * @param name The name of the Category.
+     * @return The created Category.
+     */
+    private static Category addCategory(String name) {
+        Category category = new Category(name);
+        assertTrue(storageCrud.createCategory(category));
+        return category;
+    }
+
+    /**
+     * Creates an Item in a Category.
+     *
+     * @param category   The Category.
+     * @param sku        The SKU of the Item.
+     * @param price      The price of the Item.
+     * @param numItems   The number of units of the Item.
+     * @param percentOff The promotion of the Item.
+     * @return The created Item.
+     */
+    private static Item addItem(Category category, String sku, double price, int numItems, double percentOff) {
+        Date today = Date.valueOf(LocalDate.now());
+        Item item = new Item(sku, "volumeItem", "volume item", category, price, numItems, today, today, 10, 5,
+                percentOff);
+        assertTrue(storageCrud.createItem(item));
+        return item;
+    }
+
+    /**
+     * Updates every attribute of an Item in the database.
+     *
+     * @param item The Item.
+     */
+    private static void updateItem(Item item) {
+        assertTrue(storageCrud.updateItem(item.getAllAttributes(), item.getAttributeKeys(),
+                item.getAttributeDataTypes()));
+    }
+
+    /**
+     * Generates the report both by pushing the totals down to the database and by
+     * totaling every item, and checks that both files are the same.
+     */
+    private static void assertSameReports() throws IOException {
+        File pushedDown = File.createTempFile("volume_pushed_down", ".csv");
+        File fromItems = File.createTempFile("volume_from_items", ".csv");
+        try {
+            InventoryVolumeReport report = new InventoryVolumeReport();
+            report.setReportFilePath(pushedDown.getPath());
+            assertTrue(report.generateReport(storageCrud));
+
+            report = new InventoryVolumeReport();
+            report.setPushDown(false);
+            report.setReportFilePath(fromItems.getPath());
+            assertTrue(report.generateReport(storageCrud));
+
+            assertEquals(Files.readString(fromItems.toPath()), Files.readString(pushedDown.toPath()));
+        } finally {
+            pushedDown.delete();
+            fromItems.delete();
+        }
+    }
+
+    /**
+     * Tests that both reports are the same for categories with promotions, with
+     * no units and with no items at all.
+     */
+    @Test
+    public void test1PushDownMatchesItems() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+
+            Category tools = addCategory("VOLUMETOOLS");
+            addItem(tools, "volumesku1", 10.25, 4, 0.0);
+            addItem(tools, "volumesku2", 3.10, 17, 0.25);
+            addItem(tools, "volumesku3", 99.99, 1, 0.5);
+
+            Category garden = addCategory("VOLUMEGARDEN");
+            addItem(garden, "volumesku4", 7.50, 0, 0.0); // no units, so left out of the report
+
+            addCategory("VOLUMEEMPTY");
+
+            assertSameReports();
+        } catch (IOException ioe) {
+            fail("Could not read the generated reports");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that both reports are the same when there are categories but no items.
+     */
+    @Test
+    public void test2PushDownMatchesItemsWithoutItems() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addCategory("VOLUMEEMPTY");
+
+            assertSameReports();
+        } catch (IOException ioe) {
+            fail("Could not read the generated reports");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that the kept totals follow Items as they are updated, moved to
+     * another category and deleted, so they never need to be corrected.
+     */
+    @Test
+    public void test3KeptTotalsFollowChanges() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+
+            Category tools = addCategory("VOLUMETOOLS");
+            Category garden = addCategory("VOLUMEGARDEN");
+            Item hammer = addItem(tools, "volumesku1", 10.25, 4, 0.0);
+            Item rake = addItem(tools, "volumesku2", 3.10, 17, 0.5);
+            List<Item> batch = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Date today = Date.valueOf(LocalDate.now());
+                batch.add(new Item("volumebatchsku" + i, "volumeItem", "volume item", garden, 1.20 + i, 3 + i,
+                        today, today, 10, 5, 0.5));
+            }
+            assertTrue(storageCrud.createItems(batch));
+            assertSameReports();
+
+            hammer.setNumItems(9);
+            hammer.setPrice(11.5);
+            updateItem(hammer);
+            rake.setCategory(garden);
+            rake.setPromotionPercentOff(0.0);
+            updateItem(rake);
+            assertSameReports();
+
+            assertTrue(storageCrud.deleteItem(batch.get(1).getItemId()));
+            assertSameReports();
+
+            assertEquals(0, storageCrud.reconcileCategoryVolumes());
+        } catch (IOException ioe) {
+            fail("Could not read the generated reports");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that kept totals that drifted are corrected by reconciling them.
+     */
+    @Test
+    public void test4ReconcileCorrectsDriftedTotals() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+
+            Category tools = addCategory("VOLUMETOOLS");
+            addItem(tools, "volumesku1", 10.25, 4, 0.0);
+            addItem(tools, "volumesku2", 3.10, 17, 0.5);
+            Category garden = addCategory("VOLUMEGARDEN");
+            addItem(garden, "volumesku3", 7.50, 2, 0.0);
+            addCategory("VOLUMEEMPTY");
+
+            // as if a change had been made without keeping the totals
+            assertEquals(1, storage.executeUpdate(
+                    "update CategoryTotals set TotalUnits = TotalUnits + 5, TotalValue = TotalValue + 1 where CategoryId = ?",
+                    List.of(Integer.toString(tools.getCategoryId())), List.of(DataType.INTEGER)));
+
+            assertEquals(1, storageCrud.reconcileCategoryVolumes());
+            assertSameReports();
+            assertEquals(0, storageCrud.reconcileCategoryVolumes());
+        } catch (IOException ioe) {
+            fail("Could not read the generated reports");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Performs a final cleanup.
+     */
+    @After
+    public void cleanup() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+}
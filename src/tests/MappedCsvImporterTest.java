@@ -0,0 +1,155 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.importers.CsvImporter;
+import database.importers.Importer;
+import database.importers.ImporterFactory;
+import database.importers.ImporterTypes;
+import database.importers.MappedCsvImporter;
+import user.Pair;
+
+/**
+ * Tests that importing a file in parallel chunks reads the same rows, in the
+ * same order, as importing it all at once.
+ */
+@OrderWith(Alphanumeric.class)
+public class MappedCsvImporterTest {
+    private static final String HEADER = "ItemName,Description,CategoryName,Price,NumItems,Created,LastModified,"
+            + "SellWithinNumDays,LowInventoryThreshold,PromotionPercentOff\r\n";
+    private static final int NUM_ROWS = 5000;
+
+    private static File file;
+
+    /**
+     * Writes a file whose rows have quoted commas, line breaks and quotes, and
+     * some malformed rows, so that chunks often end near them.
+     */
+    @BeforeClass
+    public static void writeFile() throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            csv.append("mapped item ").append(i).append(',');
+            switch (i % 4) {
+                case 0:
+                    csv.append("\"a description, with a comma\"");
+                    break;
+                case 1:
+                    csv.append("\"a description\nover two lines\"");
+                    break;
+                case 2:
+                    csv.append("\"a \"\"quoted\"\" description\"");
+                    break;
+                default:
+                    csv.append("plain");
+                    break;
+            }
+            csv.append(",MAPPEDCATEGORY").append(i % 7).append(",1.25,").append(i)
+                    .append(",2024-01-02,2024-01-03,30,10,0.0\r\n");
+            if (i % 300 == 0) {
+                csv.append("malformed,\"row\nwith a line break\"\r\n\r\n");
+            }
+        }
+        csv.setLength(csv.length() - 2); // the last row has no line break
+
+        file = File.createTempFile("mapped_csv_importer", ".csv");
+        Files.writeString(file.toPath(), csv);
+    }
+
+    /**
+     * Deletes the file.
+     */
+    @AfterClass
+    public static void deleteFile() {
+        file.delete();
+    }
+
+    /**
+     * Tests that small chunks parsed in parallel read the same rows as the
+     * CsvImporter.
+     */
+    @Test
+    public void test1SameRowsAsCsvImporter() {
+        Pair<List<Map<String, String>>, List<Map<String, String>>> expected = new CsvImporter()
+                .importData(file.getPath());
+        assertEquals(NUM_ROWS, expected.getFirst().size());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (long chunkSize : new long[] { 1, 100, 4096, MappedCsvImporter.DEFAULT_CHUNK_SIZE }) {
+                MappedCsvImporter importer = new MappedCsvImporter();
+                importer.setChunkSize(chunkSize);
+                importer.setForkJoinPool(pool);
+                Pair<List<Map<String, String>>, List<Map<String, String>>> data = importer.importData(file.getPath());
+                assertEquals("chunk size " + chunkSize, expected.getFirst(), data.getFirst());
+                assertEquals("chunk size " + chunkSize, expected.getSecond(), data.getSecond());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests that the factory creates the importer for its type.
+     */
+    @Test
+    public void test2FactoryCreatesMappedImporter() {
+        Importer<Pair<List<Map<String, String>>, List<Map<String, String>>>> importer = ImporterFactory
+                .createItemImporter(ImporterTypes.MAPPED_CSV);
+        assertTrue(importer instanceof MappedCsvImporter);
+        assertEquals(NUM_ROWS, importer.importData(file.getPath()).getFirst().size());
+    }
+
+    /**
+     * Tests that a quoted field longer than several chunks, with line breaks and
+     * quotes all through it, is not split, and that the rows after it are read
+     * the same as by the CsvImporter.
+     */
+    @Test
+    public void test3LongQuotedFieldSpansChunks() throws IOException {
+        StringBuilder description = new StringBuilder("\"");
+        while (description.length() < 200 * 1024) {
+            description.append("a long \"\"quoted\"\" line,\r\n");
+        }
+        description.append('"');
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 50; i++) {
+            csv.append("long item ").append(i).append(',').append(i % 10 == 0 ? description : "plain")
+                    .append(",LONGCATEGORY,1.25,").append(i).append(",2024-01-02,2024-01-03,30,10,0.0\r\n");
+        }
+
+        File longFile = File.createTempFile("mapped_csv_importer_long", ".csv");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Files.writeString(longFile.toPath(), csv);
+            Pair<List<Map<String, String>>, List<Map<String, String>>> expected = new CsvImporter()
+                    .importData(longFile.getPath());
+            assertEquals(50, expected.getFirst().size());
+
+            for (long chunkSize : new long[] { 1, 4096, 64 * 1024 + 1, 1024 * 1024 }) {
+                MappedCsvImporter importer = new MappedCsvImporter();
+                importer.setChunkSize(chunkSize);
+                importer.setForkJoinPool(pool);
+                Pair<List<Map<String, String>>, List<Map<String, String>>> data = importer
+                        .importData(longFile.getPath());
+                assertEquals("chunk size " + chunkSize, expected.getFirst(), data.getFirst());
+                assertEquals("chunk size " + chunkSize, expected.getSecond(), data.getSecond());
+            }
+        } finally {
+            pool.shutdown();
+            longFile.delete();
+        }
+    }
+}
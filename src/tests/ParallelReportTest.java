@@ -0,0 +1,126 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.items.Category;
+import database.items.Item;
+import database.reports.InventoryVolumeReport;
+import database.reports.LowInventoryReport;
+import database.reports.ReportGenerator;
+import database.reports.UnsoldInventoryReport;
+
+/**
+ * Tests that reports generated from partitions of the items in parallel are the
+ * same as reports generated from every item in order.
+ */
+@OrderWith(Alphanumeric.class)
+public class ParallelReportTest {
+    private static final int NUM_ITEMS = 20 * ReportGenerator.PARTITION_SIZE + 123;
+    private static final int NUM_CATEGORIES = 50;
+
+    private static List<Category> categories = new ArrayList<>();
+    private static List<Item> items = new ArrayList<>();
+    private static ForkJoinPool pool;
+
+    /**
+     * Creates the Items, spread over many Categories. Prices and promotions are
+     * exact in binary, so the totals are exact however they are added up.
+     */
+    @BeforeClass
+    public static void createItems() {
+        for (int i = 0; i < NUM_CATEGORIES; i++) {
+            categories.add(new Category(i + 1, "PARALLELCATEGORY" + i));
+        }
+
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            Date date = Date.valueOf(today.minusDays(i % 60));
+            items.add(new Item(i + 1, "parallelsku" + i, "parallelItem", "parallel item " + i,
+                    categories.get((i * 7) % NUM_CATEGORIES), 0.25 * (i % 400), i % 20, date, date, i % 45,
+                    i % 15, (i % 2) * 0.5));
+        }
+        pool = new ForkJoinPool(4);
+    }
+
+    /**
+     * Shuts down the pool.
+     */
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * Generates a report in order and in parallel, checking that both are the
+     * same.
+     *
+     * @param sequential The report to generate in order.
+     * @param parallel   The report to generate in parallel.
+     */
+    private static void assertSameReports(ReportGenerator sequential, ReportGenerator parallel) throws IOException {
+        File sequentialFile = File.createTempFile("sequential_report", ".csv");
+        File parallelFile = File.createTempFile("parallel_report", ".csv");
+        try {
+            sequential.setForkJoinPool(null);
+            sequential.setReportFilePath(sequentialFile.getPath());
+            assertTrue(sequential.generateReport(items, categories, new ArrayList<>()));
+
+            parallel.setForkJoinPool(pool);
+            parallel.setReportFilePath(parallelFile.getPath());
+            assertTrue(parallel.generateReport(items, categories, new ArrayList<>()));
+
+            String expected = Files.readString(sequentialFile.toPath());
+            assertTrue(expected.length() > 0);
+            assertEquals(expected, Files.readString(parallelFile.toPath()));
+
+            // and again, since the report must not depend on how the work was scheduled
+            assertTrue(parallel.generateReport(items, categories, new ArrayList<>()));
+            assertEquals(expected, Files.readString(parallelFile.toPath()));
+        } finally {
+            sequentialFile.delete();
+            parallelFile.delete();
+        }
+    }
+
+    /**
+     * Tests that the low inventory report is the same in parallel.
+     */
+    @Test
+    public void test1LowInventoryReport() throws IOException {
+        assertSameReports(new LowInventoryReport(), new LowInventoryReport());
+    }
+
+    /**
+     * Tests that the unsold inventory report is the same in parallel.
+     */
+    @Test
+    public void test2UnsoldInventoryReport() throws IOException {
+        assertSameReports(new UnsoldInventoryReport(), new UnsoldInventoryReport());
+    }
+
+    /**
+     * Tests that the inventory volume report is the same in parallel.
+     */
+    @Test
+    public void test3InventoryVolumeReport() throws IOException {
+        InventoryVolumeReport sequential = new InventoryVolumeReport();
+        sequential.setPushDown(false);
+        InventoryVolumeReport parallel = new InventoryVolumeReport();
+        parallel.setPushDown(false);
+        assertSameReports(sequential, parallel);
+    }
+}
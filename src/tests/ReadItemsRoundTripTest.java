@@ -0,0 +1,289 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.MySql;
+import database.MySqlCrud;
+import database.StorageCrud;
+import database.items.Category;
+import database.items.EconomyInfo;
+import database.items.Item;
+import database.reports.InventoryVolumeReport;
+import database.reports.LowInventoryReport;
+import database.reports.ReportData;
+
+/**
+ * Regression benchmark making sure that reading Items (along with their
+ * Categories) takes the same number of round trips to the database no matter
+ * how many Items there are.
+ */
+@OrderWith(Alphanumeric.class)
+public class ReadItemsRoundTripTest {
+    private static final int FEW_ITEMS = 1;
+    private static final int MANY_ITEMS = 50;
+    private static final int BENCHMARK_READS = 500;
+
+    private static MySql storage; // to count round trips
+    private static StorageCrud storageCrud;
+
+    // we want to prevent multiple tests from accessing the database at the same
+    // time
+    private static ReentrantLock databaseMutex = new ReentrantLock();
+
+    static {
+        try {
+            storage = new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password, MySqlCrud.tableQueries,
+                    MySqlCrud.schemaMigrations);
+            storageCrud = new MySqlCrud(storage);
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Could not initialize MySql");
+        }
+    }
+
+    /**
+     * Deletes all Items and Categories in the database.
+     */
+    private static void deleteAllItemsAndCategories() {
+        for (Item item : storageCrud.readAllItems()) {
+            assertTrue(storageCrud.deleteItem(item.getItemId()));
+        }
+        for (Category category : storageCrud.readAllCategories()) {
+            assertTrue(storageCrud.deleteCategory(category.getCategoryId()));
+        }
+    }
+
+    /**
+     * Creates a Category holding the given number of Items.
+     *
+     * @param numItems The number of Items to create.
+     */
+    private static void addItems(int numItems) {
+        Category category = new Category("ROUNDTRIPCATEGORY");
+        assertTrue(storageCrud.createCategory(category));
+        category = storageCrud.readCategoryByName(category.getName()).get(0);
+
+        Date today = Date.valueOf(LocalDate.now());
+        for (int i = 0; i < numItems; i++) {
+            Item item = new Item("roundtrip" + i, "roundTripItem", "round trip item " + i, category, 1.5 + i, i,
+                    today, today, 10, 5, 0.0);
+            assertTrue(storageCrud.createItem(item));
+        }
+    }
+
+    /**
+     * Counts the round trips taken by a read.
+     *
+     * @param read The read to perform.
+     * @return The number of round trips the read took.
+     */
+    private static long countRoundTrips(Runnable read) {
+        long before = storage.getRoundTripCount();
+        read.run();
+        return storage.getRoundTripCount() - before;
+    }
+
+    /**
+     * Times a read performed many times over.
+     *
+     * @param read The read to perform.
+     * @return The average time the read took, in nanoseconds.
+     */
+    private static long averageNanos(Runnable read) {
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_READS; i++) {
+            read.run();
+        }
+        return (System.nanoTime() - start) / BENCHMARK_READS;
+    }
+
+    /**
+     * Counts the round trips taken by a read, once with few Items in the database
+     * and once with many.
+     *
+     * @param read The read to perform.
+     * @return The round trips for few Items and for many Items.
+     */
+    private static long[] countRoundTripsForFewAndMany(Runnable read) {
+        deleteAllItemsAndCategories();
+        addItems(FEW_ITEMS);
+        long fewRoundTrips = countRoundTrips(read);
+
+        deleteAllItemsAndCategories();
+        addItems(MANY_ITEMS);
+        long manyRoundTrips = countRoundTrips(read);
+
+        return new long[] { fewRoundTrips, manyRoundTrips };
+    }
+
+    /**
+     * Tests that reading all Items does not read each Item's Category separately.
+     */
+    @Test
+    public void test1ReadAllItemsConstantRoundTrips() {
+        databaseMutex.lock();
+        try {
+            long[] roundTrips = countRoundTripsForFewAndMany(() -> {
+                List<Item> items = storageCrud.readAllItems();
+                assertTrue(!items.isEmpty());
+                assertEquals("ROUNDTRIPCATEGORY", items.get(0).getCategory().getName());
+            });
+            assertEquals(roundTrips[0], roundTrips[1]);
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that reading all Items sorted does not read each Item's Category
+     * separately.
+     */
+    @Test
+    public void test2ReadAllItemsSortByConstantRoundTrips() {
+        databaseMutex.lock();
+        try {
+            long[] roundTrips = countRoundTripsForFewAndMany(() -> {
+                List<Item> items = storageCrud.readAllItemsSortBy(EconomyInfo.PRICE_KEY, false);
+                assertTrue(!items.isEmpty());
+                assertEquals("ROUNDTRIPCATEGORY", items.get(0).getCategory().getName());
+            });
+            assertEquals(roundTrips[0], roundTrips[1]);
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that reading Items by name does not read each Item's Category
+     * separately.
+     */
+    @Test
+    public void test3ReadItemByNameConstantRoundTrips() {
+        databaseMutex.lock();
+        try {
+            long[] roundTrips = countRoundTripsForFewAndMany(() -> {
+                List<Item> items = storageCrud.readItemByName("roundTripItem");
+                assertTrue(!items.isEmpty());
+                assertEquals("ROUNDTRIPCATEGORY", items.get(0).getCategory().getName());
+            });
+            assertEquals(roundTrips[0], roundTrips[1]);
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Benchmarks reading a single Item, making sure it is read in one round trip
+     * instead of also starting and committing a transaction around it.
+     */
+    @Test
+    public void test4ReadItemSingleRoundTrip() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addItems(FEW_ITEMS);
+            int itemId = storageCrud.readAllItems().get(0).getItemId();
+            assertEquals(1, countRoundTrips(() -> assertTrue(storageCrud.readItem(itemId) != null)));
+
+            // warm up the connections and statements before timing
+            averageNanos(() -> storageCrud.readItem(itemId));
+
+            // each read in a transaction of its own, as reads used to be performed
+            long transactionNanos = averageNanos(() -> {
+                storage.startTransaction();
+                storageCrud.readItem(itemId);
+                storage.commitTransaction();
+            });
+            long singleNanos = averageNanos(() -> storageCrud.readItem(itemId));
+            // the transaction adds two round trips, so the read on its own is faster
+            assertTrue("readItem took " + transactionNanos / 1000 + "us in a transaction, " + singleNanos / 1000
+                    + "us on its own", singleNanos < transactionNanos);
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that report data is only read for the datasets a report needs, and
+     * that reading more than one takes a single snapshot.
+     */
+    @Test
+    public void test5ReportDataReadsRequiredDatasets() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addItems(FEW_ITEMS);
+
+            // only the items, in one read without a transaction
+            ReportData[] data = new ReportData[1];
+            long lowInventoryRoundTrips = countRoundTrips(
+                    () -> data[0] = ReportData.load(storageCrud, new LowInventoryReport().getRequiredDatasets()));
+            assertEquals(1, lowInventoryRoundTrips);
+            assertEquals(FEW_ITEMS, data[0].getItems().size());
+            assertTrue(data[0].getBundles().isEmpty());
+
+            // the items and categories, plus starting and committing the snapshot
+            long volumeRoundTrips = countRoundTrips(
+                    () -> data[0] = ReportData.load(storageCrud, new InventoryVolumeReport().getRequiredDatasets()));
+            assertEquals(4, volumeRoundTrips);
+            assertEquals(1, data[0].getCategories().size());
+            assertTrue(data[0].getBundles().isEmpty());
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that report data that could not be read is null, rather than an empty
+     * report.
+     */
+    @Test
+    public void test6ReportDataNullIfNotRead() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addItems(FEW_ITEMS);
+
+            StorageCrud failingStorageCrud = new MySqlCrud(storage) {
+                @Override
+                public boolean forEachCategory(Consumer<Category> consumer) {
+                    return false;
+                }
+            };
+            assertNotNull(ReportData.load(failingStorageCrud, new LowInventoryReport().getRequiredDatasets()));
+            assertNull(ReportData.load(failingStorageCrud, new InventoryVolumeReport().getRequiredDatasets()));
+            InventoryVolumeReport report = new InventoryVolumeReport();
+            report.setPushDown(false); // so it reads the categories
+            assertFalse(report.generateReport(failingStorageCrud));
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Performs a final cleanup.
+     */
+    @After
+    public void cleanup() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+}
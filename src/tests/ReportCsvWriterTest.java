@@ -0,0 +1,200 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.sql.Date;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.items.Category;
+import database.items.DataType;
+import database.items.Item;
+import database.reports.LowInventoryReport;
+import database.reports.ReportCsvWriter;
+
+/**
+ * Tests that the report CSV writer formats fields like the reports always have,
+ * escapes them correctly, and allocates far less for each row.
+ */
+@OrderWith(Alphanumeric.class)
+public class ReportCsvWriterTest {
+    private static final int BENCHMARK_ITEMS = 20000;
+
+    /**
+     * Writes a single row with a writer.
+     *
+     * @param row Writes the fields of the row.
+     * @return The written row.
+     */
+    private static String writeRow(RowWriter row) throws IOException {
+        StringWriter output = new StringWriter();
+        try (ReportCsvWriter writer = new ReportCsvWriter(output, 16)) {
+            row.write(writer);
+            writer.endRow();
+        }
+        return output.toString();
+    }
+
+    /**
+     * Writes the fields of a row.
+     */
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ReportCsvWriter writer) throws IOException;
+    }
+
+    /**
+     * Gets the number of bytes this thread has allocated so far.
+     *
+     * @return The allocated bytes.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Tests that money is formatted exactly like String.format, including values
+     * on a half cent and values too large for the fast path.
+     */
+    @Test
+    public void test1MoneyMatchesFormat() throws IOException {
+        List<Double> values = new ArrayList<>(List.of(0.0, -0.0, 1.005, 2.675, 0.125, 0.135, -0.001, -1.255, 10.12,
+                99.99, 1234567.895, 999999999.995, 1e12 + 0.005, Double.NaN, Double.POSITIVE_INFINITY));
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            values.add((random.nextInt(2000000) - 1000000) / 1000.0); // many on a half cent
+            values.add(random.nextDouble() * 1e6);
+        }
+
+        for (double value : values) {
+            assertEquals(String.format(Locale.ROOT, "%.2f", value) + "\n",
+                    writeRow(writer -> writer.writeMoney(value)));
+        }
+    }
+
+    /**
+     * Tests that text fields are quoted only when they need to be.
+     */
+    @Test
+    public void test2FieldsAreEscaped() throws IOException {
+        assertEquals("plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",null,-12\n", writeRow(writer -> {
+            writer.writeField("plain");
+            writer.writeField("a,b");
+            writer.writeField("say \"hi\"");
+            writer.writeField("two\nlines");
+            writer.writeField((String) null);
+            writer.writeField(-12);
+        }));
+    }
+
+    /**
+     * Tests that dates are written as yyyy-MM-dd.
+     */
+    @Test
+    public void test3DatesMatchFormat() throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        for (String date : List.of("2024-01-05", "1999-12-31", "0099-03-09", "2025-10-18")) {
+            assertEquals(dateFormat.format(Date.valueOf(date)) + "\n",
+                    writeRow(writer -> writer.writeDate(Date.valueOf(date))));
+        }
+        assertEquals("null\n", writeRow(writer -> writer.writeDate((Date) null)));
+    }
+
+    /**
+     * Writes a low inventory report the way the reports used to, converting every
+     * attribute to a string and formatting it back, so the writer has something
+     * to be measured against.
+     *
+     * @param items    The items in the report.
+     * @param filePath The path of the report.
+     */
+    private static void writeLowInventoryReportAsStrings(List<Item> items, String filePath) throws IOException {
+        try (FileWriter writer = new FileWriter(filePath)) {
+            List<String> keys = items.get(0).getAttributeKeys();
+            List<DataType> dataTypes = items.get(0).getAttributeDataTypes();
+            writer.append(String.join(",", keys)).append(",Deficit\n");
+
+            SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd");
+            for (Item item : items) {
+                List<String> attributes = item.getAllAttributes();
+                for (int i = 0; i < attributes.size(); i++) {
+                    String value = attributes.get(i);
+                    switch (dataTypes.get(i)) {
+                        case DOUBLE:
+                            writer.append(String.format("%.2f", Double.parseDouble(value)));
+                            break;
+                        case DATE:
+                            writer.append(dateFormatter.format(Date.valueOf(value)));
+                            break;
+                        default:
+                            writer.append(value);
+                    }
+                    writer.append(",");
+                }
+                writer.append(String.valueOf(item.getLowInventoryThreshold() - item.getNumItems()));
+                writer.append("\n");
+            }
+        }
+    }
+
+    /**
+     * Benchmarks the allocations of writing a large low inventory report, making
+     * sure the writer allocates at least 10 times less than formatting every
+     * attribute as a string.
+     */
+    @Test
+    public void test4FewerAllocationsPerRow() throws IOException {
+        Category category = new Category(1, "BENCHMARKCATEGORY");
+        Date today = Date.valueOf(LocalDate.now());
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < BENCHMARK_ITEMS; i++) {
+            // every item is low, so every item is written
+            items.add(new Item(i, "benchsku" + i, "benchItem", "bench item " + i, category, 1.25 + i, 1, today,
+                    today, 10, 5, 0.15));
+        }
+
+        File file = File.createTempFile("csv_benchmark", ".csv");
+        try {
+            LowInventoryReport report = new LowInventoryReport();
+            report.setReportFilePath(file.getPath());
+            report.setForkJoinPool(null); // every allocation is then counted on this thread
+
+            // warm up both, so the measurements are of compiled code
+            for (int i = 0; i < 3; i++) {
+                assertTrue(report.generateReport(items, new ArrayList<>(), new ArrayList<>()));
+                writeLowInventoryReportAsStrings(items, file.getPath());
+            }
+
+            long start = allocatedBytes();
+            writeLowInventoryReportAsStrings(items, file.getPath());
+            long stringBytes = allocatedBytes() - start;
+
+            start = allocatedBytes();
+            assertTrue(report.generateReport(items, new ArrayList<>(), new ArrayList<>()));
+            long writerBytes = allocatedBytes() - start;
+
+            if (writerBytes * 10 > stringBytes) {
+                fail("Expected at least 10 times fewer allocations, but allocated " + writerBytes + " bytes instead of "
+                        + stringBytes);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
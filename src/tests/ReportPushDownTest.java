@@ -0,0 +1,282 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.MySql;
+import database.MySqlCrud;
+import database.StorageCrud;
+import database.items.Category;
+import database.items.Item;
+import database.reports.LowInventoryReport;
+import database.reports.ReportEngine;
+import database.reports.UnsoldInventoryReport;
+
+/**
+ * Tests that the low inventory and unsold inventory reports filtered by the
+ * database are the same as the reports filtered from every item, and as the
+ * reports generated together in one pass.
+ */
+@OrderWith(Alphanumeric.class)
+public class ReportPushDownTest {
+    private static StorageCrud storageCrud;
+
+    // we want to prevent multiple tests from accessing the database at the same
+    // time
+    private static ReentrantLock databaseMutex = new ReentrantLock();
+
+    static {
+        try {
+            storageCrud = new MySqlCrud(new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password,
+                    MySqlCrud.tableQueries, MySqlCrud.schemaMigrations));
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Could not initialize MySql");
+        }
+    }
+
+    /**
+     * Deletes all Items and Categories in the database.
+     */
+    private static void deleteAllItemsAndCategories() {
+        for (Item item : storageCrud.readAllItems()) {
+            assertTrue(storageCrud.deleteItem(item.getItemId()));
+        }
+        for (Category category : storageCrud.readAllCategories()) {
+            assertTrue(storageCrud.deleteCategory(category.getCategoryId()));
+        }
+    }
+
+    /**
+     * Creates Items that are and are not low on inventory and unsold, in a single
+     * Category.
+     */
+    private static void addItems() {
+        Category category = new Category("PUSHDOWNCATEGORY");
+        assertTrue(storageCrud.createCategory(category));
+
+        Date today = Date.valueOf(LocalDate.now());
+        Date monthAgo = Date.valueOf(LocalDate.now().minusDays(30));
+        // sku, numItems, lastModified, sellWithinNumDays, lowInventoryThreshold
+        Object[][] items = {
+                { "pushdownsku1", 2, today, 10, 5 }, // low
+                { "pushdownsku2", 5, today, 10, 5 }, // low, at its threshold
+                { "pushdownsku3", 6, monthAgo, 10, 5 }, // unsold
+                { "pushdownsku4", 0, monthAgo, 30, -1 }, // no threshold, sold just in time
+                { "pushdownsku5", 8, monthAgo, -1, 5 }, // no sell-within period
+                { "pushdownsku6", 1, monthAgo, 29, 3 }, // low and unsold
+        };
+        for (Object[] row : items) {
+            Item item = new Item((String) row[0], "pushDownItem", "push down item", category, 4.25,
+                    (Integer) row[1], (Date) row[2], (Date) row[2], (Integer) row[3], (Integer) row[4], 0.1);
+            assertTrue(storageCrud.createItem(item));
+        }
+    }
+
+    /**
+     * Checks that two generated reports have the same contents.
+     *
+     * @param pushedDown The report filtered by the database.
+     * @param fromItems  The report filtered from every item.
+     */
+    private static void assertSameFiles(File pushedDown, File fromItems) throws IOException {
+        assertTrue(pushedDown.length() > 0);
+        assertEquals(Files.readString(fromItems.toPath()), Files.readString(pushedDown.toPath()));
+    }
+
+    /**
+     * Tests that both low inventory reports are the same.
+     */
+    @Test
+    public void test1LowInventoryPushDownMatchesItems() {
+        databaseMutex.lock();
+        File pushedDown = null;
+        File fromItems = null;
+        try {
+            deleteAllItemsAndCategories();
+            addItems();
+            pushedDown = File.createTempFile("low_pushed_down", ".csv");
+            fromItems = File.createTempFile("low_from_items", ".csv");
+
+            LowInventoryReport report = new LowInventoryReport();
+            report.setReportFilePath(pushedDown.getPath());
+            assertTrue(report.generateReport(storageCrud));
+
+            report = new LowInventoryReport();
+            report.setPushDown(false);
+            report.setReportFilePath(fromItems.getPath());
+            assertTrue(report.generateReport(storageCrud));
+
+            assertSameFiles(pushedDown, fromItems);
+        } catch (IOException ioe) {
+            fail("Could not read the generated reports");
+        } finally {
+            if (pushedDown != null) {
+                pushedDown.delete();
+            }
+            if (fromItems != null) {
+                fromItems.delete();
+            }
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that both unsold inventory reports are the same.
+     */
+    @Test
+    public void test2UnsoldInventoryPushDownMatchesItems() {
+        databaseMutex.lock();
+        File pushedDown = null;
+        File fromItems = null;
+        try {
+            deleteAllItemsAndCategories();
+            addItems();
+            pushedDown = File.createTempFile("unsold_pushed_down", ".csv");
+            fromItems = File.createTempFile("unsold_from_items", ".csv");
+
+            UnsoldInventoryReport report = new UnsoldInventoryReport();
+            report.setReportFilePath(pushedDown.getPath());
+            assertTrue(report.generateReport(storageCrud));
+
+            report = new UnsoldInventoryReport();
+            report.setPushDown(false);
+            report.setReportFilePath(fromItems.getPath());
+            assertTrue(report.generateReport(storageCrud));
+
+            assertSameFiles(pushedDown, fromItems);
+        } catch (IOException ioe) {
+            fail("Could not read the generated reports");
+        } finally {
+            if (pushedDown != null) {
+                pushedDown.delete();
+            }
+            if (fromItems != null) {
+                fromItems.delete();
+            }
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that generating both reports in one pass writes the same reports as
+     * generating them separately.
+     */
+    @Test
+    public void test3ReportEngineMatchesSeparateReports() {
+        databaseMutex.lock();
+        File[] files = new File[4];
+        try {
+            deleteAllItemsAndCategories();
+            addItems();
+            for (int i = 0; i < files.length; i++) {
+                files[i] = File.createTempFile("engine_report" + i, ".csv");
+            }
+
+            LowInventoryReport lowReport = new LowInventoryReport();
+            lowReport.setReportFilePath(files[0].getPath());
+            assertTrue(lowReport.generateReport(storageCrud));
+            UnsoldInventoryReport unsoldReport = new UnsoldInventoryReport();
+            unsoldReport.setReportFilePath(files[1].getPath());
+            assertTrue(unsoldReport.generateReport(storageCrud));
+
+            ReportEngine reportEngine = new ReportEngine();
+            lowReport = new LowInventoryReport();
+            lowReport.setReportFilePath(files[2].getPath());
+            reportEngine.register(lowReport);
+            unsoldReport = new UnsoldInventoryReport();
+            unsoldReport.setReportFilePath(files[3].getPath());
+            reportEngine.register(unsoldReport);
+            assertTrue(reportEngine.run(storageCrud));
+
+            assertSameFiles(files[2], files[0]);
+            assertSameFiles(files[3], files[1]);
+        } catch (IOException ioe) {
+            fail("Could not read the generated reports");
+        } finally {
+            for (File file : files) {
+                if (file != null) {
+                    file.delete();
+                }
+            }
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that the reports limited to their most low and most overdue items are
+     * the same when ranked by the database.
+     */
+    @Test
+    public void test4LimitedPushDownMatchesItems() {
+        databaseMutex.lock();
+        File[] files = new File[4];
+        try {
+            deleteAllItemsAndCategories();
+            addItems();
+            for (int i = 0; i < files.length; i++) {
+                files[i] = File.createTempFile("limited_report" + i, ".csv");
+            }
+
+            for (boolean pushDown : new boolean[] { true, false }) {
+                LowInventoryReport lowReport = new LowInventoryReport();
+                lowReport.setPushDown(pushDown);
+                lowReport.setLimit(2);
+                lowReport.setReportFilePath(files[pushDown ? 0 : 1].getPath());
+                assertTrue(lowReport.generateReport(storageCrud));
+
+                UnsoldInventoryReport unsoldReport = new UnsoldInventoryReport();
+                unsoldReport.setPushDown(pushDown);
+                unsoldReport.setLimit(1);
+                unsoldReport.setReportFilePath(files[pushDown ? 2 : 3].getPath());
+                assertTrue(unsoldReport.generateReport(storageCrud));
+            }
+
+            assertSameFiles(files[0], files[1]);
+            assertSameFiles(files[2], files[3]);
+            // the header, then the largest deficits first
+            List<String> lowLines = Files.readAllLines(files[0].toPath());
+            assertEquals(3, lowLines.size());
+            assertTrue(lowLines.get(1).contains("pushdownsku1"));
+            assertTrue(lowLines.get(2).contains("pushdownsku6"));
+            List<String> unsoldLines = Files.readAllLines(files[2].toPath());
+            assertEquals(2, unsoldLines.size());
+            assertTrue(unsoldLines.get(1).contains("pushdownsku3"));
+        } catch (IOException ioe) {
+            fail("Could not read the generated reports");
+        } finally {
+            for (File file : files) {
+                if (file != null) {
+                    file.delete();
+                }
+            }
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Performs a final cleanup.
+     */
+    @After
+    public void cleanup() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.MySql;
+import database.MySqlCrud;
+import database.StorageCrud;
+import database.items.Category;
+import database.items.Item;
+import database.reports.LowInventoryReport;
+import database.reports.ReportResult;
+import database.reports.ReportScheduler;
+import database.reports.ReportType;
+
+/**
+ * Tests that reports generated in the background are served as they were
+ * generated, and are generated again once enough data has changed.
+ */
+@OrderWith(Alphanumeric.class)
+public class ReportSchedulerTest {
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+    private static final long WAIT_MILLIS = 10000;
+
+    private static StorageCrud storageCrud;
+
+    // we want to prevent multiple tests from accessing the database at the same
+    // time
+    private static ReentrantLock databaseMutex = new ReentrantLock();
+
+    private Category category;
+    private Path cacheDirectory;
+
+    static {
+        try {
+            storageCrud = new MySqlCrud(new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password,
+                    MySqlCrud.tableQueries, MySqlCrud.schemaMigrations));
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Could not initialize MySql");
+        }
+    }
+
+    /**
+     * Deletes all Items and Categories in the database.
+     */
+    private static void deleteAllItemsAndCategories() {
+        for (Item item : storageCrud.readAllItems()) {
+            assertTrue(storageCrud.deleteItem(item.getItemId()));
+        }
+        for (Category category : storageCrud.readAllCategories()) {
+            assertTrue(storageCrud.deleteCategory(category.getCategoryId()));
+        }
+    }
+
+    /**
+     * Creates an Item with fewer units than its low inventory threshold.
+     *
+     * @param sku The SKU of the Item.
+     */
+    private void addLowItem(String sku) {
+        Date today = Date.valueOf(LocalDate.now());
+        assertTrue(storageCrud.createItem(new Item(sku, "scheduledItem", "scheduled item", category, 2.5, 1, today,
+                today, 10, 5, 0.0)));
+    }
+
+    /**
+     * Creates the Category the Items are put in, and a directory for the reports.
+     */
+    @Before
+    public void setup() throws IOException {
+        databaseMutex.lock();
+        deleteAllItemsAndCategories();
+        category = new Category("SCHEDULEDCATEGORY");
+        assertTrue(storageCrud.createCategory(category));
+        cacheDirectory = Files.createTempDirectory("report_cache");
+    }
+
+    /**
+     * Tests that a forced refresh is the same report as one generated directly,
+     * and is then served without being generated again.
+     */
+    @Test
+    public void test1ForcedRefreshMatchesReport() throws IOException {
+        addLowItem("scheduledsku1");
+        addLowItem("scheduledsku2");
+
+        File expected = File.createTempFile("scheduled_low_inventory", ".csv");
+        try (ReportScheduler scheduler = new ReportScheduler(storageCrud, cacheDirectory, POLL_INTERVAL)) {
+            assertNull(scheduler.getLatest(ReportType.LOW_INVENTORY));
+
+            LowInventoryReport report = new LowInventoryReport();
+            report.setReportFilePath(expected.getPath());
+            assertTrue(report.generateReport(storageCrud));
+
+            ReportResult result = scheduler.getReport(ReportType.LOW_INVENTORY, true);
+            assertNotNull(result);
+            assertArrayEquals(Files.readAllBytes(expected.toPath()), result.getContents());
+            assertArrayEquals(result.getContents(), Files.readAllBytes(result.getFilePath()));
+            assertFalse(scheduler.isStale(result));
+
+            assertSame(result, scheduler.getLatest(ReportType.LOW_INVENTORY));
+            assertSame(result, scheduler.getReport(ReportType.LOW_INVENTORY, false));
+        } finally {
+            expected.delete();
+        }
+    }
+
+    /**
+     * Tests that a report becomes stale as data changes, and is generated again
+     * once enough of it has changed.
+     */
+    @Test
+    public void test2RefreshAfterChanges() throws IOException, InterruptedException {
+        try (ReportScheduler scheduler = new ReportScheduler(storageCrud, cacheDirectory, POLL_INTERVAL)) {
+            ReportResult first = scheduler.getReport(ReportType.LOW_INVENTORY, false);
+            assertNotNull(first);
+
+            scheduler.refreshAfterChanges(ReportType.LOW_INVENTORY, 3);
+            addLowItem("scheduledsku1");
+            addLowItem("scheduledsku2");
+            assertEquals(2, scheduler.getChangesSince(first));
+            assertTrue(scheduler.isStale(first));
+            Thread.sleep(5 * POLL_INTERVAL.toMillis());
+            assertSame(first, scheduler.getLatest(ReportType.LOW_INVENTORY)); // not enough changes yet
+
+            addLowItem("scheduledsku3");
+            long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+            while (scheduler.getLatest(ReportType.LOW_INVENTORY) == first) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("The report was not generated again after the changes");
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+
+            ReportResult second = scheduler.getLatest(ReportType.LOW_INVENTORY);
+            assertFalse(scheduler.isStale(second));
+            assertEquals(4, Files.readAllLines(second.getFilePath()).size()); // the header and three items
+        }
+    }
+
+    /**
+     * Tests that reports kept on disk are served by a new scheduler, which does
+     * not know what changed since.
+     */
+    @Test
+    public void test3ServesReportsKeptOnDisk() throws IOException {
+        addLowItem("scheduledsku1");
+
+        byte[] contents;
+        try (ReportScheduler scheduler = new ReportScheduler(storageCrud, cacheDirectory, POLL_INTERVAL)) {
+            contents = scheduler.getReport(ReportType.LOW_INVENTORY, true).getContents();
+        }
+
+        try (ReportScheduler scheduler = new ReportScheduler(storageCrud, cacheDirectory, POLL_INTERVAL)) {
+            ReportResult kept = scheduler.getLatest(ReportType.LOW_INVENTORY);
+            assertNotNull(kept);
+            assertArrayEquals(contents, kept.getContents());
+            assertEquals(ReportResult.UNKNOWN_CHANGE_COUNT, scheduler.getChangesSince(kept));
+            assertTrue(scheduler.isStale(kept));
+            assertNull(scheduler.getLatest(ReportType.UNSOLD_INVENTORY));
+        }
+    }
+
+    /**
+     * Tests that a report that could not be generated keeps the report from
+     * before and the reason it failed, until it is generated again.
+     */
+    @Test
+    public void test4KeepsLastFailure() throws IOException, SQLException {
+        StorageCrud failingStorageCrud = new MySqlCrud(new MySql(MySqlCrud.url, MySqlCrud.username,
+                MySqlCrud.password, MySqlCrud.tableQueries, MySqlCrud.schemaMigrations)) {
+            @Override
+            public List<Item> readLowInventoryItems() {
+                throw new IllegalStateException("storage is unavailable");
+            }
+        };
+
+        try (ReportScheduler scheduler = new ReportScheduler(storageCrud, cacheDirectory, POLL_INTERVAL)) {
+            assertNotNull(scheduler.getReport(ReportType.LOW_INVENTORY, true));
+            assertNull(scheduler.getLastFailure(ReportType.LOW_INVENTORY));
+        }
+
+        try (ReportScheduler scheduler = new ReportScheduler(failingStorageCrud, cacheDirectory, POLL_INTERVAL)) {
+            ReportResult kept = scheduler.getLatest(ReportType.LOW_INVENTORY);
+            assertNull(scheduler.getReport(ReportType.LOW_INVENTORY, true));
+            assertSame(kept, scheduler.getLatest(ReportType.LOW_INVENTORY));
+            String failure = scheduler.getLastFailure(ReportType.LOW_INVENTORY);
+            assertNotNull(failure);
+            assertTrue(failure, failure.contains("storage is unavailable"));
+            assertNull(scheduler.getLastFailure(ReportType.UNSOLD_INVENTORY));
+        }
+    }
+
+    /**
+     * Performs a final cleanup.
+     */
+    @After
+    public void cleanup() throws IOException {
+        try {
+            deleteAllItemsAndCategories();
+            try (Stream<Path> files = Files.list(cacheDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(cacheDirectory);
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+}
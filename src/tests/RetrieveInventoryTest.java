@@ -26,9 +26,12 @@ import com.google.gson.GsonBuilder;
 import database.InnerObject;
 import database.MySql;
 import database.MySqlCrud;
+import database.Page;
+import database.SelectQuery;
 import database.Storage;
 import database.StorageCrud;
 import database.items.Category;
+import database.items.EconomyInfo;
 import database.items.Item;
 import database.items.ObjectService;
 
@@ -46,7 +49,8 @@ public class RetrieveInventoryTest {
     static {
         try {
             storageCrud = new MySqlCrud();
-            storage = new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password, MySqlCrud.tableQueries);
+            storage = new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password, MySqlCrud.tableQueries,
+                    MySqlCrud.schemaMigrations);
         } catch (SQLException sqle) {
             throw new RuntimeException("Could not initialize MySqlCrud or MySql");
         }
@@ -107,11 +111,7 @@ public class RetrieveInventoryTest {
                 Date.valueOf(formattedDate), Date.valueOf(formattedDate), 10, 23, 0.0);
         expectedItems.add(firstItem);
 
-        // get the ID
-        int itemId = storageCrud.getNextId(Item.TABLE_NAME);
-        firstItem.setItemId(itemId);
-
-        // create the item
+        // create the item, which gives it its ID
         assertTrue(storageCrud.createItem(firstItem));
         // commit to storage, since it did not commit these changes yet
         storage.commitTransaction();
@@ -293,7 +293,7 @@ public class RetrieveInventoryTest {
             // create expected Map data
             List<String> keys = ObjectService.getItemKeys();
 
-            List<Map<String, String>> realData = storage.readAll(Item.TABLE_NAME, keys, null);
+            List<Map<String, String>> realData = readItemRows(keys, null);
             List<Map<String, String>> expectedData = getExpectedItemMap();
             // we should have the same values
             assertEquals(expectedData, realData);
@@ -321,7 +321,7 @@ public class RetrieveInventoryTest {
             // add a bad key to cause the method to fail
             keys.add("fail");
 
-            List<Map<String, String>> realData = storage.readAll(Item.TABLE_NAME, keys, null);
+            List<Map<String, String>> realData = readItemRows(keys, null);
             List<Map<String, String>> expectedData = new ArrayList<>(); // since we should get an empty list back
 
             // we should have the same values
@@ -349,7 +349,7 @@ public class RetrieveInventoryTest {
             List<String> keys = ObjectService.getItemKeys();
 
             // use a new arraylist, shouldn't affect the read data
-            List<Map<String, String>> realData = storage.readAll(Item.TABLE_NAME, keys, new ArrayList<>());
+            List<Map<String, String>> realData = readItemRows(keys, new ArrayList<>());
             List<Map<String, String>> expectedData = getExpectedItemMap();
             // we should have the same values
             assertEquals(expectedData, realData);
@@ -376,7 +376,7 @@ public class RetrieveInventoryTest {
             List<String> keys = ObjectService.getItemKeys();
 
             // use a new arraylist, shouldn't affect the read data
-            List<Map<String, String>> realData = storage.readAll(Item.TABLE_NAME, keys,
+            List<Map<String, String>> realData = readItemRows(keys,
                     List.of(new InnerObject(Item.TABLE_NAME, Category.TABLE_NAME, Category.CATEGORY_ID_KEY)));
             List<Map<String, String>> expectedData = getExpectedItemMap();
 
@@ -419,6 +419,201 @@ public class RetrieveInventoryTest {
         }
     }
 
+    /**
+     * Tests creating more Items than fit in a single batch from MySqlCrud.
+     */
+    @Test
+    public void test11MySqlCrudCreateItemsBatch() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+
+            Category category = new Category("TESTCATEGORY");
+            assertTrue(storageCrud.createCategory(category));
+            category = storageCrud.readCategoryByName(category.getName()).get(0);
+
+            Date today = Date.valueOf(LocalDate.now());
+            int numItems = MySql.DEFAULT_BATCH_SIZE * 2 + 1; // so the last batch is not full
+            List<Item> items = new ArrayList<>();
+            for (int i = 0; i < numItems; i++) {
+                items.add(new Item("batchsku" + i, "batchItem", "batch item " + i, category, 1.25, i, today, today,
+                        10, 5, 0.0));
+            }
+
+            assertTrue(storageCrud.createItems(items));
+            assertEquals(numItems, storageCrud.readItemByName("batchItem").size());
+            deleteAllItemsAndCategories();
+        } catch (Exception e) {
+            fail("Error creating a batch of items with MySqlCrud");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that creating an Item without a SKU from MySqlCrud gives it its
+     * generated ID and a SKU built from that ID.
+     */
+    @Test
+    public void test12MySqlCrudCreateItemGeneratesIdAndSku() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+
+            Category category = new Category("TESTCATEGORY");
+            assertTrue(storageCrud.createCategory(category));
+            assertTrue(category.getCategoryId() > 0);
+
+            Date today = Date.valueOf(LocalDate.now());
+            Item item = new Item(null, "generatedItem", "item without a sku", category, 3.5, 2, today, today, 10,
+                    5, 0.0);
+            assertTrue(storageCrud.createItem(item));
+            assertTrue(item.getItemId() > 0);
+            assertEquals("TESTCATEGORY-" + item.getItemId(), item.getSku());
+
+            Item readItem = storageCrud.readItemBySKU(item.getSku());
+            assertEquals(item.getItemId(), readItem.getItemId());
+            deleteAllItemsAndCategories();
+        } catch (Exception e) {
+            fail("Error creating an item with a generated SKU with MySqlCrud");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that streaming every Item from MySqlCrud reads the same Items as
+     * reading them all at once.
+     */
+    @Test
+    public void test13MySqlCrudForEachItem() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addFirstItem();
+
+            List<Item> streamedItems = new ArrayList<>();
+            assertTrue(storageCrud.forEachItem(streamedItems::add));
+            assertEquals(storageCrud.readAllItems(), streamedItems);
+            assertEquals(expectedItems, streamedItems);
+            deleteAllItemsAndCategories();
+        } catch (Exception e) {
+            fail("Error streaming items with MySqlCrud");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that reading Item summaries from MySqlCrud leaves out only the
+     * description.
+     */
+    @Test
+    public void test14MySqlCrudReadAllItemSummaries() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addFirstItem();
+
+            List<Item> summaries = storageCrud.readAllItemSummaries(Item.NAME_KEY, true);
+            assertEquals(1, summaries.size());
+            assertEquals(null, summaries.get(0).getDescription());
+
+            Item expectedSummary = expectedItems.get(0);
+            expectedSummary.setDescription(null);
+            assertEquals(expectedSummary.getAllAttributes(), summaries.get(0).getAllAttributes());
+            deleteAllItemsAndCategories();
+        } catch (Exception e) {
+            fail("Error reading item summaries with MySqlCrud");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests reading keys from a joined inner object in MySql, which only selects
+     * the requested keys from the table they belong to.
+     */
+    @Test
+    public void test15MySqlReadAllInnerObjectKeys() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addFirstItem();
+
+            List<String> keys = List.of(Item.NAME_KEY, Category.CATEGORY_ID_KEY, Category.NAME_KEY);
+            List<Map<String, String>> realData = readItemRows(keys, ObjectService.getItemInnerObjects());
+
+            Item item = expectedItems.get(0);
+            Map<String, String> expectedRow = new HashMap<>();
+            expectedRow.put(Item.NAME_KEY, item.getName());
+            expectedRow.put(Category.CATEGORY_ID_KEY, Integer.toString(item.getCategory().getCategoryId()));
+            expectedRow.put(Category.NAME_KEY, item.getCategory().getName());
+            assertEquals(List.of(expectedRow), realData);
+            deleteAllItemsAndCategories();
+        } catch (Exception e) {
+            fail("Error reading inner object keys with MySql");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that reading Items a page at a time from MySqlCrud reads every Item
+     * once, in the same order as sorting them all, even when many Items share
+     * the value being sorted by.
+     */
+    @Test
+    public void test16MySqlCrudReadItemsPage() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+
+            Category category = new Category("TESTCATEGORY");
+            assertTrue(storageCrud.createCategory(category));
+            category = storageCrud.readCategoryByName(category.getName()).get(0);
+
+            Date today = Date.valueOf(LocalDate.now());
+            int numItems = 25;
+            List<Item> items = new ArrayList<>();
+            for (int i = 0; i < numItems; i++) {
+                // only a few different prices, so pages split Items with the same price
+                items.add(new Item("pagesku" + i, "pageItem", "page item " + i, category, (i % 4) + 0.5, i, today,
+                        today, 10, 5, 0.0));
+            }
+            assertTrue(storageCrud.createItems(items));
+
+            List<Item> expected = storageCrud.readAllItems();
+            expected.sort((a, b) -> a.getPrice() != b.getPrice() ? Double.compare(a.getPrice(), b.getPrice())
+                    : Integer.compare(a.getItemId(), b.getItemId()));
+
+            List<Integer> pagedIds = new ArrayList<>();
+            String cursor = null;
+            int numPages = 0;
+            do {
+                Page<Item> page = storageCrud.readItemsPage(EconomyInfo.PRICE_KEY, true, 10, cursor);
+                assertTrue(page.getItems().size() <= 10);
+                for (Item item : page.getItems()) {
+                    pagedIds.add(item.getItemId());
+                }
+                cursor = page.getNextCursor();
+                numPages++;
+            } while (cursor != null);
+
+            List<Integer> expectedIds = new ArrayList<>();
+            for (Item item : expected) {
+                expectedIds.add(item.getItemId());
+            }
+            assertEquals(3, numPages);
+            assertEquals(expectedIds, pagedIds);
+            deleteAllItemsAndCategories();
+        } catch (Exception e) {
+            fail("Error reading pages of items with MySqlCrud");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
     /**
      * Performs a final cleanup.
      */
@@ -429,6 +624,23 @@ public class RetrieveInventoryTest {
         databaseMutex.unlock();
     }
 
+    /**
+     * Reads every Item from MySql, with each row as a Map of the keys read.
+     * 
+     * @param keys         The keys to read.
+     * @param innerObjects The inner objects to join, or null if there are none.
+     * @return The rows, or an empty list if an error occurred when reading.
+     */
+    private static List<Map<String, String>> readItemRows(List<String> keys, List<InnerObject> innerObjects) {
+        return storage.readObjects(new SelectQuery(Item.TABLE_NAME, keys, innerObjects), resultSet -> {
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                row.put(keys.get(i), resultSet.getString(i + 1));
+            }
+            return row;
+        });
+    }
+
     /**
      * Get the expected Item data as a Map.
      * 
@@ -0,0 +1,338 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.MySql;
+import database.MySqlCrud;
+import database.SchemaMigration;
+import database.SelectQuery;
+import database.Storage;
+import database.StorageCrud;
+import database.items.Category;
+import database.items.DataType;
+import database.items.Item;
+
+/**
+ * Tests that the schema migrations are applied once, and that the queries built
+ * for the hot Item reads and the reports use the secondary indexes they add
+ * instead of scanning the table.
+ */
+@OrderWith(Alphanumeric.class)
+public class SchemaIndexTest {
+    private static final int NUM_ITEMS = 50;
+    // the SKU index migration is applied again under this version, which is
+    // removed afterwards
+    private static final int SKU_MIGRATION_TEST_VERSION = 1000;
+
+    private static MySql storage; // to run EXPLAIN
+    private static StorageCrud storageCrud;
+
+    // we want to prevent multiple tests from accessing the database at the same
+    // time
+    private static ReentrantLock databaseMutex = new ReentrantLock();
+
+    static {
+        try {
+            storage = new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password, MySqlCrud.tableQueries,
+                    MySqlCrud.schemaMigrations);
+            storageCrud = new MySqlCrud(storage);
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Could not initialize MySql");
+        }
+    }
+
+    /**
+     * Deletes all Items and Categories in the database.
+     */
+    private static void deleteAllItemsAndCategories() {
+        for (Item item : storageCrud.readAllItems()) {
+            assertTrue(storageCrud.deleteItem(item.getItemId()));
+        }
+        for (Category category : storageCrud.readAllCategories()) {
+            assertTrue(storageCrud.deleteCategory(category.getCategoryId()));
+        }
+    }
+
+    /**
+     * Creates enough Items, each with its own SKU and name, that reading one of
+     * them by index is cheaper than scanning the table.
+     */
+    private static void addItems() {
+        Category category = new Category("INDEXCATEGORY");
+        assertTrue(storageCrud.createCategory(category));
+        category = storageCrud.readCategoryByName(category.getName()).get(0);
+
+        Date today = Date.valueOf(LocalDate.now());
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            items.add(new Item("indexsku" + i, "indexItem" + i, "index item " + i, category, 1.5 + i, i, today,
+                    today, 10, 5, 0.0));
+        }
+        assertTrue(storageCrud.createItems(items));
+    }
+
+    /**
+     * Inserts an Item with a given ID and SKU, as a database from before the
+     * unique SKU index could have.
+     *
+     * @param itemId   The ID of the Item.
+     * @param sku      The SKU of the Item.
+     * @param category The Category of the Item.
+     */
+    private static void insertItem(int itemId, String sku, Category category) {
+        assertEquals(1, storage.executeUpdate("insert into Item(ItemId, Sku, ItemName, Description, CategoryId, "
+                + "Price, NumItems, Created, LastModified, SellWithinNumDays, LowInventoryThreshold, "
+                + "PromotionPercentOff) values (?, ?, 'duplicateSkuItem', '', ?, 1, 1, curdate(), curdate(), 10, 5, 0)",
+                List.of(Integer.toString(itemId), sku, Integer.toString(category.getCategoryId())),
+                List.of(DataType.INTEGER, DataType.STRING, DataType.INTEGER)));
+    }
+
+    /**
+     * Applies the migration that adds the unique SKU index again, under a version
+     * of its own.
+     *
+     * @throws SQLException If the migration could not be applied.
+     */
+    private static void applySkuMigrationAgain() throws SQLException {
+        List<String> statements = null;
+        for (SchemaMigration migration : MySqlCrud.schemaMigrations) {
+            if (migration.getVersion() == 1) {
+                statements = migration.getStatements();
+            }
+        }
+        new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password, MySqlCrud.tableQueries,
+                List.of(new SchemaMigration(SKU_MIGRATION_TEST_VERSION, "Add the SKU index again", statements)))
+                .close();
+    }
+
+    /**
+     * Gets the index MySQL plans to use to read the Item table in the query that
+     * MySqlCrud builds for a read, by recording the query on its way to MySql.
+     *
+     * @param read The read.
+     * @return The name of the index, or null if the table is scanned.
+     */
+    private static String explainItemKey(Consumer<StorageCrud> read) throws SQLException {
+        List<SelectQuery> queries = new ArrayList<>();
+        Storage recorder = (Storage) Proxy.newProxyInstance(Storage.class.getClassLoader(),
+                new Class<?>[] { Storage.class }, (proxy, method, args) -> {
+                    if (args != null && args.length > 0 && args[0] instanceof SelectQuery) {
+                        queries.add((SelectQuery) args[0]);
+                    }
+                    return method.invoke(storage, args);
+                });
+        read.accept(new MySqlCrud(recorder));
+        assertEquals("The read should build one query", 1, queries.size());
+
+        for (Map.Entry<String, String> tableKey : storage.explain(queries.get(0)).entrySet()) {
+            if (Item.TABLE_NAME.equalsIgnoreCase(tableKey.getKey())) {
+                return tableKey.getValue();
+            }
+        }
+        fail("The query does not read the Item table");
+        return null;
+    }
+
+    /**
+     * Tests that the database is at the version of the newest migration.
+     */
+    @Test
+    public void test1SchemaVersionIsCurrent() {
+        int newestVersion = 0;
+        for (SchemaMigration migration : MySqlCrud.schemaMigrations) {
+            newestVersion = Math.max(newestVersion, migration.getVersion());
+        }
+        assertEquals(newestVersion, storage.getSchemaVersion());
+    }
+
+    /**
+     * Tests that connecting again does not apply the migrations again or fail on
+     * the indexes that already exist.
+     */
+    @Test
+    public void test2MigrationsAreIdempotent() {
+        int version = storage.getSchemaVersion();
+        try {
+            MySql secondStorage = new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password,
+                    MySqlCrud.tableQueries, MySqlCrud.schemaMigrations);
+            assertEquals(version, secondStorage.getSchemaVersion());
+            secondStorage.close();
+        } catch (SQLException sqle) {
+            fail("Could not connect again after migrating");
+        }
+    }
+
+    /**
+     * Tests that reading an Item by SKU uses the unique SKU index.
+     */
+    @Test
+    public void test3ReadBySkuUsesIndex() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addItems();
+            assertEquals("ItemSku", explainItemKey(crud -> crud.readItemBySKU("indexsku7")));
+        } catch (SQLException sqle) {
+            fail("Could not explain reading an item by SKU");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that reading Items by name uses the name index.
+     */
+    @Test
+    public void test4ReadByNameUsesIndex() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addItems();
+            assertEquals("ItemName", explainItemKey(crud -> crud.readItemByName("indexItem7")));
+        } catch (SQLException sqle) {
+            fail("Could not explain reading items by name");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that the indexes for sorting and the reports exist, since with this few
+     * rows MySQL may rightly prefer sorting in memory to reading them.
+     */
+    @Test
+    public void test5SortIndexesExist() {
+        Set<String> indexNames = new HashSet<>();
+        try (MySql.DatabaseQueryResult result = storage.performQuery(
+                "select index_name from information_schema.statistics where table_schema = database() and table_name = 'Item'")) {
+            ResultSet resultSet = result.getResultSet();
+            while (resultSet.next()) {
+                indexNames.add(resultSet.getString(1));
+            }
+        } catch (SQLException sqle) {
+            fail("Could not read the indexes of the Item table");
+        }
+
+        for (String indexName : List.of("ItemSku", "ItemName", "ItemCategoryName", "ItemPrice", "ItemCreated",
+                "ItemLastModified", "ItemLowInventoryMargin", "ItemSellByDate")) {
+            assertTrue("Missing index " + indexName, indexNames.contains(indexName));
+        }
+    }
+
+    /**
+     * Tests that the unique SKU index migration generates again the SKUs that two
+     * Items were given before SKUs had a separator, and stops with a message naming
+     * any other duplicate SKU.
+     */
+    @Test
+    public void test6SkuMigrationFixesGeneratedDuplicates() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            Category tool = new Category("DUPTOOL");
+            Category tool9 = new Category("DUPTOOL9");
+            assertTrue(storageCrud.createCategory(tool));
+            assertTrue(storageCrud.createCategory(tool9));
+
+            // "DUPTOOL" with 9912 and "DUPTOOL9" with 912 were both "DUPTOOL9912"
+            assertTrue(storage.executeUpdate("drop index ItemSku on Item", List.of(), List.of()) >= 0);
+            insertItem(9912, "DUPTOOL9912", tool);
+            insertItem(912, "DUPTOOL9912", tool9);
+            applySkuMigrationAgain();
+            assertEquals("DUPTOOL-9912", storageCrud.readItem(9912).getSku());
+            assertEquals("DUPTOOL9-912", storageCrud.readItem(912).getSku());
+
+            // SKUs that were not generated cannot be fixed
+            assertEquals(1, storage.executeUpdate("delete from SchemaVersion where Version = ?",
+                    List.of(Integer.toString(SKU_MIGRATION_TEST_VERSION)), List.of(DataType.INTEGER)));
+            assertTrue(storage.executeUpdate("drop index ItemSku on Item", List.of(), List.of()) >= 0);
+            insertItem(9913, "DUPSKU", tool);
+            insertItem(9914, "DUPSKU", tool);
+            try {
+                applySkuMigrationAgain();
+                fail("Expected the migration to stop at the duplicate SKUs");
+            } catch (SQLException sqle) {
+                assertTrue(sqle.getMessage(), sqle.getMessage().contains("schema migration")
+                        && sqle.getMessage().contains("DUPSKU"));
+            }
+        } catch (SQLException sqle) {
+            fail("Could not apply the SKU migration: " + sqle.getMessage());
+        } finally {
+            storage.executeUpdate("delete from Item where ItemName = 'duplicateSkuItem'", List.of(), List.of());
+            storage.executeUpdate("delete from SchemaVersion where Version = ?",
+                    List.of(Integer.toString(SKU_MIGRATION_TEST_VERSION)), List.of(DataType.INTEGER));
+            // fails harmlessly if the index is still there
+            storage.executeUpdate("create unique index ItemSku on Item(Sku)", List.of(), List.of());
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that the low inventory report's filter reads the Items through the
+     * index of their low inventory margin.
+     */
+    @Test
+    public void test7LowInventoryFilterUsesIndex() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addItems();
+            assertEquals("ItemLowInventoryMargin", explainItemKey(crud -> crud.readLowInventoryItems()));
+        } catch (SQLException sqle) {
+            fail("Could not explain reading the low inventory items");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Tests that the unsold items report's filter reads the Items through the
+     * index of their sell-by date.
+     */
+    @Test
+    public void test8SellByFilterUsesIndex() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+            addItems();
+            Date today = Date.valueOf(LocalDate.now());
+            assertEquals("ItemSellByDate", explainItemKey(crud -> crud.readUnsoldItems(today)));
+        } catch (SQLException sqle) {
+            fail("Could not explain reading the unsold items");
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+
+    /**
+     * Performs a final cleanup.
+     */
+    @After
+    public void cleanup() {
+        databaseMutex.lock();
+        try {
+            deleteAllItemsAndCategories();
+        } finally {
+            databaseMutex.unlock();
+        }
+    }
+}
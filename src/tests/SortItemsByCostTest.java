@@ -50,7 +50,8 @@ public class SortItemsByCostTest {
     static {
         try {
             storageCrud = new MySqlCrud();
-            storage = new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password, MySqlCrud.tableQueries);
+            storage = new MySql(MySqlCrud.url, MySqlCrud.username, MySqlCrud.password, MySqlCrud.tableQueries,
+                    MySqlCrud.schemaMigrations);
         } catch (SQLException sqle) {
             throw new RuntimeException("Could not initialize MySqlCrud or MySql");
         }
@@ -108,11 +109,7 @@ public class SortItemsByCostTest {
                 Date.valueOf(formattedDate), Date.valueOf(formattedDate), 10, 23, 0.0);
         expectedItems.add(firstItem);
 
-        // get the ID
-        int itemId = storageCrud.getNextId(Item.TABLE_NAME);
-        firstItem.setItemId(itemId);
-
-        // create the item
+        // create the item, which gives it its ID
         assertTrue(storageCrud.createItem(firstItem));
         // commit to storage, since it did not commit these changes yet
         storage.commitTransaction();
@@ -149,11 +146,7 @@ public class SortItemsByCostTest {
                 Date.valueOf(formattedDate), Date.valueOf(formattedDate), 10, 23, 0.0);
         expectedItems.add(firstItem);
 
-        // get the ID
-        int itemId = storageCrud.getNextId(Item.TABLE_NAME);
-        firstItem.setItemId(itemId);
-
-        // create the item
+        // create the item, which gives it its ID
         assertTrue(storageCrud.createItem(firstItem));
         // commit to storage, since it did not commit these changes yet
         storage.commitTransaction();
@@ -191,23 +184,12 @@ public class SortItemsByCostTest {
                 Date.valueOf(formattedDate), Date.valueOf(formattedDate), 10, 23, 0.0);
         expectedItems.add(firstItem);
 
-        // get the ID
-        int itemId = storageCrud.getNextId(Item.TABLE_NAME);
-        firstItem.setItemId(itemId);
-
-        // create the item
+        // create the item, which gives it its ID
         assertTrue(storageCrud.createItem(firstItem));
         // commit to storage, since it did not commit these changes yet
         storage.commitTransaction();
     }
 
-    /**
-     * Retrieves the highest category ID from the database.
-     */
-    private int getMaxCategoryId() {
-        return storageCrud.getNextId(Category.TABLE_NAME);
-    }
-
     /*
      * Test reading all items sorted by cost in ascending order. On empty database,
      * expect an empty JSON array.
@@ -254,6 +236,7 @@ public class SortItemsByCostTest {
 
             String result = Controller.readAllItemsSortByCost(true);
             expectedItems.sort((item1, item2) -> Double.compare(item1.getPrice(), item2.getPrice()));
+            expectedItems.forEach(item -> item.setDescription(null)); // lists leave out descriptions
             assertEquals(gson.toJson(expectedItems), result);
         } finally {
             databaseMutex.unlock();
@@ -275,6 +258,7 @@ public class SortItemsByCostTest {
             String result = Controller.readAllItemsSortByCost(false);
             System.out.println(result);
             expectedItems.sort((item1, item2) -> Double.compare(item2.getPrice(), item1.getPrice()));
+            expectedItems.forEach(item -> item.setDescription(null)); // lists leave out descriptions
             assertEquals(gson.toJson(expectedItems), result);
         } finally {
             databaseMutex.unlock();
@@ -0,0 +1,159 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+import org.junit.runner.OrderWith;
+import org.junit.runner.manipulation.Alphanumeric;
+
+import database.items.Category;
+import database.items.Item;
+import database.reports.InventoryVolumeReport;
+import database.reports.LowInventoryReport;
+import database.reports.ReportGenerator;
+import database.reports.TopK;
+import database.reports.UnsoldInventoryReport;
+
+/**
+ * Tests that reports limited to their top ranked rows have the same rows as the
+ * top of the fully ranked reports.
+ */
+@OrderWith(Alphanumeric.class)
+public class TopKReportTest {
+    private static final int NUM_ITEMS = 3 * ReportGenerator.PARTITION_SIZE;
+    private static final int NUM_CATEGORIES = 20;
+    private static final int LIMIT = 50;
+
+    private static List<Category> categories = new ArrayList<>();
+    private static List<Item> items = new ArrayList<>();
+
+    /**
+     * Creates the Items, many of them tied on each ranking.
+     */
+    @BeforeClass
+    public static void createItems() {
+        for (int i = 0; i < NUM_CATEGORIES; i++) {
+            categories.add(new Category(i + 1, "TOPKCATEGORY" + i));
+        }
+
+        Random random = new Random(7);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            Date date = Date.valueOf(today.minusDays(random.nextInt(90)));
+            items.add(new Item(i + 1, "topksku" + i, "topkItem", "top k item " + i,
+                    categories.get(random.nextInt(NUM_CATEGORIES)), 0.25 * random.nextInt(400), random.nextInt(30),
+                    date, date, random.nextInt(60), random.nextInt(20), 0.5 * random.nextInt(2)));
+        }
+        Collections.shuffle(items, random); // so the ranking does not follow the IDs
+    }
+
+    /**
+     * Generates a report and reads its lines.
+     *
+     * @param report The report.
+     * @return The lines of the report.
+     */
+    private static List<String> generateLines(ReportGenerator report) throws IOException {
+        File file = File.createTempFile("top_k_report", ".csv");
+        try {
+            report.setReportFilePath(file.getPath());
+            assertTrue(report.generateReport(items, categories, new ArrayList<>()));
+            return Files.readAllLines(file.toPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that a TopK keeps the best values, best first, however they are
+     * offered.
+     */
+    @Test
+    public void test1TopKKeepsBestValues() {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            values.add(i % 997);
+        }
+        Collections.shuffle(values, new Random(3));
+
+        TopK<Integer> first = new TopK<>(10, Comparator.<Integer>reverseOrder());
+        TopK<Integer> second = new TopK<>(10, Comparator.<Integer>reverseOrder());
+        for (int i = 0; i < values.size(); i++) {
+            (i % 2 == 0 ? first : second).offer(values.get(i));
+        }
+        first.addAll(second);
+
+        values.sort(Comparator.reverseOrder());
+        assertEquals(values.subList(0, 10), first.toList());
+    }
+
+    /**
+     * Tests that the limited low inventory report is the top of the report ranked
+     * by deficit, in order and in parallel.
+     */
+    @Test
+    public void test2LowInventoryReportLimited() throws IOException {
+        LowInventoryReport ranked = new LowInventoryReport();
+        ranked.setLimit(Integer.MAX_VALUE); // ranks every item, leaving none out
+        List<String> expected = generateLines(ranked).subList(0, LIMIT + 1);
+
+        for (ForkJoinPool pool : new ForkJoinPool[] { null, ForkJoinPool.commonPool() }) {
+            LowInventoryReport limited = new LowInventoryReport();
+            limited.setLimit(LIMIT);
+            limited.setForkJoinPool(pool);
+            assertEquals(expected, generateLines(limited));
+        }
+    }
+
+    /**
+     * Tests that the limited unsold inventory report is the top of the report
+     * ranked by days overdue, in order and in parallel.
+     */
+    @Test
+    public void test3UnsoldInventoryReportLimited() throws IOException {
+        UnsoldInventoryReport ranked = new UnsoldInventoryReport();
+        ranked.setLimit(Integer.MAX_VALUE);
+        List<String> expected = generateLines(ranked).subList(0, LIMIT + 1);
+
+        for (ForkJoinPool pool : new ForkJoinPool[] { null, ForkJoinPool.commonPool() }) {
+            UnsoldInventoryReport limited = new UnsoldInventoryReport();
+            limited.setLimit(LIMIT);
+            limited.setForkJoinPool(pool);
+            assertEquals(expected, generateLines(limited));
+        }
+    }
+
+    /**
+     * Tests that the limited inventory volume report has the categories with the
+     * most value, and the same overall totals as the full report.
+     */
+    @Test
+    public void test4InventoryVolumeReportLimited() throws IOException {
+        InventoryVolumeReport full = new InventoryVolumeReport();
+        List<String> fullLines = generateLines(full);
+        List<String> expected = new ArrayList<>(fullLines.subList(1, fullLines.size() - 1));
+        // by the total value column, most first
+        expected.sort(Comparator.comparingDouble((String line) -> -Double.parseDouble(line.split(",")[3])));
+
+        InventoryVolumeReport limited = new InventoryVolumeReport();
+        limited.setLimit(3);
+        List<String> limitedLines = generateLines(limited);
+        assertEquals(5, limitedLines.size());
+        assertEquals(fullLines.get(0), limitedLines.get(0));
+        assertEquals(expected.subList(0, 3), limitedLines.subList(1, 4));
+        assertEquals(fullLines.get(fullLines.size() - 1), limitedLines.get(4));
+    }
+}
@@ -1,8 +1,7 @@
 package user;
 
 import database.*;
-import database.importers.Importer;
-import database.importers.ImporterFactory;
+import database.importers.ImportPipeline;
 import database.importers.ImporterTypes;
 import database.items.Bundle;
 import database.items.Category;
@@ -12,7 +11,15 @@ import database.items.EconomyInfo;
 import database.items.Item;
 import database.items.ObjectService;
 import database.reports.ReportGeneratorFactory;
-
+import database.reports.ReportResult;
+import database.reports.ReportScheduler;
+import database.reports.ReportType;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -20,9 +27,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
 
 public class Controller {
 
@@ -30,6 +42,20 @@ public class Controller {
     private static final StorageCrud storageCrud;
     private static Gson gson = new GsonBuilder().setPrettyPrinting().create();
     private static final String DATE_FORMAT = "yyyy-MM-dd";
+    // how often the totals kept for the reports are checked against the Items
+    private static final long RECONCILE_INTERVAL_HOURS = 6;
+    private static final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "report-totals-reconciler");
+        thread.setDaemon(true); // so it does not keep the program running
+        return thread;
+    });
+    // where the reports generated in the background are kept
+    private static final String REPORT_CACHE_DIRECTORY = "report_cache";
+    // the number of Item and Category changes after which each report is generated again
+    private static final long REPORT_REFRESH_CHANGES = 100;
+    private static final ReportScheduler reportScheduler;
+    // files at least this large are imported by parsing their chunks in parallel
+    private static final long MAPPED_IMPORT_MIN_BYTES = 64L * 1024 * 1024;
 
     static {
         try {
@@ -37,6 +63,17 @@ public class Controller {
         } catch (SQLException e) {
             throw new RuntimeException("Failed to initialize connection to MySQL Database", e);
         }
+        reconciler.scheduleWithFixedDelay(storageCrud::reconcileCategoryVolumes, RECONCILE_INTERVAL_HOURS,
+                RECONCILE_INTERVAL_HOURS, TimeUnit.HOURS);
+
+        try {
+            reportScheduler = new ReportScheduler(storageCrud, Paths.get(REPORT_CACHE_DIRECTORY));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create the report cache directory", e);
+        }
+        for (ReportType type : ReportType.values()) {
+            reportScheduler.refreshAfterChanges(type, REPORT_REFRESH_CHANGES);
+        }
     }
 
     /**
@@ -47,10 +84,8 @@ public class Controller {
      *         otherwise.
      */
     public static boolean createCategory(Map<String, String> categoryData) {
-        // Add the next ID to the category data map
-        int nextCategoryId = storageCrud.getNextId(Category.TABLE_NAME);
-        categoryData.put(Category.CATEGORY_ID_KEY, Integer.toString(nextCategoryId));
-        Category category = ObjectService.createCategory(categoryData);
+        // the ID is generated by storage when the category is created
+        Category category = ObjectService.createCategoryStub(categoryData);
         return storageCrud.createCategory(category);
     }
 
@@ -78,21 +113,9 @@ public class Controller {
     public static Pair<Boolean, String> createItem(Map<String, String> itemData,
             Map<String, String> innerCategoryData) {
         String categoryName = innerCategoryData.get(Category.NAME_KEY);
-
-        List<Category> categories = storageCrud.readCategoryByName(categoryName);
-        if (categories.isEmpty()) {
-            // If the category does not exist, create it
-            Map<String, String> newCategoryData = new HashMap<>();
-            newCategoryData.put(Category.NAME_KEY, categoryName);
-            boolean categoryCreated = createCategory(newCategoryData);
-            if (!categoryCreated) {
-                return new Pair<>(false, "Failed to create category: " + categoryName);
-            }
-            // Verify that the category was created
-            categories = storageCrud.readCategoryByName(categoryName);
-            if (categories.isEmpty()) {
-                return new Pair<>(false, "Category creation failed or not found: " + categoryName);
-            }
+        int categoryId = findOrCreateCategoryId(categoryName);
+        if (categoryId == -1) {
+            return new Pair<>(false, "Category creation failed or not found: " + categoryName);
         }
 
         // Add the dates
@@ -102,66 +125,40 @@ public class Controller {
         itemData.put(DateInfo.CREATED_KEY, formattedDate);
         itemData.put(DateInfo.LAST_MODIFIED_KEY, formattedDate);
 
-        // since we know that the list is not empty
-        int categoryId = categories.get(0).getCategoryId();
-
         // now we know the ID for the Item's inner Category object
         innerCategoryData.put(Category.CATEGORY_ID_KEY, Integer.toString(categoryId));
         itemData.put(Item.CATEGORY_ID_KEY, Integer.toString(categoryId));
 
-        // we want to get the ID of the next item to set the SKU number
-        int itemId = storageCrud.getNextId(Item.TABLE_NAME);
-        String sku = categoryName + Integer.toString(itemId);
-        itemData.put(Item.SKU_KEY, sku);
+        // the SKU is set from the generated ID when the item is created
         Item item = ObjectService.createItemStub(itemData, innerCategoryData);
         boolean result = storageCrud.createItem(item);
 
-        return new Pair<>(result, sku);
+        return new Pair<>(result, item.getSku());
     }
 
     /**
-     * Creates an Item from dictionaries provided by importer. Does not override
-     * date values.
+     * Finds the ID of a Category by its name, creating the Category if it does not
+     * exist yet.
      * 
-     * @param itemData          The Item data.
-     * @param innerCategoryData The inner Category object data for the Item.
-     * @return True if the Item could be created, false otherwise.
+     * @param categoryName The name of the Category.
+     * @return The ID of the Category, or -1 if it could not be found or created.
      */
-    private static Pair<Boolean, String> createItemFromImportData(Map<String, String> itemData,
-            Map<String, String> innerCategoryData) {
-        String categoryName = innerCategoryData.get(Category.NAME_KEY);
-
+    private static int findOrCreateCategoryId(String categoryName) {
         List<Category> categories = storageCrud.readCategoryByName(categoryName);
         if (categories.isEmpty()) {
             // If the category does not exist, create it
             Map<String, String> newCategoryData = new HashMap<>();
             newCategoryData.put(Category.NAME_KEY, categoryName);
-            boolean categoryCreated = createCategory(newCategoryData);
-            if (!categoryCreated) {
-                return new Pair<>(false, "Failed to create category: " + categoryName);
+            if (!createCategory(newCategoryData)) {
+                return -1;
             }
             // Verify that the category was created
             categories = storageCrud.readCategoryByName(categoryName);
             if (categories.isEmpty()) {
-                return new Pair<>(false, "Category creation failed or not found: " + categoryName);
+                return -1;
             }
         }
-
-        // since we know that the list is not empty
-        int categoryId = categories.get(0).getCategoryId();
-
-        // now we know the ID for the Item's inner Category object
-        innerCategoryData.put(Category.CATEGORY_ID_KEY, Integer.toString(categoryId));
-        itemData.put(Item.CATEGORY_ID_KEY, Integer.toString(categoryId));
-
-        // we want to get the ID of the next item to set the SKU number
-        int itemId = storageCrud.getNextId(Item.TABLE_NAME);
-        String sku = categoryName + Integer.toString(itemId);
-        itemData.put(Item.SKU_KEY, sku);
-        Item item = ObjectService.createItemStub(itemData, innerCategoryData);
-        boolean result = storageCrud.createItem(item);
-
-        return new Pair<>(result, sku);
+        return categories.get(0).getCategoryId();
     }
 
     /**
@@ -175,12 +172,13 @@ public class Controller {
     }
 
     /**
-     * Reads all items in storage.
+     * Reads all items in storage, for listing them. Their descriptions are left
+     * out, use {@link #readItem(int)} to read an item in full.
      * 
      * @return A JSON representation of all the Item objects read from storage.
      */
     public static String readAllItems() {
-        return gson.toJson(storageCrud.readAllItems());
+        return gson.toJson(storageCrud.readAllItemSummaries(null, true));
     }
 
     /**
@@ -213,43 +211,62 @@ public class Controller {
     }
 
     /**
-     * Reads all items sorted by their name.
+     * Reads all items sorted by their name, without their descriptions.
      * 
      * @param isAscending Sort by ascending (true) or descending (false).
      * @return A JSON representation of all the Item objects sorted by name.
      */
     public static String readAllItemsSortByName(boolean isAscending) {
-        return gson.toJson(storageCrud.readAllItemsSortBy(Item.NAME_KEY, isAscending));
+        return gson.toJson(storageCrud.readAllItemSummaries(Item.NAME_KEY, isAscending));
     }
 
     /**
-     * Reads all items sorted by their cost.
+     * Reads all items sorted by their cost, without their descriptions.
      * 
      * @param isAscending Sort by ascending (true) or descending (false).
      * @return A JSON representation of all the Item objects sorted by cost.
      */
     public static String readAllItemsSortByCost(boolean isAscending) {
-        return gson.toJson(storageCrud.readAllItemsSortBy(EconomyInfo.PRICE_KEY, isAscending));
+        return gson.toJson(storageCrud.readAllItemSummaries(EconomyInfo.PRICE_KEY, isAscending));
     }
 
     /**
-     * Reads all items grouped by their category.
+     * Reads all items grouped by their category, without their descriptions.
      * 
      * @param isAscending Sort by ascending (true) or descending (false).
      * @return A JSON representation of all the Item objects sorted by cost.
      */
     public static String readAllItemsGroupByCategory(boolean isAscending) {
-        return gson.toJson(storageCrud.readAllItemsSortBy(Item.CATEGORY_ID_KEY, isAscending));
+        return gson.toJson(storageCrud.readAllItemSummaries(Item.CATEGORY_ID_KEY, isAscending));
     }
 
     /**
-     * Reads all items sorted by their date.
+     * Reads all items sorted by their date, without their descriptions.
      * 
      * @param isAscending Sort by ascending (true) or descending (false).
      * @return A JSON representation of all the Item objects sorted by date.
      */
     public static String readAllItemsSortByDate(boolean isAscending) {
-        return gson.toJson(storageCrud.readAllItemsSortBy(DateInfo.CREATED_KEY, isAscending));
+        return gson.toJson(storageCrud.readAllItemSummaries(DateInfo.CREATED_KEY, isAscending));
+    }
+
+    /**
+     * Reads a page of items, so that large inventories can be read a page at a
+     * time.
+     * 
+     * @param sortKey     The key to sort by, or null to only sort by ID.
+     * @param isAscending Sort by ascending (true) or descending (false).
+     * @param pageSize    The most items on the page.
+     * @param cursor      The nextCursor of the page before this one, or null for the
+     *                    first page.
+     * @return A JSON representation of the page, holding its items and the
+     *         nextCursor to read the page after it (absent on the last page).
+     * @throws IllegalArgumentException If the sort key, page size or cursor is not
+     *                                  valid.
+     * @throws RuntimeException         If the page could not be read.
+     */
+    public static String readItemsPage(String sortKey, boolean isAscending, int pageSize, String cursor) {
+        return gson.toJson(storageCrud.readItemsPage(sortKey, isAscending, pageSize, cursor));
     }
 
     /**
@@ -455,10 +472,7 @@ public class Controller {
      * @return True if report is generated
      */
     public static boolean lowInventoryReport() {
-        List<Item> items = storageCrud.readAllItems();
-        List<Bundle> bundles = storageCrud.readAllBundles();
-        List<Category> categories = storageCrud.readAllCategories();
-        return reportGeneratorFactory.generateLowInventoryReport(categories, items, bundles);
+        return reportGeneratorFactory.generateLowInventoryReport(storageCrud);
     }
 
     /**
@@ -467,10 +481,7 @@ public class Controller {
      * @return True if report is generated
      */
     public static boolean unsoldInventoryReport() {
-        List<Item> items = storageCrud.readAllItems();
-        List<Bundle> bundles = storageCrud.readAllBundles();
-        List<Category> categories = storageCrud.readAllCategories();
-        return reportGeneratorFactory.generateUnsoldInventoryReport(categories, items, bundles);
+        return reportGeneratorFactory.generateUnsoldInventoryReport(storageCrud);
     }
 
     /**
@@ -479,37 +490,132 @@ public class Controller {
      * @return True if reprot is generated
      */
     public static boolean inventoryVolumeReport() {
-        List<Item> items = storageCrud.readAllItems();
-        List<Bundle> bundles = storageCrud.readAllBundles();
-        List<Category> categories = storageCrud.readAllCategories();
-        return reportGeneratorFactory.generateInventoryVolumeReport(categories, items, bundles);
+        return reportGeneratorFactory.generateInventoryVolumeReport(storageCrud);
     }
 
     /**
-     * Deletes an item by its itemId.
+     * Generate a low inventory report of the items with the largest deficits
+     * 
+     * @param limit The number of items to report
+     * @return True if report is generated
+     */
+    public static boolean lowInventoryReport(int limit) {
+        return reportGeneratorFactory.generateLowInventoryReport(storageCrud, limit);
+    }
+
+    /**
+     * Generate an unsold inventory report of the most overdue items
+     * 
+     * @param limit The number of items to report
+     * @return True if report is generated
+     */
+    public static boolean unsoldInventoryReport(int limit) {
+        return reportGeneratorFactory.generateUnsoldInventoryReport(storageCrud, limit);
+    }
+
+    /**
+     * Generate an inventory volume report of the categories with the most value
+     * 
+     * @param limit The number of categories to report
+     * @return True if report is generated
+     */
+    public static boolean inventoryVolumeReport(int limit) {
+        return reportGeneratorFactory.generateInventoryVolumeReport(storageCrud, limit);
+    }
+
+    /**
+     * Generate the low inventory, unsold inventory and inventory volume reports
+     * in one pass over the inventory
+     * 
+     * @return True if every report is generated
+     */
+    public static boolean allReports() {
+        return reportGeneratorFactory.generateAllReports(storageCrud);
+    }
+
+    /**
+     * Describes the latest report of each type generated in the background,
+     * without generating any of them.
+     * 
+     * @return One line for each report, with where it is kept, its age, whether
+     *         it may be out of date and why it last could not be generated
+     */
+    public static List<String> latestReports() {
+        List<String> descriptions = new ArrayList<>();
+        for (ReportType type : ReportType.values()) {
+            ReportResult result = reportScheduler.getLatest(type);
+            String failure = reportScheduler.getLastFailure(type);
+            String failed = failure == null ? "" : ", last failed: " + failure;
+            if (result == null) {
+                descriptions.add(type.getFileName() + ": not generated yet" + failed);
+                continue;
+            }
+
+            long changes = reportScheduler.getChangesSince(result);
+            String staleness = changes == ReportResult.UNKNOWN_CHANGE_COUNT ? "may be out of date"
+                    : changes == 0 ? "up to date" : changes + " changes since";
+            descriptions.add(result.getFilePath() + ": generated " + result.getAge().toMinutes()
+                    + " minutes ago, " + staleness + failed);
+        }
+        return descriptions;
+    }
+
+    /**
+     * Generates every report again in the background, replacing the latest ones.
+     */
+    public static void refreshLatestReports() {
+        for (ReportType type : ReportType.values()) {
+            reportScheduler.refresh(type);
+        }
+    }
+
+    /**
+     * Imports Items from a file, creating any Categories they need. The file is
+     * read while the Items read so far are created, in batches. Rows that cannot
+     * be imported are written to the file from {@link #getRejectedRowsFile}, and
+     * if the import stops, importing the file again continues where it stopped.
      * 
      * @param filePath The path to the csv file.
-     * @return A JSON representation of all the Item objects added to storage.
+     * @return True if every row was imported or rejected, false otherwise.
      */
     public static boolean importItems(String filePath) {
-        Importer<Pair<List<Map<String, String>>, List<Map<String, String>>>> importer = ImporterFactory
-                .createItemImporter(ImporterTypes.CSV);
-        Pair<List<Map<String, String>>, List<Map<String, String>>> data = importer.importData(filePath);
-        List<Map<String, String>> items = data.getFirst();
-        List<Map<String, String>> categories = data.getSecond();
-
-        if (items.size() != categories.size()) {
-            return false; // fail
+        ImportPipeline pipeline = new ImportPipeline(storageCrud);
+        if (new File(filePath).length() >= MAPPED_IMPORT_MIN_BYTES) {
+            pipeline.setImporterType(ImporterTypes.MAPPED_CSV);
         }
+        return pipeline.importItems(filePath);
+    }
 
-        for (int i = 0; i < items.size(); i++) {
-            Pair<Boolean, String> result = createItemFromImportData(items.get(i), categories.get(i));
-            if (!result.getFirst()) {
-                return false; // could not create item
-            }
-        }
+    /**
+     * Gets the file the rows of a file that could not be imported were written
+     * to.
+     * 
+     * @param filePath The path to the imported csv file.
+     * @return The path of the file of rejected rows, or null if no rows were
+     *         rejected.
+     */
+    public static String getRejectedRowsFile(String filePath) {
+        String rejectedFilePath = ImportPipeline.getRejectedFilePath(filePath);
+        return new File(rejectedFilePath).exists() ? rejectedFilePath : null;
+    }
 
-        return true; // success
+    /**
+     * Exports every Item in storage to a JSON file. The Items are written as they
+     * are read, so the whole inventory is never held in memory at once.
+     * 
+     * @param filePath The path to the JSON file to write.
+     * @return True if every Item was exported, false otherwise.
+     */
+    public static boolean exportItems(String filePath) {
+        try (JsonWriter jsonWriter = new JsonWriter(new BufferedWriter(new FileWriter(filePath)))) {
+            jsonWriter.setIndent("  ");
+            jsonWriter.beginArray();
+            boolean result = storageCrud.forEachItem(item -> gson.toJson(item, Item.class, jsonWriter));
+            jsonWriter.endArray();
+            return result;
+        } catch (IOException | JsonIOException e) {
+            return false;
+        }
     }
 
     /**